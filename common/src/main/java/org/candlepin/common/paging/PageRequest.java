@@ -30,6 +30,8 @@ public class PageRequest {
     public static final String SORT_BY_PARAM = "sort_by";
     public static final String PAGE_PARAM = "page";
     public static final String PER_PAGE_PARAM = "per_page";
+    public static final String CURSOR_PARAM = "after";
+    public static final String COUNT_PARAM = "count";
 
     public static final Integer DEFAULT_PAGE = Integer.valueOf(1);
     public static final Integer DEFAULT_PER_PAGE = Integer.valueOf(10);
@@ -39,6 +41,8 @@ public class PageRequest {
     private Integer perPage;
     private String sortBy;
     private Order order;
+    private String cursor;
+    private boolean count;
 
     public Integer getPage() {
         return page;
@@ -72,7 +76,42 @@ public class PageRequest {
         this.order = order;
     }
 
+    /**
+     * @return ID of the last result the client has seen, the page starts with the
+     * result following it. Empty for the first page, null when not paging by cursor.
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * @return true if a cursor paged request also wants the total number of
+     * results. Offset paging always counts, the links to the last page need it.
+     */
+    public boolean isCount() {
+        return count;
+    }
+
+    public void setCount(boolean count) {
+        this.count = count;
+    }
+
     public boolean isPaging() {
         return perPage != null && page != null;
     }
+
+    /**
+     * Cursor (keyset) paging seeks past the last result seen, ordered by the sort
+     * field and then ID, instead of skipping over all previous pages, so deep
+     * pages cost the same as the first one.
+     *
+     * @return true if this requests a page following a cursor
+     */
+    public boolean isCursorPaging() {
+        return perPage != null && cursor != null;
+    }
 }
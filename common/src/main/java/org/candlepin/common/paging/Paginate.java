@@ -27,4 +27,10 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Paginate {
 
+    /**
+     * @return true if the method can also page by cursor, see
+     * {@link PageRequest#isCursorPaging()}. Only methods whose results are paged
+     * by the curator, rather than filtered in memory afterwards, should.
+     */
+    boolean keyset() default false;
 }
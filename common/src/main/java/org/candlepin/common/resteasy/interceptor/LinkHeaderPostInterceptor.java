@@ -81,7 +81,8 @@ public class LinkHeaderPostInterceptor implements PostProcessInterceptor, Accept
         }
 
         // If we aren't paging, then no need for Link headers.
-        if (page.getPageRequest() == null || !page.getPageRequest().isPaging()) {
+        if (page.getPageRequest() == null || !(page.getPageRequest().isPaging() ||
+            page.getPageRequest().isCursorPaging())) {
             return;
         }
 
@@ -107,6 +108,17 @@ public class LinkHeaderPostInterceptor implements PostProcessInterceptor, Accept
 
         LinkHeader header = new LinkHeader();
 
+        // A cursor only leads forward, and without a count there is no last page.
+        if (page.getPageRequest().isCursorPaging()) {
+            if (page.getNextCursor() != null) {
+                header.addLink(null, "next", buildCursorLink(builder,
+                    page.getNextCursor()), null);
+            }
+            header.addLink(null, "first", buildCursorLink(builder, ""), null);
+            response.getMetadata().add(LINK_HEADER, header.toString());
+            return;
+        }
+
         Integer next = getNextPage(page);
         if (next != null) {
             header.addLink(null, "next", buildPageLink(builder, next), null);
@@ -129,6 +141,12 @@ public class LinkHeaderPostInterceptor implements PostProcessInterceptor, Accept
         return builder.build().toString();
     }
 
+    protected String buildCursorLink(UriBuilder b, String cursor) {
+        UriBuilder builder = b.clone();
+        builder.queryParam(PageRequest.CURSOR_PARAM, cursor);
+        return builder.build().toString();
+    }
+
     protected Integer getLastPage(Page page) {
         PageRequest pageRequest = page.getPageRequest();
 
@@ -234,7 +252,8 @@ public class LinkHeaderPostInterceptor implements PostProcessInterceptor, Accept
         // parameters provided too.
         if (params != null) {
             for (Entry<String, List<String>> e : params.entrySet()) {
-                if (!e.getKey().equals(PageRequest.PAGE_PARAM)) {
+                if (!e.getKey().equals(PageRequest.PAGE_PARAM) &&
+                    !e.getKey().equals(PageRequest.CURSOR_PARAM)) {
                     for (String v : e.getValue()) {
                         builder = builder.queryParam(e.getKey(), v);
                     }
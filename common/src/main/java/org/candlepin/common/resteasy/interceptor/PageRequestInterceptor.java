@@ -69,8 +69,10 @@ public class PageRequestInterceptor implements PreProcessInterceptor,
         String perPage = params.getFirst(PageRequest.PER_PAGE_PARAM);
         String order = params.getFirst(PageRequest.ORDER_PARAM);
         String sortBy = params.getFirst(PageRequest.SORT_BY_PARAM);
+        String cursor = params.getFirst(PageRequest.CURSOR_PARAM);
 
-        if (page != null || perPage != null || order != null || sortBy != null) {
+        if (page != null || perPage != null || order != null || sortBy != null ||
+            cursor != null) {
             p = new PageRequest();
 
             if (order == null) {
@@ -85,7 +87,15 @@ public class PageRequestInterceptor implements PreProcessInterceptor,
             p.setSortBy(sortBy);
 
             try {
-                if (page == null && perPage != null) {
+                if (cursor != null) {
+                    checkCursorAllowed(method, page);
+                    p.setCursor(cursor);
+                    p.setCount(Boolean.parseBoolean(
+                        params.getFirst(PageRequest.COUNT_PARAM)));
+                    p.setPerPage((perPage == null) ?
+                        PageRequest.DEFAULT_PER_PAGE : readInteger(perPage));
+                }
+                else if (page == null && perPage != null) {
                     p.setPage(PageRequest.DEFAULT_PAGE);
                     p.setPerPage(readInteger(perPage));
                 }
@@ -110,6 +120,21 @@ public class PageRequestInterceptor implements PreProcessInterceptor,
         return null;
     }
 
+    private void checkCursorAllowed(ResourceMethod method, String page) {
+        Paginate paginate = method.getMethod().getAnnotation(Paginate.class);
+        I18n i18n = this.i18nProvider.get();
+
+        if (paginate == null || !paginate.keyset()) {
+            throw new BadRequestException(i18n.tr("the ''{0}'' parameter is not " +
+                "supported by this resource", PageRequest.CURSOR_PARAM));
+        }
+
+        if (page != null) {
+            throw new BadRequestException(i18n.tr("the ''{0}'' and ''{1}'' parameters " +
+                "cannot be used together", PageRequest.CURSOR_PARAM, PageRequest.PAGE_PARAM));
+        }
+    }
+
     private Order readOrder(String order) {
         if ("ascending".equalsIgnoreCase(order) || "asc".equalsIgnoreCase(order)) {
             return Order.ASCENDING;
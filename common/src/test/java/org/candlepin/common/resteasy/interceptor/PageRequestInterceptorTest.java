@@ -20,6 +20,7 @@ import static org.mockito.Mockito.*;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.guice.CommonI18nProvider;
 import org.candlepin.common.paging.PageRequest;
+import org.candlepin.common.paging.Paginate;
 
 import org.jboss.resteasy.core.ResourceMethod;
 import org.jboss.resteasy.mock.MockHttpRequest;
@@ -160,4 +161,66 @@ public class PageRequestInterceptorTest {
         assertEquals(PageRequest.Order.DESCENDING, p.getOrder());
         assertEquals("id", p.getSortBy());
     }
+
+    @Test
+    public void testCursor() throws Exception {
+        when(rmethod.getMethod()).thenReturn(PagedResource.class.getMethod("keyset"));
+        MockHttpRequest req = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?after=abc&per_page=5&count=true");
+
+        interceptor.preProcess(req, rmethod);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isCursorPaging());
+        assertFalse(p.isPaging());
+        assertEquals("abc", p.getCursor());
+        assertEquals(Integer.valueOf(5), p.getPerPage());
+        assertTrue(p.isCount());
+    }
+
+    @Test
+    public void testEmptyCursorStartsAtFirstPage() throws Exception {
+        when(rmethod.getMethod()).thenReturn(PagedResource.class.getMethod("keyset"));
+        MockHttpRequest req = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?after=");
+
+        interceptor.preProcess(req, rmethod);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isCursorPaging());
+        assertEquals("", p.getCursor());
+        assertEquals(PageRequest.DEFAULT_PER_PAGE, p.getPerPage());
+        assertFalse(p.isCount());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testCursorNeedsKeysetMethod() throws Exception {
+        when(rmethod.getMethod()).thenReturn(PagedResource.class.getMethod("offset"));
+        MockHttpRequest req = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?after=abc");
+
+        interceptor.preProcess(req, rmethod);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testCursorAndPage() throws Exception {
+        when(rmethod.getMethod()).thenReturn(PagedResource.class.getMethod("keyset"));
+        MockHttpRequest req = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?after=abc&page=2");
+
+        interceptor.preProcess(req, rmethod);
+    }
+
+    /**
+     * Carries the annotations for the resource methods.
+     */
+    public static class PagedResource {
+        @Paginate(keyset = true)
+        public void keyset() {
+        }
+
+        @Paginate
+        public void offset() {
+        }
+    }
 }
@@ -33,6 +33,11 @@ public class ConfigProperties {
     public static final String AMQP_TRUSTSTORE = "gutterball.amqp.truststore";
     public static final String AMQP_TRUSTSTORE_PASSWORD = "gutterball.amqp.truststore_password";
 
+    // Event processing
+    public static final String EVENT_PROCESSING_THREADS = "gutterball.event.processing_threads";
+    public static final String EVENT_PROCESSING_QUEUE_SIZE = "gutterball.event.processing_queue_size";
+    public static final String EVENT_BATCH_SIZE = "gutterball.event.batch_size";
+
     public static final String JPA_DRIVER = "jpa.config.hibernate.connection.driver_class";
     public static final String JPA_CONNECTION_URL = "jpa.config.hibernate.connection.url";
     public static final String JPA_DIALECT = "jpa.config.hibernate.dialect";
@@ -62,6 +67,12 @@ public class ConfigProperties {
                         "/etc/gutterball/certs/amqp/gutterball.truststore");
                 this.put(AMQP_TRUSTSTORE_PASSWORD, "password");
 
+                // Events are processed on one thread per core, and stored up to 100 at a time
+                this.put(EVENT_PROCESSING_THREADS,
+                        Integer.toString(Runtime.getRuntime().availableProcessors()));
+                this.put(EVENT_PROCESSING_QUEUE_SIZE, "1000");
+                this.put(EVENT_BATCH_SIZE, "100");
+
                 // JPA/hibernate Configuration
                 this.put(JPA_DRIVER, "org.postgresql.Driver");
                 this.put(JPA_CONNECTION_URL, "jdbc:postgresql:gutterball");
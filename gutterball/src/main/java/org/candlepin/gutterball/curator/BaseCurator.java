@@ -24,6 +24,7 @@ import com.google.inject.persist.Transactional;
 import org.hibernate.Session;
 
 import java.io.Serializable;
+import java.util.Collection;
 
 import javax.persistence.EntityManager;
 import javax.persistence.OptimisticLockException;
@@ -65,6 +66,20 @@ public class BaseCurator<E> {
         return entity;
     }
 
+    /**
+     * Creates all of the given entities, flushing once rather than after each one.
+     *
+     * @param entities to be created.
+     */
+    @Transactional
+    public void createAll(Collection<E> entities) {
+        EntityManager em = getEntityManager();
+        for (E entity : entities) {
+            em.persist(entity);
+        }
+        flush();
+    }
+
     @Transactional
     protected final <T> T get(Class<T> clazz, Serializable id) {
         return clazz.cast(currentSession().get(clazz, id));
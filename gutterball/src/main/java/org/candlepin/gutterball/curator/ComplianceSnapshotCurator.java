@@ -57,6 +57,10 @@ import java.util.TreeMap;
 public class ComplianceSnapshotCurator extends BaseCurator<Compliance> {
     private static Logger log = LoggerFactory.getLogger(ComplianceSnapshotCurator.class);
 
+    // Rows fetched per round trip when iterating over snapshots. Without a fetch size, some
+    // JDBC drivers (PostgreSQL's, notably) read the entire result set into memory up front.
+    private static final int FETCH_SIZE = 100;
+
     @Inject
     public ComplianceSnapshotCurator() {
         super(Compliance.class);
@@ -225,6 +229,7 @@ public class ComplianceSnapshotCurator extends BaseCurator<Compliance> {
             .createAlias("comp.consumer", "cs")
             .add(Subqueries.propertiesIn(new String[] {"comp.date", "cs.uuid"}, subquery))
             .setCacheMode(CacheMode.IGNORE)
+            .setFetchSize(FETCH_SIZE)
             .setReadOnly(true);
 
 
@@ -404,6 +409,7 @@ public class ComplianceSnapshotCurator extends BaseCurator<Compliance> {
         }
 
         query.setCacheMode(CacheMode.IGNORE);
+        query.setFetchSize(FETCH_SIZE);
         query.setReadOnly(true);
 
         if (pageRequest != null && pageRequest.isPaging()) {
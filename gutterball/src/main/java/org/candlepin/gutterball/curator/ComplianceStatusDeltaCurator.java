@@ -0,0 +1,332 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.gutterball.curator;
+
+import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageRequest;
+import org.candlepin.gutterball.model.ComplianceStatusDelta;
+import org.candlepin.gutterball.model.ConsumerState;
+
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+
+import org.hibernate.Query;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The curator responsible for the daily compliance status changes which back the
+ * status trend report.
+ * <p/>
+ * Counts follow the same rules as the ones {@link ComplianceSnapshotCurator} builds from the
+ * snapshots themselves: a consumer is counted on a day with the status of its last snapshot on or
+ * before that day, up until the day it was deleted. Days are calendar days in the server's time
+ * zone.
+ * <p/>
+ * Statuses must be recorded before the snapshot holding them is saved, as the consumer's existing
+ * snapshots are used to work out what the new status replaces.
+ */
+public class ComplianceStatusDeltaCurator extends BaseCurator<ComplianceStatusDelta> {
+
+    @Inject
+    public ComplianceStatusDeltaCurator() {
+        super(ComplianceStatusDelta.class);
+    }
+
+    /**
+     * Records a consumer's compliance status as of the given date.
+     *
+     * @param state
+     *  The state of the consumer the status belongs to
+     *
+     * @param status
+     *  The consumer's compliance status
+     *
+     * @param date
+     *  The date of the compliance snapshot holding the status
+     */
+    @Transactional
+    public void recordStatus(ConsumerState state, String status, Date date) {
+        Date deleted = state.getDeleted();
+        if (deleted != null && !startOfDay(date).before(startOfDay(deleted))) {
+            // Snapshots taken on or after the day a consumer is deleted are never counted
+            return;
+        }
+
+        String uuid = state.getUuid();
+        Object[] previous = this.findSnapshotStatus(uuid, date, false);
+        Object[] next = this.findSnapshotStatus(uuid, date, true);
+        String previousStatus = previous != null ? (String) previous[0] : null;
+        String newStatus = status.toLowerCase();
+
+        Map<Date, Map<String, Integer>> changes = new HashMap<Date, Map<String, Integer>>();
+        addChange(changes, date, previousStatus, -1);
+        addChange(changes, date, newStatus, 1);
+
+        // Snapshots arriving out of order: the next change already recorded was counted as a
+        // change from the previous status, which it now replaces this one instead. The same goes
+        // for the consumer's deletion if there is no later snapshot before it.
+        Date nextDate = deleted;
+        if (next != null && (deleted == null ||
+            startOfDay((Date) next[1]).before(startOfDay(deleted)))) {
+            nextDate = (Date) next[1];
+        }
+
+        if (nextDate != null) {
+            addChange(changes, nextDate, newStatus, -1);
+            addChange(changes, nextDate, previousStatus, 1);
+        }
+
+        this.applyChanges(state.getOwnerKey(), changes);
+    }
+
+    /**
+     * Records the deletion of a consumer, which stops it being counted from the day it was
+     * deleted on.
+     *
+     * @param state
+     *  The state of the consumer being deleted, not yet marked as deleted
+     *
+     * @param deleted
+     *  The date the consumer was deleted
+     */
+    @Transactional
+    public void recordDeletion(ConsumerState state, Date deleted) {
+        // The last snapshot counted is the last one before the day of the deletion
+        Date dayBefore = new Date(startOfDay(deleted).getTime() - 1);
+        Object[] last = this.findSnapshotStatus(state.getUuid(), dayBefore, false);
+        if (last != null) {
+            Map<Date, Map<String, Integer>> changes = new HashMap<Date, Map<String, Integer>>();
+            addChange(changes, deleted, (String) last[0], -1);
+            this.applyChanges(state.getOwnerKey(), changes);
+        }
+    }
+
+    /**
+     * Retrieves the per-day compliance status counts over the given time span, in the same form
+     * as ComplianceSnapshotCurator.getComplianceStatusCounts, summed from the recorded changes
+     * rather than the snapshots themselves.
+     *
+     * @param startDate
+     *  The date at which the time span should begin. If null, the time span begins on the first
+     *  day with a recorded change.
+     *
+     * @param endDate
+     *  The date at which the time span should end. If null, the time span ends on the last day
+     *  with a recorded change.
+     *
+     * @param ownerKey
+     *  An owner key to use to filter compliance status counts. If provided, only consumers
+     *  associated with the specified owner key/account will be counted.
+     *
+     * @param pageRequest
+     *  A PageRequest instance containing paging information from the request. If null, no paging
+     *  will be performed.
+     *
+     * @return
+     *  A page containing a map of maps containing the compliance status counts, grouped by day.
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public Page<Map<Date, Map<String, Integer>>> getStatusCounts(Date startDate, Date endDate,
+        String ownerKey, PageRequest pageRequest) {
+
+        Page<Map<Date, Map<String, Integer>>> page = new Page<Map<Date, Map<String, Integer>>>();
+        page.setPageRequest(pageRequest);
+
+        // Clamp our dates so they're no further out than "today."
+        Date today = new Date();
+        Date first = startDate == null ? null : startOfDay(startDate.after(today) ? today : startDate);
+        Date last = endDate == null ? null : startOfDay(endDate.after(today) ? today : endDate);
+
+        // Counts going into the first day
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        if (first != null) {
+            Query query = this.buildSumQuery(
+                "SELECT delta.status, sum(delta.delta)", "delta.date < :first", ownerKey,
+                "GROUP BY delta.status"
+            );
+            query.setDate("first", first);
+
+            for (Object[] row : (List<Object[]>) query.list()) {
+                counts.put((String) row[0], ((Number) row[1]).intValue());
+            }
+        }
+
+        Query query = this.buildSumQuery(
+            "SELECT delta.date, delta.status, sum(delta.delta)",
+            (first != null ? "delta.date >= :first" : null), ownerKey,
+            "GROUP BY delta.date, delta.status ORDER BY delta.date ASC"
+        );
+        if (first != null) {
+            query.setDate("first", first);
+        }
+        List<Object[]> rows = query.list();
+
+        Map<Date, Map<String, Integer>> resultmap = new TreeMap<Date, Map<String, Integer>>();
+        if (counts.isEmpty() && (rows.isEmpty() || (last != null &&
+            ((Date) rows.get(0)[0]).after(last)))) {
+            // Nothing known about anyone by the end of the time span
+            page.setMaxRecords(0);
+            page.setPageData(resultmap);
+            return page;
+        }
+
+        if (first == null) {
+            first = (Date) rows.get(0)[0];
+        }
+
+        if (last == null) {
+            last = rows.isEmpty() ? first : (Date) rows.get(rows.size() - 1)[0];
+        }
+
+        int offset = 0;
+        int limit = Integer.MAX_VALUE;
+        if (pageRequest != null && pageRequest.isPaging()) {
+            offset = (pageRequest.getPage() - 1) * pageRequest.getPerPage();
+            limit = pageRequest.getPerPage();
+        }
+
+        Calendar day = Calendar.getInstance();
+        day.setTime(first);
+        int position = 0;
+        int next = 0;
+        for (; !day.getTime().after(last); day.add(Calendar.DATE, 1), ++position) {
+            for (; next < rows.size() && !((Date) rows.get(next)[0]).after(day.getTime()); ++next) {
+                Object[] row = rows.get(next);
+                Integer count = counts.get((String) row[1]);
+                counts.put((String) row[1], (count != null ? count : 0) + ((Number) row[2]).intValue());
+            }
+
+            if (position >= offset && position - offset < limit) {
+                Map<String, Integer> statusmap = new HashMap<String, Integer>();
+                for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                    if (entry.getValue() > 0) {
+                        statusmap.put(entry.getKey(), entry.getValue());
+                    }
+                }
+
+                Calendar end = (Calendar) day.clone();
+                end.set(Calendar.HOUR_OF_DAY, 23);
+                end.set(Calendar.MINUTE, 59);
+                end.set(Calendar.SECOND, 59);
+                end.set(Calendar.MILLISECOND, 999);
+                resultmap.put(end.getTime(), statusmap);
+            }
+        }
+
+        page.setMaxRecords(position);
+        page.setPageData(resultmap);
+        return page;
+    }
+
+    private Query buildSumQuery(String select, String condition, String ownerKey, String suffix) {
+        StringBuilder hql = new StringBuilder(select).append(" FROM ComplianceStatusDelta AS delta");
+
+        String separator = " WHERE ";
+        if (condition != null) {
+            hql.append(separator).append(condition);
+            separator = " AND ";
+        }
+
+        if (ownerKey != null) {
+            hql.append(separator).append("delta.ownerKey = :owner");
+        }
+
+        Query query = this.currentSession().createQuery(hql.append(' ').append(suffix).toString());
+        if (ownerKey != null) {
+            query.setString("owner", ownerKey);
+        }
+
+        return query;
+    }
+
+    /**
+     * Finds the status and date of the consumer's last snapshot on or before the given date, or of
+     * its first snapshot after it.
+     */
+    @SuppressWarnings("unchecked")
+    private Object[] findSnapshotStatus(String uuid, Date date, boolean after) {
+        List<Object[]> rows = this.currentSession().createQuery(
+            "SELECT ComplianceStatusSnap.status, ComplianceSnap.date " +
+            "FROM Consumer AS ConsumerSnap " +
+                "INNER JOIN ConsumerSnap.complianceSnapshot AS ComplianceSnap " +
+                "INNER JOIN ComplianceSnap.status AS ComplianceStatusSnap " +
+            "WHERE ConsumerSnap.uuid = :uuid " +
+                "AND ComplianceSnap.date " + (after ? ">" : "<=") + " :date " +
+            "ORDER BY ComplianceSnap.date " + (after ? "ASC" : "DESC"))
+            .setString("uuid", uuid)
+            .setTimestamp("date", date)
+            .setMaxResults(1)
+            .list();
+
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        Object[] row = rows.get(0);
+        row[0] = row[0] != null ? ((String) row[0]).toLowerCase() : null;
+        return row;
+    }
+
+    private void applyChanges(String ownerKey, Map<Date, Map<String, Integer>> changes) {
+        for (Map.Entry<Date, Map<String, Integer>> day : changes.entrySet()) {
+            for (Map.Entry<String, Integer> change : day.getValue().entrySet()) {
+                if (change.getValue() == 0) {
+                    continue;
+                }
+
+                // Always a new row: events are processed in parallel, and updating a shared
+                // row per owner, day and status would serialize them all on its lock.
+                this.create(new ComplianceStatusDelta(
+                    ownerKey, day.getKey(), change.getKey(), change.getValue()
+                ));
+            }
+        }
+    }
+
+    private static void addChange(Map<Date, Map<String, Integer>> changes, Date date,
+        String status, int change) {
+
+        if (status == null) {
+            return;
+        }
+
+        Date day = startOfDay(date);
+        Map<String, Integer> daychanges = changes.get(day);
+        if (daychanges == null) {
+            daychanges = new HashMap<String, Integer>();
+            changes.put(day, daychanges);
+        }
+
+        Integer current = daychanges.get(status);
+        daychanges.put(status, (current != null ? current : 0) + change);
+    }
+
+    private static Date startOfDay(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+}
@@ -23,12 +23,21 @@ import org.hibernate.Criteria;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Responsible for managing {@link Event} model objects and storing/retrieving to/from
  * the database.
  */
 public class EventCurator extends BaseCurator<Event> {
 
+    // Keeps IN lists within the limits of every supported database
+    private static final int IN_LIMIT = 1000;
+
     @Inject
     public EventCurator() {
         super(Event.class);
@@ -44,4 +53,27 @@ public class EventCurator extends BaseCurator<Event> {
             .setProjection(Projections.count("id"));
         return ((Long) criteria.uniqueResult()) > 0;
     }
+
+    /**
+     * Finds which of the given message IDs already have an event stored for them.
+     *
+     * @param messageIds the message IDs to look for
+     * @return the message IDs which have an event
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> findMessageIds(Collection<String> messageIds) {
+        Set<String> found = new HashSet<String>();
+        List<String> ids = new ArrayList<String>(messageIds);
+        ids.remove("UNKNOWN");
+
+        for (int i = 0; i < ids.size(); i += IN_LIMIT) {
+            List<String> block = ids.subList(i, Math.min(i + IN_LIMIT, ids.size()));
+            found.addAll(currentSession().createCriteria(Event.class)
+                .add(Restrictions.in("messageId", block))
+                .setProjection(Projections.distinct(Projections.property("messageId")))
+                .list());
+        }
+
+        return found;
+    }
 }
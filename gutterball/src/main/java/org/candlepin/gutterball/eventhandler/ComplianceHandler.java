@@ -16,6 +16,7 @@ package org.candlepin.gutterball.eventhandler;
 
 import org.candlepin.common.config.PropertyConverter;
 import org.candlepin.gutterball.curator.ComplianceSnapshotCurator;
+import org.candlepin.gutterball.curator.ComplianceStatusDeltaCurator;
 import org.candlepin.gutterball.curator.ConsumerStateCurator;
 import org.candlepin.gutterball.model.ConsumerState;
 import org.candlepin.gutterball.model.Event;
@@ -49,14 +50,16 @@ public class ComplianceHandler extends EventHandler {
     private ObjectMapper mapper;
     private ComplianceSnapshotCurator complianceCurator;
     private ConsumerStateCurator consumerStateCurator;
+    private ComplianceStatusDeltaCurator statusDeltaCurator;
 
     @Inject
     public ComplianceHandler(ObjectMapper mapper, ComplianceSnapshotCurator complianceCurator,
-        ConsumerStateCurator consumerStateCurator) {
+        ConsumerStateCurator consumerStateCurator, ComplianceStatusDeltaCurator statusDeltaCurator) {
 
         this.mapper = mapper;
         this.complianceCurator = complianceCurator;
         this.consumerStateCurator = consumerStateCurator;
+        this.statusDeltaCurator = statusDeltaCurator;
     }
 
     @Override
@@ -122,6 +125,8 @@ public class ComplianceHandler extends EventHandler {
         consumer.setConsumerState(cstate);
         compliance.setDate(eventDate);
 
+        // Has to be counted before the snapshot is saved, see ComplianceStatusDeltaCurator
+        statusDeltaCurator.recordStatus(cstate, status.getStatus(), eventDate);
         complianceCurator.create(compliance);
         return Status.PROCESSED;
     }
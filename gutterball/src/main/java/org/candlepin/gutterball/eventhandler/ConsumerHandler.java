@@ -14,6 +14,7 @@
  */
 package org.candlepin.gutterball.eventhandler;
 
+import org.candlepin.gutterball.curator.ComplianceStatusDeltaCurator;
 import org.candlepin.gutterball.curator.ConsumerStateCurator;
 import org.candlepin.gutterball.model.ConsumerState;
 import org.candlepin.gutterball.model.Event;
@@ -32,11 +33,14 @@ import java.io.IOException;
 public class ConsumerHandler extends EventHandler {
 
     protected ConsumerStateCurator consumerStateCurator;
+    private ComplianceStatusDeltaCurator statusDeltaCurator;
     private ObjectMapper mapper;
 
     @Inject
-    public ConsumerHandler(ObjectMapper mapper, ConsumerStateCurator stateCurator) {
+    public ConsumerHandler(ObjectMapper mapper, ConsumerStateCurator stateCurator,
+        ComplianceStatusDeltaCurator statusDeltaCurator) {
         this.consumerStateCurator = stateCurator;
+        this.statusDeltaCurator = statusDeltaCurator;
         this.mapper = mapper;
     }
 
@@ -67,6 +71,10 @@ public class ConsumerHandler extends EventHandler {
             ConsumerState consumerState = mapper.readValue(event.getOldEntity(), ConsumerState.class);
             // consumerState is considered a new record here as it is parsed from CP json.
             // We just want to extract the UUID from the event.
+            ConsumerState existing = consumerStateCurator.findByUuid(consumerState.getUuid());
+            if (existing != null && existing.getDeleted() == null) {
+                statusDeltaCurator.recordDeletion(existing, event.getTimestamp());
+            }
             consumerStateCurator.setConsumerDeleted(consumerState.getUuid(), event.getTimestamp());
             return Status.PROCESSED;
         }
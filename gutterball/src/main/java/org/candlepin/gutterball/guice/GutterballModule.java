@@ -41,6 +41,7 @@ import org.candlepin.common.resteasy.interceptor.PageRequestInterceptor;
 import org.candlepin.common.validation.CandlepinMessageInterpolator;
 import org.candlepin.gutterball.config.ConfigProperties;
 import org.candlepin.gutterball.curator.ComplianceSnapshotCurator;
+import org.candlepin.gutterball.curator.ComplianceStatusDeltaCurator;
 import org.candlepin.gutterball.curator.ConsumerStateCurator;
 import org.candlepin.gutterball.eventhandler.EventHandler;
 import org.candlepin.gutterball.eventhandler.EventManager;
@@ -54,6 +55,7 @@ import org.candlepin.gutterball.report.Report;
 import org.candlepin.gutterball.report.ReportFactory;
 import org.candlepin.gutterball.resource.ReportsResource;
 import org.candlepin.gutterball.resource.StatusResource;
+import org.candlepin.gutterball.resteasy.CsvProvider;
 import org.candlepin.gutterball.resteasy.JsonProvider;
 import org.candlepin.gutterball.resteasy.interceptor.OAuthInterceptor;
 import org.candlepin.gutterball.util.EventHandlerLoader;
@@ -100,6 +102,7 @@ public class GutterballModule extends AbstractModule {
         // See JavaDoc on I18nProvider for more information of RequestScope
         bindI18n();
         bind(JsonProvider.class);
+        bind(CsvProvider.class);
 
         configureJPA();
 
@@ -107,6 +110,7 @@ public class GutterballModule extends AbstractModule {
         bind(MessageInterpolator.class).to(CandlepinMessageInterpolator.class);
 
         bind(ComplianceSnapshotCurator.class);
+        bind(ComplianceStatusDeltaCurator.class);
         bind(ConsumerStateCurator.class);
 
         bind(ObjectMapper.class).toInstance(new GutterballObjectMapper());
@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.gutterball.liquibase;
+
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+
+
+/**
+ * The ComplianceStatusDeltaMigrationTask upgrade task fills the gb_compliance_status_delta table
+ * from the compliance snapshots already stored, so status trend reports cover the time before the
+ * table existed.
+ * <p/>
+ * Each consumer's snapshots are walked in date order. Every snapshot taken before the day the
+ * consumer was deleted moves the consumer from its previous status to the new one on the day of the
+ * snapshot, and the deletion itself removes it from its last status.
+ */
+public class ComplianceStatusDeltaMigrationTask {
+
+    private static final int BATCH_SIZE = 500;
+
+    private Database database;
+    private JdbcConnection connection;
+    private CustomTaskLogger logger;
+
+
+    public ComplianceStatusDeltaMigrationTask(Database database) {
+        this(database, new SystemOutLogger());
+    }
+
+    public ComplianceStatusDeltaMigrationTask(Database database, CustomTaskLogger logger) {
+        if (database == null) {
+            throw new IllegalArgumentException("database is null");
+        }
+
+        if (logger == null) {
+            throw new IllegalArgumentException("logger is null");
+        }
+
+        if (!(database.getConnection() instanceof JdbcConnection)) {
+            throw new RuntimeException("database connection is not a JDBC connection");
+        }
+
+        this.database = database;
+        this.connection = (JdbcConnection) database.getConnection();
+        this.logger = logger;
+    }
+
+    /**
+     * Generates a 32-character UUID to use with object creation/migration.
+     *
+     * @return
+     *  a 32-character UUID
+     */
+    protected String generateUUID() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * Walks every consumer's compliance snapshots and sums up the status changes they make, keyed
+     * by owner, then day, then status.
+     */
+    private Map<String, Map<Date, Map<String, Integer>>> collectChanges()
+        throws DatabaseException, SQLException {
+
+        Map<String, Map<Date, Map<String, Integer>>> changes =
+            new HashMap<String, Map<Date, Map<String, Integer>>>();
+
+        PreparedStatement statement = this.connection.prepareStatement(
+            "SELECT state.uuid, state.ownerkey, state.deleted, comp.date, status.status " +
+            "FROM gb_consumer_snap consumer " +
+                "INNER JOIN gb_consumer_state state ON state.uuid = consumer.uuid " +
+                "INNER JOIN gb_compliance_snap comp ON comp.id = consumer.compliance_snap_id " +
+                "INNER JOIN gb_compliance_status_snap status ON status.compliance_snap_id = comp.id " +
+            "WHERE state.ownerkey IS NOT NULL " +
+            "ORDER BY state.uuid ASC, comp.date ASC"
+        );
+
+        ResultSet rows = statement.executeQuery();
+
+        String uuid = null;
+        String ownerKey = null;
+        Date deleted = null;
+        String previous = null;
+
+        while (rows.next()) {
+            if (!rows.getString(1).equals(uuid)) {
+                removeDeleted(changes, ownerKey, deleted, previous);
+
+                uuid = rows.getString(1);
+                ownerKey = rows.getString(2);
+                Timestamp timestamp = rows.getTimestamp(3);
+                deleted = timestamp != null ? startOfDay(timestamp) : null;
+                previous = null;
+            }
+
+            Date day = startOfDay(rows.getTimestamp(4));
+            String status = rows.getString(5);
+            if (status == null || (deleted != null && !day.before(deleted))) {
+                // Snapshots taken on or after the day a consumer is deleted are never counted
+                continue;
+            }
+
+            status = status.toLowerCase();
+            addChange(changes, ownerKey, day, previous, -1);
+            addChange(changes, ownerKey, day, status, 1);
+            previous = status;
+        }
+
+        removeDeleted(changes, ownerKey, deleted, previous);
+
+        rows.close();
+        statement.close();
+
+        return changes;
+    }
+
+    private static void removeDeleted(Map<String, Map<Date, Map<String, Integer>>> changes,
+        String ownerKey, Date deleted, String last) {
+
+        if (deleted != null) {
+            addChange(changes, ownerKey, deleted, last, -1);
+        }
+    }
+
+    private static void addChange(Map<String, Map<Date, Map<String, Integer>>> changes,
+        String ownerKey, Date day, String status, int change) {
+
+        if (status == null) {
+            return;
+        }
+
+        Map<Date, Map<String, Integer>> ownerchanges = changes.get(ownerKey);
+        if (ownerchanges == null) {
+            ownerchanges = new HashMap<Date, Map<String, Integer>>();
+            changes.put(ownerKey, ownerchanges);
+        }
+
+        Map<String, Integer> daychanges = ownerchanges.get(day);
+        if (daychanges == null) {
+            daychanges = new HashMap<String, Integer>();
+            ownerchanges.put(day, daychanges);
+        }
+
+        Integer current = daychanges.get(status);
+        daychanges.put(status, (current != null ? current : 0) + change);
+    }
+
+    private static Date startOfDay(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+
+    private int insertChanges(Map<String, Map<Date, Map<String, Integer>>> changes)
+        throws DatabaseException, SQLException {
+
+        PreparedStatement statement = this.connection.prepareStatement(
+            "INSERT INTO gb_compliance_status_delta (id, ownerkey, date, status, delta) " +
+            "VALUES (?, ?, ?, ?, ?)"
+        );
+
+        int inserted = 0;
+        for (Map.Entry<String, Map<Date, Map<String, Integer>>> owner : changes.entrySet()) {
+            for (Map.Entry<Date, Map<String, Integer>> day : owner.getValue().entrySet()) {
+                for (Map.Entry<String, Integer> change : day.getValue().entrySet()) {
+                    if (change.getValue() == 0) {
+                        continue;
+                    }
+
+                    statement.setString(1, this.generateUUID());
+                    statement.setString(2, owner.getKey());
+                    statement.setDate(3, new java.sql.Date(day.getKey().getTime()));
+                    statement.setString(4, change.getKey());
+                    statement.setInt(5, change.getValue());
+                    statement.addBatch();
+
+                    if (++inserted % BATCH_SIZE == 0) {
+                        statement.executeBatch();
+                    }
+                }
+            }
+        }
+
+        statement.executeBatch();
+        statement.close();
+
+        return inserted;
+    }
+
+    /**
+     * Executes this maintenance task.
+     *
+     * @throws DatabaseException
+     *  if an error occurs while performing a database operation
+     *
+     * @throws SQLException
+     *  if an error occurs while executing an SQL statement
+     */
+    public void execute() throws DatabaseException, SQLException {
+
+        // Store the connection's auto commit setting, so we may temporarily clobber it.
+        boolean autocommit = this.connection.getAutoCommit();
+        this.connection.setAutoCommit(false);
+
+        int inserted = this.insertChanges(this.collectChanges());
+        this.logger.info("Added " + inserted + " compliance status changes");
+
+        // Commit & restore original autocommit state
+        this.connection.commit();
+        this.connection.setAutoCommit(autocommit);
+    }
+}
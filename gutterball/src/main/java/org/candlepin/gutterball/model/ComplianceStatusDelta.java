@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.gutterball.model;
+
+import org.hibernate.annotations.GenericGenerator;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * A change, on one day, in the number of an owner's consumers with a given
+ * compliance status. Recorded as compliance and consumer events arrive.
+ *
+ * The number of consumers with a status on a day is the sum of the changes for
+ * that status on every day up to and including it, which lets status trends be
+ * read without walking every compliance snapshot.
+ */
+@Entity
+@Table(name = "gb_compliance_status_delta")
+public class ComplianceStatusDelta {
+
+    @Id
+    @GeneratedValue(generator = "system-uuid")
+    @GenericGenerator(name = "system-uuid", strategy = "uuid")
+    @Column(length = 32)
+    @NotNull
+    private String id;
+
+    @Column(nullable = false)
+    @Size(max = 255)
+    @NotNull
+    private String ownerKey;
+
+    @Column(nullable = false)
+    @Temporal(TemporalType.DATE)
+    @NotNull
+    private Date date;
+
+    @Column(nullable = false)
+    @Size(max = 255)
+    @NotNull
+    private String status;
+
+    @Column(nullable = false)
+    private int delta;
+
+    public ComplianceStatusDelta() {
+    }
+
+    public ComplianceStatusDelta(String ownerKey, Date date, String status, int delta) {
+        this.ownerKey = ownerKey;
+        this.date = date;
+        this.status = status;
+        this.delta = delta;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOwnerKey() {
+        return ownerKey;
+    }
+
+    public void setOwnerKey(String ownerKey) {
+        this.ownerKey = ownerKey;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public void setDelta(int delta) {
+        this.delta = delta;
+    }
+}
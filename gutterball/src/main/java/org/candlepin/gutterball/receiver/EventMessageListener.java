@@ -14,6 +14,8 @@
  */
 package org.candlepin.gutterball.receiver;
 
+import org.candlepin.common.config.Configuration;
+import org.candlepin.gutterball.config.ConfigProperties;
 import org.candlepin.gutterball.curator.EventCurator;
 import org.candlepin.gutterball.eventhandler.EventManager;
 import org.candlepin.gutterball.model.Event;
@@ -29,6 +31,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
@@ -38,6 +48,10 @@ import javax.jms.TextMessage;
 /**
  * A JMS message listener that is invoked when Gutterball receives an
  * Event from on the bus.
+ *
+ * Once {@link #start()} has been called, events are processed on a set of worker
+ * lanes rather than on the thread delivering the messages. Each consumer's events
+ * always go to the same lane, so they are still processed in the order they arrived.
  */
 public class EventMessageListener implements MessageListener {
 
@@ -47,68 +61,153 @@ public class EventMessageListener implements MessageListener {
     private EventManager eventManager;
     private ObjectMapper mapper;
     private EventCurator eventCurator;
+    private Configuration config;
+
+    private Lane[] lanes;
 
     @Inject
     public EventMessageListener(UnitOfWork unitOfWork, ObjectMapper mapper,
-            EventManager eventManager, EventCurator eventCurator) {
+            EventManager eventManager, EventCurator eventCurator, Configuration config) {
         this.unitOfWork = unitOfWork;
         this.eventManager = eventManager;
         this.mapper = mapper;
         this.eventCurator = eventCurator;
+        this.config = config;
+    }
+
+    /**
+     * Starts the worker lanes. Until then events are processed as they are received.
+     */
+    public synchronized void start() {
+        if (lanes != null) {
+            return;
+        }
+
+        int threads = Math.max(1, config.getInt(ConfigProperties.EVENT_PROCESSING_THREADS));
+        int queueSize = Math.max(1, config.getInt(ConfigProperties.EVENT_PROCESSING_QUEUE_SIZE));
+
+        lanes = new Lane[threads];
+        for (int i = 0; i < threads; i++) {
+            lanes[i] = new Lane(i, queueSize);
+            lanes[i].start();
+        }
+        log.info("Processing events on {} threads", threads);
+    }
+
+    /**
+     * Stops the worker lanes once they have processed the events already handed to them.
+     *
+     * @param timeout how long to wait for each lane, in milliseconds
+     */
+    public synchronized void shutDown(long timeout) {
+        if (lanes == null) {
+            return;
+        }
+
+        for (Lane lane : lanes) {
+            lane.finish();
+        }
+
+        for (Lane lane : lanes) {
+            try {
+                lane.join(timeout);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (lane.isAlive()) {
+                log.warn("{} did not finish, {} events left unprocessed", lane.getName(),
+                    lane.getPendingCount());
+            }
+        }
+        lanes = null;
     }
 
     @Override
     public void onMessage(Message message) {
-        Event event = storeEvent(message);
-        // Event already exists, no need to process.
-        if (event == null) {
-            return;
+        onMessages(Collections.singletonList(message));
+    }
+
+    /**
+     * Stores the events in a batch of messages and hands them on to be processed.
+     *
+     * @param messages Incoming JMS messages from the bus, in the order they were received.
+     */
+    public void onMessages(List<Message> messages) {
+        for (Event event : storeEvents(messages)) {
+            dispatch(event);
         }
-        processEvent(event);
     }
 
     /**
      * Initial event storage. (first phase)
      *
-     * In this phase we simply want to get the event into our database.
+     * In this phase we simply want to get the events into our database.
      * Any exception thrown here indicates a very serious problem, and will end up
-     * leaving the message on the bus, which will re-try delivery the next time the
+     * leaving the messages on the bus, which will re-try delivery the next time the
      * application rejoins.
      *
      * Exceptions should always bubble up here and never be caught and ignored, as we need
      * to do everything possible to make sure events never get dropped.
      *
-     * Once we've parsed the JSON we save to the database and commit the transaction.
-     * Event processing will be handled separately.
+     * Once we've parsed the JSON we save the whole batch to the database and commit
+     * the transaction. Event processing will be handled separately.
      *
-     * @param message Incoming JMS message from the bus.
-     * @return Event parsed from the message JSON.
+     * @param messages Incoming JMS messages from the bus.
+     * @return Events parsed from the messages' JSON, less any already stored.
      */
-    private Event storeEvent(Message message) {
-        log.debug(message.toString());
+    private List<Event> storeEvents(List<Message> messages) {
+        Map<String, Event> events = new LinkedHashMap<String, Event>();
+        for (Message message : messages) {
+            Event event = readEvent(message);
 
-        String messageBody = getMessageBody(message);
-        Event event = null;
-        try {
-            event = mapper.readValue(messageBody, Event.class);
+            String messageId;
+            try {
+                messageId = message.getJMSMessageID();
+            }
+            catch (JMSException e) {
+                throw new RuntimeException("Unable to get the message id when creating the event.", e);
+            }
+
+            if (events.containsKey(messageId)) {
+                log.info("Event already created for message. Skipping message: " + messageId);
+                continue;
+            }
 
             /*
              * Set initial event state. If event remains in this state, it indicates there
              * was an error processing it.
              */
             event.setStatus(Status.RECEIVED);
+            event.setMessageId(messageId);
+            events.put(messageId, event);
+        }
 
+        try {
             unitOfWork.begin();
 
-            String messageId = message.getJMSMessageID();
-            if (eventCurator.hasEventForMessage(messageId)) {
+            for (String messageId : eventCurator.findMessageIds(events.keySet())) {
                 log.info("Event already created for message. Skipping message: " + messageId);
-                return null;
+                events.remove(messageId);
             }
 
             // Store every event
-            event.setMessageId(messageId);
-            eventCurator.create(event);
+            eventCurator.createAll(events.values());
+        }
+        finally {
+            unitOfWork.end();
+        }
+        return new ArrayList<Event>(events.values());
+    }
+
+    private Event readEvent(Message message) {
+        log.debug(message.toString());
+
+        String messageBody = getMessageBody(message);
+        try {
+            return mapper.readValue(messageBody, Event.class);
         }
         catch (JsonParseException e) {
             log.error("Error processing event", e);
@@ -125,13 +224,29 @@ public class EventMessageListener implements MessageListener {
             log.error("Event message body: {}", messageBody);
             throw new RuntimeException("Error processing event", e);
         }
-        catch (JMSException e) {
-            throw new RuntimeException("Unable to get the message id when creating the event.", e);
+    }
+
+    /**
+     * Hands a stored event to the lane for its consumer, blocking while that lane is
+     * full.
+     */
+    private void dispatch(Event event) {
+        Lane[] current = lanes;
+        if (current == null) {
+            processEvent(event);
+            return;
         }
-        finally {
-            unitOfWork.end();
+
+        String key = event.getConsumerId() != null ? event.getConsumerId() : event.getEntityId();
+        int index = key != null ? (key.hashCode() & Integer.MAX_VALUE) % current.length : 0;
+        try {
+            current[index].add(event);
+        }
+        catch (InterruptedException e) {
+            // The event is stored, and is left in its initial state like any failure below
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted before processing event: " + event);
         }
-        return event;
     }
 
     /**
@@ -172,4 +287,45 @@ public class EventMessageListener implements MessageListener {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * A worker thread processing the events handed to it one at a time, in order.
+     */
+    private class Lane extends Thread {
+        private BlockingQueue<Event> queue;
+        private volatile boolean running = true;
+
+        public Lane(int index, int queueSize) {
+            super("gutterball-event-" + index);
+            setDaemon(true);
+            this.queue = new LinkedBlockingQueue<Event>(queueSize);
+        }
+
+        public void add(Event event) throws InterruptedException {
+            queue.put(event);
+        }
+
+        public int getPendingCount() {
+            return queue.size();
+        }
+
+        public void finish() {
+            running = false;
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Event event = queue.poll(1, TimeUnit.SECONDS);
+                    if (event != null) {
+                        processEvent(event);
+                    }
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
 }
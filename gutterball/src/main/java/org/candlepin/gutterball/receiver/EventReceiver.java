@@ -28,24 +28,33 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.jms.Connection;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.Session;
 import javax.jms.Topic;
 import javax.jms.TopicSubscriber;
 
 
 /**
- * Maintains the connection to the AMQP message bus and configures the message listener.
+ * Maintains the connection to the AMQP message bus and feeds the messages received
+ * to the message listener.
  *
- * NOTE: this class is currently bound as an eager singleton, and messages are
- * received in a single thread. Similarly the EventMessageListener is therefore also
- * bound as an eager singleton, and is using a non-threadsafe unit of work.
+ * NOTE: this class is currently bound as an eager singleton. Messages are received
+ * on a single thread and handed to the EventMessageListener in batches, which stores
+ * each batch before it is acknowledged and then processes the events on its own
+ * worker threads.
  */
 public class EventReceiver {
     private static Logger log = LoggerFactory.getLogger(EventReceiver.class);
 
+    private static final long RECEIVE_TIMEOUT = 1000;
+    private static final long RETRY_DELAY = 5000;
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+
     private TopicSubscriber consumer;
     private Session sess;
     private Topic dest;
@@ -53,11 +62,14 @@ public class EventReceiver {
     private EventMessageListener eventMessageListener;
 
     private Connection conn;
+    private ReceiverThread receiverThread;
+    private int batchSize;
 
     @Inject
     public EventReceiver(Configuration config, EventMessageListener eventMessageListener)
         throws Exception {
         this.eventMessageListener = eventMessageListener;
+        this.batchSize = Math.max(1, config.getInt(ConfigProperties.EVENT_BATCH_SIZE));
 
         // Connect in a separate thread so that gutterball deployment isn't
         // blocked on startup.
@@ -82,10 +94,14 @@ public class EventReceiver {
         conn = connectionFactory.createConnection();
         conn.start();
 
-        sess = conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        // Messages are acknowledged once the events in them are stored, a batch at a time.
+        sess = conn.createSession(false, Session.CLIENT_ACKNOWLEDGE);
         dest = new AMQAnyDestination("event");
         consumer = sess.createDurableSubscriber(dest, "event");
-        consumer.setMessageListener(eventMessageListener);
+
+        eventMessageListener.start();
+        receiverThread = new ReceiverThread();
+        receiverThread.start();
         log.info("Receiver init complete");
     }
 
@@ -124,6 +140,10 @@ public class EventReceiver {
 
     public void finish() {
         log.info("Closing QPID connection");
+        if (receiverThread != null) {
+            receiverThread.finish();
+        }
+
         try {
             consumer.close();
         }
@@ -132,6 +152,16 @@ public class EventReceiver {
             log.debug("Unable to close consumer connection", e);
         }
 
+        if (receiverThread != null) {
+            try {
+                receiverThread.join(SHUTDOWN_TIMEOUT);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        eventMessageListener.shutDown(SHUTDOWN_TIMEOUT);
+
         try {
             sess.close();
         }
@@ -182,4 +212,73 @@ public class EventReceiver {
 
 
     }
+
+    /**
+     * Receives messages and hands them to the listener, as many as are waiting up to
+     * the batch size at a time. Each batch is acknowledged once the listener has
+     * stored it. If it could not be, the messages are recovered and received again.
+     */
+    private class ReceiverThread extends Thread {
+
+        private volatile boolean running = true;
+
+        public ReceiverThread() {
+            super("gutterball-event-receiver");
+            setDaemon(true);
+        }
+
+        public void finish() {
+            running = false;
+        }
+
+        public void run() {
+            while (running) {
+                try {
+                    Message message = consumer.receive(RECEIVE_TIMEOUT);
+                    if (message == null) {
+                        continue;
+                    }
+
+                    List<Message> batch = new ArrayList<Message>(batchSize);
+                    batch.add(message);
+                    while (batch.size() < batchSize && (message = consumer.receiveNoWait()) != null) {
+                        batch.add(message);
+                    }
+
+                    receive(batch);
+                }
+                catch (JMSException e) {
+                    if (running) {
+                        log.error("Unable to receive messages", e);
+                        pause();
+                    }
+                }
+            }
+        }
+
+        private void receive(List<Message> batch) throws JMSException {
+            try {
+                eventMessageListener.onMessages(batch);
+            }
+            catch (RuntimeException e) {
+                log.error("Unable to store a batch of {} events, they will be redelivered",
+                    batch.size(), e);
+                sess.recover();
+                pause();
+                return;
+            }
+
+            // Acknowledges every message received so far
+            batch.get(batch.size() - 1).acknowledge();
+        }
+
+        private void pause() {
+            try {
+                sleep(RETRY_DELAY);
+            }
+            catch (InterruptedException e) {
+                running = false;
+            }
+        }
+    }
 }
@@ -20,6 +20,7 @@ import org.candlepin.common.config.PropertyConverter;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.gutterball.curator.ComplianceSnapshotCurator;
+import org.candlepin.gutterball.curator.ComplianceStatusDeltaCurator;
 import org.candlepin.gutterball.guice.I18nProvider;
 
 import com.google.inject.Inject;
@@ -44,10 +45,15 @@ import javax.ws.rs.core.MultivaluedMap;
  *
  * The status trend report shows the per-day counts of consumers, grouped by status, optionally
  * limited to a date range and/or filtered by select criteria.
+ *
+ * Reports filtered by no more than owner and date range are read from the daily status changes
+ * kept by the {@link ComplianceStatusDeltaCurator}. Any other filter needs the compliance
+ * snapshots themselves.
  */
 public class StatusTrendReport extends Report<StatusTrendReportResult> {
     private static Logger log = LoggerFactory.getLogger(StatusTrendReport.class);
     private ComplianceSnapshotCurator curator;
+    private ComplianceStatusDeltaCurator statusDeltaCurator;
 
     /**
      * @param i18nProvider
@@ -55,7 +61,8 @@ public class StatusTrendReport extends Report<StatusTrendReportResult> {
      * @param description
      */
     @Inject
-    public StatusTrendReport(I18nProvider i18nProvider, ComplianceSnapshotCurator curator) {
+    public StatusTrendReport(I18nProvider i18nProvider, ComplianceSnapshotCurator curator,
+        ComplianceStatusDeltaCurator statusDeltaCurator) {
         super(
             i18nProvider,
             "status_trend",
@@ -63,6 +70,7 @@ public class StatusTrendReport extends Report<StatusTrendReportResult> {
         );
 
         this.curator = curator;
+        this.statusDeltaCurator = statusDeltaCurator;
     }
 
     @Override
@@ -226,7 +234,7 @@ public class StatusTrendReport extends Report<StatusTrendReportResult> {
                 pageRequest
             );
         }
-        else {
+        else if (consumerUuids != null) {
             page = this.curator.getComplianceStatusCounts(
                 startDate,
                 endDate,
@@ -239,6 +247,9 @@ public class StatusTrendReport extends Report<StatusTrendReportResult> {
                 pageRequest
             );
         }
+        else {
+            page = this.statusDeltaCurator.getStatusCounts(startDate, endDate, ownerKey, pageRequest);
+        }
 
         ResteasyProviderFactory.pushContext(Page.class, page);
         Map<Date, Map<String, Integer>> result = page.getPageData();
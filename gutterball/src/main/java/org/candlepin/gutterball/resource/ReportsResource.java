@@ -21,6 +21,7 @@ import org.candlepin.common.paging.PageRequest;
 import org.candlepin.gutterball.report.Report;
 import org.candlepin.gutterball.report.ReportFactory;
 import org.candlepin.gutterball.report.ReportResult;
+import org.candlepin.gutterball.resteasy.CsvProvider;
 
 import com.google.inject.Inject;
 
@@ -64,7 +65,7 @@ public class ReportsResource {
 
     @Path("{report_key}/run")
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, CsvProvider.TEXT_CSV})
     @Paginate
     public ReportResult run(@Context UriInfo uriInfo,
         @PathParam("report_key") String reportKey,
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.gutterball.resteasy;
+
+import org.candlepin.gutterball.report.ReportResult;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * CsvProvider
+ *
+ * Writes report results made up of rows as CSV, one row at a time, so a report is
+ * never held in memory in full.
+ *
+ * Rows are first converted the same way as for JSON, so the same properties are
+ * included. Nested objects are flattened one level into columns named
+ * "parent.child", and anything nested deeper, along with arrays, is written as
+ * JSON within its cell. The columns are those of the first row.
+ */
+@Provider
+@Produces(CsvProvider.TEXT_CSV)
+public class CsvProvider implements MessageBodyWriter<Object> {
+
+    public static final String TEXT_CSV = "text/csv";
+
+    private static final int FLUSH_INTERVAL = 100;
+
+    private JsonProvider jsonProvider;
+
+    @Inject
+    public CsvProvider(JsonProvider jsonProvider) {
+        this.jsonProvider = jsonProvider;
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations,
+        MediaType mediaType) {
+
+        return ReportResult.class.isAssignableFrom(type) &&
+            (Iterator.class.isAssignableFrom(type) || Iterable.class.isAssignableFrom(type));
+    }
+
+    @Override
+    public long getSize(Object entity, Class<?> type, Type genericType, Annotation[] annotations,
+        MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations,
+        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream out)
+        throws IOException {
+
+        ObjectMapper mapper = jsonProvider.locateMapper(type, MediaType.APPLICATION_JSON_TYPE);
+        Iterator<?> rows = entity instanceof Iterator ?
+            (Iterator<?>) entity :
+            ((Iterable<?>) entity).iterator();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        List<String> columns = null;
+        int count = 0;
+
+        while (rows.hasNext()) {
+            Map<String, String> row = flatten(mapper.valueToTree(rows.next()));
+            if (columns == null) {
+                columns = new ArrayList<String>(row.keySet());
+                writeRow(writer, columns);
+            }
+
+            List<String> values = new ArrayList<String>(columns.size());
+            for (String column : columns) {
+                values.add(row.get(column));
+            }
+            writeRow(writer, values);
+
+            if (++count % FLUSH_INTERVAL == 0) {
+                writer.flush();
+            }
+        }
+
+        writer.flush();
+    }
+
+    private Map<String, String> flatten(JsonNode node) {
+        Map<String, String> row = new LinkedHashMap<String, String>();
+        if (!node.isObject()) {
+            row.put("value", toCell(node));
+            return row;
+        }
+
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getValue().isObject()) {
+                Iterator<Map.Entry<String, JsonNode>> children = field.getValue().fields();
+                while (children.hasNext()) {
+                    Map.Entry<String, JsonNode> child = children.next();
+                    row.put(field.getKey() + "." + child.getKey(), toCell(child.getValue()));
+                }
+            }
+            else {
+                row.put(field.getKey(), toCell(field.getValue()));
+            }
+        }
+        return row;
+    }
+
+    private String toCell(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        return node.isContainerNode() ? node.toString() : node.asText();
+    }
+
+    private void writeRow(Writer writer, List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(values.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    private String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 &&
+            value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -23,12 +23,20 @@ import org.hibernate.Session;
 /**
  * The AutoEvictingColumnarResultsIterator extends the ColumnarScrollableResultsIterator to add
  * automatic eviction of the elements returned by the "next" method.
+ * <p/>
+ * Evicting an element does not evict the collections and other objects loaded through it, so the
+ * session is also cleared outright every so many elements. This keeps the memory used while
+ * iterating constant, however many rows there are.
  *
  * @param <E> The element type to be returned by this iterator's "next" method.
  */
 public class AutoEvictingColumnarResultsIterator<E> extends ColumnarScrollableResultsIterator<E> {
+    public static final int DEFAULT_CLEAR_INTERVAL = 100;
+
     private Session session;
     private E prev;
+    private int clearInterval;
+    private int count;
 
     /**
      * Creates a new AutoEvictingColumnarResultsIterator to iterate over the results provided by the
@@ -45,26 +53,60 @@ public class AutoEvictingColumnarResultsIterator<E> extends ColumnarScrollableRe
      *  The column from which to read values to be returned.
      */
     public AutoEvictingColumnarResultsIterator(Session session, ScrollableResults results, int column) {
+        this(session, results, column, DEFAULT_CLEAR_INTERVAL);
+    }
+
+    /**
+     * Creates a new AutoEvictingColumnarResultsIterator to iterate over the results provided by the
+     * given ScrollableResults instance, returning only the values in the column specified.
+     *
+     * @param session
+     *  The Session to close upon completion of this iterator and from which to evict returned
+     *  objects.
+     *
+     * @param results
+     *  The ScrollableResults instance over which to iterate.
+     *
+     * @param column
+     *  The column from which to read values to be returned.
+     *
+     * @param clearInterval
+     *  The number of elements to return between each clearing of the session.
+     */
+    public AutoEvictingColumnarResultsIterator(Session session, ScrollableResults results, int column,
+        int clearInterval) {
         super(results, column);
 
         if (session == null) {
             throw new IllegalArgumentException("session is null");
         }
 
+        if (clearInterval < 1) {
+            throw new IllegalArgumentException("clearInterval is less than 1");
+        }
+
         this.session = session;
         this.prev = null;
+        this.clearInterval = clearInterval;
+        this.count = 0;
     }
 
     @Override
     public E next() {
         if (this.prev != null) {
-            // TODO:
             // This does not evict collections or any persistent objects contained by the to-be
-            // evicted object. Should probably improve this at some point.
+            // evicted object. Those are dropped when the session is next cleared, by which point
+            // the previous elements have been fully used.
             this.session.evict(this.prev);
             this.prev = null;
+
+            if (this.count % this.clearInterval == 0) {
+                this.session.clear();
+            }
         }
 
+        ++this.count;
+
         this.prev = super.next();
         return this.prev;
     }
@@ -67,6 +67,11 @@ public class ColumnarScrollableResultsIterator<E> implements Iterator<E> {
         this.useCache = true;
         this.cache = this.results.next();
 
+        if (!this.cache) {
+            // Release the cursor as soon as we're done with it
+            this.results.close();
+        }
+
         return this.cache;
     }
 
@@ -17,6 +17,7 @@ package org.candlepin.gutterball;
 
 import org.candlepin.common.config.MapConfiguration;
 import org.candlepin.gutterball.curator.ComplianceSnapshotCurator;
+import org.candlepin.gutterball.curator.ComplianceStatusDeltaCurator;
 import org.candlepin.gutterball.curator.ConsumerStateCurator;
 import org.candlepin.gutterball.junit.GutterballLiquibaseResource;
 
@@ -46,6 +47,7 @@ public class DatabaseTestFixture {
     public static GutterballLiquibaseResource liquibase = new GutterballLiquibaseResource();
 
     protected ComplianceSnapshotCurator complianceSnapshotCurator;
+    protected ComplianceStatusDeltaCurator complianceStatusDeltaCurator;
     protected ConsumerStateCurator consumerStateCurator;
 
     @Before
@@ -60,6 +62,7 @@ public class DatabaseTestFixture {
         em = injector.getProvider(EntityManager.class).get();
 
         complianceSnapshotCurator = injector.getInstance(ComplianceSnapshotCurator.class);
+        complianceStatusDeltaCurator = injector.getInstance(ComplianceStatusDeltaCurator.class);
         consumerStateCurator = injector.getInstance(ConsumerStateCurator.class);
     }
 
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.gutterball.curator;
+
+import static org.candlepin.gutterball.TestUtils.*;
+import static org.junit.Assert.*;
+
+import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageRequest;
+import org.candlepin.gutterball.DatabaseTestFixture;
+import org.candlepin.gutterball.model.ConsumerState;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Map;
+
+public class ComplianceStatusDeltaCuratorTest extends DatabaseTestFixture {
+
+    private Calendar base;
+
+    @Before
+    public void setUp() {
+        base = Calendar.getInstance();
+        base.set(2014, Calendar.MARCH, 10, 12, 0, 0);
+        base.set(Calendar.MILLISECOND, 0);
+    }
+
+    private Date day(int offset) {
+        Calendar cal = (Calendar) base.clone();
+        cal.add(Calendar.DATE, offset);
+        return cal.getTime();
+    }
+
+    private ConsumerState createConsumer(String uuid, String owner) {
+        return consumerStateCurator.create(new ConsumerState(uuid, owner, day(0)));
+    }
+
+    private void recordSnapshot(String uuid, String owner, String status, Date date) {
+        complianceStatusDeltaCurator.recordStatus(consumerStateCurator.findByUuid(uuid), status, date);
+        complianceSnapshotCurator.create(createComplianceSnapshot(date, uuid, owner, status));
+    }
+
+    private void deleteConsumer(String uuid, Date date) {
+        complianceStatusDeltaCurator.recordDeletion(consumerStateCurator.findByUuid(uuid), date);
+        consumerStateCurator.setConsumerDeleted(uuid, date);
+    }
+
+    private void assertMatchesSnapshots(Date start, Date end, String owner) {
+        Page<Map<Date, Map<String, Integer>>> expected = complianceSnapshotCurator
+            .getComplianceStatusCounts(start, end, owner, null, null, null, null, null, null);
+        Page<Map<Date, Map<String, Integer>>> actual = complianceStatusDeltaCurator
+            .getStatusCounts(start, end, owner, null);
+
+        assertEquals(expected.getPageData(), actual.getPageData());
+    }
+
+    @Test
+    public void testCountsFollowStatusChanges() {
+        createConsumer("c1", "o1");
+        createConsumer("c2", "o1");
+        createConsumer("c3", "o2");
+
+        recordSnapshot("c1", "o1", "invalid", day(0));
+        recordSnapshot("c2", "o1", "valid", day(1));
+        recordSnapshot("c1", "o1", "valid", day(2));
+        recordSnapshot("c3", "o2", "partial", day(2));
+        recordSnapshot("c1", "o1", "partial", new Date(day(2).getTime() + 3600000));
+        recordSnapshot("c2", "o1", "invalid", day(4));
+
+        Map<Date, Map<String, Integer>> counts = complianceStatusDeltaCurator
+            .getStatusCounts(day(0), day(5), "o1", null).getPageData();
+        assertEquals(6, counts.size());
+
+        assertMatchesSnapshots(day(0), day(5), null);
+        assertMatchesSnapshots(day(0), day(5), "o1");
+        assertMatchesSnapshots(day(1), day(3), "o1");
+        assertMatchesSnapshots(day(3), day(6), "o2");
+    }
+
+    @Test
+    public void testCountsWithSnapshotsOutOfOrder() {
+        createConsumer("c1", "o1");
+        createConsumer("c2", "o1");
+
+        recordSnapshot("c1", "o1", "valid", day(3));
+        recordSnapshot("c2", "o1", "invalid", day(2));
+        recordSnapshot("c1", "o1", "invalid", day(0));
+        recordSnapshot("c1", "o1", "partial", day(5));
+        recordSnapshot("c1", "o1", "partial", day(1));
+        recordSnapshot("c2", "o1", "valid", day(1));
+
+        assertMatchesSnapshots(day(0), day(6), "o1");
+        assertMatchesSnapshots(day(2), day(4), "o1");
+    }
+
+    @Test
+    public void testDeletedConsumersAreNoLongerCounted() {
+        createConsumer("c1", "o1");
+        createConsumer("c2", "o1");
+
+        recordSnapshot("c1", "o1", "invalid", day(0));
+        recordSnapshot("c2", "o1", "valid", day(0));
+        recordSnapshot("c1", "o1", "valid", day(1));
+        deleteConsumer("c1", day(3));
+
+        // Late arrivals on either side of the deletion
+        recordSnapshot("c1", "o1", "partial", day(2));
+        recordSnapshot("c1", "o1", "invalid", day(4));
+
+        Map<Date, Map<String, Integer>> counts = complianceStatusDeltaCurator
+            .getStatusCounts(day(0), day(5), "o1", null).getPageData();
+        for (Map.Entry<Date, Map<String, Integer>> entry : counts.entrySet()) {
+            if (entry.getKey().after(day(3))) {
+                assertEquals(1, entry.getValue().size());
+                assertEquals(Integer.valueOf(1), entry.getValue().get("valid"));
+            }
+        }
+
+        assertMatchesSnapshots(day(0), day(5), "o1");
+    }
+
+    @Test
+    public void testPagedCounts() {
+        createConsumer("c1", "o1");
+        recordSnapshot("c1", "o1", "invalid", day(0));
+        recordSnapshot("c1", "o1", "valid", day(3));
+
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(2);
+        pageRequest.setPerPage(2);
+
+        Page<Map<Date, Map<String, Integer>>> expected = complianceSnapshotCurator
+            .getComplianceStatusCounts(day(0), day(4), "o1", null, null, null, null, null, pageRequest);
+        Page<Map<Date, Map<String, Integer>>> actual = complianceStatusDeltaCurator
+            .getStatusCounts(day(0), day(4), "o1", pageRequest);
+
+        assertEquals(expected.getMaxRecords(), actual.getMaxRecords());
+        assertEquals(expected.getPageData(), actual.getPageData());
+        assertEquals(2, actual.getPageData().size());
+    }
+
+    @Test
+    public void testNoCountsWithoutChanges() {
+        Page<Map<Date, Map<String, Integer>>> page = complianceStatusDeltaCurator
+            .getStatusCounts(day(0), day(4), "o1", null);
+        assertEquals(0, page.getPageData().size());
+    }
+}
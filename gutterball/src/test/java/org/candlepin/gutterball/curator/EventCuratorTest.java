@@ -23,6 +23,8 @@ import org.candlepin.gutterball.model.Event;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
 public class EventCuratorTest extends DatabaseTestFixture {
@@ -55,6 +57,21 @@ public class EventCuratorTest extends DatabaseTestFixture {
         assertFalse(curator.hasEventForMessage("not-found"));
     }
 
+    @Test
+    public void testFindMessageIds() {
+        assertEquals(Collections.singleton("12345"),
+            curator.findMessageIds(Arrays.asList("12345", "not-found", "UNKNOWN")));
+    }
+
+    @Test
+    public void testCreateAll() {
+        beginTransaction();
+        curator.createAll(Arrays.asList(createEvent("m1"), createEvent("m2")));
+        commitTransaction();
+
+        assertEquals(2, curator.findMessageIds(Arrays.asList("m1", "m2", "m3")).size());
+    }
+
     private Event createEvent(String messageId) {
         return new Event(messageId, "type", Event.Status.PROCESSED, "target", "targetName", "principal",
             "ownerId", "consumerId", "entityId", "oldEntity", "newEntity", "referenceId", "referenceType",
@@ -21,6 +21,7 @@ import static org.mockito.Mockito.*;
 import static org.mockito.AdditionalAnswers.*;
 
 import org.candlepin.gutterball.curator.ComplianceSnapshotCurator;
+import org.candlepin.gutterball.curator.ComplianceStatusDeltaCurator;
 import org.candlepin.gutterball.curator.ConsumerStateCurator;
 import org.candlepin.gutterball.model.ConsumerState;
 import org.candlepin.gutterball.model.Event;
@@ -50,11 +51,15 @@ public class ComplianceHandlerTest {
     @Mock
     private ConsumerStateCurator consumerStateCurator;
 
+    @Mock
+    private ComplianceStatusDeltaCurator statusDeltaCurator;
+
     private ComplianceHandler handler;
 
     @Test
     public void testHandleCreated() throws Exception {
-        handler = new ComplianceHandler(this.mapper, this.complianceCurator, this.consumerStateCurator);
+        handler = new ComplianceHandler(this.mapper, this.complianceCurator, this.consumerStateCurator,
+            this.statusDeltaCurator);
 
         Event event = new Event();
         event.setNewEntity("test-string");
@@ -77,13 +82,15 @@ public class ComplianceHandlerTest {
         handler.handleCreated(event);
 
         verify(complianceCurator).create(eq(snap));
+        verify(statusDeltaCurator).recordStatus(eq(cstate), eq("VALID"), eq(expectedDate));
         assertEquals(snap.getStatus().getDate(), snap.getDate());
         assertEquals(snap.getConsumer().getConsumerState(), cstate);
     }
 
     @Test
     public void testHandleCreatedWithoutConsumerState() throws Exception {
-        handler = new ComplianceHandler(this.mapper, this.complianceCurator, this.consumerStateCurator);
+        handler = new ComplianceHandler(this.mapper, this.complianceCurator, this.consumerStateCurator,
+            this.statusDeltaCurator);
 
         Event event = new Event();
         event.setNewEntity("test-string");
@@ -18,6 +18,7 @@ package org.candlepin.gutterball.eventhandler;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.gutterball.curator.ComplianceStatusDeltaCurator;
 import org.candlepin.gutterball.curator.ConsumerStateCurator;
 import org.candlepin.gutterball.model.ConsumerState;
 import org.candlepin.gutterball.model.Event;
@@ -38,6 +39,9 @@ public class ConsumerHandlerTest {
     @Mock
     private ConsumerStateCurator consumerStateCurator;
 
+    @Mock
+    private ComplianceStatusDeltaCurator statusDeltaCurator;
+
     @Mock
     private ObjectMapper mapper;
 
@@ -45,7 +49,7 @@ public class ConsumerHandlerTest {
 
     @Before
     public void setupTest() {
-        handler = new ConsumerHandler(mapper, consumerStateCurator);
+        handler = new ConsumerHandler(mapper, consumerStateCurator, statusDeltaCurator);
     }
 
     @Test
@@ -85,6 +89,40 @@ public class ConsumerHandlerTest {
 
         handler.handleDeleted(event);
         verify(consumerStateCurator).setConsumerDeleted(eq(state.getUuid()), any(Date.class));
+        verifyZeroInteractions(statusDeltaCurator);
+    }
+
+    @Test
+    public void testDeletedEventRecordsDeletionOfKnownConsumer() throws Exception {
+        Date deleted = new Date();
+        Event event = new Event();
+        event.setOldEntity("test-string");
+        event.setTimestamp(deleted);
+
+        ConsumerState state = new ConsumerState("test-uuid", "owner-key", new Date());
+        ConsumerState existing = new ConsumerState("test-uuid", "owner-key", new Date());
+        when(mapper.readValue(eq(event.getOldEntity()), eq(ConsumerState.class))).thenReturn(state);
+        when(consumerStateCurator.findByUuid(eq("test-uuid"))).thenReturn(existing);
+
+        handler.handleDeleted(event);
+        verify(statusDeltaCurator).recordDeletion(eq(existing), eq(deleted));
+        verify(consumerStateCurator).setConsumerDeleted(eq("test-uuid"), eq(deleted));
+    }
+
+    @Test
+    public void testDeletedEventIsNotCountedTwice() throws Exception {
+        Event event = new Event();
+        event.setOldEntity("test-string");
+        event.setTimestamp(new Date());
+
+        ConsumerState state = new ConsumerState("test-uuid", "owner-key", new Date());
+        ConsumerState existing = new ConsumerState("test-uuid", "owner-key", new Date());
+        existing.setDeleted(new Date());
+        when(mapper.readValue(eq(event.getOldEntity()), eq(ConsumerState.class))).thenReturn(state);
+        when(consumerStateCurator.findByUuid(eq("test-uuid"))).thenReturn(existing);
+
+        handler.handleDeleted(event);
+        verifyZeroInteractions(statusDeltaCurator);
     }
 
     @Test
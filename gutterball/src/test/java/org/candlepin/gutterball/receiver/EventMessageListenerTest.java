@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.gutterball.receiver;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.gutterball.config.ConfigProperties;
+import org.candlepin.gutterball.curator.EventCurator;
+import org.candlepin.gutterball.eventhandler.EventManager;
+import org.candlepin.gutterball.model.Event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.persist.UnitOfWork;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EventMessageListenerTest {
+
+    @Mock private UnitOfWork unitOfWork;
+    @Mock private ObjectMapper mapper;
+    @Mock private EventManager eventManager;
+    @Mock private EventCurator eventCurator;
+
+    private MapConfiguration config;
+    private EventMessageListener listener;
+
+    @Before
+    public void setUp() {
+        config = new MapConfiguration(ConfigProperties.DEFAULT_PROPERTIES);
+        config.setProperty(ConfigProperties.EVENT_PROCESSING_THREADS, "4");
+        listener = new EventMessageListener(unitOfWork, mapper, eventManager, eventCurator, config);
+    }
+
+    private Message message(String messageId, String consumerId) throws Exception {
+        TextMessage message = mock(TextMessage.class);
+        when(message.getJMSMessageID()).thenReturn(messageId);
+        when(message.getText()).thenReturn(messageId);
+
+        Event event = new Event(null, "CREATED", null, "COMPLIANCE", "name", "principal", "owner",
+            consumerId, consumerId, null, "{}", null, null, new Date());
+        when(mapper.readValue(eq(messageId), eq(Event.class))).thenReturn(event);
+        return message;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void storesBatchOnceAndSkipsKnownMessages() throws Exception {
+        when(eventCurator.findMessageIds(anyCollection())).thenReturn(Collections.singleton("m2"));
+
+        listener.onMessages(Arrays.asList(message("m1", "c1"), message("m2", "c1"),
+            message("m3", "c2")));
+
+        verify(eventCurator, times(1)).findMessageIds(anyCollection());
+        verify(eventCurator, times(1)).createAll(argThat(new ArgumentMatcher<Collection<Event>>() {
+            @Override
+            public boolean matches(Object events) {
+                return ((Collection<?>) events).size() == 2;
+            }
+        }));
+
+        // Not started, so processed as they arrive
+        verify(eventManager, times(2)).handle(any(Event.class));
+        verify(eventCurator, times(2)).merge(any(Event.class));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void failsBatchOnUnreadableMessage() throws Exception {
+        Message bad = message("m2", "c1");
+        when(mapper.readValue(eq("m2"), eq(Event.class))).thenThrow(new IOException("bad"));
+
+        listener.onMessages(Arrays.asList(message("m1", "c1"), bad));
+    }
+
+    @Test
+    public void processesEachConsumersEventsInOrder() throws Exception {
+        final Map<String, List<String>> seen = new HashMap<String, List<String>>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Event event = (Event) invocation.getArguments()[0];
+                synchronized (seen) {
+                    List<String> ids = seen.get(event.getConsumerId());
+                    if (ids == null) {
+                        ids = new ArrayList<String>();
+                        seen.put(event.getConsumerId(), ids);
+                    }
+                    ids.add(event.getMessageId());
+                }
+                return null;
+            }
+        }).when(eventManager).handle(any(Event.class));
+
+        Map<String, List<String>> expected = new HashMap<String, List<String>>();
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < 200; i++) {
+            String consumerId = "c" + (i % 7);
+            String messageId = "m" + i;
+            messages.add(message(messageId, consumerId));
+
+            if (!expected.containsKey(consumerId)) {
+                expected.put(consumerId, new ArrayList<String>());
+            }
+            expected.get(consumerId).add(messageId);
+        }
+
+        listener.start();
+        listener.onMessages(messages.subList(0, 100));
+        listener.onMessages(messages.subList(100, 200));
+        listener.shutDown(10000);
+
+        assertEquals(expected, seen);
+    }
+}
@@ -23,6 +23,7 @@ import org.candlepin.common.config.MapConfiguration;
 import org.candlepin.common.paging.Page;
 import org.candlepin.gutterball.GutterballTestingModule;
 import org.candlepin.gutterball.curator.ComplianceSnapshotCurator;
+import org.candlepin.gutterball.curator.ComplianceStatusDeltaCurator;
 import org.candlepin.gutterball.guice.I18nProvider;
 
 import com.google.inject.Guice;
@@ -54,6 +55,7 @@ public class StatusTrendReportTest {
     private Injector injector;
     private HttpServletRequest mockRequest;
     private ComplianceSnapshotCurator complianceSnapshotCurator;
+    private ComplianceStatusDeltaCurator statusDeltaCurator;
     private I18nProvider i18nProvider;
 
     private Date testDate;
@@ -67,6 +69,7 @@ public class StatusTrendReportTest {
 
         this.mockRequest =  this.injector.getInstance(HttpServletRequest.class);
         this.complianceSnapshotCurator = this.injector.getInstance(ComplianceSnapshotCurator.class);
+        this.statusDeltaCurator = mock(ComplianceStatusDeltaCurator.class);
 
         this.i18nProvider = new I18nProvider(this.mockRequest);
 
@@ -160,7 +163,8 @@ public class StatusTrendReportTest {
     private void validateParams(MultivaluedMap<String, String> params, String expectedParam,
             String expectedMessage) {
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, this.complianceSnapshotCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, this.complianceSnapshotCurator,
+            this.statusDeltaCurator);
 
         try {
             report.validateParameters(params);
@@ -184,10 +188,11 @@ public class StatusTrendReportTest {
         MultivaluedMap<String, String> params = mock(MultivaluedMap.class);
 
         ComplianceSnapshotCurator mockCSCurator = mock(ComplianceSnapshotCurator.class);
-        when(mockCSCurator.getComplianceStatusCounts(null, null, null, null, null, null, null, null, null))
+        when(this.statusDeltaCurator.getStatusCounts(null, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -195,8 +200,8 @@ public class StatusTrendReportTest {
 
         assertEquals(expected, actual);
 
-        verify(mockCSCurator).getComplianceStatusCounts(null, null, null, null, null, null, null, null, null);
-        verifyNoMoreInteractions(mockCSCurator);
+        verify(this.statusDeltaCurator).getStatusCounts(null, null, null, null);
+        verifyZeroInteractions(mockCSCurator);
     }
 
     @Test
@@ -221,11 +226,11 @@ public class StatusTrendReportTest {
         when(params.getFirst("end_date")).thenReturn("2014-11-08");
 
         ComplianceSnapshotCurator mockCSCurator = mock(ComplianceSnapshotCurator.class);
-        when(mockCSCurator
-            .getComplianceStatusCounts(startDate, endDate, null, null, null, null, null, null, null))
+        when(this.statusDeltaCurator.getStatusCounts(startDate, endDate, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -233,10 +238,8 @@ public class StatusTrendReportTest {
 
         assertEquals(expected, actual);
 
-        verify(mockCSCurator).getComplianceStatusCounts(
-            startDate, endDate, null, null, null, null, null, null, null
-        );
-        verifyNoMoreInteractions(mockCSCurator);
+        verify(this.statusDeltaCurator).getStatusCounts(startDate, endDate, null, null);
+        verifyZeroInteractions(mockCSCurator);
     }
 
     @Test
@@ -265,11 +268,11 @@ public class StatusTrendReportTest {
         when(params.getFirst("owner")).thenReturn(owner);
 
         ComplianceSnapshotCurator mockCSCurator = mock(ComplianceSnapshotCurator.class);
-        when(mockCSCurator
-            .getComplianceStatusCounts(startDate, endDate, owner, null, null, null, null, null, null))
+        when(this.statusDeltaCurator.getStatusCounts(startDate, endDate, owner, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -277,9 +280,8 @@ public class StatusTrendReportTest {
 
         assertEquals(expected, actual);
 
-        verify(mockCSCurator)
-            .getComplianceStatusCounts(startDate, endDate, owner, null, null, null, null, null, null);
-        verifyNoMoreInteractions(mockCSCurator);
+        verify(this.statusDeltaCurator).getStatusCounts(startDate, endDate, owner, null);
+        verifyZeroInteractions(mockCSCurator);
     }
 
     @Test
@@ -303,7 +305,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, null, consumers, null, null, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -335,7 +338,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, null, null, "testsku1", null, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -373,7 +377,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, owner, null, sku, null, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -416,7 +421,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(startDate, endDate, null, null, sku, null, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -464,7 +470,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(startDate, endDate, owner, null, sku, null, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -502,7 +509,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, null, consumers, "testsku1", null, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -536,7 +544,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, null, null, null, subscription, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -574,7 +583,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, owner, null, null, subscription, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -617,7 +627,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(startDate, endDate, null, null, null, subscription, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -664,7 +675,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(startDate, endDate, owner, null, null, subscription, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -704,7 +716,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, null, consumers, null, subscription, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -740,7 +753,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, null, null, null, null, null, attributes, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -781,7 +795,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, owner, null, null, null, null, attributes, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -826,7 +841,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(startDate, endDate, null, null, null, null, null, attributes, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -875,7 +891,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(startDate, endDate, owner, null, null, null, null, attributes, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -916,7 +933,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, null, consumers, null, null, null, attributes, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -952,10 +970,11 @@ public class StatusTrendReportTest {
         when(params.getFirst("timezone")).thenReturn(tzString);
 
         ComplianceSnapshotCurator mockCSCurator = mock(ComplianceSnapshotCurator.class);
-        when(mockCSCurator.getComplianceStatusCounts(null, null, null, null, null, null, null, null, null))
+        when(this.statusDeltaCurator.getStatusCounts(null, null, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -964,8 +983,8 @@ public class StatusTrendReportTest {
 
         assertEquals(expected, actual);
 
-        verify(mockCSCurator).getComplianceStatusCounts(null, null, null, null, null, null, null, null, null);
-        verifyNoMoreInteractions(mockCSCurator);
+        verify(this.statusDeltaCurator).getStatusCounts(null, null, null, null);
+        verifyZeroInteractions(mockCSCurator);
     }
 
 
@@ -990,7 +1009,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, null, null, null, null, product, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -1029,7 +1049,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, owner, null, null, null, product, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -1072,7 +1093,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(startDate, endDate, null, null, null, null, product, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -1119,7 +1141,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(startDate, endDate, owner, null, null, null, product, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
@@ -1158,7 +1181,8 @@ public class StatusTrendReportTest {
             .getComplianceStatusCounts(null, null, null, consumers, null, null, product, null, null))
             .thenReturn(testpage);
 
-        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator);
+        StatusTrendReport report = new StatusTrendReport(this.i18nProvider, mockCSCurator,
+            this.statusDeltaCurator);
 
         StatusTrendReportResult actual = report.run(params, null);
         StatusTrendReportResult expected = new StatusTrendReportResult();
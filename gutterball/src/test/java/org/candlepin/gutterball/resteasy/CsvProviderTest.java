@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.gutterball.resteasy;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.gutterball.report.ConsumerStatusReportDefaultResult;
+import org.candlepin.gutterball.report.MultiRowResult;
+import org.candlepin.gutterball.report.StatusTrendReportResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+
+public class CsvProviderTest {
+
+    private CsvProvider provider;
+
+    @Before
+    public void setUp() {
+        provider = new CsvProvider(new JsonProvider(false));
+    }
+
+    private Map<String, Object> row(String uuid, String name, String owner) {
+        Map<String, Object> ownerData = new LinkedHashMap<String, Object>();
+        ownerData.put("key", owner);
+        ownerData.put("facts", new HashMap<String, String>());
+
+        Map<String, Object> row = new LinkedHashMap<String, Object>();
+        row.put("uuid", uuid);
+        row.put("name", name);
+        row.put("owner", ownerData);
+        return row;
+    }
+
+    private String write(Object entity) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(entity, entity.getClass(), null, null, new MediaType("text", "csv"), null, out);
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void writesRowsWithFlattenedColumns() throws Exception {
+        MultiRowResult<Map<String, Object>> result = new MultiRowResult<Map<String, Object>>();
+        result.add(row("c1", "plain", "o1"));
+        result.add(row("c2", "has, \"quotes\"", "o2"));
+
+        assertEquals(
+            "uuid,name,owner.key,owner.facts\r\n" +
+            "c1,plain,o1,{}\r\n" +
+            "c2,\"has, \"\"quotes\"\"\",o2,{}\r\n",
+            write(result));
+    }
+
+    @Test
+    public void writesNothingForNoRows() throws Exception {
+        assertEquals("", write(new MultiRowResult<Map<String, Object>>()));
+    }
+
+    @Test
+    public void onlyWritesRowResults() {
+        assertTrue(provider.isWriteable(MultiRowResult.class, null, null, null));
+        assertTrue(provider.isWriteable(ConsumerStatusReportDefaultResult.class, null, null, null));
+        assertFalse(provider.isWriteable(StatusTrendReportResult.class, null, null, null));
+        assertFalse(provider.isWriteable(String.class, null, null, null));
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.gutterball.util;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.junit.Test;
+
+public class AutoEvictingColumnarResultsIteratorTest {
+
+    @Test
+    public void evictsEachRowAndClearsPeriodically() {
+        Session session = mock(Session.class);
+        ScrollableResults results = mock(ScrollableResults.class);
+        when(results.next()).thenReturn(true, true, true, true, true, false);
+        when(results.get(0)).thenReturn("a", "b", "c", "d", "e");
+
+        AutoEvictingColumnarResultsIterator<String> iterator =
+            new AutoEvictingColumnarResultsIterator<String>(session, results, 0, 2);
+
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+
+        assertEquals(5, count);
+        verify(session, times(4)).evict(anyObject());
+        verify(session, times(2)).clear();
+        verify(results).close();
+    }
+}
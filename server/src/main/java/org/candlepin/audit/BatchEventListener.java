@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import java.util.List;
+
+/**
+ * BatchEventListener - an EventListener which can handle several events at a
+ * time more cheaply than one at a time. Used when the listener's queue is
+ * consumed in batches.
+ */
+public interface BatchEventListener extends EventListener {
+
+    /**
+     * @param events events in the order they were received, never empty
+     */
+    void onEvents(List<Event> events);
+}
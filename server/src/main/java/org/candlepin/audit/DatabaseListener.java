@@ -24,10 +24,13 @@ import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * DatabaseListener
  */
-public class DatabaseListener implements EventListener {
+public class DatabaseListener implements BatchEventListener {
 
     private EventCurator eventCurator;
     private static Logger log = LoggerFactory.getLogger(DatabaseListener.class);
@@ -39,10 +42,7 @@ public class DatabaseListener implements EventListener {
 
     @Override
     public void onEvent(Event event) {
-        // We're outside of a web request here, need to create this event and satisfy the
-        // access control interceptor.
-        Principal systemPrincipal = new SystemPrincipal();
-        ResteasyProviderFactory.pushContext(Principal.class, systemPrincipal);
+        pushSystemPrincipal();
         if (log.isDebugEnabled()) {
             log.debug("Received event: " + event);
         }
@@ -51,4 +51,32 @@ public class DatabaseListener implements EventListener {
             eventCurator.create(event);
         }
     }
+
+    /**
+     * Inserts the whole batch in one transaction, as JDBC batches.
+     */
+    @Override
+    public void onEvents(List<Event> events) {
+        pushSystemPrincipal();
+        if (log.isDebugEnabled()) {
+            log.debug("Received " + events.size() + " events");
+        }
+
+        List<Event> toCreate = new ArrayList<Event>(events.size());
+        for (Event event : events) {
+            if (event != null) {
+                toCreate.add(event);
+            }
+        }
+        if (!toCreate.isEmpty()) {
+            eventCurator.createAll(toCreate);
+        }
+    }
+
+    private void pushSystemPrincipal() {
+        // We're outside of a web request here, need to create this event and satisfy the
+        // access control interceptor.
+        Principal systemPrincipal = new SystemPrincipal();
+        ResteasyProviderFactory.pushContext(Principal.class, systemPrincipal);
+    }
 }
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientMessage;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Date;
+
+/**
+ * EventCodec - writes events to, and reads them from, hornetq messages.
+ *
+ * Events are written either as the JSON string they have always been sent as,
+ * or in a compact binary form: each field in a fixed order, strings as UTF-8.
+ * The binary form skips the field names and the escaping of the JSON entities
+ * nested inside the event, and avoids the two bytes per character hornetq uses
+ * for long strings, which roughly halves the size of the larger events.
+ *
+ * Binary messages are flagged with a message property, so whichever format is
+ * configured, messages already sitting in a queue can still be read.
+ */
+public class EventCodec {
+
+    public static final String JSON = "json";
+    public static final String BINARY = "binary";
+
+    private static final SimpleString FORMAT_PROPERTY = new SimpleString("cp_event_format");
+    private static final byte BINARY_VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ObjectMapper mapper;
+    private final boolean binary;
+
+    public EventCodec(ObjectMapper mapper, String format) {
+        if (!JSON.equalsIgnoreCase(format) && !BINARY.equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Unknown event format: " + format);
+        }
+        this.mapper = mapper;
+        this.binary = BINARY.equalsIgnoreCase(format);
+    }
+
+    /**
+     * Encodes an event, ready to be written to a message with
+     * {@link #write(HornetQBuffer, ClientMessage)}.
+     *
+     * @param event event to encode
+     * @return the encoded event
+     * @throws IOException if the event cannot be encoded
+     */
+    public HornetQBuffer encode(Event event) throws IOException {
+        HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(512);
+        if (!binary) {
+            buffer.writeString(mapper.writeValueAsString(event));
+            return buffer;
+        }
+
+        buffer.writeByte(BINARY_VERSION);
+        writeString(buffer, event.getId());
+        writeString(buffer, name(event.getType()));
+        writeString(buffer, name(event.getTarget()));
+        writeString(buffer, event.getTargetName());
+        writeString(buffer, event.getPrincipalStore());
+        buffer.writeLong(event.getTimestamp() == null ? Long.MIN_VALUE :
+            event.getTimestamp().getTime());
+        writeString(buffer, event.getEntityId());
+        writeString(buffer, event.getOwnerId());
+        writeString(buffer, event.getConsumerId());
+        writeString(buffer, event.getReferenceId());
+        writeString(buffer, name(event.getReferenceType()));
+        writeString(buffer, event.getOldEntity());
+        writeString(buffer, event.getNewEntity());
+        writeString(buffer, event.getMessageText());
+        return buffer;
+    }
+
+    /**
+     * @param encoded an event returned by {@link #encode(Event)}
+     * @param message message to write it to
+     */
+    public void write(HornetQBuffer encoded, ClientMessage message) {
+        if (binary) {
+            message.putByteProperty(FORMAT_PROPERTY, BINARY_VERSION);
+        }
+        message.getBodyBuffer().writeBytes(encoded, 0, encoded.writerIndex());
+    }
+
+    /**
+     * Reads the event from a message, in whichever format it was written.
+     *
+     * @param message message to read
+     * @return the event
+     * @throws IOException if the message does not hold an event
+     */
+    public Event read(ClientMessage message) throws IOException {
+        HornetQBuffer buffer = message.getBodyBuffer();
+        if (!message.containsProperty(FORMAT_PROPERTY)) {
+            return mapper.readValue(buffer.readString(), Event.class);
+        }
+
+        try {
+            byte version = buffer.readByte();
+            if (version != BINARY_VERSION) {
+                throw new IOException("Unknown binary event version: " + version);
+            }
+
+            Event event = new Event();
+            event.setId(readString(buffer));
+            event.setType(readEnum(buffer, Event.Type.class));
+            event.setTarget(readEnum(buffer, Event.Target.class));
+            event.setTargetName(readString(buffer));
+            event.setPrincipalStore(readString(buffer));
+            long timestamp = buffer.readLong();
+            event.setTimestamp(timestamp == Long.MIN_VALUE ? null : new Date(timestamp));
+            event.setEntityId(readString(buffer));
+            event.setOwnerId(readString(buffer));
+            event.setConsumerId(readString(buffer));
+            event.setReferenceId(readString(buffer));
+            event.setReferenceType(readEnum(buffer, Event.ReferenceType.class));
+            event.setOldEntity(readString(buffer));
+            event.setNewEntity(readString(buffer));
+            event.setMessageText(readString(buffer));
+            return event;
+        }
+        catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated binary event", e);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("Invalid binary event", e);
+        }
+    }
+
+    private static String name(Enum<?> value) {
+        return value == null ? null : value.name();
+    }
+
+    private static <T extends Enum<T>> T readEnum(HornetQBuffer buffer, Class<T> type) {
+        String name = readString(buffer);
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    private static void writeString(HornetQBuffer buffer, String value) {
+        if (value == null) {
+            buffer.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF8);
+        buffer.writeInt(bytes.length);
+        buffer.writeBytes(bytes);
+    }
+
+    private static String readString(HornetQBuffer buffer) {
+        int length = buffer.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.readBytes(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -75,9 +75,7 @@ public class EventSinkImpl implements EventSink {
      */
     @Override
     public void sendEvents() {
-        for (Event e : getEventQueue()) {
-            dispatcher.sendEvent(e);
-        }
+        dispatcher.sendEvents(getEventQueue());
         getEventQueue().clear();
     }
 
@@ -14,6 +14,9 @@
  */
 package org.candlepin.audit;
 
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 
@@ -28,21 +31,35 @@ import org.hornetq.core.remoting.impl.invm.InVMConnectorFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedList;
+import java.util.List;
+
 /**
  * EventSource
+ *
+ * Each listener gets its own queue. By default the queue is consumed by a single
+ * message handler which acknowledges every message as soon as it is handled.
+ * Listeners configured with more than one consumer, or a batch size above one,
+ * are instead consumed by that many {@link ListenerConsumer} threads, each
+ * committing its acknowledgements once per batch.
  */
 public class EventSource {
     private static  Logger log = LoggerFactory.getLogger(EventSource.class);
     static final String QUEUE_ADDRESS = "event";
+    private ClientSessionFactory factory;
     private ClientSession session;
-    private ObjectMapper mapper;
+    private EventCodec codec;
+    private Configuration config;
+    private List<ListenerConsumer> consumers = new LinkedList<ListenerConsumer>();
 
     @Inject
-    public EventSource(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public EventSource(ObjectMapper mapper, Configuration config) {
+        this.config = config;
+        this.codec = new EventCodec(mapper,
+            config.getString(ConfigProperties.HORNETQ_EVENT_FORMAT));
 
         try {
-            ClientSessionFactory factory =  createSessionFactory();
+            factory =  createSessionFactory();
             // Specify a message ack batch size of 0 to have hornetq immediately ack
             // any message successfully received with the server. Not doing so can lead
             // to duplicate messages if the server goes down before the batch ack size is
@@ -66,6 +83,11 @@ public class EventSource {
     }
 
     void shutDown() {
+        for (ListenerConsumer consumer : consumers) {
+            consumer.shutDown();
+        }
+        consumers.clear();
+
         try {
             session.stop();
             session.close();
@@ -92,11 +114,38 @@ public class EventSource {
                 }
             }
 
-            ClientConsumer consumer = session.createConsumer(queueName);
-            consumer.setMessageHandler(new ListenerWrapper(listener, mapper));
+            String listenerName = listener.getClass().getName();
+            int consumerCount = getListenerSetting(
+                ConfigProperties.AUDIT_LISTENER_CONSUMERS, listenerName);
+            int batchSize = getListenerSetting(
+                ConfigProperties.AUDIT_LISTENER_BATCH_SIZE, listenerName);
+
+            if (consumerCount == 1 && batchSize == 1) {
+                ClientConsumer consumer = session.createConsumer(queueName);
+                consumer.setMessageHandler(new ListenerWrapper(listener, codec));
+                return;
+            }
+
+            log.info("Consuming " + queueName + " with " + consumerCount +
+                " consumers, in batches of " + batchSize);
+            for (int i = 0; i < consumerCount; i++) {
+                ListenerConsumer consumer = new ListenerConsumer(factory, queueName,
+                    new ListenerWrapper(listener, codec), batchSize);
+                consumers.add(consumer);
+
+                Thread thread = new Thread(consumer,
+                    "event-" + listener.getClass().getSimpleName() + "-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
         }
         catch (HornetQException e) {
             log.error("Unable to register listener :" + listener, e);
         }
     }
+
+    private int getListenerSetting(String key, String listenerName) {
+        int value = config.getInt(key + "." + listenerName, config.getInt(key));
+        return Math.max(1, value);
+    }
 }
@@ -50,9 +50,13 @@ public class HornetqContextListener {
 
     private HornetQServer hornetqServer;
     private EventSource eventSource;
+    private HornetqEventDispatcher eventDispatcher;
 
     public void contextDestroyed() {
         if (hornetqServer != null) {
+            if (eventDispatcher != null) {
+                eventDispatcher.shutDown();
+            }
             eventSource.shutDown();
             try {
                 hornetqServer.stop();
@@ -126,7 +130,7 @@ public class HornetqContextListener {
 
         // Initialize the Event Dispatcher AFTER the internal server has been
         // created and started.
-        HornetqEventDispatcher eventDispatcher = injector.getInstance(HornetqEventDispatcher.class);
+        eventDispatcher = injector.getInstance(HornetqEventDispatcher.class);
         try {
             eventDispatcher.initialize();
         }
@@ -20,6 +20,7 @@ import org.candlepin.config.ConfigProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 
+import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.TransportConfiguration;
@@ -33,31 +34,61 @@ import org.hornetq.core.remoting.impl.invm.InVMConnectorFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
 
 /**
  * HornetqEventDispatcher - Singleton responsible for managing hornetq sessions and
  * producers and dispatching events to all configured listeners.
+ *
+ * By default every event is a blocking, durable send from the thread which
+ * emitted it. With async sending turned on, events are serialized by the caller
+ * and handed to a bounded queue, which a single sender thread drains into
+ * transacted sessions, committing up to a batch of events at a time. Callers
+ * still wait until the group holding their events is committed, so events are
+ * durable once a request completes, but many requests now share one journal
+ * sync instead of paying for one per event. A full queue makes callers wait for
+ * room, holding back the requests producing events faster than they are sent.
+ *
+ * Nobody waits on the sender thread forever. A caller whose events are not sent
+ * in time takes back the ones still queued and sends them itself, and shutting
+ * down sends whatever the sender thread left in the queue.
  */
 @Singleton
 public class HornetqEventDispatcher  {
 
     private static Logger log = LoggerFactory.getLogger(HornetqEventDispatcher.class);
+    private static final long SEND_TIMEOUT_SECONDS = 30;
     private ClientSessionFactory factory;
     private Configuration config;
-    private ObjectMapper mapper;
+    private EventCodec codec;
     private int largeMsgSize;
     private ThreadLocal<ClientSession> sessions = new ThreadLocal<ClientSession>();
     private ThreadLocal<ClientProducer> producers = new ThreadLocal<ClientProducer>();
 
+    private boolean asyncSend;
+    private int sendBatchSize;
+    private BlockingQueue<PendingEvent> pending;
+    private Thread sender;
+    private volatile boolean running;
+
     @Inject
     public HornetqEventDispatcher(ObjectMapper mapper, Configuration config) {
-        this.mapper = mapper;
         this.config = config;
+        this.codec = new EventCodec(mapper,
+            config.getString(ConfigProperties.HORNETQ_EVENT_FORMAT));
         largeMsgSize = config.getInt(ConfigProperties.HORNETQ_LARGE_MSG_SIZE);
+        asyncSend = config.getBoolean(ConfigProperties.HORNETQ_ASYNC_SEND);
+        sendBatchSize = Math.max(1, config.getInt(ConfigProperties.HORNETQ_SEND_BATCH_SIZE));
+        pending = new ArrayBlockingQueue<PendingEvent>(
+            Math.max(1, config.getInt(ConfigProperties.HORNETQ_SEND_QUEUE_SIZE)));
     }
 
     /**
@@ -66,6 +97,48 @@ public class HornetqEventDispatcher  {
      */
     public void initialize() throws Exception {
         factory =  createClientSessionFactory();
+        if (asyncSend) {
+            running = true;
+            sender = new Thread(new Sender(), "event-sender");
+            sender.setDaemon(true);
+            sender.start();
+        }
+    }
+
+    /**
+     * Stops the sender thread once everything already queued has been sent.
+     */
+    public void shutDown() {
+        shutDown(TimeUnit.SECONDS.toMillis(SEND_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * Waits up to the given time for the sender thread to empty the queue, and
+     * then sends anything it left there directly.
+     *
+     * @param timeout milliseconds to wait for the sender thread
+     */
+    void shutDown(long timeout) {
+        running = false;
+        if (sender != null) {
+            try {
+                sender.join(timeout);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sender = null;
+        }
+
+        List<PendingEvent> unsent = new ArrayList<PendingEvent>();
+        pending.drainTo(unsent);
+        if (!unsent.isEmpty()) {
+            log.warn("Event sender stopped with " + unsent.size() +
+                " events unsent, sending them directly");
+            for (PendingEvent event : unsent) {
+                sendDirectly(event);
+            }
+        }
     }
 
     protected ClientSessionFactory createClientSessionFactory() throws Exception {
@@ -106,16 +179,158 @@ public class HornetqEventDispatcher  {
     public void sendEvent(Event event) {
         log.debug("Sending event: " + event);
         try {
-            ClientMessage message = getClientSession().createMessage(true);
-            String eventString = mapper.writeValueAsString(event);
-            message.getBodyBuffer().writeString(eventString);
-            getClientProducer().send(message);
+            send(codec.encode(event));
         }
         catch (Exception e) {
             log.error("Error while trying to send event: " + event, e);
         }
     }
 
+    private void send(HornetQBuffer body) throws HornetQException {
+        ClientMessage message = getClientSession().createMessage(true);
+        codec.write(body, message);
+        getClientProducer().send(message);
+    }
+
+    /**
+     * Sends a queued event from the calling thread, the same way as
+     * {@link #sendEvent(Event)}, and lets its caller go.
+     */
+    private void sendDirectly(PendingEvent event) {
+        try {
+            send(event.body);
+        }
+        catch (Exception e) {
+            log.error("Error while trying to send event", e);
+        }
+        finally {
+            event.receipt.done();
+        }
+    }
+
+    /**
+     * Sends events in order, returning once all of them have been committed to
+     * the queue.
+     *
+     * @param events events to send
+     */
+    public void sendEvents(List<Event> events) {
+        if (!running) {
+            for (Event event : events) {
+                sendEvent(event);
+            }
+            return;
+        }
+
+        List<HornetQBuffer> bodies = new ArrayList<HornetQBuffer>(events.size());
+        for (Event event : events) {
+            log.debug("Sending event: " + event);
+            try {
+                bodies.add(codec.encode(event));
+            }
+            catch (Exception e) {
+                log.error("Error while trying to send event: " + event, e);
+            }
+        }
+        if (bodies.isEmpty()) {
+            return;
+        }
+
+        Receipt receipt = new Receipt(bodies.size());
+        List<PendingEvent> outgoing = new ArrayList<PendingEvent>(bodies.size());
+        for (HornetQBuffer body : bodies) {
+            outgoing.add(new PendingEvent(body, receipt));
+        }
+
+        int queued = 0;
+        try {
+            while (queued < outgoing.size() &&
+                pending.offer(outgoing.get(queued), SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                queued++;
+            }
+            if (queued < outgoing.size() ||
+                !receipt.await(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for the event sender, sending events directly");
+                sendRemaining(outgoing, queued);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while waiting for events to be sent", e);
+        }
+    }
+
+    /**
+     * Takes back the events the sender thread has not picked up yet, and sends
+     * them from the calling thread along with those which never made it into
+     * the queue. An event is only ever sent by whoever removes it from the queue.
+     *
+     * @param events all of the caller's events, in order
+     * @param queued how many of them were queued
+     */
+    private void sendRemaining(List<PendingEvent> events, int queued) {
+        for (int i = 0; i < events.size(); i++) {
+            PendingEvent event = events.get(i);
+            if (i >= queued || pending.remove(event)) {
+                sendDirectly(event);
+            }
+        }
+    }
+
+    /**
+     * @return number of events waiting for the sender thread
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Sends one group of events in a single transaction. Nobody waiting on them is
+     * let go until the commit has either succeeded or failed, failures are logged
+     * just as they are for a single event.
+     */
+    private ClientSession sendBatch(ClientSession session, List<PendingEvent> batch) {
+        try {
+            if (session == null) {
+                session = factory.createTransactedSession();
+            }
+            ClientProducer producer = session.createProducer(EventSource.QUEUE_ADDRESS);
+            try {
+                for (PendingEvent event : batch) {
+                    ClientMessage message = session.createMessage(true);
+                    codec.write(event.body, message);
+                    producer.send(message);
+                }
+                session.commit();
+            }
+            finally {
+                producer.close();
+            }
+        }
+        catch (Exception e) {
+            log.error("Error while trying to send " + batch.size() + " events", e);
+            session = closeQuietly(session);
+        }
+        finally {
+            for (PendingEvent event : batch) {
+                event.receipt.done();
+            }
+        }
+        return session;
+    }
+
+    private ClientSession closeQuietly(ClientSession session) {
+        if (session != null) {
+            try {
+                session.close();
+            }
+            catch (HornetQException e) {
+                log.debug("Unable to close event sender session", e);
+            }
+        }
+        return null;
+    }
+
     public List<QueueStatus> getQueueInfo() {
         List<QueueStatus> results = new LinkedList<QueueStatus>();
         try {
@@ -129,6 +344,9 @@ public class HornetqEventDispatcher  {
                         .getMessageCount();
                 results.add(new QueueStatus(queueName, msgCount));
             }
+            if (asyncSend) {
+                results.add(new QueueStatus("event.sender", pending.size()));
+            }
         }
         catch (Exception e) {
             log.error("Error looking up hornetq queue info: ", e);
@@ -136,4 +354,77 @@ public class HornetqEventDispatcher  {
         return results;
     }
 
+    /**
+     * Drains the pending queue a batch at a time until shut down, and the queue is
+     * empty. Should the thread die, events are sent directly from then on.
+     */
+    private class Sender implements Runnable {
+        @Override
+        public void run() {
+            ClientSession session = null;
+            List<PendingEvent> batch = new ArrayList<PendingEvent>(sendBatchSize);
+            try {
+                while (running || !pending.isEmpty()) {
+                    try {
+                        PendingEvent first = pending.poll(1, TimeUnit.SECONDS);
+                        if (first == null) {
+                            continue;
+                        }
+                        batch.add(first);
+                        pending.drainTo(batch, sendBatchSize - 1);
+                        session = sendBatch(session, batch);
+                    }
+                    catch (InterruptedException e) {
+                        running = false;
+                    }
+                    catch (RuntimeException e) {
+                        log.error("Unexpected error in event sender", e);
+                    }
+                    finally {
+                        batch.clear();
+                    }
+                }
+            }
+            finally {
+                if (running) {
+                    running = false;
+                    log.error("Event sender died, events will be sent directly");
+                }
+                closeQuietly(session);
+            }
+        }
+    }
+
+    /**
+     * An event ready to go on the queue.
+     */
+    private static class PendingEvent {
+        private final HornetQBuffer body;
+        private final Receipt receipt;
+
+        PendingEvent(HornetQBuffer body, Receipt receipt) {
+            this.body = body;
+            this.receipt = receipt;
+        }
+    }
+
+    /**
+     * Lets a caller wait for all of its events, which may be split across
+     * several transactions.
+     */
+    private static class Receipt {
+        private final CountDownLatch latch;
+
+        Receipt(int events) {
+            this.latch = new CountDownLatch(events);
+        }
+
+        void done() {
+            latch.countDown();
+        }
+
+        boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return latch.await(timeout, unit);
+        }
+    }
 }
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ListenerConsumer - pulls messages off a listener's queue on its own session
+ * and thread, handing them to the listener a batch at a time. Acknowledgements
+ * are committed once the whole batch has been handled.
+ *
+ * If a batch fails, or the listener does not take batches at all, the messages
+ * are handled and committed one at a time instead, so an event is never handled
+ * twice because another one in its batch failed. Messages are acknowledged
+ * individually, so only the ones which failed are left to be rolled back and
+ * redelivered.
+ *
+ * Several consumers may share a queue, in which case events are no longer
+ * handled in the order they were sent.
+ */
+class ListenerConsumer implements Runnable {
+
+    private static Logger log = LoggerFactory.getLogger(ListenerConsumer.class);
+    private static final long RECEIVE_TIMEOUT = 1000;
+
+    private final ClientSession session;
+    private final ClientConsumer consumer;
+    private final ListenerWrapper wrapper;
+    private final int batchSize;
+    private volatile boolean running = true;
+
+    ListenerConsumer(ClientSessionFactory factory, String queueName,
+        ListenerWrapper wrapper, int batchSize) throws HornetQException {
+        this.wrapper = wrapper;
+        this.batchSize = batchSize;
+        this.session = factory.createSession(true, false, 0);
+        this.consumer = session.createConsumer(queueName);
+        session.start();
+    }
+
+    @Override
+    public void run() {
+        List<ClientMessage> batch = new ArrayList<ClientMessage>(batchSize);
+        while (running) {
+            try {
+                ClientMessage msg = consumer.receive(RECEIVE_TIMEOUT);
+                if (msg == null) {
+                    continue;
+                }
+                batch.add(msg);
+                while (batch.size() < batchSize &&
+                    (msg = consumer.receiveImmediate()) != null) {
+                    batch.add(msg);
+                }
+
+                if (batch.size() > 1 && wrapper.handlesBatches() && handleBatch(batch)) {
+                    session.commit();
+                }
+                else {
+                    handleEach(batch);
+                }
+            }
+            catch (Exception e) {
+                if (running) {
+                    log.error("Unable to receive or commit events", e);
+                    rollback();
+                }
+            }
+            finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean handleBatch(List<ClientMessage> batch) {
+        try {
+            wrapper.onMessages(batch);
+            return true;
+        }
+        catch (Exception e) {
+            log.warn("Unable to handle a batch of " + batch.size() +
+                " events, handling them one at a time", e);
+            return false;
+        }
+    }
+
+    /**
+     * Handles and commits the messages one at a time. The messages which fail
+     * stay unacknowledged across the commits of the others, and are rolled back
+     * together at the end to be redelivered.
+     */
+    private void handleEach(List<ClientMessage> batch) {
+        int failed = 0;
+        for (ClientMessage msg : batch) {
+            if (!running) {
+                return;
+            }
+            try {
+                wrapper.onMessage(msg);
+                session.commit();
+            }
+            catch (Exception e) {
+                log.error("Unable to handle event, it will be redelivered", e);
+                failed++;
+            }
+        }
+
+        if (failed > 0) {
+            rollback();
+        }
+    }
+
+    private void rollback() {
+        try {
+            session.rollback();
+        }
+        catch (HornetQException e) {
+            log.error("Unable to roll back hornetq session", e);
+        }
+    }
+
+    void shutDown() {
+        running = false;
+        try {
+            session.close();
+        }
+        catch (HornetQException e) {
+            log.warn("Exception while closing listener session", e);
+        }
+    }
+}
@@ -14,10 +14,6 @@
  */
 package org.candlepin.audit;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.MessageHandler;
@@ -25,6 +21,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * ListnerWrapper
@@ -33,39 +31,73 @@ public class ListenerWrapper implements MessageHandler {
 
     private EventListener listener;
     private static Logger log = LoggerFactory.getLogger(ListenerWrapper.class);
-    private ObjectMapper mapper;
-    public ListenerWrapper(EventListener listener, ObjectMapper mapper) {
+    private EventCodec codec;
+    public ListenerWrapper(EventListener listener, EventCodec codec) {
         this.listener = listener;
-        this.mapper = mapper;
+        this.codec = codec;
     }
 
     @Override
     public void onMessage(ClientMessage msg) {
-        String body = msg.getBodyBuffer().readString();
-        if (log.isDebugEnabled()) {
-            log.debug("Got event: {}", body);
+        // Exceptions thrown here will cause the event to remain in hornetq:
+        listener.onEvent(readEvent(msg));
+        acknowledge(msg);
+    }
+
+    /**
+     * @return true if the listener takes a whole batch of events in one call
+     */
+    public boolean handlesBatches() {
+        return listener instanceof BatchEventListener;
+    }
+
+    /**
+     * Hands the events in these messages to the listener, all at once if it
+     * can take a batch, and then acknowledges them.
+     *
+     * @param msgs messages in the order they were received
+     */
+    public void onMessages(List<ClientMessage> msgs) {
+        List<Event> events = new ArrayList<Event>(msgs.size());
+        for (ClientMessage msg : msgs) {
+            events.add(readEvent(msg));
         }
 
-        // Exceptions thrown here will cause the event to remain in hornetq:
-        try {
-            Event event = mapper.readValue(body, Event.class);
-            listener.onEvent(event);
+        if (listener instanceof BatchEventListener) {
+            ((BatchEventListener) listener).onEvents(events);
         }
-        catch (JsonMappingException e) {
-            log.error("Unable to deserialize event object from msg: " + body, e);
-            throw new RuntimeException("Error deserializing event", e);
+        else {
+            for (Event event : events) {
+                listener.onEvent(event);
+            }
         }
-        catch (JsonParseException e) {
-            log.error("Unable to deserialize event object from msg: " + body, e);
-            throw new RuntimeException("Error deserializing event", e);
+
+        for (ClientMessage msg : msgs) {
+            acknowledge(msg);
+        }
+    }
+
+    private Event readEvent(ClientMessage msg) {
+        try {
+            Event event = codec.read(msg);
+            if (log.isDebugEnabled()) {
+                log.debug("Got event: {}", event);
+            }
+            return event;
         }
         catch (IOException e) {
-            log.error("Unable to deserialize event object from msg: " + body, e);
+            log.error("Unable to deserialize event object from msg: " + msg, e);
             throw new RuntimeException("Error deserializing event", e);
         }
+    }
 
+    /**
+     * Acknowledges just this message. A plain acknowledge would also acknowledge
+     * every message delivered before it, including any that failed to be handled.
+     */
+    private void acknowledge(ClientMessage msg) {
         try {
-            msg.acknowledge();
+            msg.individualAcknowledge();
             log.debug("Hornetq message acknowledged for listener: " + listener);
         }
         catch (HornetQException e) {
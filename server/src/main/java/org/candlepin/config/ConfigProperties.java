@@ -20,12 +20,12 @@ import static org.candlepin.common.config.ConfigurationPrefixes.JPA_CONFIG_PREFI
 import org.candlepin.pinsetter.tasks.ActiveEntitlementJob;
 import org.candlepin.pinsetter.tasks.CancelJobJob;
 import org.candlepin.pinsetter.tasks.CertificateRevocationListTask;
-import org.candlepin.pinsetter.tasks.CleanupCheckInsJob;
 import org.candlepin.pinsetter.tasks.CleanupGuestIdsCheckInsJob;
 import org.candlepin.pinsetter.tasks.ExpiredPoolsJob;
 import org.candlepin.pinsetter.tasks.ExportCleaner;
 import org.candlepin.pinsetter.tasks.ImportRecordJob;
 import org.candlepin.pinsetter.tasks.JobCleaner;
+import org.candlepin.pinsetter.tasks.PoolConsumptionRepairJob;
 import org.candlepin.pinsetter.tasks.StatisticHistoryTask;
 import org.candlepin.pinsetter.tasks.SweepBarJob;
 import org.candlepin.pinsetter.tasks.UnmappedGuestEntitlementCleanerJob;
@@ -57,7 +57,20 @@ public class ConfigProperties {
 
     public static final String HORNETQ_BASE_DIR = "candlepin.audit.hornetq.base_dir";
     public static final String HORNETQ_LARGE_MSG_SIZE = "candlepin.audit.hornetq.large_msg_size";
+    // Hand events to a single sender thread which commits them to the queue in groups
+    public static final String HORNETQ_ASYNC_SEND = "candlepin.audit.hornetq.async_send";
+    public static final String HORNETQ_SEND_QUEUE_SIZE =
+        "candlepin.audit.hornetq.send_queue_size";
+    public static final String HORNETQ_SEND_BATCH_SIZE =
+        "candlepin.audit.hornetq.send_batch_size";
+    // "json" or "binary", see EventCodec
+    public static final String HORNETQ_EVENT_FORMAT = "candlepin.audit.hornetq.event_format";
     public static final String AUDIT_LISTENERS = "candlepin.audit.listeners";
+    // Both may be overridden for one listener by appending its class name to the key
+    public static final String AUDIT_LISTENER_CONSUMERS =
+        "candlepin.audit.hornetq.listener_consumers";
+    public static final String AUDIT_LISTENER_BATCH_SIZE =
+        "candlepin.audit.hornetq.listener_batch_size";
     public static final String AUDIT_LOG_FILE = "candlepin.audit.log_file";
     public static final String AUDIT_LOG_VERBOSE = "candlepin.audit.log_verbose";
 
@@ -110,8 +123,9 @@ public class ConfigProperties {
         CancelJobJob.class.getName(), ExpiredPoolsJob.class.getName(),
         UnpauseJob.class.getName(), SweepBarJob.class.getName(),
         ExportCleaner.class.getName(), ActiveEntitlementJob.class.getName(),
-        CleanupCheckInsJob.class.getName(), CleanupGuestIdsCheckInsJob.class.getName(),
+        CleanupGuestIdsCheckInsJob.class.getName(),
         UnmappedGuestEntitlementCleanerJob.class.getName(),
+        PoolConsumptionRepairJob.class.getName(),
     };
 
     public static final String SYNC_WORK_DIR = "candlepin.sync.work_dir";
@@ -135,6 +149,19 @@ public class ConfigProperties {
     public static final String PASSPHRASE_SECRET_FILE = "candlepin.passphrase.path";
 
     public static final String PRODUCT_CACHE_MAX = "candlepin.cache.product_cache_max";
+    public static final String COMPLIANCE_CACHE_MAX = "candlepin.cache.compliance_cache_max";
+    public static final String CONTENT_VALUE_CACHE_MAX =
+        "candlepin.cache.content_value_cache_max";
+    public static final String POOL_INDEX_MAX_OWNERS = "candlepin.cache.pool_index_max_owners";
+    public static final String OWNER_INFO_CACHE_TTL = "candlepin.cache.owner_info_ttl";
+    public static final String OWNER_INFO_CACHE_MAX = "candlepin.cache.owner_info_cache_max";
+    public static final String COMPLIANCE_WORKER_THREADS = "candlepin.compliance.worker_threads";
+    public static final String IMPORT_WORKER_THREADS = "candlepin.import.worker_threads";
+    public static final String CERT_WORKER_THREADS = "candlepin.entcert.worker_threads";
+    public static final String HEAL_ORG_WORKER_THREADS = "candlepin.heal_org.worker_threads";
+    public static final String CHECKIN_FLUSH_INTERVAL = "candlepin.checkin.flush_interval";
+    public static final String CHECKIN_MAX_PENDING = "candlepin.checkin.max_pending";
+    public static final String RULES_CHECK_INTERVAL = "candlepin.rules.check_interval";
 
     public static final String INTEGER_FACTS = "candlepin.integer_facts";
     private static final String INTEGER_FACT_LIST = "";
@@ -186,10 +213,16 @@ public class ConfigProperties {
 
                 this.put(HORNETQ_BASE_DIR, "/var/lib/candlepin/hornetq");
                 this.put(HORNETQ_LARGE_MSG_SIZE, Integer.toString(100 * 1024));
+                this.put(HORNETQ_ASYNC_SEND, "false");
+                this.put(HORNETQ_SEND_QUEUE_SIZE, "10000");
+                this.put(HORNETQ_SEND_BATCH_SIZE, "500");
+                this.put(HORNETQ_EVENT_FORMAT, "json");
                 this.put(AUDIT_LISTENERS,
                     "org.candlepin.audit.DatabaseListener," +
                         "org.candlepin.audit.LoggingListener," +
                         "org.candlepin.audit.ActivationListener");
+                this.put(AUDIT_LISTENER_CONSUMERS, "1");
+                this.put(AUDIT_LISTENER_BATCH_SIZE, "1");
                 this.put(AUDIT_LOG_FILE, "/var/log/candlepin/audit.log");
                 this.put(AUDIT_LOG_VERBOSE, "false");
 
@@ -261,6 +294,85 @@ public class ConfigProperties {
                  */
                 this.put(PRODUCT_CACHE_MAX, "100");
 
+                /**
+                 * Maximum number of consumers whose current compliance status is
+                 * cached. Entries are soft references, so the GC may drop them
+                 * sooner when memory is tight.
+                 */
+                this.put(COMPLIANCE_CACHE_MAX, "10000");
+
+                /**
+                 * Maximum number of encoded content set lists kept for v3
+                 * entitlement certificates. Entries are soft references, so the
+                 * GC may drop them sooner when memory is tight.
+                 */
+                this.put(CONTENT_VALUE_CACHE_MAX, "500");
+
+                /**
+                 * Maximum number of owners whose pools are indexed by product for
+                 * autobind, least recently used owners are dropped first.
+                 */
+                this.put(POOL_INDEX_MAX_OWNERS, "1000");
+
+                /**
+                 * Number of seconds the owner info of an owner is cached for
+                 * each principal. 0 disables the cache.
+                 */
+                this.put(OWNER_INFO_CACHE_TTL, "30");
+
+                /**
+                 * Maximum number of cached owner infos, least recently used
+                 * entries are dropped first.
+                 */
+                this.put(OWNER_INFO_CACHE_MAX, "500");
+
+                /**
+                 * Number of threads used to run compliance rules for bulk
+                 * compliance requests. 0 uses one thread per available processor.
+                 */
+                this.put(COMPLIANCE_WORKER_THREADS, "0");
+
+                /**
+                 * Number of threads used to parse the products and entitlements
+                 * of a manifest during import, shared by all imports. 0 uses one
+                 * thread per available processor.
+                 */
+                this.put(IMPORT_WORKER_THREADS, "0");
+
+                /**
+                 * Number of threads used to sign and encode entitlement
+                 * certificates when many are regenerated at once. 0 uses one
+                 * thread per available processor.
+                 */
+                this.put(CERT_WORKER_THREADS, "0");
+
+                /**
+                 * Number of threads healing the consumers of an org in
+                 * parallel, per heal job. Each thread holds a database
+                 * connection while it works.
+                 */
+                this.put(HEAL_ORG_WORKER_THREADS, "4");
+
+                /**
+                 * Seconds between writes of the consumer check ins recorded by
+                 * this node, which is also how stale a consumer's last check in
+                 * can be. 0 writes every check in as it happens.
+                 */
+                this.put(CHECKIN_FLUSH_INTERVAL, "60");
+
+                /**
+                 * Number of consumers with unwritten check ins that triggers a
+                 * write before the flush interval is up.
+                 */
+                this.put(CHECKIN_MAX_PENDING, "20000");
+
+                /**
+                 * Seconds between checks of the rules timestamp in the database,
+                 * which is also how long rules changed on another node can take
+                 * to be used on this one. 0 checks on every rules injection.
+                 */
+                this.put(RULES_CHECK_INTERVAL, "30");
+
                 /**
                  * As we do math on some facts and attributes, we need to constrain
                  * some values
@@ -67,6 +67,8 @@ import com.google.inject.persist.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -88,6 +90,9 @@ public class CandlepinPoolManager implements PoolManager {
     private PoolCurator poolCurator;
     private static Logger log = LoggerFactory.getLogger(CandlepinPoolManager.class);
 
+    // How many certificates a bulk regeneration generates and writes back at once
+    private static final int CERT_BATCH_SIZE = 100;
+
     private SubscriptionServiceAdapter subAdapter;
     private EventSink sink;
     private EventFactory eventFactory;
@@ -102,6 +107,7 @@ public class CandlepinPoolManager implements PoolManager {
     private ProductCache productCache;
     private AutobindRules autobindRules;
     private ActivationKeyRules activationKeyRules;
+    private PoolIndex poolIndex;
 
     /**
      * @param poolCurator
@@ -118,7 +124,8 @@ public class CandlepinPoolManager implements PoolManager {
         EventFactory eventFactory, Configuration config, Enforcer enforcer,
         PoolRules poolRules, EntitlementCurator curator1, ConsumerCurator consumerCurator,
         EntitlementCertificateCurator ecC, ComplianceRules complianceRules,
-        AutobindRules autobindRules, ActivationKeyRules activationKeyRules) {
+        AutobindRules autobindRules, ActivationKeyRules activationKeyRules,
+        PoolIndex poolIndex) {
 
         this.poolCurator = poolCurator;
         this.subAdapter = subAdapter;
@@ -135,8 +142,15 @@ public class CandlepinPoolManager implements PoolManager {
         this.productCache = productCache;
         this.autobindRules = autobindRules;
         this.activationKeyRules = activationKeyRules;
+        this.poolIndex = poolIndex;
     }
 
+    /*
+     * Largest set of candidate pool IDs worth passing to the database as a
+     * filter, beyond this we load the owner's pools and filter in memory.
+     */
+    private static final int MAX_CANDIDATE_ID_FILTER = 500;
+
     /*
      * We need to update/regen entitlements in the same transaction we update pools
      * so we don't miss anything
@@ -348,13 +362,18 @@ public class CandlepinPoolManager implements PoolManager {
                 continue;
             }
 
+            // Changes to the provided products or product attributes alone would
+            // not touch the pool row, bump updated so the pool index sees them:
+            existingPool.setUpdated(new Date());
+
             // save changes for the pool
-            this.poolCurator.merge(existingPool);
+            Pool merged = this.poolCurator.merge(existingPool);
 
             // Explicitly call flush to avoid issues with how we sync up the attributes.
             // This prevents "instance does not yet exist as a row in the database" errors
             // when we later try to lock the pool if we need to revoke entitlements:
             this.poolCurator.flush();
+            poolIndex.poolChanged(merged);
 
             // quantity has changed. delete any excess entitlements from pool
             if (updatedPool.getQuantityChanged()) {
@@ -425,6 +444,9 @@ public class CandlepinPoolManager implements PoolManager {
     @Override
     public Pool createPool(Pool p) {
         Pool created = poolCurator.create(p);
+        if (created != null) {
+            poolIndex.poolChanged(created);
+        }
         if (log.isDebugEnabled()) {
             log.debug("   new pool: " + p);
         }
@@ -574,19 +596,22 @@ public class CandlepinPoolManager implements PoolManager {
         if (entitleDate == null) {
             activePoolDate = new Date();
         }
-        PoolFilterBuilder poolFilter = new PoolFilterBuilder();
-        poolFilter.addIdFilters(fromPools);
-        List<Pool> allOwnerPools = this.listAvailableEntitlementPools(
-            host, null, owner, (String) null, activePoolDate, true, false,
-            poolFilter, null).getPageData();
-        log.debug("Found {} total pools in org.", allOwnerPools.size());
+        ComplianceStatus guestCompliance = complianceRules.getStatus(guest, entitleDate,
+                false);
+        Set<String> tmpSet = new HashSet<String>();
+        //we only want to heal red products, not yellow
+        tmpSet.addAll(guestCompliance.getNonCompliantProducts());
+        log.debug("Guest's non-compliant products: {}", Util.collectionToString(tmpSet));
+
+        // Only pools that could provide the guest's products need to be loaded:
+        List<Pool> allOwnerPools = listCandidatePools(host, owner, activePoolDate,
+            poolIndex.getPoolsProvidingDerived(owner, tmpSet), fromPools);
+        log.debug("Found {} candidate pools in org.", allOwnerPools.size());
         logPools(allOwnerPools);
 
-        List<Pool> allOwnerPoolsForGuest = this.listAvailableEntitlementPools(
-            guest, null, owner, (String) null, activePoolDate,
-            true, false, poolFilter,
-            null).getPageData();
-        log.debug("Found {} total pools already available for guest",
+        List<Pool> allOwnerPoolsForGuest = listCandidatePools(guest, owner, activePoolDate,
+            poolIndex.getPoolsProviding(owner, tmpSet, null), fromPools);
+        log.debug("Found {} candidate pools already available for guest",
                 allOwnerPoolsForGuest.size());
         logPools(allOwnerPoolsForGuest);
 
@@ -599,13 +624,6 @@ public class CandlepinPoolManager implements PoolManager {
         }
         List<Pool> filteredPools = new LinkedList<Pool>();
 
-        ComplianceStatus guestCompliance = complianceRules.getStatus(guest, entitleDate,
-                false);
-        Set<String> tmpSet = new HashSet<String>();
-        //we only want to heal red products, not yellow
-        tmpSet.addAll(guestCompliance.getNonCompliantProducts());
-        log.debug("Guest's non-compliant products: {}", Util.collectionToString(tmpSet));
-
         /*Do not attempt to create subscriptions for products that
           already have virt_only pools available to the guest */
         Set<String> productsToRemove = new HashSet<String>();
@@ -628,8 +646,8 @@ public class CandlepinPoolManager implements PoolManager {
                     Util.collectionToString(tmpSet));
         }
 
+        List<Pool> providingPools = new LinkedList<Pool>();
         for (Pool pool : allOwnerPools) {
-            boolean providesProduct = false;
             // Would parse the int here, but it can be 'unlimited'
             // and we only need to check that it's non-zero
             if (pool.hasProductAttribute("virt_limit") &&
@@ -640,31 +658,34 @@ public class CandlepinPoolManager implements PoolManager {
                     if (pool.providesDerived(productId)) {
                         log.debug("Found virt_limit pool providing product {}: {}",
                                 productId, pool);
-                        providesProduct = true;
+                        providingPools.add(pool);
                         break;
                     }
                 }
             }
-            if (providesProduct) {
-                ValidationResult result = enforcer.preEntitlement(host,
-                    pool, 1, CallerType.BEST_POOLS);
-
-                if (result.hasErrors() || result.hasWarnings()) {
-                    // Just keep the last one around, if we need it
-                    failedResult = result;
-                    if (log.isDebugEnabled()) {
-                        log.debug("Pool filtered from candidates due to failed rule(s): {}" +
-                                pool);
-                        log.debug("   warnings: " +
-                                Util.collectionToString(result.getWarnings()));
-                        log.debug("   errors: " +
-                                Util.collectionToString(result.getErrors()));
-                    }
-                }
-                else {
-                    filteredPools.add(pool);
+        }
+
+        // Validate all candidates in one rules call:
+        Map<String, ValidationResult> results = enforcer.preEntitlement(host,
+            providingPools, 1, CallerType.BEST_POOLS);
+        for (Pool pool : providingPools) {
+            ValidationResult result = results.get(pool.getId());
+
+            if (result.hasErrors() || result.hasWarnings()) {
+                // Just keep the last one around, if we need it
+                failedResult = result;
+                if (log.isDebugEnabled()) {
+                    log.debug("Pool filtered from candidates due to failed rule(s): {}" +
+                            pool);
+                    log.debug("   warnings: " +
+                            Util.collectionToString(result.getWarnings()));
+                    log.debug("   errors: " +
+                            Util.collectionToString(result.getErrors()));
                 }
             }
+            else {
+                filteredPools.add(pool);
+            }
         }
 
         // Only throw refused exception if we actually hit the rules:
@@ -678,8 +699,12 @@ public class CandlepinPoolManager implements PoolManager {
         List<PoolQuantity> enforced = autobindRules.selectBestPools(host,
             productIds, filteredPools, hostCompliance, serviceLevelOverride,
             poolCurator.retrieveServiceLevelsForOwner(owner, true), true);
+        // Sort the resulting pools to avoid deadlocks
+        if (enforced != null) {
+            Collections.sort(enforced);
+        }
 
-        if (log.isDebugEnabled()) {
+        if (log.isDebugEnabled() && enforced != null) {
             log.debug("Host selectBestPools returned {} pools: ", enforced.size());
             for (PoolQuantity poolQuantity : enforced) {
                 log.debug("   " + poolQuantity.getPool());
@@ -689,6 +714,41 @@ public class CandlepinPoolManager implements PoolManager {
         return enforced;
     }
 
+    /*
+     * Lists the pools available to the consumer out of the given candidates
+     * (narrowed further to fromPools, if any were given).
+     */
+    private List<Pool> listCandidatePools(Consumer consumer, Owner owner,
+        Date activePoolDate, Set<String> candidates, Collection<String> fromPools) {
+        if (fromPools != null && !fromPools.isEmpty()) {
+            candidates.retainAll(fromPools);
+        }
+
+        if (candidates.isEmpty()) {
+            return new LinkedList<Pool>();
+        }
+
+        PoolFilterBuilder poolFilter = new PoolFilterBuilder();
+        if (candidates.size() <= MAX_CANDIDATE_ID_FILTER) {
+            poolFilter.addIdFilters(candidates);
+        }
+        else {
+            poolFilter.addIdFilters(fromPools);
+        }
+
+        List<Pool> pools = this.listAvailableEntitlementPools(
+            consumer, null, owner, (String) null, activePoolDate, true, false,
+            poolFilter, null).getPageData();
+
+        List<Pool> result = new LinkedList<Pool>();
+        for (Pool pool : pools) {
+            if (candidates.contains(pool.getId())) {
+                result.add(pool);
+            }
+        }
+        return result;
+    }
+
     private void logPools(Collection<Pool> pools) {
         if (log.isDebugEnabled()) {
             for (Pool p : pools) {
@@ -711,13 +771,6 @@ public class CandlepinPoolManager implements PoolManager {
             activePoolDate = new Date();
         }
 
-        PoolFilterBuilder poolFilter = new PoolFilterBuilder();
-        poolFilter.addIdFilters(fromPools);
-        List<Pool> allOwnerPools = this.listAvailableEntitlementPools(
-            consumer, null, owner, (String) null, activePoolDate, true, false,
-            poolFilter, null).getPageData();
-        List<Pool> filteredPools = new LinkedList<Pool>();
-
         // We have to check compliance status here so we can replace an empty
         // array of product IDs with the array the consumer actually needs. (i.e. during
         // a healing request)
@@ -738,6 +791,15 @@ public class CandlepinPoolManager implements PoolManager {
             }
         }
 
+        // Only pools providing the products or completing a partial stack
+        // need to be loaded:
+        Set<String> candidates = poolIndex.getPoolsProviding(owner,
+            Arrays.asList(productIds), compliance.getPartialStacks().keySet());
+        List<Pool> allOwnerPools = listCandidatePools(consumer, owner, activePoolDate,
+            candidates, fromPools);
+        List<Pool> filteredPools = new LinkedList<Pool>();
+
+        List<Pool> providingPools = new LinkedList<Pool>();
         for (Pool pool : allOwnerPools) {
             boolean providesProduct = false;
             // If We want to complete partial stacks if possible,
@@ -756,22 +818,28 @@ public class CandlepinPoolManager implements PoolManager {
                 }
             }
             if (providesProduct) {
-                ValidationResult result = enforcer.preEntitlement(consumer,
-                    pool, 1, CallerType.BEST_POOLS);
-
-                if (result.hasErrors() || result.hasWarnings()) {
-                    // Just keep the last one around, if we need it
-                    failedResult = result;
-                    if (log.isDebugEnabled()) {
-                        log.debug("Pool filtered from candidates due to rules " +
-                            "failure: " +
-                            pool.getId());
-                    }
-                }
-                else {
-                    filteredPools.add(pool);
+                providingPools.add(pool);
+            }
+        }
+
+        // Validate all candidates in one rules call:
+        Map<String, ValidationResult> results = enforcer.preEntitlement(consumer,
+            providingPools, 1, CallerType.BEST_POOLS);
+        for (Pool pool : providingPools) {
+            ValidationResult result = results.get(pool.getId());
+
+            if (result.hasErrors() || result.hasWarnings()) {
+                // Just keep the last one around, if we need it
+                failedResult = result;
+                if (log.isDebugEnabled()) {
+                    log.debug("Pool filtered from candidates due to rules " +
+                        "failure: " +
+                        pool.getId());
                 }
             }
+            else {
+                filteredPools.add(pool);
+            }
         }
 
         // Only throw refused exception if we actually hit the rules:
@@ -866,12 +934,12 @@ public class CandlepinPoolManager implements PoolManager {
         log.info("Persisting entitlement.");
         handler.handleEntitlementPersist(entitlement);
 
-        // The quantity is calculated at fetch time. We update it here
-        // To reflect what we just added to the db.
+        // Keep the pool's consumed and exported quantities in step with the
+        // entitlement, in the database and on the locked pool.
+        long exported = consumer.getType().isManifest() ? quantity : 0;
+        poolCurator.adjustConsumed(pool, quantity, exported);
         pool.setConsumed(pool.getConsumed() + quantity);
-        if (consumer.getType().isManifest()) {
-            pool.setExported(pool.getExported() + quantity);
-        }
+        pool.setExported(pool.getExported() + exported);
         PoolHelper poolHelper = new PoolHelper(this, productCache, entitlement);
         handler.handlePostEntitlement(consumer, poolHelper, entitlement);
 
@@ -925,6 +993,25 @@ public class CandlepinPoolManager implements PoolManager {
             log.info("Got subscription");
         }
 
+        Product product = getCertificateProduct(pool, sub, e);
+
+        try {
+            return generateUeberCert ?
+                entCertAdapter.generateUeberCert(e, sub, product) :
+                entCertAdapter.generateEntitlementCert(e, sub, product);
+        }
+        catch (CertVersionConflictException cvce) {
+            throw cvce;
+        }
+        catch (CertificateSizeException cse) {
+            throw cse;
+        }
+        catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private Product getCertificateProduct(Pool pool, Subscription sub, Entitlement e) {
         Product product = null;
         /*
          * If we have a subscription for this pool, the products we need are already
@@ -943,21 +1030,7 @@ public class CandlepinPoolManager implements PoolManager {
             // Some pools may not have a subscription, i.e. derived from stack pools.
             product = productCache.getProductById(e.getProductId());
         }
-
-        try {
-            return generateUeberCert ?
-                entCertAdapter.generateUeberCert(e, sub, product) :
-                entCertAdapter.generateEntitlementCert(e, sub, product);
-        }
-        catch (CertVersionConflictException cvce) {
-            throw cvce;
-        }
-        catch (CertificateSizeException cse) {
-            throw cse;
-        }
-        catch (Exception ex) {
-            throw new RuntimeException(ex);
-        }
+        return product;
     }
 
     @Override
@@ -970,23 +1043,104 @@ public class CandlepinPoolManager implements PoolManager {
 
     @Transactional
     void regenerateCertificatesOf(Iterable<Entitlement> iterable, boolean lazy) {
+        if (lazy) {
+            for (Entitlement e : iterable) {
+                regenerateCertificatesOf(e, false, lazy);
+            }
+            return;
+        }
+
+        List<Entitlement> batch = new ArrayList<Entitlement>(CERT_BATCH_SIZE);
         for (Entitlement e : iterable) {
-            regenerateCertificatesOf(e, false, lazy);
+            batch.add(e);
+            if (batch.size() == CERT_BATCH_SIZE) {
+                regenerateCertificates(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            regenerateCertificates(batch);
+        }
+    }
+
+    /*
+     * Regenerates the certificates of a batch of entitlements with a single
+     * call to the cert adapter, which can sign them in parallel. Entitlements
+     * whose certificate cannot be generated keep their old one.
+     */
+    private void regenerateCertificates(List<Entitlement> entitlements) {
+        Map<String, Subscription> subsById = new HashMap<String, Subscription>();
+        Map<String, Subscription> subs = new HashMap<String, Subscription>();
+        Map<String, Product> products = new HashMap<String, Product>();
+        Map<String, List<EntitlementCertificate>> oldCerts =
+            new HashMap<String, List<EntitlementCertificate>>();
+
+        for (Entitlement e : entitlements) {
+            Pool pool = e.getPool();
+            Subscription sub = null;
+            // Entitlements of the same pool share one subscription lookup
+            if (pool.getSubscriptionId() != null) {
+                if (!subsById.containsKey(pool.getSubscriptionId())) {
+                    subsById.put(pool.getSubscriptionId(),
+                        subAdapter.getSubscription(pool.getSubscriptionId()));
+                }
+                sub = subsById.get(pool.getSubscriptionId());
+            }
+            subs.put(e.getId(), sub);
+            products.put(e.getId(), getCertificateProduct(pool, sub, e));
+
+            oldCerts.put(e.getId(), new ArrayList<EntitlementCertificate>(
+                e.getCertificates()));
+            e.getCertificates().clear();
+        }
+
+        Map<String, EntitlementCertificate> generated;
+        try {
+            generated = entCertAdapter.generateEntitlementCerts(entitlements, subs,
+                products);
+        }
+        catch (GeneralSecurityException gse) {
+            throw new RuntimeException(gse);
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+        }
+
+        for (Entitlement e : entitlements) {
+            List<EntitlementCertificate> old = oldCerts.get(e.getId());
+            if (!generated.containsKey(e.getId())) {
+                e.getCertificates().addAll(old);
+                continue;
+            }
+
+            e.setDirty(false);
+            entitlementCurator.merge(e);
+            for (EntitlementCertificate ec : old) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Deleting entitlementCertificate: #" + ec.getId());
+                }
+                this.entitlementCertificateCurator.delete(ec);
+            }
+
+            // send entitlement changed event.
+            this.sink.queueEvent(this.eventFactory.entitlementChanged(e));
         }
     }
 
     @Transactional
     void regenerateCertificatesByEntIds(Iterable<String> iterable, boolean lazy) {
+        List<Entitlement> entitlements = new ArrayList<Entitlement>();
         for (String entId : iterable) {
             Entitlement e = entitlementCurator.find(entId);
             if (e != null) {
-                regenerateCertificatesOf(e, false, lazy);
+                entitlements.add(e);
             }
             else {
                 // If it has been deleted, that's fine, one less to regenerate
                 log.info("Couldn't load Entitlement '" + entId + "' to regenerate, assuming deleted");
             }
         }
+        regenerateCertificatesOf(entitlements, lazy);
     }
 
     /**
@@ -1083,9 +1237,11 @@ public class CandlepinPoolManager implements PoolManager {
         List<Pool> poolsForProduct = this.listAvailableEntitlementPools(null, null, null,
             productId, new Date(), false, false, new PoolFilterBuilder(), null)
             .getPageData();
+        List<Entitlement> entitlements = new ArrayList<Entitlement>();
         for (Pool pool : poolsForProduct) {
-            regenerateCertificatesOf(pool.getEntitlements(), lazy);
+            entitlements.addAll(pool.getEntitlements());
         }
+        regenerateCertificatesOf(entitlements, lazy);
     }
 
     /**
@@ -1133,12 +1289,13 @@ public class CandlepinPoolManager implements PoolManager {
         entitlementCurator.delete(entitlement);
         Event event = eventFactory.entitlementDeleted(entitlement);
 
-        // The quantity is calculated at fetch time. We update it here
-        // To reflect what we just removed from the db.
-        pool.setConsumed(pool.getConsumed() - entitlement.getQuantity());
-        if (consumer.getType().isManifest()) {
-            pool.setExported(pool.getExported() - entitlement.getQuantity());
-        }
+        // Take the removed entitlement off the pool's consumed and exported
+        // quantities, in the database and on the locked pool.
+        long quantity = entitlement.getQuantity();
+        long exported = consumer.getType().isManifest() ? quantity : 0;
+        poolCurator.adjustConsumed(pool, -quantity, -exported);
+        pool.setConsumed(pool.getConsumed() - quantity);
+        pool.setExported(pool.getExported() - exported);
 
         // Check for a single stacked sub pool as well. We'll need to either
         // update or delete the sub pool now that all other pools have been deleted.
@@ -1233,6 +1390,7 @@ public class CandlepinPoolManager implements PoolManager {
         }
 
         poolCurator.delete(pool);
+        poolIndex.poolDeleted(pool);
         sink.queueEvent(event);
     }
 
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * CheckInRecorder
+ *
+ * Collects consumer check ins and writes them to the database in batches. Only
+ * the latest check in of each consumer is kept until the next write, so a
+ * consumer checking in many times between writes costs a single row update,
+ * and writing a batch is one JDBC batch no matter how many requests came in.
+ *
+ * Check ins are written every CHECKIN_FLUSH_INTERVAL seconds, or sooner once
+ * CHECKIN_MAX_PENDING consumers are waiting, and once more on shutdown. Until
+ * then the database can be up to one interval behind. Before start() is called,
+ * after shutdown(), or with an interval of 0, check ins are written right away.
+ */
+@Singleton
+public class CheckInRecorder {
+    private static Logger log = LoggerFactory.getLogger(CheckInRecorder.class);
+
+    private static final long SHUTDOWN_WAIT_SECONDS = 30;
+
+    private final ConcurrentMap<String, Date> pending = new ConcurrentHashMap<String, Date>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Provider<ConsumerCurator> consumerCuratorProvider;
+    private final UnitOfWork unitOfWork;
+    private final long interval;
+    private final int maxPending;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private volatile ScheduledExecutorService executor;
+
+    @Inject
+    public CheckInRecorder(Configuration config, Provider<ConsumerCurator> consumerCuratorProvider,
+        UnitOfWork unitOfWork) {
+        this.consumerCuratorProvider = consumerCuratorProvider;
+        this.unitOfWork = unitOfWork;
+        this.interval = config.getLong(ConfigProperties.CHECKIN_FLUSH_INTERVAL);
+        this.maxPending = config.getInt(ConfigProperties.CHECKIN_MAX_PENDING);
+    }
+
+    /**
+     * Starts writing check ins in the background, if a flush interval is set.
+     */
+    public synchronized void start() {
+        if (interval <= 0 || executor != null) {
+            return;
+        }
+
+        log.info("Writing consumer check ins every {} seconds.", interval);
+        executor = Executors.newSingleThreadScheduledExecutor(new FlushThreadFactory());
+        executor.scheduleWithFixedDelay(flushTask, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the background writes and writes whatever check ins are left.
+     */
+    public synchronized void shutdown() {
+        ScheduledExecutorService stopping = executor;
+        executor = null;
+
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                if (!stopping.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("Timed out waiting for the check in writer to finish.");
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flush();
+    }
+
+    /**
+     * Records a check in of the consumer. The consumer object itself is updated
+     * right away, the database once the check in is written.
+     *
+     * @param consumer consumer checking in
+     * @param checkinDate date of the check in
+     */
+    public void record(Consumer consumer, Date checkinDate) {
+        ScheduledExecutorService current = executor;
+        if (current == null) {
+            consumerCuratorProvider.get().updateLastCheckin(consumer, checkinDate);
+            return;
+        }
+
+        consumer.addCheckIn(checkinDate);
+
+        String id = consumer.getId();
+        while (true) {
+            Date recorded = pending.get(id);
+            if (recorded == null) {
+                if (pending.putIfAbsent(id, checkinDate) == null) {
+                    break;
+                }
+            }
+            else if (!recorded.before(checkinDate) || pending.replace(id, recorded, checkinDate)) {
+                break;
+            }
+        }
+
+        if (pending.size() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            log.debug("{} check ins pending, writing them early.", pending.size());
+            try {
+                current.execute(flushTask);
+            }
+            catch (RejectedExecutionException e) {
+                // Shutting down, the final flush will pick these up.
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending check ins in one batch. Check ins which fail to be
+     * written are kept and retried with the next batch.
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<String, Date> batch = new HashMap<String, Date>(pending);
+        boolean startedUow = startUnitOfWork();
+        try {
+            consumerCuratorProvider.get().updateLastCheckins(batch);
+
+            // Only drop what was written, a newer check in may have come in since.
+            for (Entry<String, Date> entry : batch.entrySet()) {
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+            log.debug("Wrote {} consumer check ins.", batch.size());
+        }
+        catch (RuntimeException e) {
+            log.error("Unable to write {} consumer check ins, will retry.", batch.size(), e);
+        }
+        finally {
+            if (startedUow) {
+                endUnitOfWork();
+            }
+        }
+    }
+
+    /**
+     * @return number of consumers with check ins waiting to be written
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private boolean startUnitOfWork() {
+        try {
+            unitOfWork.begin();
+            return true;
+        }
+        catch (IllegalStateException e) {
+            log.debug("Already have an open unit of work");
+            return false;
+        }
+    }
+
+    private void endUnitOfWork() {
+        try {
+            unitOfWork.end();
+        }
+        catch (IllegalStateException e) {
+            log.debug("Unit of work is already closed, doing nothing");
+        }
+    }
+
+    /**
+     * A single daemon thread, so the writer never holds up shutdown.
+     */
+    private static class FlushThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "candlepin-checkin-flush");
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
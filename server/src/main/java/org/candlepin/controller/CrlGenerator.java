@@ -21,6 +21,7 @@ import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.X509CRLEntryWrapper;
 import org.candlepin.util.OIDUtil;
+import org.candlepin.util.RevocationIndex;
 import org.candlepin.util.Util;
 
 import com.google.inject.Inject;
@@ -29,9 +30,11 @@ import com.google.inject.persist.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -105,6 +108,72 @@ public class CrlGenerator {
             .add(BigInteger.ONE));
     }
 
+    /**
+     * Applies the serials revoked and expired since the last run to the
+     * revocation index of a CRL. Unlike {@link #syncCRLWithDB(X509CRL)} only the
+     * changes are loaded, the existing entries are merged through from the index
+     * file in a single pass.
+     *
+     * @param index the current revocation index
+     * @return the updated index, with the next CRL number
+     * @throws IOException if the index cannot be written
+     */
+    @Transactional
+    public RevocationIndex syncCRLWithDB(RevocationIndex index) throws IOException {
+        log.debug("Old CRLNumber is : {}", index.getCrlNumber());
+
+        List<X509CRLEntryWrapper> added = getNewSerialsToAppendAndSetThemConsumed();
+        List<Long> expired = certificateSerialCurator.listExpiredSerialIds();
+        RevocationIndex updated = index.update(index.getCrlNumber().add(BigInteger.ONE),
+            added, expired);
+        log.debug("Added {} and expired {} serials, CRL now has {} entries",
+            added.size(), expired.size(), updated.size());
+
+        // See syncCRLWithDB(X509CRL) for why a failure here is tolerated
+        try {
+            certificateSerialCurator.deleteExpiredSerials();
+        }
+        catch (RuntimeException e) {
+            log.error("Error deleting expired serials.", e);
+        }
+
+        return updated;
+    }
+
+    /**
+     * Remove serials inadvertently added to the CRL.
+     * @param index revocation index of the CRL to be repaired.
+     * @param serials certificate serials to be removed.
+     * @return the updated index, with the next CRL number
+     * @throws IOException if the index cannot be read or written
+     */
+    @Transactional
+    public RevocationIndex removeEntries(RevocationIndex index,
+        List<CertificateSerial> serials) throws IOException {
+        if (serials == null) {
+            return index;
+        }
+
+        List<Long> removed = newList();
+        List<CertificateSerial> found = newList();
+        for (CertificateSerial cs : serials) {
+            if (index.contains(cs.getId())) {
+                removed.add(cs.getId());
+                // put them back in circulation
+                cs.setCollected(false);
+                found.add(cs);
+            }
+        }
+
+        if (removed.isEmpty()) {
+            return index;
+        }
+
+        certificateSerialCurator.saveOrUpdateAll(found);
+        return index.update(index.getCrlNumber().add(BigInteger.ONE),
+            Collections.<X509CRLEntryWrapper>emptyList(), removed);
+    }
+
     /**
      * Gets the new serials to append and set them consumed.
      *
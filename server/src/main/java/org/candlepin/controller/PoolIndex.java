@@ -0,0 +1,474 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.DerivedProvidedProduct;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.model.ProductPoolAttribute;
+import org.candlepin.model.ProvidedProduct;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * PoolIndex
+ *
+ * Maps product IDs and stacking IDs to the IDs of the pools in each owner
+ * which provide them, so autobind can narrow an owner's pools down to the few
+ * candidates for a request before loading any of them.
+ *
+ * The index for an owner is built with a handful of projection queries the
+ * first time it is needed. Pools created, changed or deleted through this node
+ * are applied to it in place. Pools can also change on other nodes, or through
+ * paths that never tell the index, so every lookup first compares the owner's
+ * pool count and last updated date with the database. Local changes are only
+ * remembered as unconfirmed until a lookup finds exactly those pools, with
+ * exactly those updated dates, among the ones updated since the index was last
+ * checked; anything else, including a local write which was rolled back,
+ * rebuilds the index from the database.
+ *
+ * Lookups therefore cost one aggregate query over the owner's pools, plus one
+ * query for the recently updated pools whenever the owner's pools changed since
+ * the last lookup. The full rebuild, four projection queries over all of the
+ * owner's pools, is only needed when a change can not be accounted for. Any
+ * change which can affect the index has to bump {@link Pool#getUpdated()},
+ * including changes to a pool's collections only, see
+ * {@link CandlepinPoolManager}.
+ *
+ * The index only ever narrows down which pools are loaded, callers still check
+ * the pools they get back.
+ */
+@Singleton
+public class PoolIndex {
+    private static Logger log = LoggerFactory.getLogger(PoolIndex.class);
+
+    private static final String STACKING_ID = "stacking_id";
+
+    private final Provider<PoolCurator> poolCuratorProvider;
+    private final OwnerMapping owners;
+
+    @Inject
+    public PoolIndex(Configuration config, Provider<PoolCurator> poolCuratorProvider) {
+        this.poolCuratorProvider = poolCuratorProvider;
+        this.owners = new OwnerMapping(config.getInt(ConfigProperties.POOL_INDEX_MAX_OWNERS));
+    }
+
+    /**
+     * Finds the owner's pools which provide any of the given products, or which
+     * belong to any of the given stacks.
+     *
+     * @param owner owner of the pools
+     * @param productIds products to look for
+     * @param stackIds stacking IDs to look for
+     * @return IDs of the matching pools
+     */
+    public Set<String> getPoolsProviding(Owner owner, Collection<String> productIds,
+        Collection<String> stackIds) {
+        OwnerPools pools = getOwnerPools(owner);
+        synchronized (pools) {
+            Set<String> result = pools.lookup(pools.byProduct, productIds);
+            result.addAll(pools.lookup(pools.byStack, stackIds));
+            return result;
+        }
+    }
+
+    /**
+     * Finds the owner's pools which provide any of the given products to the
+     * guests of a host, see {@link Pool#providesDerived(String)}.
+     *
+     * @param owner owner of the pools
+     * @param productIds guest products to look for
+     * @return IDs of the matching pools
+     */
+    public Set<String> getPoolsProvidingDerived(Owner owner, Collection<String> productIds) {
+        OwnerPools pools = getOwnerPools(owner);
+        synchronized (pools) {
+            return pools.lookup(pools.byDerivedProduct, productIds);
+        }
+    }
+
+    /**
+     * Updates the index of the pool's owner in place after a pool was created
+     * or changed. Call it once the change is flushed, so the pool's updated
+     * date matches the database.
+     *
+     * @param pool the pool
+     */
+    public void poolChanged(Pool pool) {
+        OwnerPools pools = getIndexed(pool.getOwner());
+        if (pools == null) {
+            return;
+        }
+
+        synchronized (pools) {
+            if (pool.getId() == null || pool.getUpdated() == null) {
+                pools.invalidate();
+            }
+            else {
+                pools.apply(IndexedPool.fromPool(pool), pool.getUpdated());
+            }
+        }
+    }
+
+    /**
+     * Updates the index of the pool's owner in place after a pool was deleted.
+     *
+     * @param pool the pool
+     */
+    public void poolDeleted(Pool pool) {
+        OwnerPools pools = getIndexed(pool.getOwner());
+        if (pools == null) {
+            return;
+        }
+
+        synchronized (pools) {
+            if (pool.getId() == null || !pools.delete(pool.getId())) {
+                pools.invalidate();
+            }
+        }
+    }
+
+    private OwnerPools getIndexed(Owner owner) {
+        if (owner == null || owner.getId() == null) {
+            return null;
+        }
+        synchronized (owners) {
+            return owners.get(owner.getId());
+        }
+    }
+
+    /*
+     * Returns the index for the owner, (re)building it if it is missing or no
+     * longer matches the database.
+     */
+    private OwnerPools getOwnerPools(Owner owner) {
+        OwnerPools pools;
+        synchronized (owners) {
+            pools = owners.get(owner.getId());
+            if (pools == null) {
+                pools = new OwnerPools();
+                owners.put(owner.getId(), pools);
+            }
+        }
+
+        PoolCurator poolCurator = poolCuratorProvider.get();
+        Object[] stamp = poolCurator.getPoolsStamp(owner);
+        long count = stamp[0] == null ? 0 : ((Number) stamp[0]).longValue();
+        Date updated = (Date) stamp[1];
+
+        synchronized (pools) {
+            if (!pools.isCurrent(poolCurator, owner, count, updated)) {
+                log.debug("Rebuilding pool index for owner: {}", owner.getKey());
+                pools.rebuild(poolCurator, owner);
+                pools.count = count;
+                pools.updated = updated;
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * The product and stacking IDs of a single pool.
+     */
+    private static class IndexedPool {
+        private final String id;
+        private final Set<String> products = new HashSet<String>();
+        private final Set<String> derivedProducts = new HashSet<String>();
+        private String stackId;
+
+        public IndexedPool(String id) {
+            this.id = id;
+        }
+
+        public static IndexedPool fromPool(Pool pool) {
+            IndexedPool indexed = new IndexedPool(pool.getId());
+            indexed.products.add(pool.getProductId());
+            if (pool.getProvidedProducts() != null) {
+                for (ProvidedProduct provided : pool.getProvidedProducts()) {
+                    indexed.products.add(provided.getProductId());
+                }
+            }
+
+            // Derived provided products only count with a derived product
+            if (pool.getDerivedProductId() != null) {
+                indexed.derivedProducts.add(pool.getDerivedProductId());
+                if (pool.getDerivedProvidedProducts() != null) {
+                    for (DerivedProvidedProduct provided : pool.getDerivedProvidedProducts()) {
+                        indexed.derivedProducts.add(provided.getProductId());
+                    }
+                }
+            }
+
+            ProductPoolAttribute stack = pool.getProductAttribute(STACKING_ID);
+            if (stack != null) {
+                indexed.stackId = stack.getValue();
+            }
+            return indexed;
+        }
+
+        /*
+         * Without a derived product a pool provides its regular products to
+         * guests, same as Pool.providesDerived.
+         */
+        public Set<String> getGuestProducts() {
+            return derivedProducts.isEmpty() ? products : derivedProducts;
+        }
+    }
+
+    /**
+     * The index of a single owner, along with the pool count and last updated
+     * date it was last checked against, and the local changes not yet seen in
+     * the database.
+     */
+    private static class OwnerPools {
+        private final Map<String, Set<String>> byProduct = new HashMap<String, Set<String>>();
+        private final Map<String, Set<String>> byDerivedProduct =
+            new HashMap<String, Set<String>>();
+        private final Map<String, Set<String>> byStack = new HashMap<String, Set<String>>();
+        private final Map<String, IndexedPool> pools = new HashMap<String, IndexedPool>();
+        // Pool ID to the updated date of a local change, in seconds
+        private final Map<String, Long> unconfirmed = new HashMap<String, Long>();
+        private long count = -1;
+        private Date updated;
+
+        public boolean isCurrent(PoolCurator poolCurator, Owner owner, long dbCount,
+            Date dbUpdated) {
+            if (count < 0 || count != dbCount) {
+                return false;
+            }
+            if (unconfirmed.isEmpty() && sameTime(updated, dbUpdated)) {
+                return true;
+            }
+            if (updated == null || dbUpdated == null) {
+                return false;
+            }
+
+            // Everything updated since the last check has to be a local change,
+            // and every local change has to be there.
+            Set<String> seen = new HashSet<String>();
+            Date latest = null;
+            for (Object[] row : poolCurator.listPoolsUpdatedSince(owner, updated)) {
+                String id = (String) row[0];
+                Date rowUpdated = (Date) row[1];
+                Long expected = unconfirmed.get(id);
+                if (expected == null || expected != seconds(rowUpdated)) {
+                    return false;
+                }
+                seen.add(id);
+                if (latest == null || rowUpdated.after(latest)) {
+                    latest = rowUpdated;
+                }
+            }
+            if (!seen.equals(unconfirmed.keySet()) || !sameTime(latest, dbUpdated)) {
+                return false;
+            }
+
+            unconfirmed.clear();
+            updated = dbUpdated;
+            return true;
+        }
+
+        public void apply(IndexedPool pool, Date poolUpdated) {
+            if (count < 0) {
+                return;
+            }
+            if (!remove(pool.id)) {
+                count++;
+            }
+            add(pool);
+            unconfirmed.put(pool.id, seconds(poolUpdated));
+        }
+
+        public boolean delete(String poolId) {
+            if (count < 0) {
+                return true;
+            }
+            if (!remove(poolId)) {
+                return false;
+            }
+            count--;
+            unconfirmed.remove(poolId);
+            return true;
+        }
+
+        public void invalidate() {
+            count = -1;
+        }
+
+        public void add(IndexedPool pool) {
+            pools.put(pool.id, pool);
+            put(byProduct, pool.products, pool.id);
+            put(byDerivedProduct, pool.getGuestProducts(), pool.id);
+            if (pool.stackId != null) {
+                put(byStack, Collections.singleton(pool.stackId), pool.id);
+            }
+        }
+
+        private boolean remove(String poolId) {
+            IndexedPool pool = pools.remove(poolId);
+            if (pool == null) {
+                return false;
+            }
+            drop(byProduct, pool.products, poolId);
+            drop(byDerivedProduct, pool.getGuestProducts(), poolId);
+            if (pool.stackId != null) {
+                drop(byStack, Collections.singleton(pool.stackId), poolId);
+            }
+            return true;
+        }
+
+        public Set<String> lookup(Map<String, Set<String>> index, Collection<String> keys) {
+            Set<String> result = new HashSet<String>();
+            if (keys == null) {
+                return result;
+            }
+            for (String key : keys) {
+                Set<String> ids = index.get(key);
+                if (ids != null) {
+                    result.addAll(ids);
+                }
+            }
+            return result;
+        }
+
+        public void rebuild(PoolCurator poolCurator, Owner owner) {
+            byProduct.clear();
+            byDerivedProduct.clear();
+            byStack.clear();
+            pools.clear();
+            unconfirmed.clear();
+
+            Map<String, IndexedPool> building = new LinkedHashMap<String, IndexedPool>();
+            for (Object[] row : poolCurator.listPoolProductIds(owner)) {
+                IndexedPool pool = new IndexedPool((String) row[0]);
+                pool.products.add((String) row[1]);
+                if (row[2] != null) {
+                    pool.derivedProducts.add((String) row[2]);
+                }
+                building.put(pool.id, pool);
+            }
+
+            for (Object[] row : poolCurator.listProvidedProductIds(owner, false)) {
+                IndexedPool pool = building.get(row[0]);
+                if (pool != null) {
+                    pool.products.add((String) row[1]);
+                }
+            }
+
+            for (Object[] row : poolCurator.listProvidedProductIds(owner, true)) {
+                IndexedPool pool = building.get(row[0]);
+                // Derived provided products only count with a derived product
+                if (pool != null && !pool.derivedProducts.isEmpty()) {
+                    pool.derivedProducts.add((String) row[1]);
+                }
+            }
+
+            for (Object[] row : poolCurator.listProductAttributeValues(owner, STACKING_ID)) {
+                IndexedPool pool = building.get(row[0]);
+                if (pool != null) {
+                    pool.stackId = (String) row[1];
+                }
+            }
+
+            for (IndexedPool pool : building.values()) {
+                add(pool);
+            }
+        }
+
+        private static void put(Map<String, Set<String>> index, Collection<String> keys,
+            String poolId) {
+            for (String key : keys) {
+                Set<String> ids = index.get(key);
+                if (ids == null) {
+                    ids = new HashSet<String>();
+                    index.put(key, ids);
+                }
+                ids.add(poolId);
+            }
+        }
+
+        private static void drop(Map<String, Set<String>> index, Collection<String> keys,
+            String poolId) {
+            for (String key : keys) {
+                Set<String> ids = index.get(key);
+                if (ids != null) {
+                    ids.remove(poolId);
+                    if (ids.isEmpty()) {
+                        index.remove(key);
+                    }
+                }
+            }
+        }
+
+        /*
+         * Compare times, java.sql.Timestamp and Date are never equal().
+         */
+        private static boolean sameTime(Date a, Date b) {
+            if (a == null || b == null) {
+                return a == b;
+            }
+            return a.getTime() == b.getTime();
+        }
+
+        /*
+         * Local updated dates are compared in seconds, some databases drop the
+         * milliseconds.
+         */
+        private static long seconds(Date date) {
+            return date.getTime() / 1000;
+        }
+    }
+
+    /**
+     * OwnerMapping
+     *
+     * An access ordered <code>LinkedHashMap</code> which drops the least recently
+     * used owner once the configured maximum is reached.
+     */
+    private static class OwnerMapping extends LinkedHashMap<String, OwnerPools> {
+
+        private static final long serialVersionUID = 1L;
+        private int max;
+
+        public OwnerMapping(int max) {
+            super(16, 0.75f, true);
+            this.max = max;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Entry<String, OwnerPools> eldest) {
+            return super.size() > max;
+        }
+
+    }
+}
@@ -24,6 +24,7 @@ import org.candlepin.common.config.EncryptedConfiguration;
 import org.candlepin.common.config.MapConfiguration;
 import org.candlepin.common.logging.LoggingConfigurator;
 import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.CheckInRecorder;
 import org.candlepin.logging.LoggerContextListener;
 import org.candlepin.pinsetter.core.PinsetterContextListener;
 import org.candlepin.util.Util;
@@ -69,6 +70,7 @@ public class CandlepinContextListener extends CandlepinGuiceResteasyBootstrap {
 
     private HornetqContextListener hornetqListener;
     private PinsetterContextListener pinsetterListener;
+    private CheckInRecorder checkInRecorder;
     private LoggerContextListener loggerListener;
 
     private Injector injector;
@@ -119,12 +121,16 @@ public class CandlepinContextListener extends CandlepinGuiceResteasyBootstrap {
         hornetqListener.contextInitialized(injector);
         pinsetterListener = injector.getInstance(PinsetterContextListener.class);
         pinsetterListener.contextInitialized();
+        checkInRecorder = injector.getInstance(CheckInRecorder.class);
+        checkInRecorder.start();
 
         log.info("Candlepin context initialized.");
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent event) {
+        // Write out the pending check ins while the database is still around
+        checkInRecorder.shutdown();
         super.contextDestroyed(event);
         hornetqListener.contextDestroyed();
         pinsetterListener.contextDestroyed();
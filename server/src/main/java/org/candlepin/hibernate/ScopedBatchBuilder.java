@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.hibernate;
+
+import org.hibernate.engine.jdbc.batch.internal.BatchBuilderImpl;
+import org.hibernate.engine.jdbc.batch.spi.Batch;
+import org.hibernate.engine.jdbc.batch.spi.BatchBuilder;
+import org.hibernate.engine.jdbc.batch.spi.BatchKey;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+
+/**
+ * ScopedBatchBuilder
+ *
+ * Only groups statements into JDBC batches of hibernate.jdbc.batch_size while
+ * the current thread is inside a batching scope, everything else runs one
+ * statement at a time exactly as it does without a batch size. Hibernate 4.2
+ * only has a batch size for the whole session factory, this keeps batching to
+ * the few bulk writes which ask for it, such as storing the subscriptions of a
+ * manifest import.
+ *
+ * Scopes nest, and have to be closed on the thread which opened them:
+ *
+ * <pre>
+ *     ScopedBatchBuilder.begin();
+ *     try {
+ *         ...
+ *     }
+ *     finally {
+ *         ScopedBatchBuilder.end();
+ *     }
+ * </pre>
+ *
+ * The session has to be flushed before the scope ends, or the pending
+ * statements run unbatched.
+ */
+public class ScopedBatchBuilder extends BatchBuilderImpl {
+
+    private static final ThreadLocal<Integer> DEPTH = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
+
+    private final BatchBuilder unbatched = new BatchBuilderImpl(1);
+
+    public static void begin() {
+        DEPTH.set(DEPTH.get() + 1);
+    }
+
+    public static void end() {
+        int depth = DEPTH.get() - 1;
+        if (depth <= 0) {
+            DEPTH.remove();
+        }
+        else {
+            DEPTH.set(depth);
+        }
+    }
+
+    public static boolean isBatching() {
+        return DEPTH.get() > 0;
+    }
+
+    @Override
+    public Batch buildBatch(BatchKey key, JdbcCoordinator jdbcCoordinator) {
+        if (isBatching()) {
+            return super.buildBatch(key, jdbcCoordinator);
+        }
+        return unbatched.buildBatch(key, jdbcCoordinator);
+    }
+}
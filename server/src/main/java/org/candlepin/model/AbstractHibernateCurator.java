@@ -16,6 +16,7 @@ package org.candlepin.model;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.permissions.Permission;
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.ConcurrentModificationException;
 import org.candlepin.guice.PrincipalProvider;
 import org.candlepin.common.paging.Page;
@@ -113,6 +114,35 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return entity;
     }
 
+    /**
+     * Creates the entities, flushing once per batch rather than after each one,
+     * so the inserts can be sent to the database as JDBC batches when called
+     * inside a {@link org.candlepin.hibernate.ScopedBatchBuilder} scope. Unlike
+     * {@link #create(Persisted)} this does not go through any subclass
+     * specific create logic.
+     *
+     * @param entities to be created.
+     */
+    @Transactional
+    public void createAll(Collection<E> entities) {
+        persistAll(entities);
+    }
+
+    /*
+     * Persists any kind of entity a batch at a time, for subclasses which
+     * create the entities their cascades would reach first.
+     */
+    protected void persistAll(Collection<?> entities) {
+        int count = 0;
+        for (Object entity : entities) {
+            getEntityManager().persist(entity);
+            if (++count % batchSize == 0) {
+                flush();
+            }
+        }
+        flush();
+    }
+
     /**
      * @return all entities for a particular type.
      */
@@ -154,6 +184,10 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     @SuppressWarnings("unchecked")
     @Transactional
     public Page<List<E>> listAll(PageRequest pageRequest) {
+        if (pageRequest != null && pageRequest.isCursorPaging()) {
+            return loadCursorPage(createSecureCriteria(), pageRequest);
+        }
+
         Page<List<E>> page = new Page<List<E>>();
 
         if (pageRequest != null) {
@@ -183,13 +217,76 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return c.list();
     }
 
-    private Order createPagingOrder(PageRequest p) {
-        String sortBy = (p.getSortBy() == null) ?
+    /**
+     * Loads the page following the cursor by seeking past the cursor's row in
+     * (sort field, id) order, so the database never has to skip over earlier
+     * pages, and only counts the results when asked to. One extra row is fetched
+     * to find out whether there is a next page.
+     *
+     * Rows with a null sort field never compare past a cursor, so cursor paging
+     * should only sort by fields which are always set.
+     */
+    @SuppressWarnings("unchecked")
+    private Page<List<E>> loadCursorPage(Criteria c, PageRequest pageRequest) {
+        Page<List<E>> page = new Page<List<E>>();
+        page.setPageRequest(pageRequest);
+
+        if (pageRequest.isCount()) {
+            page.setMaxRecords(findRowCountKeepingProjection(c));
+        }
+
+        String sortBy = getPagingSortField(pageRequest);
+        boolean ascending = getPagingOrder(pageRequest) == PageRequest.Order.ASCENDING;
+        if (!pageRequest.getCursor().isEmpty()) {
+            Object value = lookupCursorValue(pageRequest.getCursor(), sortBy);
+            String id = pageRequest.getCursor();
+            c.add(Restrictions.or(
+                ascending ? Restrictions.gt(sortBy, value) : Restrictions.lt(sortBy, value),
+                Restrictions.and(Restrictions.eq(sortBy, value),
+                    ascending ? Restrictions.gt("id", id) : Restrictions.lt("id", id))));
+        }
+
+        c.addOrder(createPagingOrder(pageRequest));
+        c.addOrder(ascending ? Order.asc("id") : Order.desc("id"));
+        c.setMaxResults(pageRequest.getPerPage() + 1);
+
+        List<E> pageData = c.list();
+        if (pageData.size() > pageRequest.getPerPage()) {
+            pageData = new ArrayList<E>(pageData.subList(0, pageRequest.getPerPage()));
+            page.setNextCursor(String.valueOf(pageData.get(pageData.size() - 1).getId()));
+        }
+        page.setPageData(pageData);
+        return page;
+    }
+
+    private Object lookupCursorValue(String cursor, String sortBy) {
+        Object[] row = (Object[]) createSecureCriteria()
+            .add(Restrictions.eq("id", cursor))
+            .setProjection(Projections.projectionList()
+                .add(Projections.id())
+                .add(Projections.property(sortBy)))
+            .uniqueResult();
+
+        if (row == null || row[1] == null) {
+            throw new BadRequestException(i18n.tr(
+                "''{0}'' is not a valid cursor for this request", cursor));
+        }
+        return row[1];
+    }
+
+    private String getPagingSortField(PageRequest p) {
+        return (p.getSortBy() == null) ?
             AbstractHibernateObject.DEFAULT_SORT_FIELD : p.getSortBy();
-        PageRequest.Order order = (p.getOrder() == null) ?
-            PageRequest.DEFAULT_ORDER : p.getOrder();
+    }
+
+    private PageRequest.Order getPagingOrder(PageRequest p) {
+        return (p.getOrder() == null) ? PageRequest.DEFAULT_ORDER : p.getOrder();
+    }
 
-        switch (order) {
+    private Order createPagingOrder(PageRequest p) {
+        String sortBy = getPagingSortField(p);
+
+        switch (getPagingOrder(p)) {
             case ASCENDING:
                 return Order.asc(sortBy);
             //DESCENDING
@@ -203,6 +300,25 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return ((Long) c.uniqueResult()).intValue();
     }
 
+    /*
+     * Counts the rows matching a criteria which is then going to be listed.
+     * see https://forum.hibernate.org/viewtopic.php?t=974802
+     */
+    private Integer findRowCountKeepingProjection(Criteria c) {
+        // Save original Projection and ResultTransformer
+        CriteriaImpl cImpl = (CriteriaImpl) c;
+        Projection origProjection = cImpl.getProjection();
+        ResultTransformer origRt = cImpl.getResultTransformer();
+
+        // Get total number of records by setting a rowCount projection
+        Integer count = findRowCount(c);
+
+        // Restore original Projection and ResultTransformer
+        c.setProjection(origProjection);
+        c.setResultTransformer(origRt);
+        return count;
+    }
+
     @SuppressWarnings("unchecked")
     @Transactional
     public List<E> listByCriteria(Criteria query) {
@@ -289,23 +405,14 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     @Transactional
     public Page<List<E>> listByCriteria(Criteria c,
         PageRequest pageRequest) {
+        if (pageRequest != null && pageRequest.isCursorPaging()) {
+            return loadCursorPage(c, pageRequest);
+        }
+
         Page<List<E>> page = new Page<List<E>>();
 
         if (pageRequest != null) {
-            // see https://forum.hibernate.org/viewtopic.php?t=974802
-
-            // Save original Projection and ResultTransformer
-            CriteriaImpl cImpl = (CriteriaImpl) c;
-            Projection origProjection = cImpl.getProjection();
-            ResultTransformer origRt = cImpl.getResultTransformer();
-
-            // Get total number of records by setting a rowCount projection
-            page.setMaxRecords(findRowCount(c));
-
-            // Restore original Projection and ResultTransformer
-            c.setProjection(origProjection);
-            c.setResultTransformer(origRt);
-
+            page.setMaxRecords(findRowCountKeepingProjection(c));
             page.setPageData(loadPageData(c, pageRequest));
             page.setPageRequest(pageRequest);
         }
@@ -327,6 +434,25 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         currentSession().delete(toDelete);
     }
 
+    /**
+     * Deletes the given managed entities, flushing once per batch so the
+     * deletes can be sent to the database as JDBC batches. Unlike
+     * {@link #delete(Persisted)} the entities are not looked up again first.
+     *
+     * @param entities to be deleted.
+     */
+    @Transactional
+    public void deleteAll(Collection<E> entities) {
+        int count = 0;
+        for (E entity : entities) {
+            currentSession().delete(entity);
+            if (++count % batchSize == 0) {
+                flush();
+            }
+        }
+        flush();
+    }
+
     public void bulkDelete(List<E> entities) {
         for (E entity : entities) {
             delete(entity);
@@ -16,6 +16,8 @@ package org.candlepin.model;
 
 import org.candlepin.util.Util;
 
+import com.google.inject.persist.Transactional;
+
 import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
@@ -40,6 +42,21 @@ public class CertificateSerialCurator extends AbstractHibernateCurator<Certifica
         super(CertificateSerial.class);
     }
 
+    /**
+     * Gives a new serial its serial number without writing it out yet. Serial
+     * numbers are generated in process (see SerialNumberGenerator) as soon as a
+     * serial is persisted, so the row itself can wait for the next flush and go
+     * out in the same JDBC batch as the certificates using it.
+     *
+     * @param serial new serial
+     * @return the serial, now carrying its serial number
+     */
+    @Transactional
+    public CertificateSerial allocate(CertificateSerial serial) {
+        getEntityManager().persist(serial);
+        return serial;
+    }
+
     /**
      * @return list of certificate serials which are revoked but not yet collected
      * and put into CRL
@@ -60,6 +77,20 @@ public class CertificateSerialCurator extends AbstractHibernateCurator<Certifica
             .add(getRevokedCriteria()).list();
     }
 
+    /**
+     * @return IDs of the serials {@link #getExpiredSerials()} would return, in
+     * ascending order
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> listExpiredSerialIds() {
+        return this.currentSession()
+            .createCriteria(CertificateSerial.class)
+            .add(Restrictions.le("expiration", Util.yesterday()))
+            .add(getRevokedCriteria())
+            .setProjection(Projections.id())
+            .addOrder(Order.asc("id")).list();
+    }
+
     /**
      * Delete expired serials.
      *
@@ -68,13 +99,7 @@ public class CertificateSerialCurator extends AbstractHibernateCurator<Certifica
     public int deleteExpiredSerials() {
         // Some databases don't like to update based on a field that is being updated
         // So we must get expired ids, and then delete them
-        @SuppressWarnings("unchecked")
-        List<String> ids = this.currentSession()
-            .createCriteria(CertificateSerial.class)
-            .add(Restrictions.le("expiration", Util.yesterday()))
-            .add(getRevokedCriteria())
-            .setProjection(Projections.id())
-            .addOrder(Order.asc("id")).list();
+        List<Long> ids = listExpiredSerialIds();
         if (ids.isEmpty()) {
             return 0;
         }
@@ -1,101 +0,0 @@
-/**
- * Copyright (c) 2009 - 2012 Red Hat, Inc.
- *
- * This software is licensed to you under the GNU General Public License,
- * version 2 (GPLv2). There is NO WARRANTY for this software, express or
- * implied, including the implied warranties of MERCHANTABILITY or FITNESS
- * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
- * along with this software; if not, see
- * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
- *
- * Red Hat trademarks are not licensed under GPLv2. No permission is
- * granted to use or replicate Red Hat trademarks that are incorporated
- * in this software or its documentation.
- */
-package org.candlepin.model;
-
-import org.hibernate.annotations.ForeignKey;
-import org.hibernate.annotations.GenericGenerator;
-import org.hibernate.annotations.Index;
-
-import java.util.Date;
-
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
-import javax.persistence.JoinColumn;
-import javax.persistence.ManyToOne;
-import javax.persistence.Table;
-import javax.validation.constraints.NotNull;
-import javax.xml.bind.annotation.XmlAccessType;
-import javax.xml.bind.annotation.XmlAccessorType;
-import javax.xml.bind.annotation.XmlRootElement;
-
-/**
- * Represents a consumer checkin time, created whenever a consumer auths with an identity
- * certificate. (as opposed to a password)
- *
- * Checkins are added to this table, with older entries cleaned out after some configurable
- * period of time. We're really only interested in the latest, but trying to update a
- * single column was a frequent cause of lock contention in heavily loaded environments.
- */
-@XmlRootElement
-@XmlAccessorType(XmlAccessType.PROPERTY)
-@Entity
-@Table(name = "cp_consumer_checkin")
-public class CheckIn extends AbstractHibernateObject {
-
-    @Id
-    @GeneratedValue(generator = "system-uuid")
-    @GenericGenerator(name = "system-uuid", strategy = "uuid")
-    @Column(length = 32)
-    @NotNull
-    private String id;
-
-    @ManyToOne
-    @ForeignKey(name = "fk_consumer_checkin_consumer")
-    @JoinColumn(nullable = false)
-    @Index(name = "idx_consumer_checkin_consumer")
-    @NotNull
-    private Consumer consumer;
-
-    /*
-     * Leveraging created/updated is too risky here, parent class wants to set them itself,
-     * and keeping everything separate technically gives us more information to work with.
-     */
-    private Date checkInTime;
-
-    public CheckIn() {
-    }
-
-    public CheckIn(Consumer consumer, Date d) {
-        this();
-        this.consumer = consumer;
-        this.checkInTime = d;
-    }
-
-    public String getId() {
-        return id;
-    }
-
-    public void setId(String id) {
-        this.id = id;
-    }
-
-    public Consumer getConsumer() {
-        return consumer;
-    }
-
-    public void setConsumer(Consumer consumer) {
-        this.consumer = consumer;
-    }
-
-    public Date getCheckInTime() {
-        return checkInTime;
-    }
-
-    public void setCheckInTime(Date checkInTime) {
-        this.checkInTime = checkInTime;
-    }
-}
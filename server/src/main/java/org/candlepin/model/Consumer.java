@@ -169,11 +169,9 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
     @OneToOne(cascade = CascadeType.ALL)
     private KeyPair keyPair;
 
-    @OneToMany(cascade = CascadeType.ALL, mappedBy = "consumer", fetch = FetchType.LAZY)
-    private Set<CheckIn> checkIns;
-
-    @Formula("(select max(c.checkInTime) from cp_consumer_checkin c " +
-            "where c.consumer_id = id)")
+    // Written by ConsumerCurator.updateLastCheckin(s) only, so saving a consumer
+    // loaded before a check in was flushed cannot move it back.
+    @Column(updatable = false)
     private Date lastCheckin;
 
     @OneToMany(mappedBy = "consumer",
@@ -229,7 +227,6 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
         // generate a UUID at this point.
         this.ensureUUID();
         this.entitlements = new HashSet<Entitlement>();
-        this.checkIns = new HashSet<CheckIn>();
     }
 
     /**
@@ -465,22 +462,16 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
     }
 
     /**
-     * @return All CheckIns that have not been reaped.
+     * Moves the last check in forward to the given date, if it is more recent.
+     * This only changes the object, the date is written by the ConsumerCurator.
+     *
+     * @param checkInDate date of the check in
      */
-    @XmlTransient
-    public Set<CheckIn> getCheckIns() {
-        return checkIns;
-    }
-
-    public void setCheckIns(Set<CheckIn> checkIns) {
-        this.checkIns = checkIns;
-    }
-
     public void addCheckIn(Date checkInDate) {
-        if (this.checkIns == null) {
-            this.checkIns = new HashSet<CheckIn>();
+        if (checkInDate != null &&
+            (this.lastCheckin == null || this.lastCheckin.before(checkInDate))) {
+            this.lastCheckin = checkInDate;
         }
-        this.checkIns.add(new CheckIn(this, checkInDate));
     }
 
     /*
@@ -28,6 +28,7 @@ import com.google.inject.persist.Transactional;
 
 import org.hibernate.Criteria;
 import org.hibernate.EntityMode;
+import org.hibernate.FetchMode;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.ReplicationMode;
@@ -39,11 +40,16 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.engine.spi.TypedValue;
 import org.hibernate.internal.util.StringHelper;
+import org.hibernate.jdbc.Work;
 import org.hibernate.type.CompositeType;
 import org.hibernate.type.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -69,6 +75,7 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
     private static final int MAX_FACT_STR_LENGTH = 255;
     private static final int NAME_LENGTH = 250;
     private static final int MAX_IN_QUERY_LENGTH = 500;
+    private static final int CHECKIN_BATCH_SIZE = 1000;
     private static Logger log = LoggerFactory.getLogger(ConsumerCurator.class);
 
     public ConsumerCurator() {
@@ -284,6 +291,58 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             createSecureCriteria().add(Restrictions.in("uuid", uuids)));
     }
 
+    /**
+     * Looks up the consumers with the given UUIDs along with everything a
+     * compliance check reads from them: entitlements and their pools, installed
+     * products and facts. Each block of UUIDs costs a fixed number of queries,
+     * rather than a few lazy loads per consumer.
+     *
+     * @param uuids consumer UUIDs to look up
+     * @return the consumers found
+     */
+    @SuppressWarnings("unchecked")
+    @Transactional
+    public List<Consumer> findByUuidsForCompliance(Collection<String> uuids) {
+        List<String> uuidList = new ArrayList<String>(uuids);
+        List<Consumer> consumers = new ArrayList<Consumer>();
+
+        int fromIndex = 0;
+        int toIndex = fromIndex + MAX_IN_QUERY_LENGTH;
+
+        while (fromIndex < uuidList.size()) {
+            if (toIndex > uuidList.size()) {
+                toIndex = uuidList.size();
+            }
+            List<String> subList = uuidList.subList(fromIndex, toIndex);
+
+            consumers.addAll(createSecureCriteria()
+                .add(Restrictions.in("uuid", subList))
+                .setFetchMode("entitlements", FetchMode.JOIN)
+                .setFetchMode("entitlements.pool", FetchMode.JOIN)
+                .setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY)
+                .list());
+
+            // The consumers are already in the session, these just fill in
+            // their remaining collections. Fetching them separately avoids a
+            // cartesian product of entitlements and installed products.
+            currentSession().createCriteria(Consumer.class)
+                .add(Restrictions.in("uuid", subList))
+                .setFetchMode("installedProducts", FetchMode.JOIN)
+                .setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY)
+                .list();
+            currentSession().createCriteria(Consumer.class)
+                .add(Restrictions.in("uuid", subList))
+                .setFetchMode("facts", FetchMode.JOIN)
+                .setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY)
+                .list();
+
+            fromIndex = toIndex;
+            toIndex += MAX_IN_QUERY_LENGTH;
+        }
+
+        return consumers;
+    }
+
     @Transactional
     public List<Consumer> findByUuidsAndOwner(Collection<String> uuids, Owner owner) {
         Criteria criteria = currentSession().createCriteria(Consumer.class);
@@ -364,8 +423,8 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
     }
 
     /**
-     * Modifies the last check in and persists the entity. Make sure that the data
-     * is refreshed before using this method.
+     * Writes the consumer's last check in straight to the database. Regular
+     * check ins go through the CheckInRecorder instead, which batches them up.
      * @param consumer the consumer to update
      */
     public void updateLastCheckin(Consumer consumer) {
@@ -375,7 +434,54 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
     @Transactional
     public void updateLastCheckin(Consumer consumer, Date checkinDate) {
         consumer.addCheckIn(checkinDate);
-        save(consumer);
+        String hql = "update Consumer c set c.lastCheckin = :date " +
+            "where c.id = :id and (c.lastCheckin is null or c.lastCheckin < :date)";
+        currentSession().createQuery(hql)
+            .setTimestamp("date", checkinDate)
+            .setParameter("id", consumer.getId())
+            .executeUpdate();
+    }
+
+    /**
+     * Writes the last check in of many consumers as a single JDBC batch. A
+     * consumer's last check in is only ever moved forward, so check ins
+     * recorded on several nodes can be written in any order.
+     *
+     * @param checkins last check in date by consumer ID
+     */
+    @Transactional
+    public void updateLastCheckins(final Map<String, Date> checkins) {
+        if (checkins.isEmpty()) {
+            return;
+        }
+
+        currentSession().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE cp_consumer SET lastcheckin = ? WHERE id = ? AND " +
+                    "(lastcheckin IS NULL OR lastcheckin < ?)");
+                try {
+                    int count = 0;
+                    for (Entry<String, Date> entry : checkins.entrySet()) {
+                        Timestamp date = new Timestamp(entry.getValue().getTime());
+                        statement.setTimestamp(1, date);
+                        statement.setString(2, entry.getKey());
+                        statement.setTimestamp(3, date);
+                        statement.addBatch();
+                        if (++count % CHECKIN_BATCH_SIZE == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                    if (count % CHECKIN_BATCH_SIZE != 0) {
+                        statement.executeBatch();
+                    }
+                }
+                finally {
+                    statement.close();
+                }
+            }
+        });
     }
 
     private boolean factsChanged(Map<String, String> updatedFacts,
@@ -486,8 +592,9 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
      * @return host consumers who most recently reported the given guestIds (if any)
      */
     @Transactional
+    @SuppressWarnings("unchecked")
     public VirtConsumerMap getGuestsHostMap(Owner owner, Set<String> guestIds) {
-        List<Consumer> hypervisors = new ArrayList<Consumer>();
+        List<Object[]> reports = new ArrayList<Object[]>();
         int fromIndex = 0;
         int toIndex = fromIndex + MAX_IN_QUERY_LENGTH;
 
@@ -503,19 +610,22 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
                 .createAlias("gconsumer.guestIdsCheckIns", "checkins")
                 .add(Restrictions.eq("gconsumer.owner", owner))
                 .addOrder(Order.desc("checkins.updated"))
-                .setProjection(Projections.property("consumer"));
+                .setProjection(Projections.projectionList()
+                    .add(Projections.property("guestId"))
+                    .add(Projections.property("consumer")));
 
             // Note: may contain duplicates but is sorted so they appear later:
             crit.add(new InExpressionIgnoringCase("guestId", Arrays.copyOfRange(ids, fromIndex, toIndex)));
-            hypervisors.addAll(crit.list());
+            reports.addAll(crit.list());
             fromIndex = toIndex;
             toIndex += MAX_IN_QUERY_LENGTH;
         }
+
+        // Map only the reported guest IDs we matched, rather than walking (and
+        // loading) the full guest list of every host that reported one of them:
         VirtConsumerMap result = new VirtConsumerMap();
-        for (Consumer hypervisor : hypervisors) {
-            for (GuestId gid : hypervisor.getGuestIds()) {
-                result.add(gid.getGuestId(), hypervisor);
-            }
+        for (Object[] report : reports) {
+            result.add((String) report[0], (Consumer) report[1]);
         }
         return result;
     }
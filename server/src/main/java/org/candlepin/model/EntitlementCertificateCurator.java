@@ -17,6 +17,8 @@ package org.candlepin.model;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
 import java.util.Date;
@@ -54,6 +56,27 @@ public class EntitlementCertificateCurator extends
             .list();
     }
 
+    /**
+     * Lists the serial IDs of the certificates listForConsumer would return,
+     * reading nothing but the IDs.
+     *
+     * @param c consumer owning the certificates
+     * @return serial IDs in ascending order
+     */
+    @SuppressWarnings("unchecked")
+    @Transactional
+    public List<Long> listSerialIdsForConsumer(Consumer c) {
+        return currentSession().createCriteria(EntitlementCertificate.class)
+            .createAlias("entitlement", "ent")
+            .createAlias("ent.pool", "p")
+            .add(Restrictions.eq("ent.consumer", c))
+            // Never show a consumer expired certificates
+            .add(Restrictions.ge("p.endDate", new Date()))
+            .setProjection(Projections.property("serial.id"))
+            .addOrder(Order.asc("serial.id"))
+            .list();
+    }
+
     @Transactional
     public void delete(EntitlementCertificate cert) {
         // make sure to delete it! else get ready to face
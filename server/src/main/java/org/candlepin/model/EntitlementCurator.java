@@ -100,6 +100,26 @@ public class EntitlementCurator extends AbstractHibernateCurator<Entitlement> {
             .list();
     }
 
+    /**
+     * Lists the consumer's entitlements whose certificates need to be
+     * regenerated, out of the ones listByConsumer returns. Usually there are
+     * none, so this is much cheaper than checking each of the consumer's
+     * entitlements.
+     *
+     * @param consumer consumer to look up
+     * @return the consumer's dirty entitlements, ordered by pool id
+     */
+    @SuppressWarnings("unchecked")
+    public List<Entitlement> listDirtyByConsumer(Consumer consumer) {
+        return createSecureCriteria()
+            .createAlias("pool", "p")
+            .add(Restrictions.eq("consumer", consumer))
+            .add(Restrictions.eq("dirty", true))
+            .add(Restrictions.ge("p.endDate", new Date()))
+            .addOrder(Order.asc("p.id"))
+            .list();
+    }
+
     public List<Entitlement> listByEnvironment(Environment environment) {
         Criteria criteria = currentSession().createCriteria(Entitlement.class)
             .createCriteria("consumer").add(Restrictions.eq("environment", environment));
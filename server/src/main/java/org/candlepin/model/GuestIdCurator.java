@@ -17,11 +17,15 @@ package org.candlepin.model;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
 
+import com.google.common.collect.Lists;
+
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Restrictions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -30,6 +34,7 @@ import java.util.List;
 public class GuestIdCurator extends AbstractHibernateCurator<GuestId> {
 
     private static Logger log = LoggerFactory.getLogger(GuestIdCurator.class);
+    private static final int MAX_IN_QUERY_LENGTH = 500;
 
     public GuestIdCurator() {
         super(GuestId.class);
@@ -46,6 +51,32 @@ public class GuestIdCurator extends AbstractHibernateCurator<GuestId> {
         return listByConsumer(consumer, null).getPageData();
     }
 
+    /**
+     * Lists the guest IDs, with their attributes, of many consumers at once.
+     * This costs one query per block of consumers rather than one query per
+     * consumer guest list plus one per guest's attributes.
+     *
+     * @param consumers the consumers to list guest IDs for
+     * @return the guest IDs of all the given consumers
+     */
+    @SuppressWarnings("unchecked")
+    public List<GuestId> listByConsumers(Collection<Consumer> consumers) {
+        List<String> consumerIds = new ArrayList<String>(consumers.size());
+        for (Consumer consumer : consumers) {
+            consumerIds.add(consumer.getId());
+        }
+
+        List<GuestId> guestIds = new ArrayList<GuestId>();
+        for (List<String> block : Lists.partition(consumerIds, MAX_IN_QUERY_LENGTH)) {
+            guestIds.addAll(this.currentSession().createQuery(
+                "select distinct g from GuestId g left join fetch g.attributes " +
+                "where g.consumer.id in (:consumerIds)")
+                .setParameterList("consumerIds", block)
+                .list());
+        }
+        return guestIds;
+    }
+
     public GuestId findByConsumerAndId(Consumer consumer, String guestId) {
         return (GuestId) this.currentSession().createCriteria(GuestId.class)
             .add(Restrictions.eq("consumer", consumer))
@@ -24,14 +24,14 @@ import java.util.List;
 /**
  * Curator for consumer check-ins.
  */
-public class GuestIdsCheckInCurator extends AbstractHibernateCurator<CheckIn> {
+public class GuestIdsCheckInCurator extends AbstractHibernateCurator<GuestIdsCheckIn> {
 
     private static Logger log = LoggerFactory.getLogger(GuestIdsCheckInCurator.class);
 
     public static final int DELETE_BATCH_SIZE = 30000;
 
     public GuestIdsCheckInCurator() {
-        super(CheckIn.class);
+        super(GuestIdsCheckIn.class);
     }
 
     /**
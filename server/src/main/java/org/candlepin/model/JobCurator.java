@@ -24,6 +24,7 @@ import org.candlepin.pinsetter.core.model.JobStatus.TargetType;
 import org.candlepin.pinsetter.tasks.KingpinJob;
 
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
 
 import org.hibernate.Criteria;
 import org.hibernate.Query;
@@ -72,6 +73,22 @@ public class JobCurator extends AbstractHibernateCurator<JobStatus> {
         }
     }
 
+    /**
+     * Updates the result of a job which is still running, so clients polling
+     * the job can follow its progress.
+     *
+     * @param jobId ID of the job
+     * @param result short progress message
+     */
+    @Transactional
+    public void updateResult(String jobId, String result) {
+        String hql = "update JobStatus j set j.result = :result where j.id = :jobid";
+        this.currentSession().createQuery(hql)
+            .setParameter("jobid", jobId)
+            .setString("result", result)
+            .executeUpdate();
+    }
+
     public int cleanupAllOldJobs(Date deadline) {
         return this.currentSession().createQuery(
             "delete from JobStatus where updated <= :date")
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * OwnerInfoCache
+ *
+ * Keeps recently computed owner infos for
+ * {@link ConfigProperties} <code>OWNER_INFO_CACHE_TTL</code> seconds, so clients
+ * polling an owner's info do not recompute it on every request. The counts in an
+ * owner info depend on what the principal may see, so entries are kept per owner
+ * and principal.
+ *
+ * Entries are not invalidated when the owner's consumers or pools change, the
+ * info may be up to the TTL out of date.
+ */
+@Singleton
+public class OwnerInfoCache {
+
+    private final long ttl;
+    private final InfoMapping infos;
+
+    @Inject
+    public OwnerInfoCache(Configuration config) {
+        this.ttl = config.getLong(ConfigProperties.OWNER_INFO_CACHE_TTL) * 1000;
+        this.infos = new InfoMapping(config.getInt(ConfigProperties.OWNER_INFO_CACHE_MAX));
+    }
+
+    /**
+     * @param ownerKey key of the owner
+     * @param principalName name of the principal the info was computed for
+     * @return the cached info, or null if there is none or it has expired
+     */
+    public OwnerInfo get(String ownerKey, String principalName) {
+        String key = key(ownerKey, principalName);
+        synchronized (infos) {
+            CachedInfo cached = infos.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (now() - cached.created >= ttl) {
+                infos.remove(key);
+                return null;
+            }
+            return cached.info;
+        }
+    }
+
+    public void put(String ownerKey, String principalName, OwnerInfo info) {
+        if (ttl <= 0) {
+            return;
+        }
+        synchronized (infos) {
+            infos.put(key(ownerKey, principalName), new CachedInfo(info, now()));
+        }
+    }
+
+    public int size() {
+        synchronized (infos) {
+            return infos.size();
+        }
+    }
+
+    // Protected for testing purposes
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static String key(String ownerKey, String principalName) {
+        return ownerKey + "\n" + principalName;
+    }
+
+    private static class CachedInfo {
+        private final OwnerInfo info;
+        private final long created;
+
+        public CachedInfo(OwnerInfo info, long created) {
+            this.info = info;
+            this.created = created;
+        }
+    }
+
+    /**
+     * InfoMapping
+     *
+     * An access ordered <code>LinkedHashMap</code> which drops the least recently
+     * used info once the configured maximum is reached.
+     */
+    private static class InfoMapping extends LinkedHashMap<String, CachedInfo> {
+
+        private static final long serialVersionUID = 1L;
+        private int max;
+
+        public InfoMapping(int max) {
+            super(16, 0.75f, true);
+            this.max = max;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Entry<String, CachedInfo> eldest) {
+            return super.size() > max;
+        }
+    }
+}
@@ -14,22 +14,24 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.auth.Principal;
+import org.candlepin.guice.PrincipalProvider;
+
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
 import org.hibernate.Criteria;
-import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
-import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.persistence.EntityManager;
 
@@ -38,73 +40,133 @@ import javax.persistence.EntityManager;
  */
 
 public class OwnerInfoCurator {
+    private static final String REQUIRES_CONSUMER_TYPE = "requires_consumer_type";
+    private static final String ENABLED_CONSUMER_TYPES = "enabled_consumer_types";
+    private static final String PRODUCT_FAMILY = "product_family";
+    private static final String VIRT_ONLY = "virt_only";
+
     private Provider<EntityManager> entityManager;
     private ConsumerTypeCurator consumerTypeCurator;
     private ConsumerCurator consumerCurator;
     private PoolCurator poolCurator;
+    private OwnerInfoCache ownerInfoCache;
+    private PrincipalProvider principalProvider;
 
     @Inject
     public OwnerInfoCurator(Provider<EntityManager> entityManager,
         ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator,
-        PoolCurator poolCurator) {
+        PoolCurator poolCurator, OwnerInfoCache ownerInfoCache,
+        PrincipalProvider principalProvider) {
         this.entityManager = entityManager;
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
         this.poolCurator = poolCurator;
+        this.ownerInfoCache = ownerInfoCache;
+        this.principalProvider = principalProvider;
+    }
+
+    /**
+     * Looks up the owner info through the cache, see {@link OwnerInfoCache}. The
+     * counts depend on what the current principal may see, so entries are kept
+     * per principal.
+     *
+     * @param owner the owner
+     * @return the owner info, at most the configured TTL old
+     */
+    public OwnerInfo lookupCachedByOwner(Owner owner) {
+        Principal principal = principalProvider.get();
+        String principalName = principal == null ? "" : principal.getPrincipalName();
+
+        OwnerInfo info = ownerInfoCache.get(owner.getKey(), principalName);
+        if (info == null) {
+            info = lookupByOwner(owner);
+            ownerInfoCache.put(owner.getKey(), principalName, info);
+        }
+        return info;
     }
 
+    /**
+     * Computes the owner info. Every count is taken from a few grouped queries
+     * for the whole owner, rather than per consumer type or product family.
+     *
+     * @param owner the owner
+     * @return the owner info
+     */
     public OwnerInfo lookupByOwner(Owner owner) {
         OwnerInfo info = new OwnerInfo();
         Date now = new Date();
 
-        List<ConsumerType> types = consumerTypeCurator.listAll();
-        HashMap<String, ConsumerType> typeHash = new HashMap<String, ConsumerType>();
-        for (ConsumerType type : types) {
-            // Store off the type for later use
-            typeHash.put(type.getLabel(), type);
+        Map<String, Integer> consumerCounts = getConsumerCountsByType(owner);
+        Map<String, Integer> entitlementCounts = getEntitlementCountsByType(owner);
+        PoolAttributes poolAttrs = getActivePoolAttributes(owner, now,
+            REQUIRES_CONSUMER_TYPE, ENABLED_CONSUMER_TYPES);
 
-            // Do the real work
-            int consumers = consumerCurator.getConsumerCount(owner, type);
-            int entCount = consumerCurator.getConsumerEntitlementCount(owner, type);
-            info.addTypeTotal(type, consumers, entCount);
+        int totalConsumers = 0;
+        for (ConsumerType type : consumerTypeCurator.listAll()) {
+            int consumers = countFor(consumerCounts, type.getLabel());
+            totalConsumers += consumers;
+            info.addTypeTotal(type, consumers, countFor(entitlementCounts, type.getLabel()));
 
-            int count = getRequiresConsumerTypeCount(type, owner, now);
+            int count = poolAttrs.countMatching(REQUIRES_CONSUMER_TYPE, type.getLabel(), false);
             info.addToConsumerTypeCountByPool(type, count);
 
-            count = getEnabledConsumerTypeCount(type, owner, now);
+            count = poolAttrs.countMatching(ENABLED_CONSUMER_TYPES, type.getLabel(), true);
             if (count > 0) {
                 info.addToEnabledConsumerTypeCountByPool(type, count);
             }
-
         }
 
         int activePools = getActivePoolCount(owner, now);
         info.addDefaultEnabledConsumerTypeCount(activePools);
 
-        Collection<String> families = getProductFamilies(owner, now);
-
-        for (String family : families) {
-            int virtualCount = getProductFamilyCount(owner, now, family, true);
-            int totalCount = getProductFamilyCount(owner, now, family, false);
-            info.addToEntitlementsConsumedByFamily(family, totalCount - virtualCount,
-                virtualCount);
-        }
+        setEntitlementsConsumedByFamily(owner, now, info);
+        setConsumerGuestCounts(owner, totalConsumers, info);
+        setConsumerCountsByComplianceStatus(owner, info);
 
-        int virtTotalEntitlements = getProductFamilyCount(owner, now, null, true);
-        int totalEntitlements = getProductFamilyCount(owner, now, null, false);
+        return info;
+    }
 
-        info.addDefaultEntitlementsConsumedByFamily(
-            totalEntitlements - virtTotalEntitlements,
-            virtTotalEntitlements);
+    private static int countFor(Map<String, Integer> counts, String label) {
+        Integer count = counts.get(label);
+        return count == null ? 0 : count;
+    }
 
-        setConsumerGuestCounts(owner, info);
-        setConsumerCountsByComplianceStatus(owner, info);
+    @SuppressWarnings("unchecked")
+    private Map<String, Integer> getConsumerCountsByType(Owner owner) {
+        Criteria c = consumerCurator.createSecureCriteria()
+            .createAlias("type", "t")
+            .add(Restrictions.eq("owner", owner))
+            .setProjection(Projections.projectionList()
+                .add(Projections.groupProperty("t.label"))
+                .add(Projections.rowCount()));
 
-        return info;
+        return toCounts(c.list());
     }
 
     @SuppressWarnings("unchecked")
-    private void setConsumerGuestCounts(Owner owner, OwnerInfo info) {
+    private Map<String, Integer> getEntitlementCountsByType(Owner owner) {
+        Criteria c = consumerCurator.createSecureCriteria()
+            .createAlias("type", "t")
+            .createAlias("entitlements", "ent")
+            .add(Restrictions.eq("owner", owner))
+            .setProjection(Projections.projectionList()
+                .add(Projections.groupProperty("t.label"))
+                .add(Projections.sum("ent.quantity")));
+
+        return toCounts(c.list());
+    }
+
+    private static Map<String, Integer> toCounts(List<Object[]> rows) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Object[] row : rows) {
+            if (row[1] != null) {
+                counts.put((String) row[0], ((Number) row[1]).intValue());
+            }
+        }
+        return counts;
+    }
+
+    private void setConsumerGuestCounts(Owner owner, int totalConsumers, OwnerInfo info) {
         Criteria cr = consumerCurator.createSecureCriteria()
             .createAlias("facts", "f")
             .add(Restrictions.eq("owner", owner))
@@ -113,12 +175,6 @@ public class OwnerInfoCurator {
             .setProjection(Projections.count("id"));
 
         int guestCount = ((Long) cr.uniqueResult()).intValue();
-
-        Criteria totalConsumersCriteria = consumerCurator.createSecureCriteria()
-            .add(Restrictions.eq("owner", owner))
-            .setProjection(Projections.count("id"));
-
-        int totalConsumers = ((Long) totalConsumersCriteria.uniqueResult()).intValue();
         int physicalCount = totalConsumers - guestCount;
 
         info.setGuestCount(guestCount);
@@ -156,130 +212,193 @@ public class OwnerInfoCurator {
         return ((Long) activePoolCountCrit.uniqueResult()).intValue();
     }
 
-    private int getRequiresConsumerTypeCount(ConsumerType type, Owner owner, Date date) {
-        PoolFilterBuilder filterBuilder = new PoolFilterBuilder();
-        filterBuilder.addAttributeFilter("requires_consumer_type", type.getLabel());
-        Criteria typeCountCrit = poolCurator.createSecureCriteria()
-            .add(Restrictions.eq("owner", owner))
-            .add(Restrictions.le("startDate", date))
-            .add(Restrictions.ge("endDate", date))
-            .setProjection(Projections.count("id"));
-        filterBuilder.applyTo(typeCountCrit);
-
-        return ((Long) typeCountCrit.uniqueResult()).intValue();
-    }
-
-    private int getEnabledConsumerTypeCount(ConsumerType type, Owner owner, Date date) {
-        PoolFilterBuilder filterBuilder = new PoolFilterBuilder();
-        filterBuilder.addAttributeFilter("enabled_consumer_types", type.getLabel() + ",*");
-        filterBuilder.addAttributeFilter("enabled_consumer_types", "*," + type.getLabel() + ",*");
-        filterBuilder.addAttributeFilter("enabled_consumer_types", "*," + type.getLabel());
-        filterBuilder.addAttributeFilter("enabled_consumer_types", type.getLabel());
-        Criteria enabledCountCrit = poolCurator.createSecureCriteria()
-            .add(Restrictions.eq("owner", owner))
-            .add(Restrictions.le("startDate", date))
-            .add(Restrictions.ge("endDate", date))
-            .setProjection(Projections.countDistinct("id"));
-        filterBuilder.applyTo(enabledCountCrit);
-
-        return ((Long) enabledCountCrit.uniqueResult()).intValue();
+    /*
+     * Collects the requested attributes of the owner's active pools, from the
+     * pools themselves and from their products.
+     */
+    @SuppressWarnings("unchecked")
+    private PoolAttributes getActivePoolAttributes(Owner owner, Date date, String... names) {
+        PoolAttributes attrs = new PoolAttributes();
+        for (String collection : new String[] {"attributes", "productAttributes"}) {
+            Criteria c = poolCurator.createSecureCriteria()
+                .createAlias(collection, "attr")
+                .add(Restrictions.eq("owner", owner))
+                .add(Restrictions.le("startDate", date))
+                .add(Restrictions.ge("endDate", date))
+                .add(Restrictions.in("attr.name", names))
+                .setProjection(Projections.projectionList()
+                    .add(Projections.property("id"))
+                    .add(Projections.property("attr.name"))
+                    .add(Projections.property("attr.value")));
+            attrs.add(c.list(), collection.equals("attributes"));
+        }
+        return attrs;
     }
 
-    private Collection<String> getProductFamilies(Owner owner, Date date) {
-        Set<String> families = new HashSet<String>();
-
-        String queryStr = "select distinct attr.value from Pool p " +
-            "join p.attributes as attr " +
+    /*
+     * Splits the entitlements consumed from the owner's current pools up by the
+     * product family of the pool, and by whether the pool is virt only. Pools
+     * without a family are counted under "none".
+     */
+    @SuppressWarnings("unchecked")
+    private void setEntitlementsConsumedByFamily(Owner owner, Date date, OwnerInfo info) {
+        String queryStr = "select p.id, sum(ent.quantity) from Pool p " +
+            "join p.entitlements as ent " +
             "where p.owner = :owner " +
             "and p.startDate < :date and p.endDate > :date " +
-            "and attr.name = 'product_family'";
-        Query query = currentSession().createQuery(queryStr)
+            "group by p.id";
+        List<Object[]> consumed = currentSession().createQuery(queryStr)
             .setEntity("owner", owner)
-            .setParameter("date", date);
+            .setParameter("date", date)
+            .list();
+
+        PoolAttributes attrs = new PoolAttributes();
+        for (String collection : new String[] {"attributes", "productAttributes"}) {
+            queryStr = "select p.id, attr.name, attr.value from Pool p " +
+                "join p." + collection + " as attr " +
+                "where p.owner = :owner " +
+                "and p.startDate < :date and p.endDate > :date " +
+                "and attr.name in (:names)";
+            List<Object[]> rows = currentSession().createQuery(queryStr)
+                .setEntity("owner", owner)
+                .setParameter("date", date)
+                .setParameterList("names", new String[] {PRODUCT_FAMILY, VIRT_ONLY})
+                .list();
+            attrs.add(rows, collection.equals("attributes"));
+        }
 
-        Iterator iter = query.iterate();
-        while (iter.hasNext()) {
-            String family = (String) iter.next();
-            families.add(family);
+        Map<String, List<String>> families = attrs.getValues(PRODUCT_FAMILY);
+        Map<String, List<String>> virtOnly = attrs.getValues(VIRT_ONLY);
+
+        // Families without any consumption are still listed.
+        Map<String, int[]> byFamily = new HashMap<String, int[]>();
+        for (List<String> values : families.values()) {
+            for (String family : values) {
+                if (family != null && !byFamily.containsKey(family)) {
+                    byFamily.put(family, new int[2]);
+                }
+            }
         }
 
-        queryStr = "select distinct prod.value from Pool p " +
-            "join p.productAttributes as prod " +
-            "where p.owner = :owner " +
-            "and p.startDate < :date and p.endDate > :date " +
-            "and prod.name = 'product_family' " +
-            "and p not in (select distinct pa.pool from PoolAttribute pa" +
-            "              where pa.name = 'product_family')";
-        query = currentSession().createQuery(queryStr)
-            .setEntity("owner", owner)
-            .setParameter("date", date);
+        int total = 0;
+        int virtual = 0;
+        for (Object[] row : consumed) {
+            String poolId = (String) row[0];
+            int quantity = row[1] == null ? 0 : ((Number) row[1]).intValue();
+            List<String> virtValues = virtOnly.get(poolId);
+            boolean virt = virtValues != null && virtValues.contains("true");
 
-        iter = query.iterate();
-        while (iter.hasNext()) {
-            String family = (String) iter.next();
-            families.add(family);
+            total += quantity;
+            virtual += virt ? quantity : 0;
+
+            List<String> poolFamilies = families.get(poolId);
+            if (poolFamilies == null) {
+                continue;
+            }
+            for (String family : new HashSet<String>(poolFamilies)) {
+                if (family != null) {
+                    int[] counts = byFamily.get(family);
+                    counts[0] += quantity;
+                    counts[1] += virt ? quantity : 0;
+                }
+            }
         }
 
-        return families;
+        for (Entry<String, int[]> entry : byFamily.entrySet()) {
+            int[] counts = entry.getValue();
+            info.addToEntitlementsConsumedByFamily(entry.getKey(), counts[0] - counts[1],
+                counts[1]);
+        }
+        info.addDefaultEntitlementsConsumedByFamily(total - virtual, virtual);
     }
 
-    /*
-     * If called with virt = false, returns the total number of all entitlements in
-     * that family for that owner. So you probably want to subtract  the result of
-     * virt=true from that.
+    /**
+     * PoolAttributes
      *
-     * use family = null to get counts for all pools.
+     * Attribute values of a set of pools, by attribute name and pool ID. A pool
+     * attribute overrides the product attribute of the same name, the same way
+     * {@link PoolFilterBuilder} matches them.
      */
-    private int getProductFamilyCount(Owner owner, Date date, String family, boolean virt) {
-        String queryStr = "select sum(ent.quantity) from Pool p" +
-            "              join p.entitlements as ent " +
-            "              where p.owner = :owner " +
-            "              and p.startDate < :date and p.endDate > :date ";
-
-        if (family != null) {
-            queryStr +=
-                "and (p in (select p from Pool p join p.attributes as attr " +
-                "           where p.owner = :owner " +
-                "           and attr.name = 'product_family' and attr.value = :family)" +
-                "     or (p in (select p from Pool p join p.productAttributes as prod " +
-                "              where p.owner = :owner " +
-                "              and prod.name = 'product_family' " +
-                "              and prod.value = :family) " +
-                "         and p not in (select p from Pool p join p.attributes as attr " +
-                "                       where p.owner = :owner " +
-                "                       and attr.name = 'product_family')" +
-                "        )" +
-                ")";
+    private static class PoolAttributes {
+        private Map<String, Map<String, List<String>>> poolValues =
+            new HashMap<String, Map<String, List<String>>>();
+        private Map<String, Map<String, List<String>>> productValues =
+            new HashMap<String, Map<String, List<String>>>();
+
+        /**
+         * @param rows pool ID, attribute name and value
+         * @param pool true for pool attributes, false for product attributes
+         */
+        public void add(List<Object[]> rows, boolean pool) {
+            Map<String, Map<String, List<String>>> target = pool ? poolValues : productValues;
+            for (Object[] row : rows) {
+                String name = (String) row[1];
+                Map<String, List<String>> byPool = target.get(name);
+                if (byPool == null) {
+                    byPool = new HashMap<String, List<String>>();
+                    target.put(name, byPool);
+                }
+
+                List<String> values = byPool.get((String) row[0]);
+                if (values == null) {
+                    values = new LinkedList<String>();
+                    byPool.put((String) row[0], values);
+                }
+                values.add((String) row[2]);
+            }
         }
 
-        if (virt) {
-            queryStr += "and (p in (select p from Pool p join p.attributes as attr " +
-                        "           where attr.name = 'virt_only' " +
-                        "           and attr.value = 'true') " +
-                        "     or (p in (select p from Pool p " +
-                        "               join p.productAttributes as prod " +
-                        "               where p.owner = :owner " +
-                        "               and prod.name = 'virt_only' " +
-                        "               and prod.value = 'true')" +
-                        "         and p not in (select p from Pool p " +
-                        "                       join p.attributes as attr " +
-                        "                       where p.owner = :owner " +
-                        "                       and attr.name = 'virt_only')" +
-                        "     )" +
-                        ")";
-        }
-        Query query = currentSession().createQuery(queryStr)
-            .setEntity("owner", owner)
-            .setParameter("date", date);
-        if (family != null) {
-            query.setParameter("family", family);
+        /**
+         * @param name attribute name
+         * @return the effective values of the attribute, by pool ID
+         */
+        public Map<String, List<String>> getValues(String name) {
+            Map<String, List<String>> values = new HashMap<String, List<String>>();
+            if (productValues.containsKey(name)) {
+                values.putAll(productValues.get(name));
+            }
+            if (poolValues.containsKey(name)) {
+                values.putAll(poolValues.get(name));
+            }
+            return values;
         }
-        Long res = (Long) query.uniqueResult();
-        if (res == null) {
-            return 0;
+
+        /**
+         * Counts the pools with an attribute value matching a consumer type label,
+         * ignoring case.
+         *
+         * @param name attribute name
+         * @param label consumer type label
+         * @param list true if the value is a comma separated list of labels
+         * @return number of matching pools
+         */
+        public int countMatching(String name, String label, boolean list) {
+            int count = 0;
+            for (List<String> values : getValues(name).values()) {
+                for (String value : values) {
+                    if (matches(value, label, list)) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+            return count;
         }
 
-        return res.intValue();
+        private static boolean matches(String value, String label, boolean list) {
+            if (value == null) {
+                return false;
+            }
+            if (!list) {
+                return value.equalsIgnoreCase(label);
+            }
+            for (String item : value.split(",")) {
+                if (item.equalsIgnoreCase(label)) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     protected Session currentSession() {
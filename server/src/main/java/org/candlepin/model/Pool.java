@@ -23,7 +23,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.annotations.Cascade;
 import org.hibernate.annotations.ForeignKey;
-import org.hibernate.annotations.Formula;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Index;
 import org.hibernate.annotations.LazyCollection;
@@ -231,14 +230,16 @@ public class Pool extends AbstractHibernateObject implements Persisted, Owned, N
     @Size(max = 255)
     private String orderNumber;
 
-    @Formula("(select sum(ent.quantity) from cp_entitlement ent " +
-             "where ent.pool_id = id)")
-    private Long consumed;
+    /*
+     * Consumed and exported quantities are kept up to date by the pool manager
+     * through PoolCurator.adjustConsumed, never by updating the pool itself, so
+     * that entitlements do not touch the pool's updated date or version.
+     */
+    @Column(nullable = false, updatable = false)
+    private Long consumed = 0L;
 
-    @Formula("(select sum(ent.quantity) from cp_entitlement ent, cp_consumer cons, " +
-        "cp_consumer_type ctype where ent.pool_id = id and ent.consumer_id = cons.id " +
-        "and cons.type_id = ctype.id and ctype.manifest = 'Y')")
-    private Long exported;
+    @Column(nullable = false, updatable = false)
+    private Long exported = 0L;
 
     // TODO: May not still be needed, IIRC a temporary hack for client.
     @Size(max = 255)
@@ -353,8 +354,8 @@ public class Pool extends AbstractHibernateObject implements Persisted, Owned, N
      * @param consumed set the activate uses.
      */
     public void setConsumed(Long consumed) {
-        // Even though this is calculated at DB fetch time, we allow
-        // setting it for changes in a single transaction
+        // Only changes the loaded pool, see PoolCurator.adjustConsumed for
+        // changing the stored quantity.
         this.consumed = consumed;
     }
 
@@ -369,8 +370,8 @@ public class Pool extends AbstractHibernateObject implements Persisted, Owned, N
      * @param exported set the activate uses.
      */
     public void setExported(Long exported) {
-        // Even though this is calculated at DB fetch time, we allow
-        // setting it for changes in a single transaction
+        // Only changes the loaded pool, see PoolCurator.adjustConsumed for
+        // changing the stored quantity.
         this.exported = exported;
     }
 
@@ -37,6 +37,7 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.internal.FilterImpl;
 import org.hibernate.sql.JoinType;
+import org.hibernate.type.StandardBasicTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -444,6 +445,81 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         return pool;
     }
 
+    /**
+     * Adds to the stored consumed and exported quantities of a pool. The update
+     * is done in the database, the loaded pool is not changed, callers set its
+     * quantities themselves or refresh it.
+     *
+     * @param pool the pool
+     * @param consumed quantity to add to the consumed quantity, negative to subtract
+     * @param exported quantity to add to the exported quantity, negative to subtract
+     */
+    public void adjustConsumed(Pool pool, long consumed, long exported) {
+        String hql = "update Pool p " +
+            "set p.consumed = p.consumed + :consumed, p.exported = p.exported + :exported " +
+            "where p.id = :id";
+        currentSession().createQuery(hql)
+            .setLong("consumed", consumed)
+            .setLong("exported", exported)
+            .setString("id", pool.getId())
+            .executeUpdate();
+    }
+
+    /**
+     * Finds the pools whose stored consumed or exported quantity differs from
+     * the quantities of their entitlements.
+     *
+     * @return IDs of the pools with wrong quantities
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> listIdsWithWrongConsumption() {
+        String hql = "select p.id from Pool p " +
+            "where p.consumed <> (select coalesce(sum(e.quantity), 0) " +
+            "    from Entitlement e where e.pool = p) " +
+            "or p.exported <> (select coalesce(sum(e.quantity), 0) " +
+            "    from Entitlement e join e.consumer c join c.type t " +
+            "    where e.pool = p and t.manifest = :manifest)";
+        return currentSession().createQuery(hql)
+            .setParameter("manifest", true, StandardBasicTypes.YES_NO)
+            .list();
+    }
+
+    /**
+     * Recomputes the consumed and exported quantities of a pool from its
+     * entitlements, and stores them if they differ. The pool is locked while
+     * doing so, the same way granting and revoking entitlements does.
+     *
+     * @param pool the pool
+     * @return true if the stored quantities were wrong
+     */
+    @Transactional
+    public boolean recalculateConsumed(Pool pool) {
+        pool = lockAndLoad(pool);
+
+        String hql = "select coalesce(sum(e.quantity), 0), " +
+            "coalesce(sum(case when t.manifest = :manifest then e.quantity else 0 end), 0) " +
+            "from Entitlement e join e.consumer c join c.type t " +
+            "where e.pool = :pool";
+        Object[] sums = (Object[]) currentSession().createQuery(hql)
+            .setParameter("manifest", true, StandardBasicTypes.YES_NO)
+            .setEntity("pool", pool)
+            .uniqueResult();
+        long consumed = ((Number) sums[0]).longValue();
+        long exported = ((Number) sums[1]).longValue();
+
+        if (consumed == pool.getConsumed() && exported == pool.getExported()) {
+            return false;
+        }
+
+        log.warn("Correcting consumption of pool {}: consumed {} -> {}, exported {} -> {}",
+            new Object[] {pool.getId(), pool.getConsumed(), consumed, pool.getExported(),
+            exported});
+        adjustConsumed(pool, consumed - pool.getConsumed(), exported - pool.getExported());
+        pool.setConsumed(consumed);
+        pool.setExported(exported);
+        return true;
+    }
+
     public List<ActivationKey> getActivationKeysForPool(Pool p) {
         List<ActivationKey> activationKeys = new ArrayList<ActivationKey>();
         List<ActivationKeyPool> activationKeyPools = currentSession().createCriteria(
@@ -674,4 +750,94 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         // Return!
         return result;
     }
+
+    /**
+     * Cheap summary of an owner's pools, used to tell whether anything about
+     * them changed since it was last looked at.
+     *
+     * @param owner the owner
+     * @return two element array of the pool count (Long) and the most recent
+     *  pool updated date (Date, null when there are no pools).
+     */
+    public Object[] getPoolsStamp(Owner owner) {
+        return (Object[]) this.currentSession().createQuery(
+            "SELECT COUNT(P.id), MAX(P.updated) " +
+            "FROM Pool P " +
+            "WHERE P.owner = :owner")
+            .setParameter("owner", owner)
+            .uniqueResult();
+    }
+
+    /**
+     * Lists the IDs and updated dates of an owner's pools updated after the
+     * given date, without loading the pools themselves.
+     *
+     * @param owner the owner
+     * @param since only pools updated after this date are listed
+     * @return list of two element arrays of the pool ID and its updated date.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> listPoolsUpdatedSince(Owner owner, Date since) {
+        return this.currentSession().createQuery(
+            "SELECT P.id, P.updated " +
+            "FROM Pool P " +
+            "WHERE P.owner = :owner AND P.updated > :since")
+            .setParameter("owner", owner)
+            .setParameter("since", since)
+            .list();
+    }
+
+    /**
+     * Lists the product IDs behind each of an owner's pools without loading the
+     * pools themselves.
+     *
+     * @param owner the owner
+     * @return rows of pool ID, product ID and derived product ID
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> listPoolProductIds(Owner owner) {
+        return this.currentSession().createQuery(
+            "SELECT P.id, P.productId, P.derivedProductId " +
+            "FROM Pool P " +
+            "WHERE P.owner = :owner")
+            .setParameter("owner", owner)
+            .list();
+    }
+
+    /**
+     * Lists the provided (or derived provided) product IDs of an owner's pools.
+     *
+     * @param owner the owner
+     * @param derived true for derived provided products
+     * @return rows of pool ID and provided product ID
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> listProvidedProductIds(Owner owner, boolean derived) {
+        String collection = derived ? "P.derivedProvidedProducts" : "P.providedProducts";
+        return this.currentSession().createQuery(
+            "SELECT P.id, PP.productId " +
+            "FROM Pool P INNER JOIN " + collection + " AS PP " +
+            "WHERE P.owner = :owner")
+            .setParameter("owner", owner)
+            .list();
+    }
+
+    /**
+     * Lists the value of a product attribute for each of an owner's pools that
+     * has it.
+     *
+     * @param owner the owner
+     * @param name product attribute name
+     * @return rows of pool ID and attribute value
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> listProductAttributeValues(Owner owner, String name) {
+        return this.currentSession().createQuery(
+            "SELECT P.id, A.value " +
+            "FROM Pool P INNER JOIN P.productAttributes AS A " +
+            "WHERE P.owner = :owner AND A.name = :name")
+            .setParameter("owner", owner)
+            .setParameter("name", name)
+            .list();
+    }
 }
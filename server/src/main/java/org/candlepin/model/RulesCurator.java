@@ -30,6 +30,7 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * RulesCurator
@@ -44,6 +45,12 @@ public class RulesCurator extends AbstractHibernateCurator<Rules> {
      */
     public static final int RULES_API_VERSION = 5;
 
+    /*
+     * Bumped whenever rules are written through this JVM, so the compiled rules
+     * can be refreshed without polling the database on every request.
+     */
+    private static final AtomicLong LOCAL_REVISION = new AtomicLong();
+
     public RulesCurator() {
         super(Rules.class);
     }
@@ -69,7 +76,17 @@ public class RulesCurator extends AbstractHibernateCurator<Rules> {
                 current.getVersion(), toCreate.getVersion())) {
             return current;
         }
-        return super.create(toCreate);
+        Rules created = super.create(toCreate);
+        LOCAL_REVISION.incrementAndGet();
+        return created;
+    }
+
+    /**
+     * @return a counter which changes every time rules are created or deleted
+     * through this JVM.
+     */
+    public long getLocalRevision() {
+        return LOCAL_REVISION.get();
     }
 
     public Rules getDbRules() {
@@ -139,6 +156,7 @@ public class RulesCurator extends AbstractHibernateCurator<Rules> {
     @Transactional
     public void resetToRpmRules() {
         currentSession().createQuery("DELETE FROM Rules").executeUpdate();
+        LOCAL_REVISION.incrementAndGet();
         this.create(rulesFromFile(DEFAULT_RULES_FILE));
     }
 
@@ -14,12 +14,16 @@
  */
 package org.candlepin.model;
 
+import com.google.inject.persist.Transactional;
+
 import org.hibernate.Query;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -34,6 +38,34 @@ public class SubscriptionCurator extends AbstractHibernateCurator<Subscription>
         super(Subscription.class);
     }
 
+    /**
+     * Creates the subscriptions along with their certificates and serials. Each
+     * of them is persisted on its own first, so every flush sends one kind of
+     * insert at a time and they can go out as JDBC batches, rather than a
+     * serial, certificate and subscription insert in turn for each one.
+     *
+     * @param subscriptions to be created.
+     */
+    @Override
+    @Transactional
+    public void createAll(Collection<Subscription> subscriptions) {
+        List<CertificateSerial> serials = new ArrayList<CertificateSerial>();
+        List<SubscriptionsCertificate> certs = new ArrayList<SubscriptionsCertificate>();
+        for (Subscription subscription : subscriptions) {
+            SubscriptionsCertificate cert = subscription.getCertificate();
+            if (cert != null) {
+                certs.add(cert);
+                if (cert.getSerial() != null) {
+                    serials.add(cert.getSerial());
+                }
+            }
+        }
+
+        persistAll(serials);
+        persistAll(certs);
+        persistAll(subscriptions);
+    }
+
     /**
      * Return Subscription for the given subscription id.
      * @param subId subscription id
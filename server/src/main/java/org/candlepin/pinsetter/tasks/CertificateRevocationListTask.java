@@ -18,6 +18,7 @@ import org.candlepin.common.config.Configuration;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.CrlGenerator;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.RevocationIndex;
 
 import com.google.inject.Inject;
 
@@ -30,12 +31,11 @@ import java.io.File;
 import java.io.IOException;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
-import java.security.cert.X509CRL;
 
 /**
  * CertificateRevocationListTask synchronizes the CRL with the DB, we add newly
- * revoked certificates, and remove expired certificates from the file. The job
- * then writes the CRL file.
+ * revoked certificates, and remove expired certificates from the revocation
+ * index kept next to the CRL. The job then writes the CRL file from the index.
  */
 public class CertificateRevocationListTask extends KingpinJob {
 
@@ -71,10 +71,12 @@ public class CertificateRevocationListTask extends KingpinJob {
                 ConfigProperties.CRL_FILE_PATH, false);
         }
         try {
-            File crlFile = new File(filePath);
-            X509CRL crl = crlFileUtil.readCRLFile(crlFile);
-            crl = crlGenerator.syncCRLWithDB(crl);
-            crlFileUtil.writeCRLFile(crlFile, crl);
+            crlFileUtil.updateCRLFile(new File(filePath), new CrlFileUtil.IndexUpdate() {
+                @Override
+                public RevocationIndex apply(RevocationIndex index) throws IOException {
+                    return crlGenerator.syncCRLWithDB(index);
+                }
+            });
         }
         catch (CRLException e) {
             log.error("CRLException:", e);
@@ -14,35 +14,28 @@
  */
 package org.candlepin.pinsetter.tasks;
 
-import org.candlepin.model.CheckInCurator;
-
-import com.google.inject.Inject;
-
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Cleans up all but the most recent checkins for all consumers.
+ * Used to clean up all but the most recent checkins for all consumers.
+ *
+ * Only the last check in of each consumer is stored now, so there is nothing
+ * left to clean up. The job is kept so that servers which still have it
+ * scheduled can load it, and is no longer part of the default task list.
  */
+@Deprecated
 public class CleanupCheckInsJob extends KingpinJob {
 
     // Every 8 hours:
     public static final String DEFAULT_SCHEDULE = "0 0 0/8 * * ?";
 
-    private CheckInCurator checkInCurator;
-
     private static Logger log = LoggerFactory.getLogger(CleanupCheckInsJob.class);
 
-    @Inject
-    public CleanupCheckInsJob(CheckInCurator checkInCurator) {
-        this.checkInCurator = checkInCurator;
-    }
-
     public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
-        log.info("Cleaning up old consumer check-ins.");
-        int deleted = checkInCurator.cleanupOldCheckIns();
-        log.info("Deleted {} check-ins.", deleted);
+        log.info("Consumer check-ins no longer need to be cleaned up, " +
+            "this job can be unscheduled.");
     }
 }
@@ -16,44 +16,84 @@ package org.candlepin.pinsetter.tasks;
 
 import static org.quartz.JobBuilder.*;
 
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.Entitler;
+import org.candlepin.guice.CandlepinSingletonScope;
+import org.candlepin.guice.SimpleScope;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.Entitlement;
+import org.candlepin.model.JobCurator;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.resource.dto.AutobindData;
 import org.candlepin.util.Util;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
-import com.google.inject.persist.Transactional;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
 
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * HealEntireOrgJob
+ *
+ * Heals every consumer of an org. The consumers are split into partitions
+ * which a few worker threads heal in parallel. Each worker heals its partition
+ * in its own unit of work, one consumer per transaction, and the job result
+ * shows how many consumers are done while the job runs.
  */
 public class HealEntireOrgJob extends UniqueByOwnerJob {
     private static Logger log = LoggerFactory.getLogger(HealEntireOrgJob.class);
+
+    // Consumers healed per unit of work, which bounds the worker's session
+    private static final int PARTITION_SIZE = 50;
+
     protected OwnerCurator ownerCurator;
-    protected Entitler entitler;
-    protected ConsumerCurator consumerCurator;
+    protected JobCurator jobCurator;
+    protected Provider<Entitler> entitlerProvider;
+    protected Provider<ConsumerCurator> consumerCuratorProvider;
+    protected Provider<EventSink> sinkProvider;
+    protected CandlepinSingletonScope singletonScope;
+    protected SimpleScope jobScope;
+    protected int threads;
     protected static String prefix = "heal_entire_org_";
 
     @Inject
-    public HealEntireOrgJob(Entitler e,
-            ConsumerCurator c, OwnerCurator o) {
-        this.entitler = e;
-        this.consumerCurator = c;
-        this.ownerCurator = o;
+    public HealEntireOrgJob(Provider<Entitler> entitlerProvider,
+        Provider<ConsumerCurator> consumerCuratorProvider, Provider<EventSink> sinkProvider,
+        OwnerCurator ownerCurator, JobCurator jobCurator, Configuration config,
+        CandlepinSingletonScope singletonScope,
+        @Named("PinsetterJobScope") SimpleScope jobScope) {
+        this.entitlerProvider = entitlerProvider;
+        this.consumerCuratorProvider = consumerCuratorProvider;
+        this.sinkProvider = sinkProvider;
+        this.ownerCurator = ownerCurator;
+        this.jobCurator = jobCurator;
+        this.singletonScope = singletonScope;
+        this.jobScope = jobScope;
+        this.threads = Math.max(1, config.getInt(ConfigProperties.HEAL_ORG_WORKER_THREADS));
     }
 
     @Override
@@ -62,21 +102,38 @@ public class HealEntireOrgJob extends UniqueByOwnerJob {
             JobDataMap map = ctx.getMergedJobDataMap();
             String ownerId = (String) map.get("ownerId");
             Date entitleDate = (Date) map.get("entitle_date");
+            String jobId = ctx.getJobDetail().getKey().getName();
             List<String> uuids = ownerCurator.getConsumerUuids(ownerId);
-            for (String uuid : uuids) {
-                // Do not send in product IDs.  CandlepinPoolManager will take care
-                // of looking up the non or partially compliant products to bind.
-                try {
-                    Consumer consumer = consumerCurator.getConsumer(uuid);
-                    healSingleConsumer(consumer, entitleDate);
+            Principal principal = ResteasyProviderFactory.getContextData(Principal.class);
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new HealThreadFactory(jobId));
+            int healed = 0;
+            int failed = 0;
+            try {
+                CompletionService<HealResult> completion =
+                    new ExecutorCompletionService<HealResult>(executor);
+                List<List<String>> partitions = Lists.partition(uuids, PARTITION_SIZE);
+                for (List<String> partition : partitions) {
+                    completion.submit(new HealPartition(jobId, partition, entitleDate,
+                        principal));
                 }
-                // We want to catch everything and continue.
-                // Perhaps add something to surface errors later
-                catch (Exception e) {
-                    log.debug("Healing failed for UUID " + uuid +
-                        " with message: " + e.getMessage());
+
+                for (int i = 0; i < partitions.size(); i++) {
+                    HealResult result = completion.take().get();
+                    healed += result.healed;
+                    failed += result.failed;
+                    reportProgress(jobId, String.format(
+                        "Processed %d of %d consumers, %d failed.",
+                        healed + failed, uuids.size(), failed));
                 }
             }
+            finally {
+                executor.shutdownNow();
+            }
+
+            ctx.setResult(String.format("Processed %d of %d consumers, %d failed.",
+                healed + failed, uuids.size(), failed));
         }
         catch (Exception e) {
             log.error("EntitlerJob encountered a problem.", e);
@@ -85,13 +142,13 @@ public class HealEntireOrgJob extends UniqueByOwnerJob {
         }
     }
 
-    /*
-     * Each consumer heal should be a separate transaction
-     */
-    @Transactional
-    private void healSingleConsumer(Consumer consumer, Date date) {
-        List<Entitlement> ents = entitler.bindByProducts(AutobindData.create(consumer).on(date), true);
-        entitler.sendEvents(ents);
+    private void reportProgress(String jobId, String progress) {
+        try {
+            jobCurator.updateResult(jobId, progress);
+        }
+        catch (RuntimeException e) {
+            log.warn("Unable to update the progress of job {}", jobId, e);
+        }
     }
 
     public static JobDetail healEntireOrg(String ownerId, Date entitleDate) {
@@ -109,4 +166,97 @@ public class HealEntireOrgJob extends UniqueByOwnerJob {
 
         return detail;
     }
+
+    /**
+     * Number of consumers of a partition which were healed, or failed to be.
+     */
+    private static class HealResult {
+        private int healed;
+        private int failed;
+    }
+
+    /**
+     * Heals one partition of consumers on a worker thread. The worker sets up
+     * the same scopes, principal and unit of work a job thread has, and gets
+     * its own Entitler and curators in them.
+     */
+    private class HealPartition implements Callable<HealResult> {
+        private final String jobId;
+        private final List<String> uuids;
+        private final Date entitleDate;
+        private final Principal principal;
+
+        public HealPartition(String jobId, List<String> uuids, Date entitleDate,
+            Principal principal) {
+            this.jobId = jobId;
+            this.uuids = uuids;
+            this.entitleDate = entitleDate;
+            this.principal = principal;
+        }
+
+        @Override
+        public HealResult call() {
+            MDC.put("requestType", "job");
+            MDC.put("requestUuid", jobId);
+            jobScope.enter();
+            singletonScope.enter();
+            ResteasyProviderFactory.pushContext(Principal.class, principal);
+            boolean startedUow = startUnitOfWork();
+            try {
+                Entitler entitler = entitlerProvider.get();
+                ConsumerCurator consumerCurator = consumerCuratorProvider.get();
+                HealResult result = new HealResult();
+                for (String uuid : uuids) {
+                    // Do not send in product IDs.  CandlepinPoolManager will take care
+                    // of looking up the non or partially compliant products to bind.
+                    try {
+                        Consumer consumer = consumerCurator.getConsumer(uuid);
+                        // Each bind runs in its own transaction, which locks the
+                        // pools it binds in pool ID order.
+                        List<Entitlement> ents = entitler.bindByProducts(
+                            AutobindData.create(consumer).on(entitleDate), true);
+                        entitler.sendEvents(ents);
+                        result.healed++;
+                    }
+                    // We want to catch everything and continue.
+                    // Perhaps add something to surface errors later
+                    catch (Exception e) {
+                        result.failed++;
+                        log.debug("Healing failed for UUID " + uuid +
+                            " with message: " + e.getMessage());
+                    }
+                }
+                sinkProvider.get().sendEvents();
+                return result;
+            }
+            finally {
+                if (startedUow) {
+                    endUnitOfWork();
+                }
+                ResteasyProviderFactory.popContextData(Principal.class);
+                singletonScope.exit();
+                jobScope.exit();
+                MDC.clear();
+            }
+        }
+    }
+
+    /**
+     * Daemon threads named after the job, so they never hold up shutdown.
+     */
+    private static class HealThreadFactory implements ThreadFactory {
+        private final String jobId;
+        private final AtomicInteger count = new AtomicInteger();
+
+        public HealThreadFactory(String jobId) {
+            this.jobId = jobId;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, jobId + "-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
 }
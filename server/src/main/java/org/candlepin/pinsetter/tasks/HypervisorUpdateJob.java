@@ -29,6 +29,7 @@ import org.candlepin.model.VirtConsumerMap;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.resource.ConsumerResource;
 import org.candlepin.resource.dto.HypervisorUpdateResult;
+import org.candlepin.resource.util.GuestIdReconciler;
 import org.candlepin.util.Util;
 
 import com.google.inject.Inject;
@@ -49,8 +50,10 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
@@ -65,6 +68,7 @@ public class HypervisorUpdateJob extends UniqueByOwnerJob {
     private OwnerCurator ownerCurator;
     private ConsumerCurator consumerCurator;
     private ConsumerResource consumerResource;
+    private GuestIdReconciler guestIdReconciler;
 
     public static final String CREATE = "create";
     public static final String DATA = "data";
@@ -73,10 +77,11 @@ public class HypervisorUpdateJob extends UniqueByOwnerJob {
 
     @Inject
     public HypervisorUpdateJob(OwnerCurator ownerCurator, ConsumerCurator consumerCurator,
-            ConsumerResource consumerResource) {
+            ConsumerResource consumerResource, GuestIdReconciler guestIdReconciler) {
         this.ownerCurator = ownerCurator;
         this.consumerCurator = consumerCurator;
         this.consumerResource = consumerResource;
+        this.guestIdReconciler = guestIdReconciler;
     }
 
     /**
@@ -141,9 +146,17 @@ public class HypervisorUpdateJob extends UniqueByOwnerJob {
                     getGuestsHostMap(owner, guests);
 
 
+            // Guest IDs are reconciled for all hosts at once below, the rest of
+            // each host's details are updated as we go:
+            Map<Consumer, List<GuestId>> reportedGuests = new LinkedHashMap<Consumer, List<GuestId>>();
+            Map<Consumer, Boolean> knownHosts = new LinkedHashMap<Consumer, Boolean>();
+            List<Consumer> createdHosts = new ArrayList<Consumer>();
             for (String hypervisorId : hosts) {
                 Consumer knownHost = hypervisorConsumersMap.get(hypervisorId);
                 Consumer incoming = incomingHosts.get(hypervisorId);
+                List<GuestId> incomingGuests = incoming.getGuestIds();
+                incoming.setGuestIds(null);
+
                 if (knownHost == null) {
                     if (!create) {
                         result.failed(hypervisorId, "Unable to find hypervisor with id " +
@@ -156,16 +169,44 @@ public class HypervisorUpdateJob extends UniqueByOwnerJob {
                                 guestHypervisorConsumers, false);
                         consumerResource.create(newHost, principal, null, owner.getKey(), null, false);
                         hypervisorConsumersMap.add(hypervisorId, newHost);
-                        result.created(newHost);
+                        createdHosts.add(newHost);
+                        if (incomingGuests != null) {
+                            reportedGuests.put(newHost, incomingGuests);
+                        }
+                    }
+                }
+                else {
+                    knownHosts.put(knownHost, consumerResource.performConsumerUpdates(incoming,
+                        knownHost, guestConsumersMap, guestHypervisorConsumers, false));
+                    if (incomingGuests != null) {
+                        reportedGuests.put(knownHost, incomingGuests);
                     }
                 }
-                else if (consumerResource.performConsumerUpdates(incoming, knownHost,
-                        guestConsumersMap, guestHypervisorConsumers, false)) {
-                    consumerCurator.update(knownHost);
-                    result.updated(knownHost);
+            }
+
+            GuestIdReconciler.Result reconciled = guestIdReconciler.reconcile(reportedGuests,
+                guestConsumersMap, guestHypervisorConsumers);
+            Map<Consumer, String> failedHosts = reconciled.getFailedHosts();
+            for (Consumer failedHost : failedHosts.keySet()) {
+                result.failed(failedHost.getHypervisorId().getHypervisorId(),
+                    failedHosts.get(failedHost));
+            }
+            for (Consumer createdHost : createdHosts) {
+                if (!failedHosts.containsKey(createdHost)) {
+                    result.created(createdHost);
+                }
+            }
+            for (Entry<Consumer, Boolean> knownHost : knownHosts.entrySet()) {
+                if (failedHosts.containsKey(knownHost.getKey())) {
+                    continue;
+                }
+                if (knownHost.getValue() ||
+                    reconciled.getChangedHosts().contains(knownHost.getKey())) {
+                    consumerCurator.update(knownHost.getKey());
+                    result.updated(knownHost.getKey());
                 }
                 else {
-                    result.unchanged(knownHost);
+                    result.unchanged(knownHost.getKey());
                 }
             }
             context.setResult(result);
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+
+import com.google.inject.Inject;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Verifies the stored consumed and exported quantities of all pools against
+ * their entitlements, and corrects the pools where they differ.
+ *
+ * The quantities are maintained as entitlements are granted, adjusted and
+ * revoked, so this should normally find nothing. Corrections are logged.
+ */
+public class PoolConsumptionRepairJob extends KingpinJob {
+
+    // Every day at 3:30 AM:
+    public static final String DEFAULT_SCHEDULE = "0 30 3 * * ?";
+
+    private PoolCurator poolCurator;
+
+    private static Logger log = LoggerFactory.getLogger(PoolConsumptionRepairJob.class);
+
+    @Inject
+    public PoolConsumptionRepairJob(PoolCurator poolCurator) {
+        this.poolCurator = poolCurator;
+    }
+
+    public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
+        log.info("Verifying pool consumption.");
+        List<String> poolIds = poolCurator.listIdsWithWrongConsumption();
+
+        int repaired = 0;
+        for (String poolId : poolIds) {
+            // Entitlements may have changed since the pools were listed, the
+            // quantities are checked again under the pool lock.
+            Pool pool = poolCurator.find(poolId);
+            if (pool != null && poolCurator.recalculateConsumed(pool)) {
+                repaired++;
+            }
+        }
+        log.info("Repaired consumption of {} pools.", repaired);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CertificateWorkerPool
+ *
+ * A fixed number of threads, one per processor by default, shared by everything
+ * which generates certificates in bulk. Only the CPU bound part of building a
+ * certificate runs here, signing and PEM encoding it. Workers never see the
+ * hibernate session, everything they need is looked up before a task is
+ * submitted.
+ *
+ * Idle threads are let go after a minute, so the pool costs nothing between
+ * bulk requests.
+ */
+@Singleton
+public class CertificateWorkerPool {
+
+    private static final long IDLE_SECONDS = 60;
+
+    private final ThreadPoolExecutor executor;
+
+    @Inject
+    public CertificateWorkerPool(Configuration config) {
+        int configured = config.getInt(ConfigProperties.CERT_WORKER_THREADS);
+        int threads = configured > 0 ? configured :
+            Runtime.getRuntime().availableProcessors();
+
+        this.executor = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Daemon threads, so the pool never holds up shutdown.
+     */
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "cert-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
 import java.security.Key;
@@ -77,6 +78,19 @@ public abstract class PKIUtility {
     public abstract X509CRL createX509CRL(List<X509CRLEntryWrapper> entries,
         BigInteger crlNumber);
 
+    /**
+     * Writes a PEM encoded CRL straight to a stream. The entries are iterated
+     * twice, once to size the DER structure and once to write and sign it, so
+     * only a single entry is held in memory at a time however long the CRL is.
+     *
+     * @param entries the entries
+     * @param crlNumber the CRL number
+     * @param out stream to write the CRL to, left open
+     * @throws IOException if the CRL cannot be written
+     */
+    public abstract void writePemEncodedCRL(Iterable<X509CRLEntryWrapper> entries,
+        BigInteger crlNumber, OutputStream out) throws IOException;
+
     public KeyPair decodeKeys(byte[] privKeyBits, byte[] pubKeyBits)
         throws InvalidKeySpecException, NoSuchAlgorithmException {
 
@@ -122,10 +136,24 @@ public abstract class PKIUtility {
         }
     }
 
-    public byte[] getSHA256WithRSAHash(InputStream input) {
+    /**
+     * @return a SHA256withRSA signature ready to sign with the CA key, for data
+     * which is only ever seen a piece at a time
+     */
+    public Signature getSHA256WithRSASigner() {
         try {
             Signature signature = Signature.getInstance("SHA256withRSA");
             signature.initSign(reader.getCaKey());
+            return signature;
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public byte[] getSHA256WithRSAHash(InputStream input) {
+        try {
+            Signature signature = getSHA256WithRSASigner();
 
             updateSignature(input, signature);
             return signature.sign();
@@ -24,11 +24,20 @@ import org.candlepin.util.Util;
 
 import com.google.inject.Inject;
 
+import org.apache.commons.codec.binary.Base64;
+import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERInteger;
+import org.bouncycastle.asn1.DERNull;
 import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
 import org.bouncycastle.asn1.DERUTF8String;
 import org.bouncycastle.asn1.misc.MiscObjectIdentifiers;
 import org.bouncycastle.asn1.misc.NetscapeCertType;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.CRLNumber;
 import org.bouncycastle.asn1.x509.CRLReason;
 import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
@@ -36,7 +45,9 @@ import org.bouncycastle.asn1.x509.GeneralName;
 import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.asn1.x509.KeyPurposeId;
 import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.asn1.x509.Time;
 import org.bouncycastle.asn1.x509.X509Extensions;
+import org.bouncycastle.asn1.x509.X509ExtensionsGenerator;
 import org.bouncycastle.openssl.PEMWriter;
 import org.bouncycastle.x509.X509V2CRLGenerator;
 import org.bouncycastle.x509.X509V3CertificateGenerator;
@@ -45,14 +56,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.SignatureException;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAKey;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -91,6 +109,9 @@ import javax.security.auth.x500.X500Principal;
 public class BouncyCastlePKIUtility extends PKIUtility {
     private static Logger log = LoggerFactory.getLogger(BouncyCastlePKIUtility.class);
 
+    private static final int SEQUENCE = 0x30;
+    private static final int BIT_STRING = 0x03;
+
     @Inject
     public BouncyCastlePKIUtility(PKIReader reader,
         SubjectKeyIdentifierWriter subjectKeyWriter) {
@@ -197,6 +218,165 @@ public class BouncyCastlePKIUtility extends PKIUtility {
         }
     }
 
+    @Override
+    public void writePemEncodedCRL(Iterable<X509CRLEntryWrapper> entries,
+        BigInteger crlNumber, OutputStream out) throws IOException {
+
+        try {
+            X509Certificate caCert = reader.getCACert();
+            PrivateKey caKey = reader.getCaKey();
+            Signature signer = Signature.getInstance(SIGNATURE_ALGO);
+            signer.initSign(caKey);
+
+            // Same structure X509V2CRLGenerator builds, only written as we go
+            AlgorithmIdentifier sigAlg = new AlgorithmIdentifier(
+                PKCSObjectIdentifiers.sha1WithRSAEncryption, DERNull.INSTANCE);
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            head.write(new DERInteger(1).getEncoded());
+            head.write(sigAlg.getEncoded());
+            head.write(caCert.getIssuerX500Principal().getEncoded());
+            head.write(new Time(new Date()).getEncoded());
+            head.write(new Time(Util.tomorrow()).getEncoded());
+
+            X509ExtensionsGenerator crlExtensions = new X509ExtensionsGenerator();
+            crlExtensions.addExtension(X509Extensions.AuthorityKeyIdentifier, false,
+                new AuthorityKeyIdentifierStructure(caCert));
+            crlExtensions.addExtension(X509Extensions.CRLNumber, false,
+                new CRLNumber(crlNumber));
+            byte[] tail = new DERTaggedObject(0, crlExtensions.generate()).getEncoded();
+
+            X509ExtensionsGenerator entryExtensions = new X509ExtensionsGenerator();
+            entryExtensions.addExtension(X509Extensions.ReasonCode, false,
+                new CRLReason(CRLReason.privilegeWithdrawn));
+            X509Extensions reason = entryExtensions.generate();
+
+            // Sizing pass, DER needs every length up front
+            long revokedLength = 0;
+            for (X509CRLEntryWrapper entry : entries) {
+                revokedLength += encodeCRLEntry(entry, reason).length;
+            }
+            // Like X509V2CRLGenerator, leave out revokedCertificates when empty
+            byte[] revokedHeader = revokedLength == 0 ? new byte[0] :
+                derHeader(SEQUENCE, revokedLength);
+            long tbsLength = head.size() + revokedHeader.length + revokedLength +
+                tail.length;
+            byte[] tbsHeader = derHeader(SEQUENCE, tbsLength);
+
+            int signatureLength = (((RSAKey) caKey).getModulus().bitLength() + 7) / 8;
+            byte[] sigAlgEncoded = sigAlg.getEncoded();
+            long signatureValueLength = derHeader(BIT_STRING, signatureLength + 1).length +
+                signatureLength + 1;
+
+            PemOutputStream pem = new PemOutputStream(out, "X509 CRL");
+            pem.write(derHeader(SEQUENCE, tbsHeader.length + tbsLength +
+                sigAlgEncoded.length + signatureValueLength));
+
+            writeSigned(pem, signer, tbsHeader);
+            writeSigned(pem, signer, head.toByteArray());
+            writeSigned(pem, signer, revokedHeader);
+            for (X509CRLEntryWrapper entry : entries) {
+                writeSigned(pem, signer, encodeCRLEntry(entry, reason));
+            }
+            writeSigned(pem, signer, tail);
+
+            pem.write(sigAlgEncoded);
+            pem.write(new DERBitString(signer.sign()).getEncoded());
+            pem.finish();
+            log.info("Completed writing CRL with {} bytes of entries.", revokedLength);
+        }
+        catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private byte[] encodeCRLEntry(X509CRLEntryWrapper entry, X509Extensions reason)
+        throws IOException {
+        ASN1EncodableVector v = new ASN1EncodableVector();
+        v.add(new DERInteger(entry.getSerialNumber()));
+        v.add(new Time(entry.getRevocationDate()));
+        v.add(reason);
+        return new DERSequence(v).getEncoded();
+    }
+
+    private void writeSigned(OutputStream out, Signature signer, byte[] data)
+        throws IOException, SignatureException {
+        signer.update(data);
+        out.write(data);
+    }
+
+    /*
+     * DER tag and definite length octets for a value of the given length.
+     */
+    private static byte[] derHeader(int tag, long length) {
+        if (length < 128) {
+            return new byte[] {(byte) tag, (byte) length};
+        }
+
+        int octets = 0;
+        for (long l = length; l > 0; l >>>= 8) {
+            octets++;
+        }
+        byte[] header = new byte[octets + 2];
+        header[0] = (byte) tag;
+        header[1] = (byte) (0x80 | octets);
+        for (int i = 0; i < octets; i++) {
+            header[header.length - 1 - i] = (byte) (length >>> (8 * i));
+        }
+        return header;
+    }
+
+    /**
+     * Base64 encodes whatever is written to it into PEM lines, the same format
+     * PEMWriter produces, without buffering more than a single line.
+     */
+    private static class PemOutputStream extends FilterOutputStream {
+        // 48 bytes make a 64 character line
+        private final byte[] line = new byte[48];
+        private final String type;
+        private int length = 0;
+
+        public PemOutputStream(OutputStream out, String type) throws IOException {
+            super(out);
+            this.type = type;
+            out.write(("-----BEGIN " + type + "-----\n").getBytes("US-ASCII"));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            line[length++] = (byte) b;
+            if (length == line.length) {
+                writeLine();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        public void finish() throws IOException {
+            if (length > 0) {
+                writeLine();
+            }
+            out.write(("-----END " + type + "-----\n").getBytes("US-ASCII"));
+            out.flush();
+        }
+
+        private void writeLine() throws IOException {
+            out.write(Base64.encodeBase64(Arrays.copyOf(line, length)));
+            out.write('\n');
+            length = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The caller owns the underlying stream
+            flush();
+        }
+    }
+
     private byte[] getPemEncoded(Object obj) throws IOException {
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         OutputStreamWriter oswriter = new OutputStreamWriter(byteArrayOutputStream);
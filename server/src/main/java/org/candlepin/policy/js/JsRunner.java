@@ -18,27 +18,30 @@ import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.RhinoException;
 import org.mozilla.javascript.Scriptable;
-import org.mozilla.javascript.ScriptableObject;
-import org.mozilla.javascript.Undefined;
-import org.mozilla.javascript.Wrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Date;
+
 /**
  * JsRunner - Responsible for running the javascript rules methods in all namespaces.
  * Used by the various "Rules" classes.
+ *
+ * Each call borrows a scope from the {@link RulesScopePool} of the rules version
+ * this runner was created with, applies its context to it and hands the scope
+ * back once the call returns.
  */
 public class JsRunner {
     private static Logger log = LoggerFactory.getLogger(JsRunner.class);
 
     private Object rulesNameSpace;
     private String namespace;
-    private Scriptable scope;
+    private RulesScopePool scopePool;
 
     private boolean initialized = false;
 
-    public JsRunner(Scriptable scope) {
-        this.scope = scope;
+    public JsRunner(RulesScopePool scopePool) {
+        this.scopePool = scopePool;
     }
 
     /**
@@ -51,69 +54,91 @@ public class JsRunner {
         this.namespace = namespace;
 
         if (!initialized) {
-
-            Context context = Context.enter();
             try {
-                Object func = ScriptableObject.getProperty(scope, namespace);
-                this.rulesNameSpace = unwrapReturnValue(((Function) func).call(context,
-                    scope, scope, Context.emptyArgs));
-
+                this.rulesNameSpace = scopePool.getNamespace(namespace);
                 this.initialized = true;
             }
-            catch (RhinoException ex) {
+            catch (RuleParseException ex) {
                 this.initialized = false;
-                throw new RuleParseException(ex);
-            }
-            finally {
-                Context.exit();
+                throw ex;
             }
         }
     }
 
-    public void reinitTo(String namespace) {
-        initialized = false;
-        init(namespace);
+    /**
+     * @return true if the loaded rules accept a {@link NativeJsContext} and return
+     * native objects, false if they must be driven through a {@link JsonJsContext}.
+     */
+    public boolean supportsNativeContext() {
+        return scopePool.supportsNativeContext();
     }
 
-    Object unwrapReturnValue(Object result) {
-        if (result instanceof Wrapper) {
-            result = ((Wrapper) result).unwrap();
-        }
+    /**
+     * @return timestamp of the rules version this runner executes.
+     */
+    public Date getRulesUpdated() {
+        return scopePool.getUpdated();
+    }
 
-        return result instanceof Undefined ? null : result;
+    /**
+     * @param method name of a function in this runner's namespace
+     * @return true if the loaded rules define the function. Rules uploaded to
+     * the database may be older than the server.
+     */
+    public boolean hasFunction(String method) {
+        return scopePool.getFunction(namespace, method) != null;
+    }
+
+    public void reinitTo(String namespace) {
+        initialized = false;
+        init(namespace);
     }
 
     @SuppressWarnings("unchecked")
     public <T> T invokeMethod(String method) throws NoSuchMethodException,
             RhinoException {
-        Scriptable localScope = Context.toObject(this.rulesNameSpace, scope);
-        Object func = ScriptableObject.getProperty(localScope, method);
-        if (!(func instanceof Function)) {
+        return (T) invokeMethod(method, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T invokeMethod(String method, JsContext context)
+        throws NoSuchMethodException, RhinoException {
+        Function func = scopePool.getFunction(namespace, method);
+        if (func == null) {
             throw new NoSuchMethodException("no such javascript method: " + method);
         }
-        Context context = Context.enter();
+
+        Scriptable scope = scopePool.borrowScope();
         try {
-            return (T) unwrapReturnValue(((Function) func).call(context, scope, localScope,
-                Context.emptyArgs));
+            if (context != null) {
+                context.applyTo(scope);
+            }
+
+            Context cx = Context.enter();
+            try {
+                Scriptable localScope = Context.toObject(this.rulesNameSpace, scope);
+                return (T) RulesScopePool.unwrap(func.call(cx, scope, localScope,
+                    Context.emptyArgs));
+            }
+            finally {
+                Context.exit();
+            }
         }
         finally {
-            Context.exit();
+            scopePool.returnScope(scope);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public <T> T invokeMethod(String method, JsContext context)
-        throws NoSuchMethodException, RhinoException {
-        context.applyTo(scope);
-        return (T) invokeMethod(method);
+    public <T> T invokeRule(String ruleName) {
+        return invokeRule(ruleName, null);
     }
 
-    public <T> T invokeRule(String ruleName) {
+    public <T> T invokeRule(String ruleName, JsContext context) {
         log.debug("Running rule: " + ruleName + " in namespace: " + namespace);
 
         T returner = null;
         try {
-            returner = this.invokeMethod(ruleName);
+            returner = this.invokeMethod(ruleName, context);
         }
         catch (NoSuchMethodException ex) {
             log.info("No rule found: " + ruleName + " in namespace: " + namespace);
@@ -124,11 +149,6 @@ public class JsRunner {
         return returner;
     }
 
-    public <T> T invokeRule(String ruleName, JsContext context) {
-        context.applyTo(scope);
-        return invokeRule(ruleName);
-    }
-
     public <T extends Object> T runJsFunction(Class<T> clazz, String function,
         JsContext context) {
         T returner = null;
@@ -16,6 +16,8 @@ package org.candlepin.policy.js;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.SystemPrincipal;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.RulesCurator;
 
 import com.google.inject.Inject;
@@ -31,24 +33,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Reads/compiles our javascript rules and the standard js objects only
- * once across the JVM lifetime (and whenever the rules require a recompile), and creates
- * lightweight execution scopes per thread/request.
+ * once across the JVM lifetime (and whenever the rules require a recompile), and hands
+ * out runners backed by a {@link RulesScopePool} of reusable execution scopes.
+ *
+ * The rules timestamp is not checked against the database on every injection: it is
+ * re-read at most once per {@link ConfigProperties} <code>RULES_CHECK_INTERVAL</code>
+ * seconds, and on every injection for a while after this node changes the rules
+ * itself. Rules changed on another node may therefore be used here up to one interval
+ * late. An interval of 0 checks on every injection.
  */
 public class JsRunnerProvider implements Provider<JsRunner> {
     private static Logger log = LoggerFactory.getLogger(JsRunnerProvider.class);
 
+    private static final int MAX_IDLE_SCOPES = 64;
+
     private RulesCurator rulesCurator;
+    // How often other nodes' rules changes are picked up, in milliseconds
+    private final long checkInterval;
 
-    private Script script;
-    private Scriptable scope;
-    private volatile Date updated;
-    // Use this lock to access script, scope and updated
-    private ReadWriteLock scriptLock = new ReentrantReadWriteLock();
+    private volatile RulesScopePool scopePool;
+    private volatile long nextCheck;
+    private volatile long forceCheckUntil;
+    private volatile long seenRevision;
+    // Held while compiling so two threads never compile the same rules
+    private final Object compileLock = new Object();
 
     /**
      * DynamicScopeContextFactory - replace the standard rhino context factory with one that
@@ -71,12 +82,15 @@ public class JsRunnerProvider implements Provider<JsRunner> {
     }
 
     @Inject
-    public JsRunnerProvider(RulesCurator rulesCurator) {
+    public JsRunnerProvider(RulesCurator rulesCurator, Configuration config) {
         this.rulesCurator = rulesCurator;
+        this.checkInterval = config.getLong(ConfigProperties.RULES_CHECK_INTERVAL) * 1000;
 
         log.debug("Compiling rules for initial load");
         this.rulesCurator.updateDbRules();
+        this.seenRevision = this.rulesCurator.getLocalRevision();
         this.compileRules(this.rulesCurator);
+        this.nextCheck = System.currentTimeMillis() + checkInterval;
     }
 
     /**
@@ -87,64 +101,75 @@ public class JsRunnerProvider implements Provider<JsRunner> {
      * @param rulesCurator
      */
     private void compileRules(RulesCurator rulesCurator) {
-        scriptLock.writeLock().lock();
-        try {
+        synchronized (compileLock) {
             // XXX: we need a principal to access the rules,
             // but pushing and popping system principal could be a bad idea
             Principal systemPrincipal = new SystemPrincipal();
             ResteasyProviderFactory.pushContext(Principal.class, systemPrincipal);
-            // Check to see if we need to recompile. we do this inside the write lock
-            // just to avoid race conditions where we might double compile
-            Date newUpdated = rulesCurator.getUpdated();
-            if (newUpdated.equals(this.updated)) {
-                return;
-            }
-
-            log.debug("Recompiling rules with timestamp: " + newUpdated);
-
-            Context context = Context.enter();
-            context.setOptimizationLevel(9);
-            scope = context.initStandardObjects(null, true);
             try {
-                script = context.compileString(
-                    rulesCurator.getRules().getRules(), "rules", 1, null);
-                script.exec(context, scope);
-                ((ScriptableObject) scope).sealObject();
-                this.updated = newUpdated;
+                // Check to see if we need to recompile. we do this inside the lock
+                // just to avoid race conditions where we might double compile
+                Date newUpdated = rulesCurator.getUpdated();
+                if (scopePool != null && newUpdated.equals(scopePool.getUpdated())) {
+                    return;
+                }
+
+                log.debug("Recompiling rules with timestamp: " + newUpdated);
+
+                Context context = Context.enter();
+                context.setOptimizationLevel(9);
+                Scriptable scope = context.initStandardObjects(null, true);
+                try {
+                    Script script = context.compileString(
+                        rulesCurator.getRules().getRules(), "rules", 1, null);
+                    script.exec(context, scope);
+                    ((ScriptableObject) scope).sealObject();
+
+                    // Swapping the reference invalidates every pooled scope and
+                    // cached function of the previous rules in one step.
+                    this.scopePool = new RulesScopePool(scope, newUpdated, MAX_IDLE_SCOPES);
+                }
+                finally {
+                    Context.exit();
+                }
             }
             finally {
-                Context.exit();
+                ResteasyProviderFactory.popContextData(Principal.class);
             }
         }
-        finally {
-            ResteasyProviderFactory.popContextData(Principal.class);
-            scriptLock.writeLock().unlock();
+    }
+
+    /*
+     * Decides whether this injection needs to look at the rules timestamp in the
+     * database. Changes made through this node's RulesCurator are only visible
+     * once their transaction commits, so after one we keep checking for a full
+     * interval rather than just once.
+     */
+    private boolean shouldCheckRules() {
+        if (checkInterval <= 0) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        long revision = rulesCurator.getLocalRevision();
+        if (revision != seenRevision) {
+            seenRevision = revision;
+            forceCheckUntil = now + checkInterval;
         }
+
+        if (now < forceCheckUntil || now >= nextCheck) {
+            nextCheck = now + checkInterval;
+            return true;
+        }
+        return false;
     }
 
     public JsRunner get() {
-        /*
-         * Create a new thread/request local javascript scope for the JsRules,
-         * based on the preinitialized global one (which contains our js rules).
-         */
-        // Avoid a write lock if we can
-        if (!rulesCurator.getUpdated().equals(this.updated)) {
+        if (shouldCheckRules()) {
             compileRules(this.rulesCurator);
         }
-        Scriptable rulesScope;
-        scriptLock.readLock().lock();
-        try {
-            Context context = Context.enter();
-            rulesScope = context.newObject(scope);
-            rulesScope.setPrototype(scope);
-            rulesScope.setParentScope(null);
-            Context.exit();
-        }
-        finally {
-            scriptLock.readLock().unlock();
-        }
 
-        return new JsRunner(rulesScope);
+        return new JsRunner(scopePool);
     }
 
 }
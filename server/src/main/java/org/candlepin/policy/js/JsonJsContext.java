@@ -16,6 +16,8 @@ package org.candlepin.policy.js;
 
 import org.mozilla.javascript.Scriptable;
 
+import java.util.Map.Entry;
+
 /**
  * JsonContext
  *
@@ -26,8 +28,10 @@ import org.mozilla.javascript.Scriptable;
  */
 public class JsonJsContext extends JsContext {
 
-    private final RulesObjectMapper rulesObjectMapper;
-    private ArgumentJsContext nonSerializableContext;
+    public static final String JSON_CONTEXT_KEY = "json_context";
+
+    protected final RulesObjectMapper rulesObjectMapper;
+    protected ArgumentJsContext nonSerializableContext;
 
     public JsonJsContext(RulesObjectMapper rulesObjectMapper) {
         this.rulesObjectMapper = rulesObjectMapper;
@@ -36,10 +40,22 @@ public class JsonJsContext extends JsContext {
 
     @Override
     public void applyTo(Scriptable scope) {
-        scope.put("json_context", scope, this.rulesObjectMapper.toJsonString(contextArgs));
+        scope.delete(NativeJsContext.NATIVE_CONTEXT_KEY);
+        scope.put(JSON_CONTEXT_KEY, scope, this.rulesObjectMapper.toJsonString(contextArgs));
         nonSerializableContext.applyTo(scope);
     }
 
+    /**
+     * Serializes the context args now rather than when the context is applied,
+     * so that it can be applied on another thread without touching the model
+     * objects (and their lazily loaded collections) it was built from.
+     */
+    public void detach() {
+        for (Entry<String, Object> entry : contextArgs.entrySet()) {
+            entry.setValue(rulesObjectMapper.toJsonTree(entry.getValue()));
+        }
+    }
+
     public void put(String contextKey, Object contextVal, boolean serializable) {
         if (!serializable) {
             nonSerializableContext.put(contextKey, contextVal);
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * NativeJsContext
+ *
+ * A javascript context which hands its context args to the rules as a
+ * pre-built tree of native javascript objects rather than as a JSON string.
+ * The model objects are run through the same filtered jackson mapper used by
+ * {@link JsonJsContext}, but straight into a token tree, so no JSON text is
+ * written in Java or parsed again inside Rhino.
+ *
+ * Rules that understand this context (see read_context in rules.js) also
+ * return their results as native objects, which can be converted back with
+ * {@link #toJava(Object)}.
+ */
+public class NativeJsContext extends JsonJsContext {
+
+    public static final String NATIVE_CONTEXT_KEY = "native_context";
+
+    public NativeJsContext(RulesObjectMapper rulesObjectMapper) {
+        super(rulesObjectMapper);
+    }
+
+    /**
+     * Creates the cheapest context the rules loaded into the given runner can read.
+     *
+     * @param jsRules runner the context will be passed to.
+     * @param rulesObjectMapper mapper used to serialize the context args.
+     * @return a NativeJsContext if the rules support it, a JsonJsContext otherwise.
+     */
+    public static JsonJsContext create(JsRunner jsRules, RulesObjectMapper rulesObjectMapper) {
+        if (jsRules.supportsNativeContext()) {
+            return new NativeJsContext(rulesObjectMapper);
+        }
+        return new JsonJsContext(rulesObjectMapper);
+    }
+
+    @Override
+    public void applyTo(Scriptable scope) {
+        Context cx = Context.enter();
+        try {
+            Scriptable nativeContext = cx.newObject(scope);
+            for (Entry<String, Object> entry : contextArgs.entrySet()) {
+                JsonNode node = rulesObjectMapper.toJsonTree(entry.getValue());
+                nativeContext.put(entry.getKey(), nativeContext, toNative(cx, scope, node));
+            }
+            scope.delete(JSON_CONTEXT_KEY);
+            scope.put(NATIVE_CONTEXT_KEY, scope, nativeContext);
+        }
+        finally {
+            Context.exit();
+        }
+        nonSerializableContext.applyTo(scope);
+    }
+
+    /*
+     * Mirrors what JSON.parse would have built from the serialized node: objects,
+     * arrays, strings, booleans, and all numbers as doubles.
+     */
+    private static Object toNative(Context cx, Scriptable scope, JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        }
+
+        if (node.isObject()) {
+            Scriptable obj = cx.newObject(scope);
+            Iterator<Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Entry<String, JsonNode> field = fields.next();
+                obj.put(field.getKey(), obj, toNative(cx, scope, field.getValue()));
+            }
+            return obj;
+        }
+
+        if (node.isArray()) {
+            Object[] elements = new Object[node.size()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = toNative(cx, scope, node.get(i));
+            }
+            return cx.newArray(scope, elements);
+        }
+
+        if (node.isNumber()) {
+            return node.doubleValue();
+        }
+
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+
+        return node.asText();
+    }
+
+    /**
+     * Converts a value returned from the rules into plain java maps, lists and
+     * scalars, following the same rules JSON.stringify applies: functions and
+     * undefined properties are dropped, dates become {@link Date}s and integral
+     * numbers come back as integers.
+     *
+     * @param value the (already unwrapped) value returned by a rules function.
+     * @return java representation of the value, suitable for jackson conversion.
+     */
+    public static Object toJava(Object value) {
+        // Date conversion may call back into javascript, which needs a context
+        Context.enter();
+        try {
+            return convertToJava(value);
+        }
+        finally {
+            Context.exit();
+        }
+    }
+
+    private static Object convertToJava(Object value) {
+        if (value == null || value instanceof Undefined) {
+            return null;
+        }
+
+        if (value instanceof Wrapper) {
+            return convertToJava(((Wrapper) value).unwrap());
+        }
+
+        if (value instanceof CharSequence) {
+            return value.toString();
+        }
+
+        if (value instanceof Number) {
+            return toJavaNumber((Number) value);
+        }
+
+        if (value instanceof NativeArray) {
+            NativeArray array = (NativeArray) value;
+            int length = (int) array.getLength();
+            List<Object> list = new ArrayList<Object>(length);
+            for (int i = 0; i < length; i++) {
+                Object element = array.get(i, array);
+                list.add(element instanceof Function ? null : convertToJava(element));
+            }
+            return list;
+        }
+
+        if (value instanceof Scriptable) {
+            Scriptable obj = (Scriptable) value;
+            if ("Date".equals(obj.getClassName())) {
+                double time = Context.toNumber(obj);
+                return Double.isNaN(time) ? null : new Date((long) time);
+            }
+
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            for (Object id : obj.getIds()) {
+                Object property = (id instanceof Integer) ?
+                    ScriptableObject.getProperty(obj, (Integer) id) :
+                    ScriptableObject.getProperty(obj, id.toString());
+
+                if (property instanceof Function || property instanceof Undefined ||
+                    property == Scriptable.NOT_FOUND) {
+                    continue;
+                }
+                map.put(id.toString(), convertToJava(property));
+            }
+            return map;
+        }
+
+        return value;
+    }
+
+    private static Number toJavaNumber(Number number) {
+        if (!(number instanceof Double || number instanceof Float)) {
+            return number;
+        }
+
+        double d = number.doubleValue();
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            // JSON.stringify writes these out as null
+            return null;
+        }
+
+        if (d != Math.rint(d)) {
+            return d;
+        }
+
+        if (d >= Integer.MIN_VALUE && d <= Integer.MAX_VALUE) {
+            return (int) d;
+        }
+
+        if (d >= Long.MIN_VALUE && d <= Long.MAX_VALUE) {
+            return (long) d;
+        }
+
+        return d;
+    }
+}
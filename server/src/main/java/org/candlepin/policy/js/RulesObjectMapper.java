@@ -20,6 +20,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.AnnotationIntrospector;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.introspect.AnnotationIntrospectorPair;
 import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
@@ -117,6 +118,54 @@ public class RulesObjectMapper {
         }
     }
 
+    public JsonNode toJsonTree(Object entity) {
+        if (entity instanceof JsonNode) {
+            // Already serialized, see JsonJsContext.detach()
+            return (JsonNode) entity;
+        }
+
+        try {
+            return this.mapper.valueToTree(entity);
+        }
+        catch (Exception e) {
+            log.error("Unable to serialize objects to a JSON tree.", e);
+            throw new IseException("Unable to serialize objects to a JSON tree.", e);
+        }
+    }
+
+    /**
+     * Builds an object from the value returned by a rules function, which is
+     * either a JSON string (JsonJsContext) or a native javascript object
+     * (NativeJsContext).
+     */
+    public <T extends Object> T fromRulesResult(Object result, Class<T> clazz) {
+        if (result == null || result instanceof String) {
+            return toObject((String) result, clazz);
+        }
+
+        try {
+            return mapper.convertValue(NativeJsContext.toJava(result), clazz);
+        }
+        catch (Exception e) {
+            log.error("Error converting rules result into: " + clazz.getName(), e);
+            throw new IseException("Unable to build object from rules result.", e);
+        }
+    }
+
+    public <T extends Object> T fromRulesResult(Object result, TypeReference<T> typeref) {
+        if (result == null || result instanceof String) {
+            return toObject((String) result, typeref);
+        }
+
+        try {
+            return mapper.convertValue(NativeJsContext.toJava(result), typeref);
+        }
+        catch (Exception e) {
+            log.error("Error converting rules result", e);
+            throw new IseException("Unable to build object from rules result.", e);
+        }
+    }
+
     public <T extends Object> T toObject(String json, Class<T> clazz) {
         try {
             return mapper.readValue(json, clazz);
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * RulesScopePool
+ *
+ * Holds everything derived from one compiled version of the rules: the sealed
+ * global scope, the namespace objects and functions resolved from it, and a
+ * pool of lightweight child scopes which are borrowed for the duration of a
+ * single rules call. When the rules change the provider simply builds a new
+ * pool and drops this one.
+ */
+public class RulesScopePool {
+
+    /*
+     * Rules which define this function know how to read a NativeJsContext, older
+     * rules files only understand the json_context string.
+     */
+    private static final String READ_CONTEXT_FUNCTION = "read_context";
+
+    private final Scriptable globalScope;
+    private final Date updated;
+    private final boolean nativeContextSupported;
+    private final BlockingQueue<Scriptable> idleScopes;
+    private final ConcurrentMap<String, Object> namespaces;
+    private final ConcurrentMap<String, Function> functions;
+
+    public RulesScopePool(Scriptable globalScope, Date updated, int maxIdleScopes) {
+        this.globalScope = globalScope;
+        this.updated = updated;
+        this.idleScopes = new ArrayBlockingQueue<Scriptable>(maxIdleScopes);
+        this.namespaces = new ConcurrentHashMap<String, Object>();
+        this.functions = new ConcurrentHashMap<String, Function>();
+        this.nativeContextSupported = ScriptableObject.getProperty(globalScope,
+            READ_CONTEXT_FUNCTION) instanceof Function;
+    }
+
+    public Date getUpdated() {
+        return updated;
+    }
+
+    public boolean supportsNativeContext() {
+        return nativeContextSupported;
+    }
+
+    /**
+     * Resolves the object returned by the given namespace function, calling the
+     * function only the first time the namespace is requested.
+     *
+     * @param namespace name of the rules namespace function
+     * @return the namespace object
+     */
+    public Object getNamespace(String namespace) {
+        Object ns = namespaces.get(namespace);
+        if (ns != null) {
+            return ns;
+        }
+
+        Context context = Context.enter();
+        try {
+            Object func = ScriptableObject.getProperty(globalScope, namespace);
+            ns = unwrap(((Function) func).call(context, globalScope, globalScope,
+                Context.emptyArgs));
+        }
+        catch (RhinoException ex) {
+            throw new RuleParseException(ex);
+        }
+        finally {
+            Context.exit();
+        }
+
+        if (ns == null) {
+            return null;
+        }
+
+        Object existing = namespaces.putIfAbsent(namespace, ns);
+        return existing != null ? existing : ns;
+    }
+
+    /**
+     * Looks up a function on a namespace object, caching the handle.
+     *
+     * @param namespace name of the rules namespace function
+     * @param method name of the method on the namespace object
+     * @return the function, or null if the namespace has no such method
+     */
+    public Function getFunction(String namespace, String method) {
+        String key = namespace + "." + method;
+        Function func = functions.get(key);
+        if (func != null) {
+            return func;
+        }
+
+        Object found = ScriptableObject.getProperty(
+            Context.toObject(getNamespace(namespace), globalScope), method);
+        if (!(found instanceof Function)) {
+            return null;
+        }
+
+        functions.putIfAbsent(key, (Function) found);
+        return (Function) found;
+    }
+
+    /**
+     * Hands out a child scope of the rules for a single call. Callers must give it
+     * back with {@link #returnScope(Scriptable)} once the call is done.
+     *
+     * @return an empty scope whose prototype is the compiled rules
+     */
+    public Scriptable borrowScope() {
+        Scriptable scope = idleScopes.poll();
+        if (scope != null) {
+            return scope;
+        }
+
+        Context context = Context.enter();
+        try {
+            scope = context.newObject(globalScope);
+            scope.setPrototype(globalScope);
+            scope.setParentScope(null);
+            return scope;
+        }
+        finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Clears anything the last call left in the scope (context args and the
+     * globals the rules assign to) and makes it available again. Scopes beyond
+     * the pool size are just left for the garbage collector.
+     *
+     * @param scope scope previously handed out by {@link #borrowScope()}
+     */
+    public void returnScope(Scriptable scope) {
+        for (Object id : scope.getIds()) {
+            if (id instanceof Integer) {
+                scope.delete((Integer) id);
+            }
+            else {
+                scope.delete(id.toString());
+            }
+        }
+        idleScopes.offer(scope);
+    }
+
+    static Object unwrap(Object result) {
+        if (result instanceof Wrapper) {
+            result = ((Wrapper) result).unwrap();
+        }
+
+        return result instanceof Undefined ? null : result;
+    }
+}
@@ -22,6 +22,7 @@ import org.candlepin.model.Product;
 import org.candlepin.model.ProvidedProduct;
 import org.candlepin.policy.js.JsRunner;
 import org.candlepin.policy.js.JsonJsContext;
+import org.candlepin.policy.js.NativeJsContext;
 import org.candlepin.policy.js.ProductCache;
 import org.candlepin.policy.js.RuleExecutionException;
 import org.candlepin.policy.js.RulesObjectMapper;
@@ -95,7 +96,7 @@ public class AutobindRules {
         }
 
         // Provide objects for the script:
-        JsonJsContext args = new JsonJsContext(mapper);
+        JsonJsContext args = NativeJsContext.create(jsRules, mapper);
         args.put("consumer", consumer);
         args.put("owner", consumer.getOwner());
         args.put("serviceLevelOverride", serviceLevelOverride);
@@ -106,11 +107,11 @@ public class AutobindRules {
         args.put("exemptList", exemptLevels);
         args.put("considerDerived", considerDerived);
 
-        // Convert the JSON returned into a Map object:
+        // Convert the object returned into a Map object:
         Map<String, Integer> result = null;
         try {
-            String json = jsRules.invokeMethod(SELECT_POOL_FUNCTION, args);
-            result = mapper.toObject(json, Map.class);
+            Object rulesResult = jsRules.invokeMethod(SELECT_POOL_FUNCTION, args);
+            result = mapper.fromRulesResult(rulesResult, Map.class);
             if (log.isDebugEnabled()) {
                 log.debug("Excuted javascript rule: " + SELECT_POOL_FUNCTION);
             }
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.SoftReference;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ComplianceCache
+ *
+ * Caches the current compliance status calculated for each consumer, keyed on
+ * the consumer UUID and a fingerprint of the consumer state the status was
+ * calculated from (see ConsumerComplianceHasher). Any change to the consumer's
+ * entitlements, installed products or facts changes the fingerprint, so the
+ * stale entry is simply missed and replaced.
+ *
+ * A cached status is also only good until the next start or end date of one
+ * of the consumer's entitlements, as that is when the status can change on
+ * its own.
+ *
+ * The cache holds at most {@link ConfigProperties} <code>COMPLIANCE_CACHE_MAX</code>
+ * consumers, and entries are held through <code>SoftReference</code>s so the GC
+ * can claim them when memory runs low.
+ */
+@Singleton
+public class ComplianceCache {
+    private static Logger log = LoggerFactory.getLogger(ComplianceCache.class);
+
+    // How many lookups between logging the hit ratio
+    private static final long REPORT_INTERVAL = 10000;
+
+    private final StatusMapping statuses;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public ComplianceCache(Configuration config) {
+        this.statuses = new StatusMapping(config.getInt(ConfigProperties.COMPLIANCE_CACHE_MAX));
+    }
+
+    /**
+     * Looks up the status previously calculated for this consumer state.
+     *
+     * @param consumerUuid the consumer
+     * @param fingerprint hash of the consumer's current compliance inputs
+     * @param onDate date the status is wanted for
+     * @return the cached status re-dated to onDate, or null if there is no usable entry
+     */
+    public ComplianceStatus get(String consumerUuid, String fingerprint, Date onDate) {
+        CachedStatus cached = null;
+        synchronized (statuses) {
+            StatusReference ref = statuses.get(consumerUuid);
+            cached = ref == null ? null : ref.get();
+        }
+
+        ComplianceStatus result = null;
+        if (cached != null && cached.isValidFor(fingerprint, onDate)) {
+            result = new ComplianceStatus(cached.status, onDate);
+        }
+        record(result != null);
+        return result;
+    }
+
+    /**
+     * Stores a freshly calculated current status for the consumer.
+     *
+     * @param consumer the consumer the status was calculated for
+     * @param fingerprint hash of the consumer's compliance inputs
+     * @param onDate date the status was calculated for
+     * @param status the calculated status
+     */
+    public void put(Consumer consumer, String fingerprint, Date onDate,
+        ComplianceStatus status) {
+        Date validUntil = getNextEntitlementChange(consumer, onDate);
+        CachedStatus cached = new CachedStatus(fingerprint, onDate, validUntil, status);
+        synchronized (statuses) {
+            statuses.put(consumer.getUuid(), new StatusReference(cached));
+        }
+    }
+
+    public void invalidate(String consumerUuid) {
+        synchronized (statuses) {
+            statuses.remove(consumerUuid);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public int size() {
+        synchronized (statuses) {
+            return statuses.size();
+        }
+    }
+
+    private void record(boolean hit) {
+        long h = hit ? hits.incrementAndGet() : hits.get();
+        long m = hit ? misses.get() : misses.incrementAndGet();
+        if ((h + m) % REPORT_INTERVAL == 0) {
+            log.info("Compliance cache: {} hits, {} misses, hit ratio {}",
+                h, m, String.format("%.2f", getHitRatio()));
+        }
+    }
+
+    /*
+     * The earliest entitlement start or end date after the given date, or null
+     * if nothing about the consumer's entitlements changes after it.
+     */
+    private Date getNextEntitlementChange(Consumer consumer, Date onDate) {
+        Date next = null;
+        for (Entitlement ent : consumer.getEntitlements()) {
+            next = earliestAfter(next, ent.getStartDate(), onDate);
+            next = earliestAfter(next, ent.getEndDate(), onDate);
+        }
+        return next;
+    }
+
+    private Date earliestAfter(Date current, Date candidate, Date onDate) {
+        if (candidate == null || !candidate.after(onDate)) {
+            return current;
+        }
+        return (current == null || candidate.before(current)) ? candidate : current;
+    }
+
+    /**
+     * A status along with the fingerprint and date it was calculated for, and the
+     * date it stays good until.
+     */
+    private static class CachedStatus {
+        private final String fingerprint;
+        private final Date calculatedOn;
+        private final Date validUntil;
+        private final ComplianceStatus status;
+
+        public CachedStatus(String fingerprint, Date calculatedOn, Date validUntil,
+            ComplianceStatus status) {
+            this.fingerprint = fingerprint;
+            this.calculatedOn = calculatedOn;
+            this.validUntil = validUntil;
+            this.status = status;
+        }
+
+        public boolean isValidFor(String fingerprint, Date onDate) {
+            // The status may already differ at validUntil itself (an entitlement
+            // starting), so it is only good strictly before it.
+            return this.fingerprint.equals(fingerprint) &&
+                !onDate.before(calculatedOn) &&
+                (validUntil == null || onDate.before(validUntil));
+        }
+    }
+
+    /**
+     * StatusReference
+     *
+     * A soft reference to a cached status, so that cached statuses only live as
+     * long as there is memory to spare.
+     */
+    private static class StatusReference extends SoftReference<CachedStatus> {
+
+        public StatusReference(CachedStatus referent) {
+            super(referent);
+        }
+
+    }
+
+    /**
+     * StatusMapping
+     *
+     * An access ordered <code>LinkedHashMap</code> which drops the least recently
+     * used consumer once the configured maximum is reached.
+     */
+    private static class StatusMapping extends LinkedHashMap<String, StatusReference> {
+
+        private static final long serialVersionUID = 1L;
+        private int max;
+
+        public StatusMapping(int max) {
+            super(16, 0.75f, true);
+            this.max = max;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Entry<String, StatusReference> eldest) {
+            return super.size() > max;
+        }
+
+    }
+}
@@ -35,6 +35,13 @@ public class ComplianceReason {
         this.attributes = new HashMap<String, String>();
     }
 
+    public ComplianceReason(ComplianceReason other) {
+        this.key = other.key;
+        this.message = other.message;
+        this.attributes = (other.attributes == null) ? new HashMap<String, String>() :
+            new HashMap<String, String>(other.attributes);
+    }
+
     public String getKey() {
         return key;
     }
@@ -21,9 +21,11 @@ import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCurator;
 import org.candlepin.policy.js.JsRunner;
 import org.candlepin.policy.js.JsonJsContext;
+import org.candlepin.policy.js.NativeJsContext;
 import org.candlepin.policy.js.RuleExecutionException;
 import org.candlepin.policy.js.RulesObjectMapper;
 import org.candlepin.policy.js.compliance.hash.ComplianceStatusHasher;
+import org.candlepin.policy.js.compliance.hash.ConsumerComplianceHasher;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -31,8 +33,16 @@ import com.google.inject.Provider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
 
 /**
  * ComplianceRules
@@ -49,16 +59,21 @@ public class ComplianceRules {
     private Provider<EventSink> eventSinkProvider;
     // Use the curator to update consumer entitlement status every time we run compliance (with null date)
     private ConsumerCurator consumerCurator;
+    private ComplianceCache complianceCache;
+    private ComplianceWorkerPool workerPool;
 
     @Inject
     public ComplianceRules(JsRunner jsRules, EntitlementCurator entCurator,
         StatusReasonMessageGenerator generator, Provider<EventSink> eventSinkProvider,
-        ConsumerCurator consumerCurator) {
+        ConsumerCurator consumerCurator, ComplianceCache complianceCache,
+        ComplianceWorkerPool workerPool) {
         this.entCurator = entCurator;
         this.jsRules = jsRules;
         this.generator = generator;
         this.eventSinkProvider = eventSinkProvider;
         this.consumerCurator = consumerCurator;
+        this.complianceCache = complianceCache;
+        this.workerPool = workerPool;
 
         mapper = RulesObjectMapper.instance();
         jsRules.init("compliance_name_space");
@@ -117,20 +132,126 @@ public class ComplianceRules {
             date = new Date();
             currentCompliance = true;
         }
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("consumer", c);
-        args.put("entitlements", c.getEntitlements());
-        args.put("ondate", date);
-        args.put("calculateCompliantUntil", calculateCompliantUntil);
-        args.put("log", log, false);
 
-        // Convert the JSON returned into a ComplianceStatus object:
-        String json = jsRules.runJsFunction(String.class, "get_status", args);
+        String fingerprint = currentCompliance ?
+            getFingerprint(c, calculateCompliantUntil) : null;
+        ComplianceStatus result = getCachedStatus(c, fingerprint, date);
+        if (result == null) {
+            JsonJsContext args = createStatusContext(c, date, calculateCompliantUntil);
+            result = cacheStatus(c, fingerprint, date, evaluateStatus(args));
+        }
+        return finishStatus(c, result, currentCompliance, updateConsumer);
+    }
+
+    /**
+     * Check the current compliance status of many consumers at once.
+     *
+     * The rules contexts are built here, on the calling thread, but the rules
+     * themselves run on the {@link ComplianceWorkerPool}. Results are finished
+     * off (messages, events, consumer updates) back on the calling thread as
+     * they come in, while the workers carry on with the rest.
+     *
+     * @param consumers Consumers to check, ideally loaded with
+     * ConsumerCurator.findByUuidsForCompliance.
+     * @return Compliance status for each consumer, keyed on consumer UUID.
+     */
+    public Map<String, ComplianceStatus> getStatus(Collection<Consumer> consumers) {
+        Date date = new Date();
+        Map<String, ComplianceStatus> results = new HashMap<String, ComplianceStatus>();
+        CompletionService<PendingStatus> completion = workerPool.newCompletionService();
+        int maxPending = workerPool.getMaxPending();
+        int pending = 0;
+
+        for (Consumer c : consumers) {
+            String fingerprint = getFingerprint(c, true);
+            ComplianceStatus cached = getCachedStatus(c, fingerprint, date);
+            if (cached != null) {
+                results.put(c.getUuid(), finishStatus(c, cached, true, true));
+                continue;
+            }
+
+            if (pending == maxPending) {
+                finishPending(completion, date, results);
+                pending--;
+            }
+
+            final JsonJsContext args = createStatusContext(c, date, true);
+            args.detach();
+            completion.submit(new PendingStatus(c, fingerprint) {
+                @Override
+                protected ComplianceStatus evaluate() {
+                    return evaluateStatus(args);
+                }
+            });
+            pending++;
+        }
+
+        for (; pending > 0; pending--) {
+            finishPending(completion, date, results);
+        }
+        return results;
+    }
+
+    private void finishPending(CompletionService<PendingStatus> completion, Date date,
+        Map<String, ComplianceStatus> results) {
+        PendingStatus done;
         try {
-            ComplianceStatus result = mapper.toObject(json, ComplianceStatus.class);
-            for (ComplianceReason reason : result.getReasons()) {
-                generator.setMessage(c, reason, result.getDate());
+            done = completion.take().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuleExecutionException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new RuleExecutionException(e.getCause());
+        }
+
+        Consumer c = done.consumer;
+        ComplianceStatus result = cacheStatus(c, done.fingerprint, date, done.status);
+        results.put(c.getUuid(), finishStatus(c, result, true, true));
+    }
+
+    /*
+     * Fingerprint of the consumer's compliance inputs, or null if the consumer
+     * has not been saved yet and so can't be cached.
+     */
+    private String getFingerprint(Consumer c, boolean calculateCompliantUntil) {
+        if (c.getUuid() == null) {
+            return null;
+        }
+        return new ConsumerComplianceHasher(c, calculateCompliantUntil,
+            jsRules.getRulesUpdated()).hash();
+    }
+
+    private ComplianceStatus getCachedStatus(Consumer c, String fingerprint, Date date) {
+        if (fingerprint == null) {
+            return null;
+        }
+        return complianceCache.get(c.getUuid(), fingerprint, date);
+    }
+
+    /*
+     * Current status is served from the cache as long as nothing that goes into
+     * the calculation has changed since it was last run. The caller gets its own
+     * copy, as the cached one is shared.
+     */
+    private ComplianceStatus cacheStatus(Consumer c, String fingerprint, Date date,
+        ComplianceStatus result) {
+        if (fingerprint == null) {
+            return result;
+        }
+        complianceCache.put(c, fingerprint, date, result);
+        return new ComplianceStatus(result, date);
+    }
+
+    private ComplianceStatus finishStatus(Consumer c, ComplianceStatus result,
+        boolean currentCompliance, boolean updateConsumer) {
+        setMessages(c, result);
+
+        try {
             if (currentCompliance) {
                 for (Entitlement ent : c.getEntitlements()) {
                     if (!ent.isUpdatedOnStart() && ent.isValid()) {
@@ -164,6 +285,65 @@ public class ComplianceRules {
         }
     }
 
+    private JsonJsContext createStatusContext(Consumer c, Date date,
+        boolean calculateCompliantUntil) {
+        JsonJsContext args = NativeJsContext.create(jsRules, mapper);
+        args.put("consumer", c);
+        args.put("entitlements", c.getEntitlements());
+        args.put("ondate", date);
+        args.put("calculateCompliantUntil", calculateCompliantUntil);
+        args.put("log", log, false);
+        return args;
+    }
+
+    private ComplianceStatus evaluateStatus(JsonJsContext args) {
+        // Convert the object returned into a ComplianceStatus object:
+        Object rulesResult = jsRules.runJsFunction(Object.class, "get_status", args);
+        try {
+            return mapper.fromRulesResult(rulesResult, ComplianceStatus.class);
+        }
+        catch (Exception e) {
+            throw new RuleExecutionException(e);
+        }
+    }
+
+    /*
+     * Localizes the reasons for the current request. The reasons are copied first,
+     * as the status may share them with the compliance cache.
+     */
+    private void setMessages(Consumer c, ComplianceStatus status) {
+        Set<ComplianceReason> reasons = new HashSet<ComplianceReason>();
+        for (ComplianceReason original : status.getReasons()) {
+            ComplianceReason reason = new ComplianceReason(original);
+            generator.setMessage(c, reason, status.getDate());
+            reasons.add(reason);
+        }
+        status.setReasons(reasons);
+    }
+
+    /**
+     * A status being calculated on a worker, along with what is needed to
+     * finish it off once it is done.
+     */
+    private abstract static class PendingStatus implements Callable<PendingStatus> {
+        private final Consumer consumer;
+        private final String fingerprint;
+        private ComplianceStatus status;
+
+        public PendingStatus(Consumer consumer, String fingerprint) {
+            this.consumer = consumer;
+            this.fingerprint = fingerprint;
+        }
+
+        protected abstract ComplianceStatus evaluate();
+
+        @Override
+        public PendingStatus call() {
+            status = evaluate();
+            return this;
+        }
+    }
+
     public boolean isStackCompliant(Consumer consumer, String stackId,
         List<Entitlement> entsToConsider) {
         JsonJsContext args = new JsonJsContext(mapper);
@@ -57,6 +57,24 @@ public class ComplianceStatus {
         this.date = date;
     }
 
+    /**
+     * Creates a copy of a previously calculated status for another date on which
+     * it is known to still hold. The product and reason collections are shared
+     * with the original.
+     *
+     * @param other the status to copy
+     * @param date date the copy applies to
+     */
+    public ComplianceStatus(ComplianceStatus other, Date date) {
+        this.date = date;
+        this.compliantUntil = other.compliantUntil;
+        this.nonCompliantProducts = other.nonCompliantProducts;
+        this.compliantProducts = other.compliantProducts;
+        this.partiallyCompliantProducts = other.partiallyCompliantProducts;
+        this.partialStacks = other.partialStacks;
+        this.reasons = other.reasons;
+    }
+
     /**
      * @return Map of compliant product IDs and the entitlements that provide them.
      */
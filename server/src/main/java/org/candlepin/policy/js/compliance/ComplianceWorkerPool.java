@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ComplianceWorkerPool
+ *
+ * A fixed number of threads shared by all bulk compliance requests for running
+ * the compliance rules. Workers only ever see detached rules contexts (see
+ * JsonJsContext.detach()), never the hibernate session, and each call borrows
+ * its own rules scope.
+ *
+ * Idle threads are let go after a minute, so the pool costs nothing between
+ * bulk requests.
+ */
+@Singleton
+public class ComplianceWorkerPool {
+
+    // How many contexts each worker may have queued up per request
+    private static final int PENDING_PER_THREAD = 4;
+    private static final long IDLE_SECONDS = 60;
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+
+    @Inject
+    public ComplianceWorkerPool(Configuration config) {
+        int configured = config.getInt(ConfigProperties.COMPLIANCE_WORKER_THREADS);
+        this.threads = configured > 0 ? configured :
+            Runtime.getRuntime().availableProcessors();
+
+        this.executor = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <T> CompletionService<T> newCompletionService() {
+        return new ExecutorCompletionService<T>(executor);
+    }
+
+    /**
+     * @return how many calculations a single request should have in flight
+     * before it waits on results, which bounds the memory held by serialized
+     * contexts no matter how many consumers were asked for.
+     */
+    public int getMaxPending() {
+        return threads * PENDING_PER_THREAD;
+    }
+
+    /**
+     * Daemon threads, so the pool never holds up shutdown.
+     */
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "compliance-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
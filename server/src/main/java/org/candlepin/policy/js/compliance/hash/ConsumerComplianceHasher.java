@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance.hash;
+
+import org.candlepin.model.Consumer;
+
+import java.util.Date;
+
+/**
+ * Creates an SHA256 hash of the consumer state that goes into a compliance
+ * calculation: facts, installed products, entitlements and their dates, plus
+ * the version of the rules doing the calculation.
+ *
+ * Two consumers with the same hash will get the same compliance status on the
+ * same date, which is what allows a previously calculated status to be reused.
+ */
+public class ConsumerComplianceHasher extends Hasher {
+
+    public ConsumerComplianceHasher(Consumer consumer, boolean calculateCompliantUntil,
+        Date rulesUpdated) {
+        putObject(consumer, HashableStringGenerators.CONSUMER);
+        putCollection(consumer.getEntitlements(), HashableStringGenerators.ENTITLEMENT_DATES);
+        putObject(consumer.getType() == null ? null : consumer.getType().getLabel(),
+            HashableStringGenerators.STRING);
+        putObject(String.valueOf(calculateCompliantUntil), HashableStringGenerators.STRING);
+        putObject(rulesUpdated == null ? null : String.valueOf(rulesUpdated.getTime()),
+            HashableStringGenerators.STRING);
+    }
+
+}
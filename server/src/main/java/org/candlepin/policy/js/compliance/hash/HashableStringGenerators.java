@@ -45,6 +45,8 @@ public class HashableStringGenerators {
     public static final ConsumerGenerator CONSUMER = new ConsumerGenerator();
     public static final ConsumerInstalledProductGenerator INSTALLED_PRODUCT =
         new ConsumerInstalledProductGenerator();
+    public static final EntitlementDatesGenerator ENTITLEMENT_DATES =
+        new EntitlementDatesGenerator();
 
 
     private HashableStringGenerators() {
@@ -239,4 +241,25 @@ public class HashableStringGenerators {
 
     }
 
+    /**
+     * Generates a string from the effective dates of an {@link Entitlement}, which
+     * include any end date override, intended for use in a hash.
+     */
+    private static class EntitlementDatesGenerator implements HashableStringGenerator<Entitlement> {
+
+        @Override
+        public String generate(Entitlement target) {
+            if (target == null) {
+                return null;
+            }
+
+            return target.getId() + getTime(target.getStartDate()) + getTime(target.getEndDate());
+        }
+
+        private Long getTime(Date date) {
+            return date == null ? null : date.getTime();
+        }
+
+    }
+
 }
@@ -20,7 +20,9 @@ import org.candlepin.model.Pool;
 import org.candlepin.policy.ValidationResult;
 import org.candlepin.policy.js.pool.PoolHelper;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Enforces the entitlement rules definitions.
@@ -87,6 +89,23 @@ public interface Enforcer {
     ValidationResult preEntitlement(Consumer consumer, Pool entitlementPool,
         Integer quantity, CallerType caller);
 
+    /**
+     * Run pre-entitlement checks against several pools at once.
+     *
+     * Gives the same results as calling
+     * {@link #preEntitlement(Consumer, Pool, Integer, CallerType)} for each pool,
+     * but the consumer, its host and its entitlements are only looked up and
+     * handed to the rules once.
+     *
+     * @param consumer Consumer who wishes to consume an entitlement.
+     * @param pools Entitlement pools to consume from.
+     * @param quantity number of entitlements to consume from each pool.
+     * @param caller the context calling the rules.
+     * @return validation results keyed by pool ID.
+     */
+    Map<String, ValidationResult> preEntitlement(Consumer consumer,
+        Collection<Pool> pools, Integer quantity, CallerType caller);
+
     /**
      * @param consumer Consumer who wishes to consume an entitlement.
      * @param pools Entitlement pools to potentially consume from.
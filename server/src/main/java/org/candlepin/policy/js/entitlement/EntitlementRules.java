@@ -24,6 +24,7 @@ import org.candlepin.policy.ValidationError;
 import org.candlepin.policy.ValidationResult;
 import org.candlepin.policy.js.JsRunner;
 import org.candlepin.policy.js.JsonJsContext;
+import org.candlepin.policy.js.NativeJsContext;
 import org.candlepin.policy.js.ProductCache;
 import org.candlepin.policy.js.RuleExecutionException;
 import org.candlepin.util.DateSource;
@@ -34,6 +35,8 @@ import com.google.inject.Inject;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -81,7 +84,7 @@ public class EntitlementRules extends AbstractEntitlementRules implements Enforc
     public ValidationResult preEntitlement(Consumer consumer, Consumer host,
         Pool entitlementPool, Integer quantity, CallerType caller) {
 
-        JsonJsContext args = new JsonJsContext(objectMapper);
+        JsonJsContext args = NativeJsContext.create(jsRules, objectMapper);
         args.put("consumer", consumer);
         args.put("hostConsumer", host);
         args.put("consumerEntitlements", consumer.getEntitlements());
@@ -91,10 +94,10 @@ public class EntitlementRules extends AbstractEntitlementRules implements Enforc
         args.put("caller", caller.getLabel());
         args.put("log", log, false);
 
-        String json = jsRules.runJsFunction(String.class, "validate_pool", args);
+        Object rulesResult = jsRules.runJsFunction(Object.class, "validate_pool", args);
         ValidationResult result;
         try {
-            result = objectMapper.toObject(json, ValidationResult.class);
+            result = objectMapper.fromRulesResult(rulesResult, ValidationResult.class);
             finishValidation(result, entitlementPool, quantity);
         }
         catch (Exception e) {
@@ -104,9 +107,62 @@ public class EntitlementRules extends AbstractEntitlementRules implements Enforc
         return result;
     }
 
+    @Override
+    public Map<String, ValidationResult> preEntitlement(Consumer consumer,
+        Collection<Pool> pools, Integer quantity, CallerType caller) {
+        Consumer host = consumer.hasFact("virt.uuid") ?
+                consumerCurator.getHost(consumer.getFact("virt.uuid"),
+                        consumer.getOwner()) : null;
+
+        Map<String, ValidationResult> resultMap = new HashMap<String, ValidationResult>();
+        if (pools.isEmpty()) {
+            return resultMap;
+        }
+
+        // Rules from before validate_pools_batch only know single pools
+        if (!jsRules.hasFunction("validate_pools_batch")) {
+            for (Pool pool : pools) {
+                resultMap.put(pool.getId(),
+                    preEntitlement(consumer, host, pool, quantity, caller));
+            }
+            return resultMap;
+        }
+
+        JsonJsContext args = NativeJsContext.create(jsRules, objectMapper);
+        args.put("consumer", consumer);
+        args.put("hostConsumer", host);
+        args.put("consumerEntitlements", consumer.getEntitlements());
+        args.put("standalone", config.getBoolean(ConfigProperties.STANDALONE));
+        args.put("pools", pools);
+        args.put("quantity", quantity);
+        args.put("caller", caller.getLabel());
+        args.put("log", log, false);
+
+        Object rulesResult = jsRules.runJsFunction(Object.class, "validate_pools_batch",
+            args);
+        TypeReference<Map<String, ValidationResult>> typeref =
+            new TypeReference<Map<String, ValidationResult>>() {};
+        try {
+            resultMap = objectMapper.fromRulesResult(rulesResult, typeref);
+        }
+        catch (Exception e) {
+            throw new RuleExecutionException(e);
+        }
+
+        for (Pool pool : pools) {
+            ValidationResult result = resultMap.get(pool.getId());
+            if (result == null) {
+                result = new ValidationResult();
+                resultMap.put(pool.getId(), result);
+            }
+            finishValidation(result, pool, quantity);
+        }
+        return resultMap;
+    }
+
     @Override
     public List<Pool> filterPools(Consumer consumer, List<Pool> pools, boolean showAll) {
-        JsonJsContext args = new JsonJsContext(objectMapper);
+        JsonJsContext args = NativeJsContext.create(jsRules, objectMapper);
         args.put("consumer", consumer);
         args.put("hostConsumer", consumer.hasFact("virt.uuid") ?
             this.consumerCurator.getHost(consumer.getFact("virt.uuid"),
@@ -117,12 +173,12 @@ public class EntitlementRules extends AbstractEntitlementRules implements Enforc
         args.put("caller", CallerType.LIST_POOLS.getLabel());
         args.put("log", log, false);
 
-        String json = jsRules.runJsFunction(String.class, "validate_pools_list", args);
+        Object rulesResult = jsRules.runJsFunction(Object.class, "validate_pools_list", args);
         Map<String, ValidationResult> resultMap;
         TypeReference<Map<String, ValidationResult>> typeref =
             new TypeReference<Map<String, ValidationResult>>() {};
         try {
-            resultMap = objectMapper.toObject(json, typeref);
+            resultMap = objectMapper.fromRulesResult(rulesResult, typeref);
         }
         catch (Exception e) {
             throw new RuleExecutionException(e);
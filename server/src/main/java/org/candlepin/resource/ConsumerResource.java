@@ -99,6 +99,7 @@ import org.candlepin.util.Util;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jboss.resteasy.annotations.providers.jaxb.Wrapped;
 import org.jboss.resteasy.plugins.providers.atom.Feed;
@@ -110,10 +111,10 @@ import org.xnap.commons.i18n.I18n;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -135,8 +136,12 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 
 /**
  * API Gateway for Consumers
@@ -240,7 +245,7 @@ public class ConsumerResource {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Wrapped(element = "consumers")
-    @Paginate
+    @Paginate(keyset = true)
     public List<Consumer> list(@QueryParam("username") String userName,
         @QueryParam("type") Set<String> typeLabels,
         @QueryParam("owner") String ownerKey,
@@ -925,7 +930,7 @@ public class ConsumerResource {
         if (updated.getLastCheckin() != null) {
             log.info("Updating to specific last checkin time: {}",
                     updated.getLastCheckin());
-            toUpdate.addCheckIn(updated.getLastCheckin());
+            consumerCurator.updateLastCheckin(toUpdate, updated.getLastCheckin());
             changesMade = true;
         }
 
@@ -1142,7 +1147,7 @@ public class ConsumerResource {
         return removedGuests;
     }
 
-    protected void revokeGuestEntitlementsNotMatchingHost(Consumer host, Consumer guest) {
+    public void revokeGuestEntitlementsNotMatchingHost(Consumer host, Consumer guest) {
         // we need to create a list of entitlements to delete before actually
         // deleting, otherwise we are tampering with the loop iterator (BZ #786730)
         Set<Entitlement> deletableGuestEntitlements = new HashSet<Entitlement>();
@@ -1345,31 +1350,44 @@ public class ConsumerResource {
      * Return the client certificate metadata a for the given consumer. This
      * is a small subset of data clients can use to determine which certificates
      * they need to update/fetch.
+     * <p>
+     * The response carries an ETag for the set of serials. Clients polling with
+     * the ETag of their last response in If-None-Match get an empty 304 response
+     * as long as their certificates have not changed.
      *
      * @param consumerUuid UUID of the consumer
      * @return a list of CertificateSerial objects
      * @httpcode 404
+     * @httpcode 304
      * @httpcode 200
      */
     @GET
     @Path("{consumer_uuid}/certificates/serials")
     @Produces(MediaType.APPLICATION_JSON)
     @Wrapped(element = "serials")
-    public List<CertificateSerialDto> getEntitlementCertificateSerials(
-        @PathParam("consumer_uuid") @Verify(Consumer.class) String consumerUuid) {
+    public Response getEntitlementCertificateSerials(
+        @PathParam("consumer_uuid") @Verify(Consumer.class) String consumerUuid,
+        @Context Request request) {
 
         log.debug("Getting client certificate serials for consumer: {}", consumerUuid);
         Consumer consumer = consumerCurator.verifyAndLookupConsumer(consumerUuid);
         poolManager.regenerateDirtyEntitlements(
-            entitlementCurator.listByConsumer(consumer));
+            entitlementCurator.listDirtyByConsumer(consumer));
+
+        List<Long> serialIds = entCertService.listSerialIdsForConsumer(consumer);
+        EntityTag etag = new EntityTag(DigestUtils.md5Hex(StringUtils.join(serialIds, ",")));
 
-        List<CertificateSerialDto> allCerts = new LinkedList<CertificateSerialDto>();
-        for (EntitlementCertificate cert : entCertService
-            .listForConsumer(consumer)) {
-            allCerts.add(new CertificateSerialDto(cert.getSerial().getId()));
+        ResponseBuilder builder = request.evaluatePreconditions(etag);
+        if (builder == null) {
+            List<CertificateSerialDto> allCerts = new LinkedList<CertificateSerialDto>();
+            for (Long serialId : serialIds) {
+                allCerts.add(new CertificateSerialDto(serialId));
+            }
+            builder = Response.status(Response.Status.OK)
+                .type(MediaType.APPLICATION_JSON).entity(allCerts);
         }
 
-        return allCerts;
+        return builder.tag(etag).build();
     }
 
     /**
@@ -1587,7 +1605,7 @@ public class ConsumerResource {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{consumer_uuid}/entitlements")
-    @Paginate
+    @Paginate(keyset = true)
     public List<Entitlement> listEntitlements(
         @PathParam("consumer_uuid") @Verify(Consumer.class) String consumerUuid,
         @QueryParam("product") String productId,
@@ -1802,8 +1820,10 @@ public class ConsumerResource {
 
     /**
      * Retrieves a Compressed File representation of a Consumer
+     * <p>
+     * The archive is streamed to the client while it is being created.
      *
-     * @return a File
+     * @return the zip archive
      * @httpcode 403
      * @httpcode 500
      * @httpcode 404
@@ -1812,14 +1832,14 @@ public class ConsumerResource {
     @GET
     @Produces("application/zip")
     @Path("{consumer_uuid}/export")
-    public File exportData(
+    public StreamingOutput exportData(
         @Context HttpServletResponse response,
         @PathParam("consumer_uuid") @Verify(Consumer.class) String consumerUuid,
-        @QueryParam("cdn_label") String cdnLabel,
-        @QueryParam("webapp_prefix") String webAppPrefix,
-        @QueryParam("api_url") String apiUrl) {
+        @QueryParam("cdn_label") final String cdnLabel,
+        @QueryParam("webapp_prefix") final String webAppPrefix,
+        @QueryParam("api_url") final String apiUrl) {
 
-        Consumer consumer = consumerCurator.verifyAndLookupConsumer(consumerUuid);
+        final Consumer consumer = consumerCurator.verifyAndLookupConsumer(consumerUuid);
         if (consumer.getType() == null ||
             !consumer.getType().isManifest()) {
             throw new ForbiddenException(
@@ -1838,19 +1858,26 @@ public class ConsumerResource {
         poolManager.regenerateDirtyEntitlements(
             entitlementCurator.listByConsumer(consumer));
 
-        File archive;
-        try {
-            archive = exporter.getFullExport(consumer, cdnLabel, webAppPrefix, apiUrl);
-            response.addHeader("Content-Disposition", "attachment; filename=" +
-                archive.getName());
-
-            sink.queueEvent(eventFactory.exportCreated(consumer));
-            return archive;
-        }
-        catch (ExportCreationException e) {
-            throw new IseException(i18n.tr("Unable to create export archive"),
-                e);
-        }
+        response.addHeader("Content-Disposition", "attachment; filename=export.zip");
+
+        /*
+         * Once the first bytes are out the status can no longer change, so
+         * errors past that point only show up as a truncated archive, which
+         * fails to import because the signature entry is missing.
+         */
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                try {
+                    exporter.getFullExport(consumer, cdnLabel, webAppPrefix, apiUrl, out);
+                }
+                catch (ExportCreationException e) {
+                    throw new IseException(i18n.tr("Unable to create export archive"),
+                        e);
+                }
+                sink.queueEvent(eventFactory.exportCreated(consumer));
+            }
+        };
     }
 
     /**
@@ -2021,15 +2048,9 @@ public class ConsumerResource {
         @QueryParam("uuid") @Verify(value = Consumer.class, nullable = true)
             List<String> uuids) {
         List<Consumer> consumers = uuids == null ? new LinkedList<Consumer>() :
-            consumerCurator.findByUuids(uuids);
-        Map<String, ComplianceStatus> results = new HashMap<String, ComplianceStatus>();
-
-        for (Consumer consumer : consumers) {
-            ComplianceStatus status = complianceRules.getStatus(consumer, null);
-            results.put(consumer.getUuid(), status);
-        }
+            consumerCurator.findByUuidsForCompliance(uuids);
 
-        return results;
+        return complianceRules.getStatus(consumers);
     }
 
     private void addDataToInstalledProducts(Consumer consumer) {
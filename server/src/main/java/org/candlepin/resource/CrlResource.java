@@ -22,14 +22,16 @@ import org.candlepin.controller.CrlGenerator;
 import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.RevocationIndex;
 
 import com.google.inject.Inject;
 
+import org.apache.commons.io.FileUtils;
+
 import java.io.File;
 import java.io.IOException;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
-import java.security.cert.X509CRL;
 import java.util.List;
 
 import javax.ws.rs.DELETE;
@@ -79,18 +81,19 @@ public class CrlResource {
         String filePath = getCrlFilePath();
         File crlFile = new File(filePath);
 
-        byte[] encoded = null;
-
         try {
-            X509CRL crl = crlFileUtil.readCRLFile(crlFile);
-            crl = crlGenerator.syncCRLWithDB(crl);
-            encoded = crlFileUtil.writeCRLFile(crlFile, crl);
+            crlFileUtil.updateCRLFile(crlFile, new CrlFileUtil.IndexUpdate() {
+                @Override
+                public RevocationIndex apply(RevocationIndex index) throws IOException {
+                    return crlGenerator.syncCRLWithDB(index);
+                }
+            });
         }
         catch (CertificateException e) {
             throw new IseException(e.getMessage(), e);
         }
 
-        return new String(encoded);
+        return FileUtils.readFileToString(crlFile);
     }
 
     /**
@@ -108,17 +111,17 @@ public class CrlResource {
         String filePath = getCrlFilePath();
         File crlFile = new File(filePath);
 
-        try {
-            X509CRL crl = crlFileUtil.readCRLFile(crlFile);
-
-            // get crl file if it exists
-            // lookup entitlement, find CertificateSerial
-            List<CertificateSerial> serials =
-                certificateSerialCurator.listBySerialIds(serialIds);
-
-            crl = crlGenerator.removeEntries(crl, serials);
+        // lookup entitlement, find CertificateSerial
+        final List<CertificateSerial> serials =
+            certificateSerialCurator.listBySerialIds(serialIds);
 
-            crlFileUtil.writeCRLFile(crlFile,  crl);
+        try {
+            crlFileUtil.updateCRLFile(crlFile, new CrlFileUtil.IndexUpdate() {
+                @Override
+                public RevocationIndex apply(RevocationIndex index) throws IOException {
+                    return crlGenerator.removeEntries(index, serials);
+                }
+            });
         }
         catch (CertificateException e) {
             throw new IseException(e.getMessage(), e);
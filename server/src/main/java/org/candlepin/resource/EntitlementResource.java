@@ -146,7 +146,7 @@ public class EntitlementResource {
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    @Paginate
+    @Paginate(keyset = true)
     public List<Entitlement> listAllForConsumer(
         @QueryParam("consumer") String consumerUuid,
         @Context PageRequest pageRequest) {
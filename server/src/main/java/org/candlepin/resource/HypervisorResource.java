@@ -31,6 +31,7 @@ import org.candlepin.model.OwnerCurator;
 import org.candlepin.model.VirtConsumerMap;
 import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
 import org.candlepin.resource.dto.HypervisorCheckInResult;
+import org.candlepin.resource.util.GuestIdReconciler;
 
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -41,7 +42,9 @@ import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -67,14 +70,17 @@ public class HypervisorResource {
     private ConsumerResource consumerResource;
     private I18n i18n;
     private OwnerCurator ownerCurator;
+    private GuestIdReconciler guestIdReconciler;
 
     @Inject
     public HypervisorResource(ConsumerResource consumerResource,
-        ConsumerCurator consumerCurator, I18n i18n, OwnerCurator ownerCurator) {
+        ConsumerCurator consumerCurator, I18n i18n, OwnerCurator ownerCurator,
+        GuestIdReconciler guestIdReconciler) {
         this.consumerResource = consumerResource;
         this.consumerCurator = consumerCurator;
         this.i18n = i18n;
         this.ownerCurator = ownerCurator;
+        this.guestIdReconciler = guestIdReconciler;
     }
 
     /**
@@ -142,13 +148,15 @@ public class HypervisorResource {
                 getGuestsHostMap(owner, allGuestIds);
 
         HypervisorCheckInResult result = new HypervisorCheckInResult();
+        Map<Consumer, List<GuestId>> reportedGuests = new LinkedHashMap<Consumer, List<GuestId>>();
+        Map<Consumer, String> hypervisorIds = new HashMap<Consumer, String>();
+        Set<Consumer> createdHosts = new HashSet<Consumer>();
         for (Entry<String, List<GuestId>> hostEntry : hostGuestMap.entrySet()) {
             String hypervisorId = hostEntry.getKey();
             try {
                 log.info("Syncing virt host: " + hypervisorId +
                         " (" + hostEntry.getValue().size() + " guest IDs)");
 
-                boolean hostConsumerCreated = false;
                 // Attempt to find a consumer for the given hypervisorId
                 Consumer consumer = null;
                 if (hypervisorConsumersMap.get(hypervisorId) == null) {
@@ -164,31 +172,47 @@ public class HypervisorResource {
                     // Create new consumer
                     consumer = createConsumerForHypervisorId(
                         hypervisorId, owner, principal);
-                    hostConsumerCreated = true;
+                    createdHosts.add(consumer);
                 }
                 else {
                     consumer = hypervisorConsumersMap.get(hypervisorId);
                 }
-
-                boolean guestIdsUpdated = addGuestIds(consumer, hostEntry.getValue(),
-                        guestConsumersMap, guestHypervisorConsumers);
-
-                // Populate the result with the processed consumer.
-                if (hostConsumerCreated) {
-                    result.created(consumer);
-                }
-                else if (guestIdsUpdated) {
-                    result.updated(consumer);
-                }
-                else {
-                    result.unchanged(consumer);
-                }
+                reportedGuests.put(consumer, hostEntry.getValue());
+                hypervisorIds.put(consumer, hypervisorId);
             }
             catch (Exception e) {
                 log.error("Hypervisor checkin failed", e);
                 result.failed(hypervisorId, e.getMessage());
             }
         }
+
+        // Guest IDs of all hosts are reconciled together, so the work is a
+        // handful of batched statements rather than a round of updates per host:
+        GuestIdReconciler.Result reconciled = guestIdReconciler.reconcile(reportedGuests,
+            guestConsumersMap, guestHypervisorConsumers);
+
+        // Populate the result with the processed consumers.
+        for (Consumer consumer : reportedGuests.keySet()) {
+            if (reconciled.getPartlyUpdatedHosts().contains(consumer)) {
+                result.failed(hypervisorIds.get(consumer), i18n.tr(
+                    "Guest IDs were updated, but the check-in did not complete: {0}",
+                    reconciled.getFailedHosts().get(consumer)));
+            }
+            else if (reconciled.getFailedHosts().containsKey(consumer)) {
+                result.failed(hypervisorIds.get(consumer),
+                    reconciled.getFailedHosts().get(consumer));
+            }
+            else if (createdHosts.contains(consumer)) {
+                result.created(consumer);
+            }
+            else if (reconciled.getChangedHosts().contains(consumer)) {
+                consumerCurator.update(consumer);
+                result.updated(consumer);
+            }
+            else {
+                result.unchanged(consumer);
+            }
+        }
         return result;
     }
 
@@ -251,24 +275,6 @@ public class HypervisorResource {
         return owner;
     }
 
-    /*
-     * Add a list of guestIds to the given consumer,
-     * return whether or not there was any change
-     */
-    private boolean addGuestIds(Consumer consumer, List<GuestId> guestIds,
-            VirtConsumerMap guestConsumerMap,
-            VirtConsumerMap guestHypervisorConsumers) {
-        Consumer withIds = new Consumer();
-        withIds.setGuestIds(guestIds);
-        boolean guestIdsUpdated =
-            consumerResource.performConsumerUpdates(withIds, consumer,
-                    guestConsumerMap, guestHypervisorConsumers);
-        if (guestIdsUpdated) {
-            consumerCurator.update(consumer);
-        }
-        return guestIdsUpdated;
-    }
-
     /*
      * Create a new hypervisor type consumer to represent the incoming hypervisorId
      */
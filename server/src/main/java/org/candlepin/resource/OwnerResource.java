@@ -281,7 +281,7 @@ public class OwnerResource {
     public OwnerInfo getOwnerInfo(@PathParam("owner_key")
         @Verify(value = Owner.class, subResource = SubResource.CONSUMERS) String ownerKey) {
         Owner owner = findOwner(ownerKey);
-        return ownerInfoCurator.lookupByOwner(owner);
+        return ownerInfoCurator.lookupCachedByOwner(owner);
     }
 
     /**
@@ -660,7 +660,7 @@ public class OwnerResource {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("{owner_key}/consumers")
-    @Paginate
+    @Paginate(keyset = true)
     public List<Consumer> listConsumers(
             @PathParam("owner_key")
             @Verify(value = Owner.class,
@@ -0,0 +1,370 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resource.util;
+
+import org.candlepin.audit.Event.Target;
+import org.candlepin.audit.Event.Type;
+import org.candlepin.audit.EventBuilder;
+import org.candlepin.audit.EventFactory;
+import org.candlepin.audit.EventSink;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.GuestIdCurator;
+import org.candlepin.model.VirtConsumerMap;
+import org.candlepin.policy.js.compliance.ComplianceRules;
+import org.candlepin.resource.ConsumerResource;
+
+import com.google.inject.Inject;
+
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Reconciles the guest IDs reported by many hosts, such as a virt-who check-in,
+ * against the guest IDs stored for those hosts.
+ *
+ * The stored guest IDs of all hosts are loaded in bulk and diffed against the
+ * report in memory. The resulting deletes and inserts are then written as JDBC
+ * batches, and only once they are written are the host restricted entitlements
+ * of guests that moved to another host revoked.
+ */
+public class GuestIdReconciler {
+
+    private static Logger log = LoggerFactory.getLogger(GuestIdReconciler.class);
+
+    private GuestIdCurator guestIdCurator;
+    private ConsumerResource consumerResource;
+    private EventSink sink;
+    private EventFactory eventFactory;
+    private ComplianceRules complianceRules;
+
+    @Inject
+    public GuestIdReconciler(GuestIdCurator guestIdCurator, ConsumerResource consumerResource,
+        EventSink sink, EventFactory eventFactory, ComplianceRules complianceRules) {
+        this.guestIdCurator = guestIdCurator;
+        this.consumerResource = consumerResource;
+        this.sink = sink;
+        this.eventFactory = eventFactory;
+        this.complianceRules = complianceRules;
+    }
+
+    /**
+     * Makes the stored guest IDs of each host match the guest IDs it reported.
+     *
+     * A guest ID is matched to a stored one ignoring case. A guest ID whose
+     * attributes changed replaces the stored one, as it did when hosts were
+     * updated one at a time. Compliance is recalculated, and a consumer
+     * modified event sent, for every host whose guest IDs changed.
+     *
+     * A host which fails before its guest IDs are written is reported as
+     * failed and left as it was. A host which fails afterwards, recalculating
+     * its compliance or revoking the entitlements of guests that moved to it,
+     * keeps its new guest IDs and may have had some entitlements revoked. It is
+     * reported as failed and listed in {@link Result#getPartlyUpdatedHosts()}.
+     * Either way the other hosts are still reconciled.
+     *
+     * @param reportedGuests guest IDs reported by each host consumer
+     * @param guestConsumerMap registered guest consumers, by virt UUID
+     * @param guestHypervisorConsumers host consumer which most recently reported
+     * each guest before this report, by virt UUID
+     * @return the hosts whose guest IDs changed, and those which failed
+     */
+    public Result reconcile(Map<Consumer, List<GuestId>> reportedGuests,
+        VirtConsumerMap guestConsumerMap, VirtConsumerMap guestHypervisorConsumers) {
+
+        Map<String, List<GuestId>> storedGuests = loadStoredGuestIds(reportedGuests.keySet());
+        Result result = new Result();
+        List<GuestId> removed = new ArrayList<GuestId>();
+        List<GuestId> added = new ArrayList<GuestId>();
+        Map<Consumer, EventBuilder> modifiedHosts = new LinkedHashMap<Consumer, EventBuilder>();
+
+        // Guest consumer to the host it moved to. Should two hosts report the
+        // same guest, the last one wins, as it did when hosts were updated in turn.
+        Map<Consumer, Consumer> movedGuests = new LinkedHashMap<Consumer, Consumer>();
+
+        for (Entry<Consumer, List<GuestId>> entry : reportedGuests.entrySet()) {
+            Consumer host = entry.getKey();
+            try {
+                List<GuestId> stored = isLoaded(host) ?
+                    host.getGuestIds() : storedGuests.get(host.getId());
+                HostDiff diff = diff(host, stored, entry.getValue(), guestConsumerMap,
+                    guestHypervisorConsumers);
+
+                EventBuilder eventBuilder = null;
+                if (diff.hasChanges()) {
+                    log.debug("Host {} guest IDs: {} removed, {} added.",
+                        host.getName(), diff.removed.size(), diff.added.size());
+                    eventBuilder = eventFactory.getEventBuilder(Target.CONSUMER, Type.MODIFIED)
+                        .setOldEntity(host);
+                }
+
+                // Guest check-ins are used to work out which host most recently
+                // reported a guest, so are recorded even if nothing changed.
+                host.addGuestIdCheckIn();
+                if (eventBuilder != null) {
+                    apply(host, diff, removed, added);
+                    modifiedHosts.put(host, eventBuilder);
+                    result.changedHosts.add(host);
+                }
+                for (Entry<Consumer, Consumer> moved : diff.moved.entrySet()) {
+                    movedGuests.remove(moved.getKey());
+                    movedGuests.put(moved.getKey(), moved.getValue());
+                }
+            }
+            catch (RuntimeException e) {
+                result.failed(host, e);
+            }
+        }
+
+        log.info("Reconciled guest IDs of {} hosts: {} removed, {} added, {} guests moved.",
+            reportedGuests.size(), removed.size(), added.size(), movedGuests.size());
+        guestIdCurator.deleteAll(removed);
+        guestIdCurator.createAll(added);
+
+        for (Entry<Consumer, EventBuilder> entry : modifiedHosts.entrySet()) {
+            Consumer host = entry.getKey();
+            try {
+                host.setUpdated(new Date());
+
+                // Guest limits count the host's guests, so its compliance may have changed:
+                complianceRules.getStatus(host, null, false, false);
+                sink.queueEvent(entry.getValue().setNewEntity(host).buildEvent());
+            }
+            catch (RuntimeException e) {
+                result.failedAfterUpdate(host, e);
+            }
+        }
+
+        for (Entry<Consumer, Consumer> moved : movedGuests.entrySet()) {
+            Consumer host = moved.getValue();
+            log.debug("Guest {} moved to host {}, revoking entitlements for other hosts.",
+                moved.getKey().getName(), host.getName());
+            try {
+                consumerResource.revokeGuestEntitlementsNotMatchingHost(host, moved.getKey());
+            }
+            catch (RuntimeException e) {
+                if (modifiedHosts.containsKey(host)) {
+                    result.failedAfterUpdate(host, e);
+                }
+                else {
+                    result.failed(host, e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Works out the guest IDs to remove from and add to a host, and which of
+     * the registered guests it reports have moved to it. Nothing is changed yet.
+     */
+    private HostDiff diff(Consumer host, List<GuestId> stored, List<GuestId> reported,
+        VirtConsumerMap guestConsumerMap, VirtConsumerMap guestHypervisorConsumers) {
+
+        HostDiff diff = new HostDiff();
+        Map<String, GuestId> storedByKey = new HashMap<String, GuestId>();
+        if (stored != null) {
+            for (GuestId guestId : stored) {
+                if (storedByKey.containsKey(key(guestId))) {
+                    // Duplicates are dropped rather than carried forward.
+                    diff.removed.add(guestId);
+                }
+                else {
+                    storedByKey.put(key(guestId), guestId);
+                }
+            }
+        }
+
+        Set<String> reportedKeys = new HashSet<String>();
+        for (GuestId guestId : reported) {
+            if (!reportedKeys.add(key(guestId))) {
+                continue;
+            }
+
+            GuestId existing = storedByKey.remove(key(guestId));
+            if (existing == null || !existing.equals(guestId)) {
+                if (existing != null) {
+                    diff.removed.add(existing);
+                }
+                diff.added.add(guestId);
+            }
+
+            Consumer guest = guestConsumerMap.get(guestId.getGuestId());
+            Consumer previousHost = guestHypervisorConsumers.get(guestId.getGuestId());
+            if (guest == null || host.equals(previousHost)) {
+                // Not registered, or has not moved. Nothing to revoke.
+                continue;
+            }
+
+            if (previousHost != null && existing != null) {
+                log.warn("Guest {} is currently being hosted by two hosts: {} and {}",
+                    guestId.getGuestId(), host.getName(), previousHost.getName());
+            }
+            diff.moved.put(guest, host);
+        }
+        diff.removed.addAll(storedByKey.values());
+        return diff;
+    }
+
+    /*
+     * Applies a host's guest ID changes in memory and queues the rows to write.
+     */
+    private void apply(Consumer host, HostDiff diff, List<GuestId> removed,
+        List<GuestId> added) {
+
+        // Serializing the host for the event loads its persistent guest list,
+        // which from then on has to be kept in step with the guest IDs.
+        boolean inMemory = isLoaded(host);
+        for (GuestId guestId : diff.removed) {
+            if (inMemory) {
+                removeInstance(host.getGuestIds(), guestId);
+            }
+            if (guestId.getId() != null) {
+                removed.add(guestId);
+            }
+            sink.queueEvent(eventFactory.guestIdDeleted(guestId));
+        }
+        for (GuestId guestId : diff.added) {
+            if (inMemory) {
+                host.addGuestId(guestId);
+            }
+            else {
+                guestId.setConsumer(host);
+            }
+            sink.queueEvent(eventFactory.guestIdCreated(guestId));
+        }
+        added.addAll(diff.added);
+    }
+
+    /*
+     * Loads the stored guest IDs of the hosts whose guest list is not already
+     * in memory, grouped by host consumer ID.
+     */
+    private Map<String, List<GuestId>> loadStoredGuestIds(Collection<Consumer> hosts) {
+        List<Consumer> toLoad = new ArrayList<Consumer>();
+        for (Consumer host : hosts) {
+            if (!isLoaded(host)) {
+                toLoad.add(host);
+            }
+        }
+
+        Map<String, List<GuestId>> storedGuests = new HashMap<String, List<GuestId>>();
+        if (toLoad.isEmpty()) {
+            return storedGuests;
+        }
+
+        for (GuestId guestId : guestIdCurator.listByConsumers(toLoad)) {
+            String hostId = guestId.getConsumer().getId();
+            if (!storedGuests.containsKey(hostId)) {
+                storedGuests.put(hostId, new ArrayList<GuestId>());
+            }
+            storedGuests.get(hostId).add(guestId);
+        }
+        return storedGuests;
+    }
+
+    /*
+     * Whether the host's guest list is in memory already, either because it is
+     * a new host or because something has already walked the persistent list.
+     * Such lists are kept in step with the database as guests are reconciled.
+     */
+    private boolean isLoaded(Consumer host) {
+        return host.getGuestIds() == null || Hibernate.isInitialized(host.getGuestIds());
+    }
+
+    /*
+     * Removes this very guest ID from the list. GuestId equality ignores case,
+     * so List.remove could take out an equal duplicate that is being kept.
+     */
+    private void removeInstance(List<GuestId> guestIds, GuestId guestId) {
+        Iterator<GuestId> iterator = guestIds.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == guestId) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    private String key(GuestId guestId) {
+        return guestId.getGuestId().toLowerCase();
+    }
+
+    /**
+     * The outcome of a reconciliation: which hosts had their guest IDs changed,
+     * and which could not be reconciled.
+     */
+    public static class Result {
+        private final Set<Consumer> changedHosts = new HashSet<Consumer>();
+        private final Map<Consumer, String> failedHosts = new HashMap<Consumer, String>();
+        private final Set<Consumer> partlyUpdatedHosts = new HashSet<Consumer>();
+
+        public Set<Consumer> getChangedHosts() {
+            return changedHosts;
+        }
+
+        /**
+         * @return the error message for each host which failed
+         */
+        public Map<Consumer, String> getFailedHosts() {
+            return failedHosts;
+        }
+
+        /**
+         * @return the failed hosts whose new guest IDs were written before they
+         * failed, and are kept.
+         */
+        public Set<Consumer> getPartlyUpdatedHosts() {
+            return partlyUpdatedHosts;
+        }
+
+        private void failedAfterUpdate(Consumer host, RuntimeException e) {
+            failed(host, e);
+            partlyUpdatedHosts.add(host);
+        }
+
+        private void failed(Consumer host, RuntimeException e) {
+            log.error("Unable to reconcile guest IDs of host: " + host.getName(), e);
+            changedHosts.remove(host);
+            failedHosts.put(host, e.getMessage());
+        }
+    }
+
+    /**
+     * The guest ID changes for a single host.
+     */
+    private static class HostDiff {
+        private final List<GuestId> removed = new ArrayList<GuestId>();
+        private final List<GuestId> added = new ArrayList<GuestId>();
+        private final Map<Consumer, Consumer> moved = new LinkedHashMap<Consumer, Consumer>();
+
+        public boolean hasChanges() {
+            return !removed.isEmpty() || !added.isEmpty();
+        }
+    }
+}
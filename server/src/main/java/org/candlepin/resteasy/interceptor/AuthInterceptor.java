@@ -32,6 +32,7 @@ import org.candlepin.common.filter.ServletLogger;
 import org.candlepin.common.filter.TeeHttpServletRequest;
 import org.candlepin.common.guice.HttpMethodMatcher;
 import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.CheckInRecorder;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.DeletedConsumerCurator;
@@ -80,6 +81,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -103,6 +105,7 @@ public class AuthInterceptor implements PreProcessInterceptor, AcceptedByMethod
 
     private Injector injector;
     private ConsumerCurator consumerCurator;
+    private CheckInRecorder checkInRecorder;
     private DeletedConsumerCurator deletedConsumerCurator;
     private Configuration config;
     private UserServiceAdapter userService;
@@ -117,9 +120,10 @@ public class AuthInterceptor implements PreProcessInterceptor, AcceptedByMethod
     public AuthInterceptor(Configuration config, UserServiceAdapter userService,
         ConsumerCurator consumerCurator,
         DeletedConsumerCurator deletedConsumerCurator, Injector injector,
-        javax.inject.Provider<I18n> i18nProvider) {
+        javax.inject.Provider<I18n> i18nProvider, CheckInRecorder checkInRecorder) {
         super();
         this.consumerCurator = consumerCurator;
+        this.checkInRecorder = checkInRecorder;
         this.injector = injector;
         this.config = config;
         this.userService = userService;
@@ -286,7 +290,7 @@ public class AuthInterceptor implements PreProcessInterceptor, AcceptedByMethod
             // lest our security settings start getting upset when we try to
             // update a consumer without any roles:
             ConsumerPrincipal p = (ConsumerPrincipal) principal;
-            consumerCurator.updateLastCheckin(p.getConsumer());
+            checkInRecorder.record(p.getConsumer(), new Date());
         }
 
         return principal;
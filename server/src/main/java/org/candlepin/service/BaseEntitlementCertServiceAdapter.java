@@ -15,10 +15,21 @@
 package org.candlepin.service;
 
 import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCertificate;
 import org.candlepin.model.EntitlementCertificateCurator;
+import org.candlepin.model.Product;
+import org.candlepin.model.Subscription;
+import org.candlepin.util.CertificateSizeException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * BaseEntitlementCertServiceAdapter
@@ -29,12 +40,46 @@ import java.util.List;
 public abstract class BaseEntitlementCertServiceAdapter implements
     EntitlementCertServiceAdapter {
 
+    private static Logger log =
+        LoggerFactory.getLogger(BaseEntitlementCertServiceAdapter.class);
+
     protected EntitlementCertificateCurator entCertCurator;
 
+    /**
+     * Generates the certificates one at a time, adapters which can do better
+     * should override this.
+     */
+    @Override
+    public Map<String, EntitlementCertificate> generateEntitlementCerts(
+        List<Entitlement> entitlements, Map<String, Subscription> subscriptions,
+        Map<String, Product> products)
+        throws GeneralSecurityException, IOException {
+
+        Map<String, EntitlementCertificate> certs =
+            new HashMap<String, EntitlementCertificate>();
+        for (Entitlement entitlement : entitlements) {
+            try {
+                certs.put(entitlement.getId(), generateEntitlementCert(entitlement,
+                    subscriptions.get(entitlement.getId()),
+                    products.get(entitlement.getId())));
+            }
+            catch (CertificateSizeException cse) {
+                log.warn("The certificate for entitlement " + entitlement.getId() +
+                    " cannot be generated: " + cse.getMessage());
+            }
+        }
+        return certs;
+    }
+
     @Override
     public List<EntitlementCertificate> listForConsumer(
         Consumer consumer) {
         return entCertCurator.listForConsumer(consumer);
     }
 
+    @Override
+    public List<Long> listSerialIdsForConsumer(Consumer consumer) {
+        return entCertCurator.listSerialIdsForConsumer(consumer);
+    }
+
 }
@@ -23,6 +23,7 @@ import org.candlepin.model.Subscription;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interface to the Certificate Service.
@@ -46,6 +47,26 @@ public interface EntitlementCertServiceAdapter {
         throws GeneralSecurityException, IOException;
 
 
+    /**
+     * Generate entitlement certificates for many entitlements at once.
+     *
+     * Certificates which would be too large for the CDN are not generated, those
+     * entitlements are left out of the result.
+     *
+     * @param entitlements entitlements to generate certificates for.
+     * @param subscriptions Subscription being used by each entitlement, keyed by
+     * entitlement ID. Entitlements of pools without a subscription have none.
+     * @param products Product being consumed by each entitlement, keyed by
+     * entitlement ID.
+     * @return Client entitlement certificates keyed by entitlement ID.
+     * @throws IOException thrown if there's a problem reading the cert.
+     * @throws GeneralSecurityException thrown security problem
+     */
+    Map<String, EntitlementCertificate> generateEntitlementCerts(
+        List<Entitlement> entitlements, Map<String, Subscription> subscriptions,
+        Map<String, Product> products)
+        throws GeneralSecurityException, IOException;
+
     /**
      * Generate an ueber certificate, used to grant access to all content for the owner.
      *
@@ -69,4 +90,13 @@ public interface EntitlementCertServiceAdapter {
      * @return All entitlement certs for this consumer.
      */
     List<EntitlementCertificate> listForConsumer(Consumer consumer);
+
+    /**
+     * Return the serial IDs of the same certificates as listForConsumer, in
+     * ascending order, without loading the certificates themselves.
+     *
+     * @param consumer
+     * @return Serial IDs of all entitlement certs for this consumer.
+     */
+    List<Long> listSerialIdsForConsumer(Consumer consumer);
 }
@@ -31,6 +31,7 @@ import org.candlepin.model.Product;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.ProvidedProduct;
 import org.candlepin.model.Subscription;
+import org.candlepin.pki.CertificateWorkerPool;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.pki.X509ExtensionWrapper;
@@ -57,6 +58,7 @@ import java.net.URLEncoder;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -64,6 +66,9 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * DefaultEntitlementCertServiceAdapter
@@ -80,6 +85,7 @@ public class DefaultEntitlementCertServiceAdapter extends
     private EntitlementCurator entCurator;
     private I18n i18n;
     private Configuration config;
+    private CertificateWorkerPool workerPool;
 
     private static Logger log =
         LoggerFactory.getLogger(DefaultEntitlementCertServiceAdapter.class);
@@ -93,7 +99,7 @@ public class DefaultEntitlementCertServiceAdapter extends
         CertificateSerialCurator serialCurator,
         ProductServiceAdapter productAdapter,
         EntitlementCurator entCurator, I18n i18n,
-        Configuration config) {
+        Configuration config, CertificateWorkerPool workerPool) {
 
         this.pki = pki;
         this.extensionUtil = extensionUtil;
@@ -105,6 +111,7 @@ public class DefaultEntitlementCertServiceAdapter extends
         this.entCurator = entCurator;
         this.i18n = i18n;
         this.config = config;
+        this.workerPool = workerPool;
     }
 
 
@@ -124,6 +131,77 @@ public class DefaultEntitlementCertServiceAdapter extends
         return generateEntitlementCert(entitlement, sub, product, true);
     }
 
+    /**
+     * Everything which needs the database is done on the calling thread, the
+     * certificates are signed and encoded on the {@link CertificateWorkerPool},
+     * and are then inserted together with their serials in JDBC batches.
+     */
+    @Override
+    public Map<String, EntitlementCertificate> generateEntitlementCerts(
+        List<Entitlement> entitlements, Map<String, Subscription> subscriptions,
+        Map<String, Product> products)
+        throws GeneralSecurityException, IOException {
+
+        log.info("Generating " + entitlements.size() + " entitlement certs.");
+        List<CertificateTask> tasks = new ArrayList<CertificateTask>(entitlements.size());
+        for (Entitlement entitlement : entitlements) {
+            try {
+                CertificateTask task = prepareCertificate(entitlement,
+                    subscriptions.get(entitlement.getId()),
+                    products.get(entitlement.getId()), false);
+                serialCurator.allocate(task.serial);
+                tasks.add(task);
+            }
+            catch (CertificateSizeException cse) {
+                log.warn("The certificate for entitlement " + entitlement.getId() +
+                    " cannot be generated: " + cse.getMessage());
+            }
+        }
+
+        List<Future<EntitlementCertificate>> results =
+            new ArrayList<Future<EntitlementCertificate>>(tasks.size());
+        for (CertificateTask task : tasks) {
+            results.add(workerPool.submit(task));
+        }
+
+        Map<String, EntitlementCertificate> certs =
+            new HashMap<String, EntitlementCertificate>();
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                Entitlement entitlement = tasks.get(i).entitlement;
+                EntitlementCertificate cert = results.get(i).get();
+                entitlement.getCertificates().add(cert);
+                certs.put(entitlement.getId(), cert);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating certificates", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Unable to generate certificates", e.getCause());
+        }
+        finally {
+            // Nothing is left running for a batch which failed
+            for (Future<EntitlementCertificate> result : results) {
+                result.cancel(true);
+            }
+        }
+
+        log.info("Persisting " + certs.size() + " certs.");
+        entCertCurator.createAll(certs.values());
+        return certs;
+    }
+
     private Set<Product> getDerivedProductsForDistributor(Subscription sub,
         Entitlement ent) {
         Set<Product> derivedProducts = new HashSet<Product>();
@@ -169,6 +247,17 @@ public class DefaultEntitlementCertServiceAdapter extends
         KeyPair keyPair, boolean useContentPrefix)
         throws GeneralSecurityException, IOException {
 
+        CertificateTask task = prepareX509Certificate(ent, product, products,
+            productModels, keyPair, useContentPrefix);
+        return task.createX509Certificate(serialNumber);
+    }
+
+    private CertificateTask prepareX509Certificate(Entitlement ent,
+        Product product, Set<Product> products,
+        List<org.candlepin.json.model.Product> productModels,
+        KeyPair keyPair, boolean useContentPrefix)
+        throws IOException {
+
         // oidutil is busted at the moment, so do this manually
         Set<X509ExtensionWrapper> extensions;
         Set<X509ByteExtensionWrapper> byteExtensions =
@@ -190,10 +279,14 @@ public class DefaultEntitlementCertServiceAdapter extends
         }
 
         setupEntitlementEndDate(ent);
-        X509Certificate x509Cert =  this.pki.createX509Certificate(
-                createDN(ent), extensions, byteExtensions, ent.getStartDate(),
-                ent.getEndDate(), keyPair, serialNumber, null);
-        return x509Cert;
+        CertificateTask task = new CertificateTask(pki, ent);
+        task.dn = createDN(ent);
+        task.extensions = extensions;
+        task.byteExtensions = byteExtensions;
+        task.startDate = ent.getStartDate();
+        task.endDate = ent.getEndDate();
+        task.keyPair = keyPair;
+        return task;
     }
 
     /**
@@ -362,13 +455,32 @@ public class DefaultEntitlementCertServiceAdapter extends
         Subscription sub, Product product, boolean thisIsUeberCert)
         throws GeneralSecurityException, IOException {
 
+        CertificateTask task = prepareCertificate(entitlement, sub, product,
+            thisIsUeberCert);
+        // The serial number is needed to sign the certificate, the serial row is
+        // written along with the certificate
+        task.serial = serialCurator.allocate(task.serial);
+
+        EntitlementCertificate cert = task.call();
+
+        log.info("Persisting cert.");
+        entitlement.getCertificates().add(cert);
+        entCertCurator.create(cert);
+        return cert;
+    }
+
+    /*
+     * Looks up everything the certificate needs, leaving only the signing and
+     * encoding to be done.
+     */
+    private CertificateTask prepareCertificate(Entitlement entitlement,
+        Subscription sub, Product product, boolean thisIsUeberCert)
+        throws IOException {
+
         log.info("Generating entitlement cert.");
 
         KeyPair keyPair = keyPairCurator.getConsumerKeyPair(entitlement.getConsumer());
         CertificateSerial serial = new CertificateSerial(entitlement.getEndDate());
-        // We need the sequence generated id before we create the EntitlementCertificate,
-        // otherwise we could have used cascading create
-        serial = serialCurator.create(serial);
 
         Set<Product> products = new HashSet<Product>(getProvidedProducts(
             entitlement.getPool(), sub));
@@ -388,51 +500,86 @@ public class DefaultEntitlementCertServiceAdapter extends
                         promotedContent,
                         entitlement.getConsumer(), entitlement);
 
-        X509Certificate x509Cert = createX509Certificate(entitlement,
-            product, products, productModels, BigInteger.valueOf(serial.getId()), keyPair,
-            !thisIsUeberCert);
-
-        EntitlementCertificate cert = new EntitlementCertificate();
-        cert.setSerial(serial);
-        cert.setKeyAsBytes(pki.getPemEncoded(keyPair.getPrivate()));
-
-        log.info("Getting PEM encoded cert.");
-        String pem = new String(this.pki.getPemEncoded(x509Cert));
+        CertificateTask task = prepareX509Certificate(entitlement,
+            product, products, productModels, keyPair, !thisIsUeberCert);
+        task.serial = serial;
 
         if (shouldGenerateV3(entitlement)) {
-            byte[] payloadBytes = v3extensionUtil.createEntitlementDataPayload(product,
+            task.payloadBytes = v3extensionUtil.createEntitlementDataPayload(product,
                     productModels, entitlement, contentPrefix, promotedContent);
-            String payload = "-----BEGIN ENTITLEMENT DATA-----\n";
-            payload += Util.toBase64(payloadBytes);
-            payload += "-----END ENTITLEMENT DATA-----\n";
+        }
+        return task;
+    }
 
-            byte[] bytes = pki.getSHA256WithRSAHash(new ByteArrayInputStream(payloadBytes));
-            String signature = "-----BEGIN RSA SIGNATURE-----\n";
-            signature += Util.toBase64(bytes);
-            signature += "-----END RSA SIGNATURE-----\n";
+    private String createDN(Entitlement ent) {
+        StringBuilder sb = new StringBuilder("CN=");
+        sb.append(ent.getId());
+        return sb.toString();
+    }
+
+    /**
+     * The CPU bound part of generating an entitlement certificate. Holds no
+     * references to curators, so it can run on any thread once the serial has
+     * been persisted.
+     */
+    private static class CertificateTask implements Callable<EntitlementCertificate> {
+        private final PKIUtility pki;
+        private final Entitlement entitlement;
+        private String dn;
+        private Set<X509ExtensionWrapper> extensions;
+        private Set<X509ByteExtensionWrapper> byteExtensions;
+        private Date startDate;
+        private Date endDate;
+        private KeyPair keyPair;
+        private CertificateSerial serial;
+        private byte[] payloadBytes;
+
+        CertificateTask(PKIUtility pki, Entitlement entitlement) {
+            this.pki = pki;
+            this.entitlement = entitlement;
+        }
 
-            pem += payload + signature;
+        X509Certificate createX509Certificate(BigInteger serialNumber)
+            throws GeneralSecurityException, IOException {
+            return pki.createX509Certificate(dn, extensions, byteExtensions, startDate,
+                endDate, keyPair, serialNumber, null);
         }
 
-        cert.setCert(pem);
+        @Override
+        public EntitlementCertificate call() throws GeneralSecurityException, IOException {
+            X509Certificate x509Cert = createX509Certificate(
+                BigInteger.valueOf(serial.getId()));
 
-        cert.setEntitlement(entitlement);
+            EntitlementCertificate cert = new EntitlementCertificate();
+            cert.setSerial(serial);
+            cert.setKeyAsBytes(pki.getPemEncoded(keyPair.getPrivate()));
 
-        if (log.isDebugEnabled()) {
-            log.debug("Generated cert serial number: " + serial.getId());
-            log.debug("Key: " + cert.getKey());
-            log.debug("Cert: " + cert.getCert());
-        }
+            String pem = new String(pki.getPemEncoded(x509Cert));
 
-        log.info("Persisting cert.");
-        entitlement.getCertificates().add(cert);
-        entCertCurator.create(cert);
-        return cert;
-    }
+            // Only v3 certificates carry a payload
+            if (payloadBytes != null) {
+                String payload = "-----BEGIN ENTITLEMENT DATA-----\n";
+                payload += Util.toBase64(payloadBytes);
+                payload += "-----END ENTITLEMENT DATA-----\n";
 
-    private String createDN(Entitlement ent) {
-        StringBuilder sb = new StringBuilder("CN=");
-        sb.append(ent.getId());
-        return sb.toString();
+                byte[] bytes = pki.getSHA256WithRSAHash(
+                    new ByteArrayInputStream(payloadBytes));
+                String signature = "-----BEGIN RSA SIGNATURE-----\n";
+                signature += Util.toBase64(bytes);
+                signature += "-----END RSA SIGNATURE-----\n";
+
+                pem += payload + signature;
+            }
+
+            cert.setCert(pem);
+            cert.setEntitlement(entitlement);
+
+            if (log.isDebugEnabled()) {
+                log.debug("Generated cert serial number: " + serial.getId());
+                log.debug("Key: " + cert.getKey());
+                log.debug("Cert: " + cert.getCert());
+            }
+            return cert;
+        }
     }
 }
@@ -124,9 +124,9 @@ public class DefaultIdentityCertServiceAdapter implements
         Date endDate = this.endDateGenerator.apply(startDate);
 
         CertificateSerial serial = new CertificateSerial(endDate);
-        // We need the sequence generated id before we create the EntitlementCertificate,
-        // otherwise we could have used cascading create
-        serialCurator.create(serial);
+        // The serial number is needed to sign the certificate, the serial row is
+        // written along with the certificate
+        serial = serialCurator.allocate(serial);
 
         String dn = createDN(consumer);
         IdentityCertificate identityCert = new IdentityCertificate();
@@ -20,7 +20,6 @@ import org.candlepin.model.Branding;
 import org.candlepin.model.Cdn;
 import org.candlepin.model.CdnCurator;
 import org.candlepin.model.CertificateSerial;
-import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.model.DerivedProvidedProduct;
 import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCertificate;
@@ -57,17 +56,15 @@ public class EntitlementImporter {
     private static Logger log = LoggerFactory.getLogger(EntitlementImporter.class);
 
     private SubscriptionCurator subscriptionCurator;
-    private CertificateSerialCurator csCurator;
     private CdnCurator cdnCurator;
     private EventSink sink;
     private I18n i18n;
+    private Map<String, Cdn> cdnsByLabel = new HashMap<String, Cdn>();
 
     public EntitlementImporter(SubscriptionCurator subscriptionCurator,
-        CertificateSerialCurator csCurator, CdnCurator cdnCurator,
-        EventSink sink, I18n i18n) {
+        CdnCurator cdnCurator, EventSink sink, I18n i18n) {
 
         this.subscriptionCurator = subscriptionCurator;
-        this.csCurator = csCurator;
         this.cdnCurator = cdnCurator;
         this.sink = sink;
         this.i18n = i18n;
@@ -77,7 +74,27 @@ public class EntitlementImporter {
         Map<String, Product> productsById, ConsumerDto consumer, Meta meta)
         throws IOException, SyncDataFormatException {
 
-        Entitlement entitlement = mapper.readValue(reader, Entitlement.class);
+        return importObject(readObject(mapper, reader), owner, productsById, consumer,
+            meta);
+    }
+
+    /**
+     * Parses an upstream entitlement. Does not touch the database, so it is safe
+     * to call from several threads at once.
+     *
+     * @param mapper object mapper
+     * @param reader entitlement json
+     * @return the upstream entitlement
+     * @throws IOException if the json cannot be read
+     */
+    public Entitlement readObject(ObjectMapper mapper, Reader reader) throws IOException {
+        return mapper.readValue(reader, Entitlement.class);
+    }
+
+    public Subscription importObject(Entitlement entitlement, Owner owner,
+        Map<String, Product> productsById, ConsumerDto consumer, Meta meta)
+        throws SyncDataFormatException {
+
         Subscription subscription = new Subscription();
 
         subscription.setUpstreamPoolId(entitlement.getPool().getId());
@@ -103,7 +120,7 @@ public class EntitlementImporter {
         subscription.setProduct(findProduct(productsById, entitlement.getProductId()));
         String cdnLabel = meta.getCdnLabel();
         if (!StringUtils.isBlank(cdnLabel)) {
-            Cdn cdn = cdnCurator.lookupByLabel(cdnLabel);
+            Cdn cdn = lookupCdn(cdnLabel);
             if (cdn != null) {
                 subscription.setCdn(cdn);
             }
@@ -135,12 +152,12 @@ public class EntitlementImporter {
         int entcnt = 0;
         for (EntitlementCertificate cert : certs) {
             entcnt++;
+            // Saved with the subscription, through the cascades on its certificate
             CertificateSerial cs = new CertificateSerial();
             cs.setCollected(cert.getSerial().isCollected());
             cs.setExpiration(cert.getSerial().getExpiration());
             cs.setUpdated(cert.getSerial().getUpdated());
             cs.setCreated(cert.getSerial().getCreated());
-            csCurator.create(cs);
             SubscriptionsCertificate sc = new SubscriptionsCertificate();
             sc.setKey(cert.getKey());
             sc.setCertAsBytes(cert.getCertAsBytes());
@@ -155,6 +172,17 @@ public class EntitlementImporter {
         return subscription;
     }
 
+    /*
+     * Every entitlement of a manifest refers to the same CDN, only look it up
+     * once per import.
+     */
+    private Cdn lookupCdn(String label) {
+        if (!cdnsByLabel.containsKey(label)) {
+            cdnsByLabel.put(label, cdnCurator.lookupByLabel(label));
+        }
+        return cdnsByLabel.get(label);
+    }
+
     private Product findProduct(Map<String, Product> productsById,
         String productId) throws SyncDataFormatException {
         Product product = productsById.get(productId);
@@ -184,6 +212,7 @@ public class EntitlementImporter {
 
         Map<String, Map<String, Subscription>> existingSubsByUpstreamPool =
             mapSubsByUpstreamPool(owner);
+        List<Subscription> subscriptionsToCreate = new ArrayList<Subscription>();
 
         // if we can match to the entitlement id do it.
         // we need a new list to hold the ones that are left
@@ -193,7 +222,7 @@ public class EntitlementImporter {
             Map<String, Subscription> map = existingSubsByUpstreamPool.get(
                 subscription.getUpstreamPoolId());
             if (map == null || map.isEmpty()) {
-                createSubscription(subscription);
+                subscriptionsToCreate.add(subscription);
                 log.info("Creating new subscription for incoming entitlement with id [" +
                     subscription.getUpstreamEntitlementId() +
                     "]");
@@ -265,7 +294,7 @@ public class EntitlementImporter {
             Map<String, Subscription> map = existingSubsByUpstreamPool.get(
                 subscription.getUpstreamPoolId());
             if (map == null || map.isEmpty()) {
-                createSubscription(subscription);
+                subscriptionsToCreate.add(subscription);
                 log.info("Creating new subscription for incoming entitlement with id [" +
                     subscription.getUpstreamEntitlementId() +
                     "]");
@@ -281,6 +310,7 @@ public class EntitlementImporter {
                 local.getUpstreamEntitlementId() +
                 "]. Ordered quantity match.");
         }
+        createSubscriptions(subscriptionsToCreate);
         deleteRemainingLocalSubscriptions(existingSubsByUpstreamPool);
     }
 
@@ -334,11 +364,16 @@ public class EntitlementImporter {
         sink.emitSubscriptionModified(local, subscription);
     }
 
-    private void createSubscription(Subscription subscription) {
-        subscriptionCurator.create(subscription);
-        // send out created event
-        log.debug("emitting subscription event");
-        sink.emitSubscriptionCreated(subscription);
+    private void createSubscriptions(List<Subscription> subscriptions) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        subscriptionCurator.createAll(subscriptions);
+        // send out created events
+        log.debug("emitting subscription events");
+        for (Subscription subscription : subscriptions) {
+            sink.emitSubscriptionCreated(subscription);
+        }
     }
 
     /**
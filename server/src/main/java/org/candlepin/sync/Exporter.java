@@ -41,7 +41,7 @@ import org.candlepin.service.ProductServiceAdapter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,9 +50,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.Signature;
+import java.security.SignatureException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -145,16 +150,7 @@ public class Exporter {
             File baseDir = new File(tmpDir.getAbsolutePath(), "export");
             baseDir.mkdir();
 
-            exportMeta(baseDir, cdnKey);
-            exportConsumer(baseDir, consumer, webAppPrefix, apiUrl);
-            exportIdentityCertificate(baseDir, consumer);
-            exportEntitlements(baseDir, consumer);
-            exportEntitlementsCerts(baseDir, consumer, null, true);
-            exportProducts(baseDir, consumer);
-            exportConsumerTypes(baseDir);
-            exportRules(baseDir);
-            exportDistributorVersions(baseDir);
-            exportContentDeliveryNetworks(baseDir);
+            exportAll(new DirectoryTarget(baseDir), consumer, cdnKey, webAppPrefix, apiUrl);
             return makeArchive(consumer, tmpDir, baseDir);
         }
         catch (IOException e) {
@@ -163,6 +159,68 @@ public class Exporter {
         }
     }
 
+    /**
+     * Writes the signed export archive for the consumer straight to the given
+     * stream, without staging any files on disk. The archive is the same as
+     * the one {@link #getFullExport(Consumer, String, String, String)} creates,
+     * the inner archive is signed as it is written, and the signature entry
+     * follows it.
+     *
+     * @param consumer the distributor to export
+     * @param cdnKey CDN to record in the export metadata, may be null
+     * @param webAppPrefix overrides the configured web URL prefix, may be null
+     * @param apiUrl overrides the configured API URL prefix, may be null
+     * @param out where the archive goes, not closed
+     * @throws ExportCreationException if the export cannot be written
+     */
+    public void getFullExport(Consumer consumer, String cdnKey, String webAppPrefix,
+        String apiUrl, OutputStream out)
+        throws ExportCreationException {
+        try {
+            Signature signer = pki.getSHA256WithRSASigner();
+
+            ZipOutputStream signed = new ZipOutputStream(out);
+            signed.setComment("signed Candlepin export for " + consumer.getUuid());
+            signed.putNextEntry(new ZipEntry("consumer_export.zip"));
+
+            ZipOutputStream archive = new ZipOutputStream(
+                new SigningOutputStream(signed, signer));
+            archive.setComment("Candlepin export for " + consumer.getUuid());
+            exportAll(new ZipTarget(archive, "export/"), consumer, cdnKey, webAppPrefix,
+                apiUrl);
+            // Only finish, closing would close the outer archive as well
+            archive.finish();
+            signed.closeEntry();
+
+            addSignatureToArchive(signed, signer.sign());
+            signed.finish();
+            signed.flush();
+        }
+        catch (IOException e) {
+            log.error("Error generating entitlement export", e);
+            throw new ExportCreationException("Unable to create export archive", e);
+        }
+        catch (SignatureException e) {
+            log.error("Error signing entitlement export", e);
+            throw new ExportCreationException("Unable to create export archive", e);
+        }
+    }
+
+    private void exportAll(ExportTarget target, Consumer consumer, String cdnKey,
+        String webAppPrefix, String apiUrl)
+        throws IOException, ExportCreationException {
+        exportMeta(target, cdnKey);
+        exportConsumer(target, consumer, webAppPrefix, apiUrl);
+        exportIdentityCertificate(target, consumer);
+        exportEntitlements(target, consumer);
+        exportEntitlementsCerts(target, consumer, null, true);
+        exportProducts(target, consumer);
+        exportConsumerTypes(target);
+        exportRules(target);
+        exportDistributorVersions(target);
+        exportContentDeliveryNetworks(target);
+    }
+
     public File getEntitlementExport(Consumer consumer,
                         Set<Long> serials) throws ExportCreationException {
         // TODO: need to delete tmpDir (which contains the archive,
@@ -172,8 +230,9 @@ public class Exporter {
             File baseDir = new File(tmpDir.getAbsolutePath(), "export");
             baseDir.mkdir();
 
-            exportMeta(baseDir, null);
-            exportEntitlementsCerts(baseDir, consumer, serials, false);
+            DirectoryTarget target = new DirectoryTarget(baseDir);
+            exportMeta(target, null);
+            exportEntitlementsCerts(target, consumer, serials, false);
             return makeArchive(consumer, tmpDir, baseDir);
         }
         catch (IOException e) {
@@ -312,12 +371,11 @@ public class Exporter {
         out.closeEntry();
     }
 
-    private void exportMeta(File baseDir, String cdnKey)
+    private void exportMeta(ExportTarget target, String cdnKey)
         throws IOException {
-        File file = new File(baseDir.getCanonicalPath(), "meta.json");
-        FileWriter writer = null;
+        Writer writer = null;
         try {
-            writer = new FileWriter(file);
+            writer = target.newWriter("meta.json");
             Meta m = new Meta(getVersion(), new Date(),
                 principalProvider.get().getPrincipalName(),
                 null, cdnKey);
@@ -357,13 +415,12 @@ public class Exporter {
         return map.get("version") + "-" + map.get("release");
     }
 
-    private void exportConsumer(File baseDir, Consumer consumer, String webAppPrefix,
-        String apiUrl)
+    private void exportConsumer(ExportTarget target, Consumer consumer,
+        String webAppPrefix, String apiUrl)
         throws IOException {
-        File file = new File(baseDir.getCanonicalPath(), "consumer.json");
-        FileWriter writer = null;
+        Writer writer = null;
         try {
-            writer = new FileWriter(file);
+            writer = target.newWriter("consumer.json");
             this.consumerExporter.export(mapper, writer, consumer,
                 getPrefixWebUrl(webAppPrefix), getPrefixApiUrl(apiUrl));
         }
@@ -374,14 +431,13 @@ public class Exporter {
         }
     }
 
-    private void exportEntitlementsCerts(File baseDir,
+    private void exportEntitlementsCerts(ExportTarget target,
                                          Consumer consumer,
                                          Set<Long> serials,
                                          boolean manifest)
         throws IOException {
 
-        File entCertDir = new File(baseDir.getCanonicalPath(), "entitlement_certificates");
-        entCertDir.mkdir();
+        target.newDirectory("entitlement_certificates");
 
         for (EntitlementCertificate cert : entCertAdapter.listForConsumer(consumer)) {
             if (manifest && !this.exportRules.canExport(cert.getEntitlement())) {
@@ -394,11 +450,10 @@ public class Exporter {
 
             if ((serials == null) || (serials.contains(cert.getSerial().getId()))) {
                 log.debug("Exporting entitlement certificate: " + cert.getSerial());
-                File file = new File(entCertDir.getCanonicalPath(),
-                    cert.getSerial().getId() + ".pem");
-                FileWriter writer = null;
+                Writer writer = null;
                 try {
-                    writer = new FileWriter(file);
+                    writer = target.newWriter("entitlement_certificates/" +
+                        cert.getSerial().getId() + ".pem");
                     entCert.export(writer, cert);
                 }
                 finally {
@@ -410,21 +465,19 @@ public class Exporter {
         }
     }
 
-    private void exportIdentityCertificate(File baseDir, Consumer consumer)
+    private void exportIdentityCertificate(ExportTarget target, Consumer consumer)
         throws IOException {
 
-        File idcertdir = new File(baseDir.getCanonicalPath(), "upstream_consumer");
-        idcertdir.mkdir();
+        target.newDirectory("upstream_consumer");
 
         IdentityCertificate cert = consumer.getIdCert();
-        File file = new File(idcertdir.getCanonicalPath(),
-            cert.getSerial().getId() + ".json");
 
         // paradigm dictates this should go in an exporter.export method
-        FileWriter writer = null;
+        Writer writer = null;
 
         try {
-            writer = new FileWriter(file);
+            writer = target.newWriter("upstream_consumer/" +
+                cert.getSerial().getId() + ".json");
             mapper.writeValue(writer, cert);
         }
         finally {
@@ -434,10 +487,9 @@ public class Exporter {
         }
     }
 
-    private void exportEntitlements(File baseDir, Consumer consumer)
+    private void exportEntitlements(ExportTarget target, Consumer consumer)
         throws IOException, ExportCreationException {
-        File entCertDir = new File(baseDir.getCanonicalPath(), "entitlements");
-        entCertDir.mkdir();
+        target.newDirectory("entitlements");
 
         for (Entitlement ent : entitlementCurator.listByConsumer(consumer)) {
             if (ent.getDirty()) {
@@ -457,10 +509,9 @@ public class Exporter {
             if (log.isDebugEnabled()) {
                 log.debug("Exporting entitlement for product" + ent.getProductId());
             }
-            FileWriter writer = null;
+            Writer writer = null;
             try {
-                File file = new File(entCertDir.getCanonicalPath(), ent.getId() + ".json");
-                writer = new FileWriter(file);
+                writer = target.newWriter("entitlements/" + ent.getId() + ".json");
                 entExporter.export(mapper, writer, ent);
             }
             finally {
@@ -471,9 +522,9 @@ public class Exporter {
         }
     }
 
-    private void exportProducts(File baseDir, Consumer consumer) throws IOException {
-        File productDir = new File(baseDir.getCanonicalPath(), "products");
-        productDir.mkdir();
+    private void exportProducts(ExportTarget target, Consumer consumer)
+        throws IOException {
+        target.newDirectory("products");
 
         Map<String, Product> products = new HashMap<String, Product>();
         for (Entitlement entitlement : consumer.getEntitlements()) {
@@ -513,12 +564,10 @@ public class Exporter {
         }
 
         for (Product product : products.values()) {
-            String path = productDir.getCanonicalPath();
             String productId = product.getId();
-            File file = new File(path, productId + ".json");
-            FileWriter writer = null;
+            Writer writer = null;
             try {
-                writer = new FileWriter(file);
+                writer = target.newWriter("products/" + productId + ".json");
                 productExporter.export(mapper, writer, product);
             }
             finally {
@@ -534,9 +583,7 @@ public class Exporter {
                 // so just skip over this if we get null back
                 // XXX: need to decide if the cert should always be in the export, or never.
                 if (cert != null) {
-                    file = new File(productDir.getCanonicalPath(),
-                        product.getId() + ".pem");
-                    writer = new FileWriter(file);
+                    writer = target.newWriter("products/" + product.getId() + ".pem");
                     productCertExporter.export(writer, cert);
                     writer.close();
                 }
@@ -544,15 +591,13 @@ public class Exporter {
         }
     }
 
-    private void exportConsumerTypes(File baseDir) throws IOException {
-        File typeDir = new File(baseDir.getCanonicalPath(), "consumer_types");
-        typeDir.mkdir();
+    private void exportConsumerTypes(ExportTarget target) throws IOException {
+        target.newDirectory("consumer_types");
 
         for (ConsumerType type : consumerTypeCurator.listAll()) {
-            File file = new File(typeDir.getCanonicalPath(), type.getLabel() + ".json");
-            FileWriter writer = null;
+            Writer writer = null;
             try {
-                writer = new FileWriter(file);
+                writer = target.newWriter("consumer_types/" + type.getLabel() + ".json");
                 consumerType.export(mapper, writer, type);
             }
             finally {
@@ -563,15 +608,13 @@ public class Exporter {
         }
     }
 
-    private void exportRules(File baseDir) throws IOException {
+    private void exportRules(ExportTarget target) throws IOException {
         // Because old candlepin servers assume to import a file in rules dir, we had to
         // move to a new directory for versioned rules file:
-        File newRulesDir = new File(baseDir.getCanonicalPath(), "rules2");
-        newRulesDir.mkdir();
-        File newRulesFile = new File(newRulesDir.getCanonicalPath(), "rules.js");
-        FileWriter writer = null;
+        target.newDirectory("rules2");
+        Writer writer = null;
         try {
-            writer = new FileWriter(newRulesFile);
+            writer = target.newWriter("rules2/rules.js");
             rules.export(writer);
         }
         finally {
@@ -580,39 +623,44 @@ public class Exporter {
             }
         }
 
-        exportLegacyRules(baseDir);
+        exportLegacyRules(target);
     }
 
     /*
      * We still need to export a copy of the deprecated default-rules.js so new manifests
      * can still be imported by old candlepin servers.
      */
-    private void exportLegacyRules(File baseDir) throws IOException {
-        File oldRulesDir = new File(baseDir.getCanonicalPath(), "rules");
-        oldRulesDir.mkdir();
-        File oldRulesFile = new File(oldRulesDir.getCanonicalPath(), "default-rules.js");
+    private void exportLegacyRules(ExportTarget target) throws IOException {
+        target.newDirectory("rules");
 
         // TODO: does this need a "exporter" object as well?
-        FileUtils.copyFile(new File(
-            this.getClass().getResource(LEGACY_RULES_FILE).getPath()),
-            oldRulesFile);
+        InputStream in = this.getClass().getResourceAsStream(LEGACY_RULES_FILE);
+        OutputStream out = null;
+        try {
+            out = target.newStream("rules/default-rules.js");
+            IOUtils.copy(in, out);
+        }
+        finally {
+            in.close();
+            if (out != null) {
+                out.close();
+            }
+        }
     }
 
-    private void exportDistributorVersions(File baseDir) throws IOException {
+    private void exportDistributorVersions(ExportTarget target) throws IOException {
         List<DistributorVersion> versions = distVerCurator.findAll();
         if (versions == null || versions.isEmpty()) { return; }
 
-        File distVerDir = new File(baseDir.getCanonicalPath(), "distributor_version");
-        distVerDir.mkdir();
+        target.newDirectory("distributor_version");
 
-        FileWriter writer = null;
+        Writer writer = null;
         for (DistributorVersion dv : versions) {
             if (log.isDebugEnabled()) {
                 log.debug("Exporting Distributor Version" + dv.getName());
             }
             try {
-                File file = new File(distVerDir.getCanonicalPath(), dv.getName() + ".json");
-                writer = new FileWriter(file);
+                writer = target.newWriter("distributor_version/" + dv.getName() + ".json");
                 distVerExporter.export(mapper, writer, dv);
             }
             finally {
@@ -623,21 +671,20 @@ public class Exporter {
         }
     }
 
-    private void exportContentDeliveryNetworks(File baseDir) throws IOException {
+    private void exportContentDeliveryNetworks(ExportTarget target) throws IOException {
         List<Cdn> cdns = cdnCurator.list();
         if (cdns == null || cdns.isEmpty()) { return; }
 
-        File cdnDir = new File(baseDir.getCanonicalPath(), "content_delivery_network");
-        cdnDir.mkdir();
+        target.newDirectory("content_delivery_network");
 
-        FileWriter writer = null;
+        Writer writer = null;
         for (Cdn cdn : cdns) {
             if (log.isDebugEnabled()) {
                 log.debug("Exporting Content Delivery Network" + cdn.getName());
             }
             try {
-                File file = new File(cdnDir.getCanonicalPath(), cdn.getLabel() + ".json");
-                writer = new FileWriter(file);
+                writer = target.newWriter("content_delivery_network/" +
+                    cdn.getLabel() + ".json");
                 cdnExporter.export(mapper, writer, cdn);
             }
             finally {
@@ -647,4 +694,116 @@ public class Exporter {
             }
         }
     }
+
+    /**
+     * Where the files of an export are written to, relative to the export
+     * directory.
+     */
+    private abstract static class ExportTarget {
+
+        public abstract void newDirectory(String path) throws IOException;
+
+        /**
+         * @param path of the file
+         * @return stream for the file contents, the caller closes it
+         * @throws IOException if the file cannot be created
+         */
+        public abstract OutputStream newStream(String path) throws IOException;
+
+        /**
+         * @param path of the file
+         * @return writer for the file contents, in the platform encoding same
+         * as a FileWriter. The caller closes it.
+         * @throws IOException if the file cannot be created
+         */
+        public Writer newWriter(String path) throws IOException {
+            return new OutputStreamWriter(newStream(path));
+        }
+    }
+
+    /**
+     * Writes the export as files below a directory.
+     */
+    private static class DirectoryTarget extends ExportTarget {
+        private final File baseDir;
+
+        public DirectoryTarget(File baseDir) {
+            this.baseDir = baseDir;
+        }
+
+        @Override
+        public void newDirectory(String path) throws IOException {
+            new File(baseDir.getCanonicalPath(), path).mkdir();
+        }
+
+        @Override
+        public OutputStream newStream(String path) throws IOException {
+            return new FileOutputStream(new File(baseDir.getCanonicalPath(), path));
+        }
+    }
+
+    /**
+     * Writes the export as entries of a zip archive, named the same as the files
+     * a DirectoryTarget would have created in the archive made from it.
+     */
+    private static class ZipTarget extends ExportTarget {
+        private final ZipOutputStream zip;
+        private final String prefix;
+
+        public ZipTarget(ZipOutputStream zip, String prefix) {
+            this.zip = zip;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public void newDirectory(String path) {
+            // Directories only exist as part of the entry names
+        }
+
+        @Override
+        public OutputStream newStream(String path) throws IOException {
+            log.debug("Adding entry to archive: {}{}", prefix, path);
+            zip.putNextEntry(new ZipEntry(prefix + path));
+            return new FilterOutputStream(zip) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                    zip.closeEntry();
+                }
+            };
+        }
+    }
+
+    /**
+     * Feeds everything written through it to a signature.
+     */
+    private static class SigningOutputStream extends FilterOutputStream {
+        private final Signature signature;
+
+        public SigningOutputStream(OutputStream out, Signature signature) {
+            super(out);
+            this.signature = signature;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                signature.update(b, off, len);
+            }
+            catch (SignatureException e) {
+                throw new IOException(e.getMessage());
+            }
+            out.write(b, off, len);
+        }
+    }
 }
@@ -18,6 +18,7 @@ import org.candlepin.audit.EventSink;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.controller.PoolManager;
 import org.candlepin.controller.Refresher;
+import org.candlepin.hibernate.ScopedBatchBuilder;
 import org.candlepin.model.Cdn;
 import org.candlepin.model.CdnCurator;
 import org.candlepin.model.CertificateSerialCurator;
@@ -26,6 +27,7 @@ import org.candlepin.model.ConsumerTypeCurator;
 import org.candlepin.model.ContentCurator;
 import org.candlepin.model.DistributorVersion;
 import org.candlepin.model.DistributorVersionCurator;
+import org.candlepin.model.Entitlement;
 import org.candlepin.model.ExporterMetadata;
 import org.candlepin.model.ExporterMetadataCurator;
 import org.candlepin.model.IdentityCertificate;
@@ -57,12 +59,17 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -127,6 +134,7 @@ public class Importer {
     private ExporterMetadataCurator expMetaCurator;
     private CertificateSerialCurator csCurator;
     private CdnCurator cdnCurator;
+    private ImportWorkerPool workerPool;
     private EventSink sink;
     private I18n i18n;
     private DistributorVersionCurator distVerCurator;
@@ -139,7 +147,7 @@ public class Importer {
         PKIUtility pki, Configuration config, ExporterMetadataCurator emc,
         CertificateSerialCurator csc, EventSink sink, I18n i18n,
         DistributorVersionCurator distVerCurator,
-        CdnCurator cdnCurator) {
+        CdnCurator cdnCurator, ImportWorkerPool workerPool) {
 
         this.config = config;
         this.consumerTypeCurator = consumerTypeCurator;
@@ -158,6 +166,7 @@ public class Importer {
         this.i18n = i18n;
         this.distVerCurator = distVerCurator;
         this.cdnCurator = cdnCurator;
+        this.workerPool = workerPool;
     }
 
     /**
@@ -553,26 +562,24 @@ public class Importer {
         return consumer;
     }
 
-    public Set<Product> importProducts(File[] products, ProductImporter importer)
+    public Set<Product> importProducts(File[] products, final ProductImporter importer)
         throws IOException {
-        Set<Product> productsToImport = new HashSet<Product>();
+        List<File> productFiles = new ArrayList<File>();
         for (File product : products) {
             // Skip product.pem's, we just need the json to import:
             if (product.getName().endsWith(".json")) {
-                log.debug("Import product: " + product.getName());
-                Reader reader = null;
-                try {
-                    reader = new FileReader(product);
-                    productsToImport.add(importer.createObject(mapper, reader));
-                }
-                finally {
-                    if (reader != null) {
-                        reader.close();
-                    }
-                }
+                productFiles.add(product);
             }
         }
 
+        Set<Product> productsToImport = new HashSet<Product>(
+            readAll(productFiles, new Parser<Product>() {
+                @Override
+                public Product parse(Reader reader) throws IOException {
+                    return importer.createObject(mapper, reader);
+                }
+            }));
+
         // TODO: Do we need to cleanup unused products? Looked at this earlier and it
         // looks somewhat complex and a little bit dangerous, so we're leaving them
         // around for now.
@@ -583,7 +590,7 @@ public class Importer {
     public void importEntitlements(Owner owner, Set<Product> products, File[] entitlements,
         ConsumerDto consumer, Meta meta)
         throws IOException, SyncDataFormatException {
-        EntitlementImporter importer = new EntitlementImporter(subCurator, csCurator,
+        final EntitlementImporter importer = new EntitlementImporter(subCurator,
             cdnCurator, sink, i18n);
 
         Map<String, Product> productsById = new HashMap<String, Product>();
@@ -591,23 +598,91 @@ public class Importer {
             productsById.put(product.getId(), product);
         }
 
+        List<Entitlement> upstream = readAll(Arrays.asList(entitlements),
+            new Parser<Entitlement>() {
+                @Override
+                public Entitlement parse(Reader reader) throws IOException {
+                    return importer.readObject(mapper, reader);
+                }
+            });
+
         Set<Subscription> subscriptionsToImport = new HashSet<Subscription>();
-        for (File entitlement : entitlements) {
-            Reader reader = null;
-            try {
-                log.debug("Import entitlement: " + entitlement.getName());
-                reader = new FileReader(entitlement);
-                subscriptionsToImport.add(importer.importObject(mapper, reader, owner,
-                    productsById, consumer, meta));
+        for (Entitlement entitlement : upstream) {
+            subscriptionsToImport.add(importer.importObject(entitlement, owner,
+                productsById, consumer, meta));
+        }
+
+        // Many subscriptions are created at once, send their inserts in batches
+        ScopedBatchBuilder.begin();
+        try {
+            importer.store(owner, subscriptionsToImport);
+        }
+        finally {
+            ScopedBatchBuilder.end();
+        }
+    }
+
+    /*
+     * Parses the files on the shared ImportWorkerPool, and returns the objects
+     * in the order of the files. The mapper is thread safe, and parsing never
+     * touches the database, everything after that stays on the calling thread.
+     */
+    private <T> List<T> readAll(List<File> files, final Parser<T> parser)
+        throws IOException {
+        List<T> objects = new ArrayList<T>(files.size());
+        if (files.isEmpty()) {
+            return objects;
+        }
+
+        List<Future<T>> results = new ArrayList<Future<T>>(files.size());
+        try {
+            for (final File file : files) {
+                results.add(workerPool.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws IOException {
+                        log.debug("Import file: " + file.getName());
+                        Reader reader = new FileReader(file);
+                        try {
+                            return parser.parse(reader);
+                        }
+                        finally {
+                            reader.close();
+                        }
+                    }
+                }));
             }
-            finally {
-                if (reader != null) {
-                    reader.close();
-                }
+
+            for (Future<T> result : results) {
+                objects.add(result.get());
             }
+            return objects;
         }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the export", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Unable to read the export", e.getCause());
+        }
+        finally {
+            // Stops the remaining reads if one of them failed
+            for (Future<T> result : results) {
+                result.cancel(true);
+            }
+        }
+    }
 
-        importer.store(owner, subscriptionsToImport);
+    /**
+     * Parses one file of an export.
+     */
+    private interface Parser<T> {
+        T parse(Reader reader) throws IOException;
     }
 
     /**
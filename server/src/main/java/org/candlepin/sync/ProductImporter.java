@@ -31,6 +31,8 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * ProductImporter
@@ -39,6 +41,12 @@ public class ProductImporter {
 
     private ProductCurator curator;
     private ContentCurator contentCurator;
+    /*
+     * Content seen so far, by ID. Products of a manifest share a lot of content,
+     * and may be read on several threads at once.
+     */
+    private ConcurrentMap<String, Content> contentById =
+        new ConcurrentHashMap<String, Content>();
 
     public ProductImporter(ProductCurator curator, ContentCurator contentCurator) {
         this.curator = curator;
@@ -58,22 +66,38 @@ public class ProductImporter {
         // so we can use multipliers on local products if necessary.
         importedProduct.setMultiplier(1L);
 
+        // Point all products at a single copy of each content, so it is only
+        // stored once
+        for (ProductContent pc : importedProduct.getProductContent()) {
+            Content content = pc.getContent();
+            if (content != null && content.getId() != null) {
+                Content existing = contentById.putIfAbsent(content.getId(), content);
+                if (existing != null) {
+                    pc.setContent(existing);
+                }
+            }
+        }
+
         // TODO: test product content doesn't dangle
         return importedProduct;
     }
 
     public void store(Set<Product> products) {
+        Set<String> storedContentIds = new HashSet<String>();
         for (Product importedProduct : products) {
             // Handling the storing/updating of Content here. This is technically a
             // disjoint entity, but really only makes sense in the concept of
             // products.
             //
-            // The downside is if multiple products reference the same content, it
-            // will be updated multiple times during the import.
+            // Content shared between products is only stored the first time,
+            // see createObject.
             for (ProductContent content : importedProduct.getProductContent()) {
                 // BZ 990113 error occurs because incoming content data has
                 //  no value for Vendor. Will place one to avoid DB issues.
                 Content c = content.getContent();
+                if (c.getId() != null && !storedContentIds.add(c.getId())) {
+                    continue;
+                }
                 if (StringUtils.isBlank(c.getVendor())) {
                     c.setVendor("unknown");
                 }
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * ContentValueCache
+ *
+ * Caches the encoded content set extension of v3 entitlement certificates. The
+ * value only depends on the content paths going into the certificate, which are
+ * the same for most certificates of a SKU in a given environment and content
+ * prefix, and building it is the most expensive part of a large v3 certificate.
+ *
+ * Entries are keyed by a hash of the ordered path list. The cache holds at most
+ * {@link ConfigProperties} <code>CONTENT_VALUE_CACHE_MAX</code> values, through
+ * <code>SoftReference</code>s so the GC can claim them when memory runs low.
+ */
+@Singleton
+public class ContentValueCache {
+
+    private final ValueMapping values;
+
+    @Inject
+    public ContentValueCache(Configuration config) {
+        this.values = new ValueMapping(
+            config.getInt(ConfigProperties.CONTENT_VALUE_CACHE_MAX));
+    }
+
+    /**
+     * @param paths content paths in the order they are encoded
+     * @return the key for the encoded value of these paths
+     */
+    public static String key(List<String> paths) {
+        StringBuilder joined = new StringBuilder();
+        for (String path : paths) {
+            joined.append(path).append('\n');
+        }
+        return DigestUtils.sha256Hex(joined.toString());
+    }
+
+    /**
+     * @param key key of the path list, see {@link #key(List)}
+     * @return the encoded value, or null if it is not cached. The array is
+     * shared and must not be modified.
+     */
+    public byte[] get(String key) {
+        synchronized (values) {
+            SoftReference<byte[]> ref = values.get(key);
+            return ref == null ? null : ref.get();
+        }
+    }
+
+    public void put(String key, byte[] value) {
+        synchronized (values) {
+            values.put(key, new SoftReference<byte[]>(value));
+        }
+    }
+
+    public int size() {
+        synchronized (values) {
+            return values.size();
+        }
+    }
+
+    /**
+     * ValueMapping
+     *
+     * An access ordered <code>LinkedHashMap</code> which drops the least recently
+     * used value once the configured maximum is reached.
+     */
+    private static class ValueMapping extends LinkedHashMap<String, SoftReference<byte[]>> {
+
+        private static final long serialVersionUID = 1L;
+        private int max;
+
+        public ValueMapping(int max) {
+            super(16, 0.75f, true);
+            this.max = max;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Entry<String, SoftReference<byte[]>> eldest) {
+            return super.size() > max;
+        }
+    }
+}
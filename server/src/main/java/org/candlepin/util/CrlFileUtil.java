@@ -15,6 +15,7 @@
 package org.candlepin.util;
 
 import org.candlepin.pki.PKIUtility;
+import org.candlepin.pki.X509CRLEntryWrapper;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -23,25 +24,44 @@ import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * CrlFileUtil
+ *
+ * The CRL file stays the record of what has been revoked, its revocation index
+ * only saves parsing it on every update. An index is used only while its CRL
+ * number matches the CRL's, so a CRL deleted or replaced by hand is picked up
+ * and the index rebuilt from it. To avoid parsing the CRL just to check that,
+ * the size and modification time of each CRL this node wrote or checked are
+ * remembered, the CRL is only parsed when they change, or once after a restart.
  */
 @Singleton
 public class CrlFileUtil {
     private static Logger log = LoggerFactory.getLogger(CrlFileUtil.class);
     private final PKIUtility pkiUtility;
     private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
+    // CRL path to the fingerprint of the CRL known to match its index
+    private final Map<String, String> matchedCrls = new HashMap<String, String>();
 
     @Inject
     public CrlFileUtil(PKIUtility pkiUtility) {
@@ -93,6 +113,181 @@ public class CrlFileUtil {
         }
     }
 
+    /**
+     * @param crlFile the CRL
+     * @return the file holding the revocation index of the CRL
+     */
+    public File getIndexFile(File crlFile) {
+        return new File(crlFile.getPath() + ".idx");
+    }
+
+    /**
+     * Loads the revocation index kept next to a CRL file. For a CRL written
+     * before there was an index, or one which no longer matches its index, the
+     * CRL is read to create the index.
+     *
+     * @param crlFile the CRL
+     * @return the revocation index, empty if there is no CRL yet
+     * @throws CRLException thrown if there's a problem parsing the CRL
+     * @throws CertificateException thrown if there's a problem parsing the CRL
+     * @throws IOException thrown if there's general I/O problems
+     */
+    public RevocationIndex readIndex(File crlFile)
+        throws CRLException, CertificateException, IOException {
+
+        File indexFile = getIndexFile(crlFile);
+        lock.writeLock().lock();
+        try {
+            if (indexFile.exists()) {
+                RevocationIndex existing = RevocationIndex.read(indexFile);
+                if (matchesCRL(crlFile, existing)) {
+                    return existing;
+                }
+
+                log.warn("CRL {} no longer matches its revocation index, rebuilding it",
+                    crlFile);
+                if (!indexFile.delete()) {
+                    throw new IOException("Unable to remove revocation index: " +
+                        indexFile.getAbsolutePath());
+                }
+            }
+
+            RevocationIndex index = RevocationIndex.read(indexFile);
+            X509CRL crl = readCRLFile(crlFile);
+            if (crl == null) {
+                return index;
+            }
+
+            log.info("Creating revocation index {} from the existing CRL", indexFile);
+            List<X509CRLEntryWrapper> entries = new ArrayList<X509CRLEntryWrapper>();
+            if (crl.getRevokedCertificates() != null) {
+                for (X509CRLEntry entry : crl.getRevokedCertificates()) {
+                    entries.add(new X509CRLEntryWrapper(entry.getSerialNumber(),
+                        entry.getRevocationDate()));
+                }
+            }
+            index = index.update(getCrlNumber(crl), entries, Collections.<Long>emptyList())
+                .commit();
+            matchedCrls.put(crlFile.getAbsolutePath(), fingerprint(crlFile));
+            return index;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Whether the CRL number of the CRL file is still the one of its index.
+     */
+    private boolean matchesCRL(File crlFile, RevocationIndex index)
+        throws CRLException, CertificateException, IOException {
+
+        String path = crlFile.getAbsolutePath();
+        String fingerprint = fingerprint(crlFile);
+        if (fingerprint.equals(matchedCrls.get(path))) {
+            return true;
+        }
+
+        X509CRL crl = readCRLFile(crlFile);
+        if (crl == null || !getCrlNumber(crl).equals(index.getCrlNumber())) {
+            matchedCrls.remove(path);
+            return false;
+        }
+        matchedCrls.put(path, fingerprint);
+        return true;
+    }
+
+    private BigInteger getCrlNumber(X509CRL crl) throws IOException {
+        return new BigInteger(pkiUtility.decodeDERValue(
+            crl.getExtensionValue(OIDUtil.CRL_NUMBER)));
+    }
+
+    /*
+     * Changes whenever the file is replaced or rewritten, without reading it.
+     */
+    private static String fingerprint(File file) {
+        return file.length() + "@" + file.lastModified();
+    }
+
+    /**
+     * Updates the revocation index of a CRL and writes the CRL out from it,
+     * holding the lock from reading the index until the new CRL is in place, so
+     * concurrent updates can neither interleave nor lose each other's changes.
+     * The update must commit whatever it changed in the database before it
+     * returns, the index file is only replaced after that. If anything fails the
+     * index file is left as it was.
+     *
+     * @param crlFile the CRL
+     * @param update applied to the current index
+     * @return the updated index
+     * @throws CRLException thrown if there's a problem parsing the CRL
+     * @throws CertificateException thrown if there's a problem parsing the CRL
+     * @throws IOException thrown if there's general I/O problems
+     */
+    public RevocationIndex updateCRLFile(File crlFile, IndexUpdate update)
+        throws CRLException, CertificateException, IOException {
+
+        File indexFile = getIndexFile(crlFile);
+        boolean committed = false;
+        lock.writeLock().lock();
+        try {
+            RevocationIndex index = update.apply(readIndex(crlFile)).commit();
+            committed = true;
+            writeCRLFile(crlFile, index);
+            return index;
+        }
+        finally {
+            if (!committed) {
+                RevocationIndex.discardPending(indexFile);
+            }
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the CRL for a revocation index. The CRL is streamed to a temporary
+     * file which then replaces the old one, so it is never held in memory and
+     * readers never see a partial CRL.
+     *
+     * @param file the CRL
+     * @param index entries and number of the CRL
+     * @throws IOException thrown if there's general I/O problems
+     */
+    public void writeCRLFile(File file, RevocationIndex index) throws IOException {
+        File tmp = null;
+        OutputStream out = null;
+        lock.writeLock().lock();
+        try {
+            tmp = File.createTempFile(file.getName() + ".new.", ".tmp",
+                file.getAbsoluteFile().getParentFile());
+            out = new BufferedOutputStream(new FileOutputStream(tmp));
+            pkiUtility.writePemEncodedCRL(index, index.getCrlNumber(), out);
+            out.close();
+            out = null;
+
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Unable to replace CRL file: " +
+                    file.getAbsolutePath());
+            }
+            matchedCrls.put(file.getAbsolutePath(), fingerprint(file));
+            log.info("Completed writing CRL with {} entries to disk", index.size());
+        }
+        finally {
+            if (out != null) {
+                try {
+                    out.close();
+                }
+                catch (IOException e) {
+                    log.error(
+                        "exception when closing a CRL file: {}", tmp.getAbsolutePath());
+                }
+                tmp.delete();
+            }
+            lock.writeLock().unlock();
+        }
+    }
+
     public byte[] writeCRLFile(File file, X509CRL crl)
         throws CRLException, CertificateException, IOException {
 
@@ -102,6 +297,8 @@ public class CrlFileUtil {
         try {
             stream.write(encoded);
             log.info("Completed generating CRL. Writing it to disk");
+            // Not written from an index, the next index read checks it
+            matchedCrls.remove(file.getAbsolutePath());
             FileUtils.writeByteArrayToFile(file, stream.toByteArray());
         }
         finally {
@@ -119,4 +316,17 @@ public class CrlFileUtil {
 
         return encoded;
     }
+
+    /**
+     * A change to the revocation index of a CRL, see
+     * {@link CrlFileUtil#updateCRLFile(File, IndexUpdate)}.
+     */
+    public interface IndexUpdate {
+        /**
+         * @param index the current index
+         * @return the updated index, usually pending
+         * @throws IOException if the index cannot be read or written
+         */
+        RevocationIndex apply(RevocationIndex index) throws IOException;
+    }
 }
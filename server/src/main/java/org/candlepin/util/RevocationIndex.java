@@ -0,0 +1,349 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.pki.X509CRLEntryWrapper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * RevocationIndex
+ *
+ * The serials and revocation dates of a CRL, kept in a file next to it as fixed
+ * size records sorted by serial. The CRL job applies newly revoked and expired
+ * serials to the index with a single merge pass over the file, and writes the
+ * CRL out from it, so neither ever has to hold the whole CRL in memory.
+ *
+ * Entries are read through memory mapped windows of the file. An index is never
+ * modified in place, {@link #update(BigInteger, Collection, Collection)} writes a
+ * pending index to a new temporary file next to it, which only replaces the index
+ * file once it is committed. That lets the serials be marked collected in the
+ * database first, so a rolled back transaction never leaves them in the index.
+ */
+public class RevocationIndex implements Iterable<X509CRLEntryWrapper> {
+
+    private static final int MAGIC = 0x43524c49;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 16;
+    private static final int RECORDS_PER_WINDOW = 1 << 20;
+
+    private static final String PENDING_SUFFIX = ".tmp";
+
+    private final File file;
+    private final File target;
+    private final BigInteger crlNumber;
+    private final long size;
+
+    private RevocationIndex(File file, File target, BigInteger crlNumber, long size) {
+        this.file = file;
+        this.target = target;
+        this.crlNumber = crlNumber;
+        this.size = size;
+    }
+
+    /**
+     * Opens the index stored in the given file. If there is no such file yet the
+     * index is empty, and will be created by the first update.
+     *
+     * @param file index file
+     * @return the index
+     * @throws IOException if the file is not a revocation index
+     */
+    public static RevocationIndex read(File file) throws IOException {
+        if (!file.exists()) {
+            return new RevocationIndex(file, file, BigInteger.ZERO, 0);
+        }
+
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC ||
+                in.readInt() != FORMAT) {
+                throw new IOException("Not a revocation index: " + file);
+            }
+            BigInteger crlNumber = BigInteger.valueOf(in.readLong());
+            return new RevocationIndex(file, file, crlNumber,
+                (file.length() - HEADER_SIZE) / RECORD_SIZE);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return true if this index was written by an update which has not been
+     * committed yet
+     */
+    public boolean isPending() {
+        return !file.equals(target);
+    }
+
+    /**
+     * @return number of the CRL these entries belong to
+     */
+    public BigInteger getCrlNumber() {
+        return crlNumber;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param serial certificate serial
+     * @return true if the serial is revoked in this index
+     * @throws IOException if the index cannot be read
+     */
+    public boolean contains(long serial) throws IOException {
+        if (size == 0) {
+            return false;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long low = 0;
+            long high = size - 1;
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                raf.seek(HEADER_SIZE + mid * RECORD_SIZE);
+                long found = raf.readLong();
+                if (found < serial) {
+                    low = mid + 1;
+                }
+                else if (found > serial) {
+                    high = mid - 1;
+                }
+                else {
+                    return true;
+                }
+            }
+            return false;
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Entries in ascending serial order.
+     */
+    @Override
+    public Iterator<X509CRLEntryWrapper> iterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * Writes a new index holding these entries plus the added ones, less the
+     * removed serials. Serials which are already in the index keep their original
+     * revocation date. The new index is pending, the index file is left alone
+     * until it is committed.
+     *
+     * @param newCrlNumber number of the CRL the new entries belong to
+     * @param added newly revoked serials, in any order
+     * @param removed serials to drop, in any order
+     * @return the new, pending index
+     * @throws IOException if the new index cannot be written
+     */
+    public RevocationIndex update(BigInteger newCrlNumber,
+        Collection<X509CRLEntryWrapper> added, Collection<Long> removed)
+        throws IOException {
+
+        List<X509CRLEntryWrapper> sortedAdded = new ArrayList<X509CRLEntryWrapper>(added);
+        Collections.sort(sortedAdded, new SerialComparator());
+        long[] sortedRemoved = new long[removed.size()];
+        int r = 0;
+        for (Long serial : removed) {
+            sortedRemoved[r++] = serial;
+        }
+        Arrays.sort(sortedRemoved);
+
+        File tmp = File.createTempFile(target.getName() + ".", PENDING_SUFFIX,
+            target.getAbsoluteFile().getParentFile());
+        DataOutputStream out = null;
+        long count = 0;
+        boolean written = false;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(newCrlNumber.longValue());
+
+            Iterator<X509CRLEntryWrapper> existing = iterator();
+            X509CRLEntryWrapper current = existing.hasNext() ? existing.next() : null;
+            int a = 0;
+            long last = 0;
+            while (current != null || a < sortedAdded.size()) {
+                X509CRLEntryWrapper entry;
+                if (a < sortedAdded.size() && (current == null ||
+                    serial(sortedAdded.get(a)) < serial(current))) {
+                    entry = sortedAdded.get(a++);
+                }
+                else {
+                    entry = current;
+                    current = existing.hasNext() ? existing.next() : null;
+                }
+
+                long serial = serial(entry);
+                if ((count > 0 && serial == last) ||
+                    Arrays.binarySearch(sortedRemoved, serial) >= 0) {
+                    continue;
+                }
+                out.writeLong(serial);
+                out.writeLong(entry.getRevocationDate().getTime());
+                last = serial;
+                count++;
+            }
+            out.close();
+            written = true;
+        }
+        finally {
+            if (!written) {
+                if (out != null) {
+                    out.close();
+                }
+                tmp.delete();
+            }
+        }
+
+        return new RevocationIndex(tmp, target, newCrlNumber, count);
+    }
+
+    /**
+     * Replaces the index file with a pending index.
+     *
+     * @return the index as read from the index file
+     * @throws IOException if the index file cannot be replaced
+     */
+    public RevocationIndex commit() throws IOException {
+        if (!isPending()) {
+            return this;
+        }
+        if (!file.renameTo(target)) {
+            file.delete();
+            throw new IOException("Unable to replace revocation index: " + target);
+        }
+        return new RevocationIndex(target, target, crlNumber, size);
+    }
+
+    /**
+     * Deletes what updates of an index file left behind without being committed.
+     * Only safe while nothing else is updating the index.
+     *
+     * @param file index file
+     */
+    public static void discardPending(File file) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        final String prefix = file.getName() + ".";
+        File[] pending = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File d, String name) {
+                return name.startsWith(prefix) && name.endsWith(PENDING_SUFFIX);
+            }
+        });
+        if (pending != null) {
+            for (File f : pending) {
+                f.delete();
+            }
+        }
+    }
+
+    private static long serial(X509CRLEntryWrapper entry) {
+        return entry.getSerialNumber().longValue();
+    }
+
+    /**
+     * Orders CRL entries by serial.
+     */
+    private static class SerialComparator implements Comparator<X509CRLEntryWrapper> {
+        @Override
+        public int compare(X509CRLEntryWrapper a, X509CRLEntryWrapper b) {
+            return a.getSerialNumber().compareTo(b.getSerialNumber());
+        }
+    }
+
+    /**
+     * Walks the records one mapped window at a time.
+     */
+    private class EntryIterator implements Iterator<X509CRLEntryWrapper> {
+        private long position = 0;
+        private ByteBuffer window;
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        @Override
+        public X509CRLEntryWrapper next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (window == null || !window.hasRemaining()) {
+                window = map(position);
+            }
+            long serial = window.getLong();
+            long revoked = window.getLong();
+            position++;
+            return new X509CRLEntryWrapper(BigInteger.valueOf(serial), new Date(revoked));
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private ByteBuffer map(long first) {
+            long records = Math.min(RECORDS_PER_WINDOW, size - first);
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+                try {
+                    // The mapping stays valid once the file is closed
+                    return raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + first * RECORD_SIZE, records * RECORD_SIZE);
+                }
+                finally {
+                    raf.close();
+                }
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -217,6 +217,19 @@ public class Util {
         return new String(chars);
     }
 
+    /*
+     * Seeding a SecureRandom is far more expensive than drawing from one, and a
+     * shared instance would make every thread generating serials wait on the
+     * same lock, so each thread keeps its own.
+     */
+    private static final ThreadLocal<SecureRandom> RANDOM =
+        new ThreadLocal<SecureRandom>() {
+            @Override
+            protected SecureRandom initialValue() {
+                return new SecureRandom();
+            }
+        };
+
     public static long generateUniqueLong() {
         /*
           This deserves explanation.
@@ -256,7 +269,7 @@ public class Util {
           [1] http://en.wikipedia.org/wiki/Birthday_problem
          */
 
-        return Math.abs(new SecureRandom().nextLong());
+        return RANDOM.get().nextLong() & Long.MAX_VALUE;
     }
 
     public static String toBase64(byte [] data) {
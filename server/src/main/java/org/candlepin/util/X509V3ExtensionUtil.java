@@ -56,6 +56,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.zip.Deflater;
@@ -72,6 +73,7 @@ public class X509V3ExtensionUtil extends X509Util {
     private Configuration config;
     private EntitlementCurator entCurator;
     private ProductServiceAdapter prodAdapter;
+    private ContentValueCache contentValueCache;
     private String thisVersion = "3.2";
 
     private long pathNodeId = 0;
@@ -80,11 +82,12 @@ public class X509V3ExtensionUtil extends X509Util {
     private static boolean treeDebug = false;
     @Inject
     public X509V3ExtensionUtil(Configuration config, EntitlementCurator entCurator,
-            ProductServiceAdapter prodAdapter) {
+            ProductServiceAdapter prodAdapter, ContentValueCache contentValueCache) {
         // Output everything in UTC
         this.config = config;
         this.entCurator = entCurator;
         this.prodAdapter = prodAdapter;
+        this.contentValueCache = contentValueCache;
     }
 
     public Set<X509ExtensionWrapper> getExtensions(Entitlement ent,
@@ -135,6 +138,21 @@ public class X509V3ExtensionUtil extends X509Util {
 
     private byte[] retreiveContentValue(EntitlementBody eb) throws IOException {
         List<Content> contentList = getContentList(eb);
+        List<String> paths = new ArrayList<String>(contentList.size());
+        for (Content c : contentList) {
+            paths.add(c.getPath());
+        }
+
+        String key = ContentValueCache.key(paths);
+        byte[] value = contentValueCache.get(key);
+        if (value == null) {
+            value = encodeContentValue(contentList);
+            contentValueCache.put(key, value);
+        }
+        return value;
+    }
+
+    private byte[] encodeContentValue(List<Content> contentList) throws IOException {
         PathNode treeRoot = makePathTree(contentList, new PathNode());
         List<String> nodeStrings = orderStrings(treeRoot);
         if (nodeStrings.size() == 0) {
@@ -904,32 +922,47 @@ public class X509V3ExtensionUtil extends X509Util {
         if (nodesList.get(0).getValue() instanceof PathNode) {
             nodesList.remove(0);
         }
-        while (nodesList.size() > 1) {
-            int node1 = findSmallest(-1, nodesList);
-            int node2 = findSmallest(node1, nodesList);
-            HuffNode hn1 = nodesList.get(node1);
-            HuffNode hn2 = nodesList.get(node2);
-            HuffNode merged = mergeNodes(hn1, hn2);
-            nodesList.remove(hn1);
-            nodesList.remove(hn2);
-            nodesList.add(merged);
-        }
+        // Clients rebuild the same tries to decode the payload, so nodes of equal
+        // weight must merge in the same order: the earliest in the list first,
+        // with merged nodes coming after all the nodes already there.
+        PriorityQueue<QueuedHuffNode> queue = new PriorityQueue<QueuedHuffNode>(
+            Math.max(1, nodesList.size()));
+        int sequence = 0;
+        for (HuffNode node : nodesList) {
+            queue.add(new QueuedHuffNode(node, sequence++));
+        }
+        while (queue.size() > 1) {
+            HuffNode hn1 = queue.poll().node;
+            HuffNode hn2 = queue.poll().node;
+            queue.add(new QueuedHuffNode(mergeNodes(hn1, hn2), sequence++));
+        }
+        HuffNode trie = queue.poll().node;
         if (treeDebug) {
-            printTrie(nodesList.get(0), 0);
+            printTrie(trie, 0);
         }
-        return nodesList.get(0);
+        return trie;
     }
 
-    private int findSmallest(int exclude, List<HuffNode> nodes) {
-        int smallest = -1;
-        for (int index = 0; index < nodes.size(); index++) {
-            if (index == exclude) { continue; }
-            if (smallest == -1 || nodes.get(index).getWeight() <
-                nodes.get(smallest).getWeight()) {
-                smallest = index;
+    /**
+     * A trie node waiting to be merged, ordered by weight and then by when it
+     * was queued.
+     */
+    private static class QueuedHuffNode implements Comparable<QueuedHuffNode> {
+        private final HuffNode node;
+        private final int sequence;
+
+        QueuedHuffNode(HuffNode node, int sequence) {
+            this.node = node;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(QueuedHuffNode other) {
+            if (node.getWeight() != other.node.getWeight()) {
+                return node.getWeight() < other.node.getWeight() ? -1 : 1;
             }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
         }
-        return smallest;
     }
 
     private HuffNode mergeNodes(HuffNode node1, HuffNode node2) {
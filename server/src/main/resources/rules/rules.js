@@ -1,4 +1,4 @@
-// Version: 5.16
+// Version: 5.18
 
 /*
  * Default Candlepin rule set.
@@ -38,6 +38,25 @@ function pool_type_name_space() {
     return PoolType;
 }
 
+/*
+ * Engines which support it pass the context in as pre-built objects
+ * (native_context) and accept objects back as results. Older engines pass a
+ * JSON string (json_context) and expect a JSON string to be returned.
+ */
+function read_context() {
+    if (typeof native_context !== "undefined" && native_context !== null) {
+        return native_context;
+    }
+    return JSON.parse(json_context);
+}
+
+function write_result(result) {
+    if (typeof native_context !== "undefined" && native_context !== null) {
+        return result;
+    }
+    return JSON.stringify(result);
+}
+
 // consumer types
 var SYSTEM_TYPE = "system";
 var HYPERVISOR_TYPE = "hypervisor";
@@ -1210,7 +1229,7 @@ function isLevelExempt (level, exemptList) {
 var ActivationKey = {
 
     get_attribute_context: function() {
-        context = JSON.parse(json_context);
+        context = read_context();
 
         // Pool to validate
         context.pool = createPool(context.pool);
@@ -1270,7 +1289,7 @@ var ActivationKey = {
 
         this.validate_quantity(key, pool, quantity, result);
         this.validate_consumer_type(key, pool, result);
-        return JSON.stringify(result);
+        return write_result(result);
     }
 }
 
@@ -1311,7 +1330,7 @@ var Entitlement = {
     },
 
     get_attribute_context: function() {
-        context = JSON.parse(json_context);
+        context = read_context();
 
         if ("pool" in context) {
             context.pool = createPool(context.pool);
@@ -1360,7 +1379,7 @@ var Entitlement = {
             var result = Entitlement.ValidationResult();
             context = Entitlement.get_attribute_context();
             do_func(context, result);
-            return JSON.stringify(result);
+            return write_result(result);
         }
     },
 
@@ -1450,12 +1469,12 @@ var Entitlement = {
         // requires_host derived pools not available to manifest
         if (context.consumer.type.manifest) {
             result.addError("pool.not.available.to.manifest.consumers");
-            return JSON.stringify(result);
+            return write_result(result);
         }
 
         if (!context.consumer.facts["virt.uuid"]) {
             result.addError("rulefailed.virt.only");
-            return JSON.stringify(result);
+            return write_result(result);
         }
 
         if (!context.hostConsumer ||
@@ -1472,7 +1491,7 @@ var Entitlement = {
     do_pre_requires_consumer_type: function(context, result) {
         // Distributors can access everything
         if (context.consumer.type.manifest) {
-            return JSON.stringify(result);
+            return write_result(result);
         }
 
         var requiresConsumerType = context.getAttribute(context.pool, "requires_consumer_type");
@@ -1522,7 +1541,7 @@ var Entitlement = {
     do_pre_architecture: function(context, result) {
         var consumer = context.consumer;
         if (consumer.type.manifest) {
-            return JSON.stringify(result);
+            return write_result(result);
         }
 
         if (!architectureMatches(context.pool.getProductAttribute(ARCH_ATTRIBUTE),
@@ -1541,7 +1560,7 @@ var Entitlement = {
         var pool = context.pool;
 
         if (consumer.type.manifest || Utils.isGuest(consumer)) {
-            return JSON.stringify(result);
+            return write_result(result);
         }
 
         //usually, we assume socket count to be 1 if it is undef. However, we need to know if it's
@@ -1731,14 +1750,27 @@ var Entitlement = {
         for (var k = 0; k < validators.length; k++) {
             validators[k](context, result);
         }
-        return JSON.stringify(result);
+        return write_result(result);
     },
 
     validate_pools_list: function() {
         context = this.get_attribute_context();
         // We know the caller is list pools, use quantity 1
         context.quantity = 1;
+        return write_result(this.validate_each_pool(context));
+    },
+
+    /*
+     * Validates every pool in the context for the requested quantity and
+     * caller, in a single call for the whole list. Used by autobind so the
+     * consumer and its entitlements are only read once.
+     */
+    validate_pools_batch: function() {
+        context = this.get_attribute_context();
+        return write_result(this.validate_each_pool(context));
+    },
 
+    validate_each_pool: function(context) {
         var result_map = {};
         for (var i = 0; i < context.pools.length; i++) {
             pool = context.pools[i]
@@ -1751,7 +1783,7 @@ var Entitlement = {
             }
             result_map[pool['id']] = result;
         }
-        return JSON.stringify(result_map);
+        return result_map;
     },
 }
 
@@ -2153,7 +2185,7 @@ var Autobind = {
     },
 
     create_autobind_context: function() {
-        var context = JSON.parse(json_context);
+        var context = read_context();
 
         // The considerDerived property indicates if we should look to derived
         // provided products rather than the usual set. Used in situations where
@@ -2519,7 +2551,7 @@ var Autobind = {
             selected_pools.putAll(group.get_pool_quantity());
         }
         selected_pools.dump("selected_pools");
-        var output = JSON.stringify(selected_pools.map);
+        var output = write_result(selected_pools.map);
         return output;
     }
 }
@@ -2569,7 +2601,7 @@ function find_relevant_pids(entitlement, consumer) {
  */
 var Compliance = {
     get_status_context: function() {
-        context = JSON.parse(json_context);
+        context = read_context();
         context.ondate = new Date(context.ondate);
 
         // Add some methods to the various Pool objects:
@@ -2597,7 +2629,7 @@ var Compliance = {
                 context.entitlements, context.ondate, log);
         }
         compStatus.compliantUntil = compliantUntil;
-        var output = JSON.stringify(compStatus);
+        var output = write_result(compStatus);
         return output;
     },
 
@@ -2911,7 +2943,7 @@ var Compliance = {
 
 var Quantity = {
     get_quantity_context: function() {
-        context = JSON.parse(json_context);
+        context = read_context();
 
         if ("pool" in context) {
             context.pool = createPool(context.pool);
@@ -2937,7 +2969,7 @@ var Quantity = {
         var pool = context.pool;
         var consumer = context.consumer;
         var validEntitlements = context.validEntitlements;
-        return JSON.stringify(Quantity.get_suggested_quantity_worker(pool, consumer, validEntitlements));
+        return write_result(Quantity.get_suggested_quantity_worker(pool, consumer, validEntitlements));
     },
 
     /* Multi-pool version of the above for large list pools requests. */
@@ -2952,7 +2984,7 @@ var Quantity = {
             var result = Quantity.get_suggested_quantity_worker(pool, consumer, validEntitlements);
             result_map[pool['id']] = result;
         }
-        return JSON.stringify(result_map);
+        return write_result(result_map);
     },
 
     /* Consider this a "private" worker method, not called by java, used by the other methods we do call from Java. */
@@ -3008,7 +3040,7 @@ var Quantity = {
 var PoolType = {
 
     get_pool_type_context: function() {
-        context = JSON.parse(json_context);
+        context = read_context();
         context.pool = createPool(context.pool);
         return context;
     },
@@ -3050,7 +3082,7 @@ var PoolType = {
         var result = {
             rawPoolType: this.get_arg_pool_type(context.pool)
         };
-        return JSON.stringify(result);
+        return write_result(result);
     }
 }
 
@@ -3062,7 +3094,7 @@ var PoolType = {
  */
 var Override = {
     get_override_context: function() {
-        context = JSON.parse(json_context);
+        context = read_context();
         return context;
     },
 
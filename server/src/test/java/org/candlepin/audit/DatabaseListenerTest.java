@@ -25,6 +25,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.Arrays;
+
 
 /**
  * DatabaseListenerTest
@@ -54,6 +56,14 @@ public class DatabaseListenerTest {
         verify(ec, never()).create(any(Event.class));
     }
 
+    @Test
+    public void onEventsCreatesAllAtOnce() {
+        Event other = mock(Event.class);
+        dl.onEvents(Arrays.asList(event, null, other));
+        verify(ec).createAll(eq(Arrays.asList(event, other)));
+        verify(ec, never()).create(any(Event.class));
+    }
+
     @Test(expected = NullPointerException.class)
     public void curatorNull() {
         DatabaseListener localdl = new DatabaseListener(null);
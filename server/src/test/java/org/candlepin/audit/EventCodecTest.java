@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.auth.PrincipalData;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * EventCodecTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class EventCodecTest {
+
+    @Mock private ClientMessage message;
+    private HornetQBuffer body;
+    private ObjectMapper mapper;
+
+    @Before
+    public void init() {
+        mapper = new ObjectMapper();
+        body = HornetQBuffers.fixedBuffer(4096);
+        when(message.getBodyBuffer()).thenReturn(body);
+    }
+
+    private Event event() {
+        Event event = new Event();
+        event.setId("10");
+        event.setType(Event.Type.MODIFIED);
+        event.setTarget(Event.Target.CONSUMER);
+        event.setPrincipal(new PrincipalData("user", "admin"));
+        event.setTimestamp(new Date(1234L));
+        event.setConsumerId("consumer");
+        event.setOldEntity("{\"name\":\"\u00e9v\u00e9nement\"}");
+        return event;
+    }
+
+    @Test
+    public void binaryRoundTrip() throws Exception {
+        EventCodec codec = new EventCodec(mapper, EventCodec.BINARY);
+        codec.write(codec.encode(event()), message);
+        verify(message).putByteProperty(any(SimpleString.class), anyByte());
+        when(message.containsProperty(any(SimpleString.class))).thenReturn(true);
+
+        Event read = codec.read(message);
+        assertEquals("10", read.getId());
+        assertEquals(Event.Type.MODIFIED, read.getType());
+        assertEquals(Event.Target.CONSUMER, read.getTarget());
+        assertEquals("admin", read.getPrincipal().getName());
+        assertEquals(1234L, read.getTimestamp().getTime());
+        assertEquals("consumer", read.getConsumerId());
+        assertEquals("{\"name\":\"\u00e9v\u00e9nement\"}", read.getOldEntity());
+        assertNull(read.getNewEntity());
+        assertNull(read.getReferenceType());
+    }
+
+    @Test
+    public void jsonIsWrittenAsBefore() throws Exception {
+        EventCodec codec = new EventCodec(mapper, EventCodec.JSON);
+        codec.write(codec.encode(event()), message);
+        verify(message, never()).putByteProperty(any(SimpleString.class), anyByte());
+
+        Event read = mapper.readValue(body.readString(), Event.class);
+        assertEquals("consumer", read.getConsumerId());
+    }
+
+    @Test
+    public void binaryCodecReadsJsonMessages() throws Exception {
+        new EventCodec(mapper, EventCodec.JSON).write(
+            new EventCodec(mapper, EventCodec.JSON).encode(event()), message);
+
+        Event read = new EventCodec(mapper, EventCodec.BINARY).read(message);
+        assertEquals("10", read.getId());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedBinaryEvent() throws Exception {
+        body.writeByte((byte) 1);
+        body.writeInt(100);
+        when(message.containsProperty(any(SimpleString.class))).thenReturn(true);
+        new EventCodec(mapper, EventCodec.BINARY).read(message);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFormat() {
+        new EventCodec(mapper, "xml");
+    }
+}
@@ -20,6 +20,7 @@ import static org.mockito.Mockito.*;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.guice.PrincipalProvider;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.Owner;
@@ -43,9 +44,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * EventSinkImplTest
@@ -85,9 +91,18 @@ public class EventSinkImplTest {
      */
     private EventSinkImpl createEventSink(
             final ClientSessionFactory sessionFactory) throws Exception {
+        return createEventSink(sessionFactory, new CandlepinCommonTestConfig());
+    }
+
+    private EventSinkImpl createEventSink(final ClientSessionFactory sessionFactory,
+            CandlepinCommonTestConfig config) throws Exception {
+        return new EventSinkImpl(factory, createDispatcher(sessionFactory, config));
+    }
+
+    private HornetqEventDispatcher createDispatcher(final ClientSessionFactory sessionFactory,
+            CandlepinCommonTestConfig config) throws Exception {
         HornetqEventDispatcher dispatcher =
-                new HornetqEventDispatcher(mapper,
-                        new CandlepinCommonTestConfig()) {
+                new HornetqEventDispatcher(mapper, config) {
 
                     @Override
                     protected ClientSessionFactory createClientSessionFactory() {
@@ -95,7 +110,7 @@ public class EventSinkImplTest {
                     }
                 };
         dispatcher.initialize();
-        return new EventSinkImpl(factory, dispatcher);
+        return dispatcher;
     }
 
     /**Set up the {@link ClientSessionFactory} to throw an exception when
@@ -140,6 +155,90 @@ public class EventSinkImplTest {
             .readString());
     }
 
+    @Test
+    public void asyncSendCommitsEventsTogether() throws Exception {
+        ClientSession transacted = mock(ClientSession.class);
+        when(mockSessionFactory.createTransactedSession()).thenReturn(transacted);
+        when(transacted.createProducer(anyString())).thenReturn(mockClientProducer);
+        when(transacted.createMessage(anyBoolean())).thenReturn(mockClientMessage);
+        doReturn("event").when(mapper).writeValueAsString(anyObject());
+
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.HORNETQ_ASYNC_SEND, "true");
+        EventSinkImpl sink = createEventSink(mockSessionFactory, config);
+
+        sink.emitOwnerCreated(new Owner("one"));
+        sink.emitOwnerCreated(new Owner("two"));
+        sink.emitOwnerCreated(new Owner("three"));
+        sink.sendEvents();
+
+        // Everything is committed by the time sendEvents returns
+        verify(mockClientProducer, times(3)).send(any(ClientMessage.class));
+        verify(transacted, atLeastOnce()).commit();
+        verify(mockClientSession, never()).createProducer(anyString());
+    }
+
+    @Test
+    public void shutDownSendsEventsLeftInTheQueue() throws Exception {
+        final CountDownLatch committing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ClientSession transacted = mock(ClientSession.class);
+        ClientProducer transactedProducer = mock(ClientProducer.class);
+        when(mockSessionFactory.createTransactedSession()).thenReturn(transacted);
+        when(transacted.createProducer(anyString())).thenReturn(transactedProducer);
+        when(transacted.createMessage(anyBoolean())).thenReturn(mockClientMessage);
+        // The sender thread gets stuck committing the first event
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                committing.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(transacted).commit();
+        doReturn("event").when(mapper).writeValueAsString(anyObject());
+
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.HORNETQ_ASYNC_SEND, "true");
+        final HornetqEventDispatcher dispatcher = createDispatcher(mockSessionFactory, config);
+
+        Thread first = sendInBackground(dispatcher, 1);
+        assertTrue(committing.await(10, TimeUnit.SECONDS));
+        Thread second = sendInBackground(dispatcher, 2);
+        for (int i = 0; i < 1000 && dispatcher.getPendingCount() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, dispatcher.getPendingCount());
+
+        dispatcher.shutDown(100);
+
+        // The queued events went out directly, and their caller was let go
+        assertEquals(0, dispatcher.getPendingCount());
+        verify(mockClientProducer, times(2)).send(any(ClientMessage.class));
+        second.join(10000);
+        assertFalse(second.isAlive());
+
+        release.countDown();
+        first.join(10000);
+        assertFalse(first.isAlive());
+        verify(transactedProducer).send(any(ClientMessage.class));
+    }
+
+    private Thread sendInBackground(final HornetqEventDispatcher dispatcher, int count) {
+        final List<Event> events = new ArrayList<Event>();
+        for (int i = 0; i < count; i++) {
+            events.add(new Event());
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.sendEvents(events);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
     @Test
     public void sendEventShouldNotFailWhenObjectMapperThrowsException()
         throws Exception {
@@ -18,6 +18,9 @@ import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.hornetq.api.core.HornetQException;
@@ -40,6 +43,7 @@ public class EventSourceTest {
 
     @Mock private ClientSessionFactory clientSessionFactory;
     @Mock private ClientSession clientSession;
+    private CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
 
     @Before
     public void init() throws Exception {
@@ -50,7 +54,7 @@ public class EventSourceTest {
      * @return
      */
     private EventSource createEventSourceStubbedWithFactoryCreation() {
-        return new EventSource(new ObjectMapper()) {
+        return new EventSource(new ObjectMapper(), config) {
             protected ClientSessionFactory createSessionFactory() {
                 return clientSessionFactory;
             }
@@ -114,6 +118,28 @@ public class EventSourceTest {
         verify(mockCC).setMessageHandler(any(ListenerWrapper.class));
     }
 
+    @Test
+    public void shouldStartConfiguredConsumersForListener() throws Exception {
+        EventListener eventListener = mock(EventListener.class);
+        config.setProperty(ConfigProperties.AUDIT_LISTENER_CONSUMERS + "." +
+            eventListener.getClass().getName(), "3");
+        ClientSession consumerSession = mock(ClientSession.class);
+        when(clientSessionFactory.createSession(eq(true), eq(false), eq(0)))
+            .thenReturn(consumerSession);
+        when(consumerSession.createConsumer(anyString()))
+            .thenReturn(mock(ClientConsumer.class));
+
+        EventSource eventSource = createEventSourceStubbedWithFactoryCreation();
+        eventSource.registerListener(eventListener);
+
+        verify(clientSession, never()).createConsumer(anyString());
+        verify(consumerSession, times(3)).createConsumer(anyString());
+        verify(consumerSession, times(3)).start();
+
+        eventSource.shutDown();
+        verify(consumerSession, times(3)).close();
+    }
+
     @Test
     public void shouldStopAndCloseSessionOnShutdown() throws Exception {
         EventSource eventSource = createEventSourceStubbedWithFactoryCreation();
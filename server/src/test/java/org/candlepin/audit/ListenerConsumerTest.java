@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.HornetQClient;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.config.impl.ConfigurationImpl;
+import org.hornetq.core.remoting.impl.invm.InVMAcceptorFactory;
+import org.hornetq.core.remoting.impl.invm.InVMConnectorFactory;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.HornetQServers;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ListenerConsumerTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ListenerConsumerTest {
+    @Mock private ClientSessionFactory factory;
+    @Mock private ClientSession session;
+    @Mock private ClientConsumer clientConsumer;
+    @Mock private ListenerWrapper wrapper;
+    @Mock private ClientMessage first;
+    @Mock private ClientMessage bad;
+    @Mock private ClientMessage last;
+    private ListenerConsumer listenerConsumer;
+
+    @Before
+    public void init() throws Exception {
+        when(factory.createSession(true, false, 0)).thenReturn(session);
+        when(session.createConsumer("queue")).thenReturn(clientConsumer);
+        listenerConsumer = new ListenerConsumer(factory, "queue", wrapper, 3);
+
+        // One batch of three, then stop
+        when(clientConsumer.receive(anyLong())).thenReturn(first)
+            .thenAnswer(new Answer<ClientMessage>() {
+                @Override
+                public ClientMessage answer(InvocationOnMock invocation) {
+                    listenerConsumer.shutDown();
+                    return null;
+                }
+            });
+        when(clientConsumer.receiveImmediate()).thenReturn(bad, last, null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void batchIsCommittedOnce() throws Exception {
+        when(wrapper.handlesBatches()).thenReturn(true);
+
+        listenerConsumer.run();
+
+        verify(wrapper).onMessages(anyList());
+        verify(wrapper, never()).onMessage(any(ClientMessage.class));
+        verify(session).commit();
+        verify(session, never()).rollback();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedBatchFallsBackToOneAtATime() throws Exception {
+        when(wrapper.handlesBatches()).thenReturn(true);
+        doThrow(new RuntimeException("batch failed")).when(wrapper)
+            .onMessages(anyList());
+        doThrow(new RuntimeException("cannot decode")).when(wrapper).onMessage(bad);
+
+        listenerConsumer.run();
+
+        InOrder inOrder = inOrder(wrapper, session);
+        inOrder.verify(wrapper).onMessages(anyList());
+        inOrder.verify(wrapper).onMessage(first);
+        inOrder.verify(session).commit();
+        inOrder.verify(wrapper).onMessage(bad);
+        inOrder.verify(wrapper).onMessage(last);
+        inOrder.verify(session).commit();
+        // Only the message which failed is left to roll back
+        inOrder.verify(session).rollback();
+        verify(session, times(2)).commit();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void plainListenerNeverSeesAnEventTwice() throws Exception {
+        when(wrapper.handlesBatches()).thenReturn(false);
+        doThrow(new RuntimeException("listener failed")).when(wrapper).onMessage(bad);
+
+        listenerConsumer.run();
+
+        verify(wrapper, never()).onMessages(any(List.class));
+        verify(wrapper).onMessage(first);
+        verify(wrapper).onMessage(bad);
+        verify(wrapper).onMessage(last);
+        verify(session, times(2)).commit();
+        verify(session).rollback();
+    }
+
+    @Test
+    public void onlyTheFailedMessageIsRedelivered() throws Exception {
+        Configuration config = new ConfigurationImpl();
+        config.setPersistenceEnabled(false);
+        config.setSecurityEnabled(false);
+        config.getAcceptorConfigurations().add(
+            new TransportConfiguration(InVMAcceptorFactory.class.getName()));
+        HornetQServer server = HornetQServers.newHornetQServer(config);
+        server.start();
+
+        ServerLocator locator = HornetQClient.createServerLocatorWithoutHA(
+            new TransportConfiguration(InVMConnectorFactory.class.getName()));
+        try {
+            ClientSessionFactory sessionFactory = locator.createSessionFactory();
+            ClientSession session = sessionFactory.createSession();
+            session.createQueue("address", "queue", false);
+
+            EventCodec codec = new EventCodec(new ObjectMapper(), EventCodec.JSON);
+            ClientProducer producer = session.createProducer("address");
+            for (String id : Arrays.asList("1", "2", "3")) {
+                Event event = new Event();
+                event.setId(id);
+                ClientMessage msg = session.createMessage(false);
+                codec.write(codec.encode(event), msg);
+                producer.send(msg);
+            }
+
+            // Fails the second event the first time it is seen
+            final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch redelivered = new CountDownLatch(1);
+            EventListener listener = new EventListener() {
+                private boolean failed = false;
+
+                @Override
+                public void onEvent(Event event) {
+                    handled.add(event.getId());
+                    if ("2".equals(event.getId())) {
+                        if (!failed) {
+                            failed = true;
+                            throw new RuntimeException("Induced failure");
+                        }
+                        redelivered.countDown();
+                    }
+                }
+            };
+
+            ListenerConsumer consumer = new ListenerConsumer(sessionFactory, "queue",
+                new ListenerWrapper(listener, codec), 3);
+            Thread thread = new Thread(consumer);
+            thread.start();
+            boolean wasRedelivered = redelivered.await(10, TimeUnit.SECONDS);
+            consumer.shutDown();
+            thread.join(10000);
+
+            assertTrue("Failed event was not redelivered", wasRedelivered);
+            assertEquals(Arrays.asList("1", "2", "3", "2"), handled);
+            assertEquals(0, session.queueQuery(
+                new SimpleString("queue")).getMessageCount());
+            session.close();
+        }
+        finally {
+            locator.close();
+            server.stop();
+        }
+    }
+}
@@ -29,11 +29,14 @@ import org.hornetq.api.core.client.ClientMessage;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
 
 
 /**
@@ -49,7 +52,8 @@ public class ListenerWrapperTest {
 
     @Before
     public void init() {
-        this.listenerWrapper = new ListenerWrapper(mockEventListener, mapper);
+        this.listenerWrapper = new ListenerWrapper(mockEventListener,
+            new EventCodec(mapper, EventCodec.JSON));
         when(mockClientMessage.getBodyBuffer())
             .thenReturn(hornetQBuffer);
     }
@@ -68,7 +72,7 @@ public class ListenerWrapperTest {
         doReturn(eventJson()).when(hornetQBuffer).readString();
         doThrow(new HornetQException(HornetQExceptionType.DISCONNECTED,
             "Induced exception for junit testing"))
-            .when(mockClientMessage).acknowledge();
+            .when(mockClientMessage).individualAcknowledge();
         this.listenerWrapper.onMessage(mockClientMessage);
         verify(this.mockEventListener).onEvent(any(Event.class));
     }
@@ -79,7 +83,37 @@ public class ListenerWrapperTest {
         doReturn(eventJson()).when(hornetQBuffer).readString();
         this.listenerWrapper.onMessage(mockClientMessage);
         verify(this.mockEventListener).onEvent(any(Event.class));
-        verify(this.mockClientMessage).acknowledge();
+        verify(this.mockClientMessage).individualAcknowledge();
+    }
+
+    @Test
+    public void onMessagesHandsBatchToBatchListener() throws Exception {
+        BatchEventListener batchListener = mock(BatchEventListener.class);
+        ClientMessage other = mock(ClientMessage.class);
+        when(other.getBodyBuffer()).thenReturn(HornetQBuffers.fixedBuffer(1000));
+        other.getBodyBuffer().writeString(eventJson());
+        doReturn(eventJson()).when(hornetQBuffer).readString();
+
+        ListenerWrapper wrapper = new ListenerWrapper(batchListener,
+            new EventCodec(mapper, EventCodec.JSON));
+        wrapper.onMessages(Arrays.asList(mockClientMessage, other));
+
+        verify(batchListener).onEvents(argThat(new ArgumentMatcher<List<Event>>() {
+            @Override
+            public boolean matches(Object list) {
+                return ((List<?>) list).size() == 2;
+            }
+        }));
+        verify(batchListener, never()).onEvent(any(Event.class));
+        verify(mockClientMessage).individualAcknowledge();
+        verify(other).individualAcknowledge();
+    }
+
+    @Test
+    public void onMessagesFeedsPlainListenerOneAtATime() throws Exception {
+        doReturn(eventJson()).when(hornetQBuffer).readString();
+        this.listenerWrapper.onMessages(Arrays.asList(mockClientMessage, mockClientMessage));
+        verify(this.mockEventListener, times(2)).onEvent(any(Event.class));
     }
 
     @Test(expected = NullPointerException.class)
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+
+import com.google.inject.persist.UnitOfWork;
+import com.google.inject.util.Providers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CheckInRecorderTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CheckInRecorderTest {
+
+    @Mock private Configuration config;
+    @Mock private ConsumerCurator consumerCurator;
+    @Mock private UnitOfWork unitOfWork;
+
+    private CheckInRecorder recorder;
+    private Consumer consumer;
+
+    @Before
+    public void init() {
+        // Long enough that only the test triggers a flush
+        when(config.getLong(ConfigProperties.CHECKIN_FLUSH_INTERVAL)).thenReturn(3600L);
+        when(config.getInt(ConfigProperties.CHECKIN_MAX_PENDING)).thenReturn(1000);
+        recorder = new CheckInRecorder(config, Providers.of(consumerCurator), unitOfWork);
+
+        consumer = new Consumer();
+        consumer.setId("consumer1");
+    }
+
+    @After
+    public void stop() {
+        recorder.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Date> captureFlushed() {
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(consumerCurator).updateLastCheckins(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void writesRightAwayWhenNotStarted() {
+        Date now = new Date();
+        recorder.record(consumer, now);
+
+        verify(consumerCurator).updateLastCheckin(consumer, now);
+        assertEquals(0, recorder.getPendingCount());
+    }
+
+    @Test
+    public void keepsLatestCheckInPerConsumer() {
+        recorder.start();
+        Date earlier = new Date(1000L);
+        Date later = new Date(2000L);
+        recorder.record(consumer, later);
+        recorder.record(consumer, earlier);
+
+        assertEquals(later, consumer.getLastCheckin());
+        assertEquals(1, recorder.getPendingCount());
+        verifyZeroInteractions(consumerCurator);
+
+        recorder.flush();
+        Map<String, Date> expected = new HashMap<String, Date>();
+        expected.put("consumer1", later);
+        assertEquals(expected, captureFlushed());
+        assertEquals(0, recorder.getPendingCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void keepsCheckInsWhichFailedToWrite() {
+        recorder.start();
+        recorder.record(consumer, new Date());
+        doThrow(new RuntimeException("db down")).when(consumerCurator)
+            .updateLastCheckins(anyMap());
+
+        recorder.flush();
+        assertEquals(1, recorder.getPendingCount());
+    }
+
+    @Test
+    public void shutdownWritesPendingCheckIns() {
+        recorder.start();
+        Date now = new Date();
+        recorder.record(consumer, now);
+
+        recorder.shutdown();
+        assertEquals(now, captureFlushed().get("consumer1"));
+
+        // Once stopped, check ins are written right away again
+        Date later = new Date(now.getTime() + 1000L);
+        recorder.record(consumer, later);
+        verify(consumerCurator).updateLastCheckin(consumer, later);
+    }
+}
@@ -24,6 +24,7 @@ import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.X509CRLEntryWrapper;
 import org.candlepin.pki.impl.BouncyCastlePKIUtility;
 import org.candlepin.pki.impl.DefaultSubjectKeyIdentifierWriter;
+import org.candlepin.util.RevocationIndex;
 import org.candlepin.util.Util;
 
 import org.bouncycastle.asn1.x509.CRLNumber;
@@ -36,14 +37,19 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.math.BigInteger;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -331,6 +337,70 @@ public class CrlGeneratorTest {
         }
     }
 
+    @Test
+    public void streamedCrlMatchesEntries() throws Exception {
+        List<X509CRLEntryWrapper> entries = Util.newList();
+        for (long serial = 1; serial <= 500; serial++) {
+            entries.add(new X509CRLEntryWrapper(BigInteger.valueOf(serial), new Date()));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pkiUtility.writePemEncodedCRL(entries, BigInteger.TEN, out);
+        X509CRL x509crl = (X509CRL) CertificateFactory.getInstance("X.509")
+            .generateCRL(new ByteArrayInputStream(out.toByteArray()));
+
+        x509crl.verify(KP.getPublic());
+        assertEquals(BigInteger.TEN, generator.getCRLNumber(x509crl));
+        assertEquals(500, x509crl.getRevokedCertificates().size());
+        assertNotNull(x509crl.getRevokedCertificate(BigInteger.valueOf(250)));
+    }
+
+    @Test
+    public void streamedCrlWithoutEntries() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pkiUtility.writePemEncodedCRL(new ArrayList<X509CRLEntryWrapper>(),
+            BigInteger.ONE, out);
+        X509CRL x509crl = (X509CRL) CertificateFactory.getInstance("X.509")
+            .generateCRL(new ByteArrayInputStream(out.toByteArray()));
+
+        x509crl.verify(KP.getPublic());
+        assertNull(x509crl.getRevokedCertificates());
+    }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void syncIndexAppliesOnlyChanges() throws Exception {
+        File file = File.createTempFile("test", ".idx");
+        file.delete();
+        try {
+            RevocationIndex index = RevocationIndex.read(file).update(BigInteger.ONE,
+                Arrays.asList(new X509CRLEntryWrapper(BigInteger.ONE, new Date()),
+                    new X509CRLEntryWrapper(BigInteger.TEN, new Date())),
+                new ArrayList<Long>()).commit();
+
+            when(this.curator.retrieveTobeCollectedSerials())
+                .thenReturn(new ArrayList<CertificateSerial>() {
+                    {
+                        add(stubCS(1001L, new Date()));
+                    }
+                });
+            when(this.curator.listExpiredSerialIds()).thenReturn(Arrays.asList(1L));
+
+            RevocationIndex updated = generator.syncCRLWithDB(index);
+
+            verify(this.curator).deleteExpiredSerials();
+            assertEquals(new BigInteger("2"), updated.getCrlNumber());
+            assertEquals(2, updated.size());
+            assertTrue(updated.contains(10L));
+            assertTrue(updated.contains(1001L));
+            assertFalse(updated.contains(1L));
+        }
+        finally {
+            RevocationIndex.discardPending(file);
+            file.delete();
+        }
+    }
+
     @Test
     public void decodeValue() throws Exception {
         // there's gotta be a way to reduce to a set of mocks
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.test.TestUtil;
+
+import com.google.inject.util.Providers;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * PoolIndexTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PoolIndexTest {
+
+    @Mock private PoolCurator poolCurator;
+    private PoolIndex index;
+    private Owner owner;
+    private Date updated;
+
+    @Before
+    public void setUp() {
+        owner = new Owner("test");
+        owner.setId("owner");
+        updated = new Date();
+
+        List<Object[]> pools = new ArrayList<Object[]>();
+        pools.add(new Object[] {"p1", "sku1", null});
+        pools.add(new Object[] {"p2", "sku2", null});
+        pools.add(new Object[] {"p3", "sku3", "derived3"});
+
+        List<Object[]> provided = new ArrayList<Object[]>();
+        provided.add(new Object[] {"p1", "eng1"});
+        provided.add(new Object[] {"p3", "eng1"});
+
+        List<Object[]> derivedProvided = new ArrayList<Object[]>();
+        derivedProvided.add(new Object[] {"p3", "guest1"});
+
+        List<Object[]> stacks = new ArrayList<Object[]>();
+        stacks.add(new Object[] {"p2", "stack2"});
+
+        when(poolCurator.getPoolsStamp(owner)).thenReturn(new Object[] {3L, updated});
+        when(poolCurator.listPoolProductIds(owner)).thenReturn(pools);
+        when(poolCurator.listProvidedProductIds(owner, false)).thenReturn(provided);
+        when(poolCurator.listProvidedProductIds(owner, true)).thenReturn(derivedProvided);
+        when(poolCurator.listProductAttributeValues(owner, "stacking_id"))
+            .thenReturn(stacks);
+
+        index = new PoolIndex(new CandlepinCommonTestConfig(), Providers.of(poolCurator));
+    }
+
+    @Test
+    public void findsPoolsByProductAndStack() {
+        assertEquals(new HashSet<String>(Arrays.asList("p1", "p3")),
+            index.getPoolsProviding(owner, Arrays.asList("eng1"), null));
+        assertEquals(new HashSet<String>(Arrays.asList("p1", "p2")),
+            index.getPoolsProviding(owner, Arrays.asList("sku1"), Arrays.asList("stack2")));
+        assertTrue(index.getPoolsProviding(owner, Arrays.asList("nothing"),
+            Collections.<String>emptyList()).isEmpty());
+    }
+
+    @Test
+    public void findsPoolsByDerivedProduct() {
+        // p1 has no derived product, so its own products go to guests
+        assertEquals(new HashSet<String>(Arrays.asList("p1")),
+            index.getPoolsProvidingDerived(owner, Arrays.asList("eng1")));
+        assertEquals(new HashSet<String>(Arrays.asList("p3")),
+            index.getPoolsProvidingDerived(owner, Arrays.asList("guest1", "derived3")));
+    }
+
+    @Test
+    public void onlyRebuildsWhenPoolsChange() {
+        index.getPoolsProviding(owner, Arrays.asList("eng1"), null);
+        index.getPoolsProviding(owner, Arrays.asList("eng1"), null);
+        verify(poolCurator, times(1)).listPoolProductIds(owner);
+
+        when(poolCurator.getPoolsStamp(owner)).thenReturn(
+            new Object[] {3L, new Date(updated.getTime() + 1000)});
+        index.getPoolsProviding(owner, Arrays.asList("eng1"), null);
+        verify(poolCurator, times(2)).listPoolProductIds(owner);
+    }
+
+    @Test
+    public void localChangesAreAppliedInPlace() {
+        index.getPoolsProviding(owner, Arrays.asList("eng1"), null);
+
+        Pool pool = TestUtil.createPool(owner, TestUtil.createProduct("sku9", "sku9"));
+        pool.setId("p1");
+        pool.setProductAttribute("stacking_id", "stack9", "sku9");
+        pool.setUpdated(new Date(updated.getTime() + 1000));
+        index.poolChanged(pool);
+        stampWith(3L, pool.getUpdated(), pool);
+
+        assertEquals(new HashSet<String>(Arrays.asList("p3")),
+            index.getPoolsProviding(owner, Arrays.asList("eng1", "sku1"), null));
+        assertEquals(new HashSet<String>(Arrays.asList("p1")),
+            index.getPoolsProviding(owner, Arrays.asList("sku9"), Arrays.asList("stack9")));
+        index.getPoolsProviding(owner, Arrays.asList("sku9"), null);
+
+        verify(poolCurator, times(1)).listPoolProductIds(owner);
+        verify(poolCurator, times(1)).listPoolsUpdatedSince(owner, updated);
+    }
+
+    @Test
+    public void createdAndDeletedPoolsAreAppliedInPlace() {
+        index.getPoolsProviding(owner, Arrays.asList("eng1"), null);
+
+        Pool pool = TestUtil.createPool(owner, TestUtil.createProduct("sku4", "sku4"));
+        pool.setId("p4");
+        pool.setUpdated(new Date(updated.getTime() + 1000));
+        index.poolChanged(pool);
+        stampWith(4L, pool.getUpdated(), pool);
+        assertEquals(new HashSet<String>(Arrays.asList("p4")),
+            index.getPoolsProviding(owner, Arrays.asList("sku4"), null));
+
+        index.poolDeleted(pool);
+        when(poolCurator.getPoolsStamp(owner)).thenReturn(
+            new Object[] {3L, pool.getUpdated()});
+        assertTrue(index.getPoolsProviding(owner, Arrays.asList("sku4"), null).isEmpty());
+
+        verify(poolCurator, times(1)).listPoolProductIds(owner);
+    }
+
+    @Test
+    public void unseenLocalChangesRebuild() {
+        index.getPoolsProviding(owner, Arrays.asList("eng1"), null);
+
+        // The change is rolled back, the database never shows it
+        Pool pool = TestUtil.createPool(owner, TestUtil.createProduct("sku9", "sku9"));
+        pool.setId("p1");
+        pool.setUpdated(new Date(updated.getTime() + 1000));
+        index.poolChanged(pool);
+
+        assertEquals(new HashSet<String>(Arrays.asList("p1", "p3")),
+            index.getPoolsProviding(owner, Arrays.asList("eng1"), null));
+        verify(poolCurator, times(2)).listPoolProductIds(owner);
+    }
+
+    @Test
+    public void localChangesNeverRevalidateAStaleIndex() {
+        index.getPoolsProviding(owner, Arrays.asList("eng1"), null);
+
+        // p2 changes somewhere the index is not told about...
+        Date remoteChange = new Date(updated.getTime() + 1000);
+        when(poolCurator.getPoolsStamp(owner)).thenReturn(new Object[] {3L, remoteChange});
+        List<Object[]> pools = new ArrayList<Object[]>();
+        pools.add(new Object[] {"p1", "sku1", null});
+        pools.add(new Object[] {"p2", "eng1", null});
+        pools.add(new Object[] {"p3", "sku3", "derived3"});
+        when(poolCurator.listPoolProductIds(owner)).thenReturn(pools);
+
+        // ...and then p1 changes on this node, after it.
+        Pool pool = TestUtil.createPool(owner, TestUtil.createProduct());
+        pool.setId("p1");
+        pool.setUpdated(new Date(updated.getTime() + 2000));
+        index.poolChanged(pool);
+        List<Object[]> changed = new ArrayList<Object[]>();
+        changed.add(new Object[] {"p2", remoteChange});
+        changed.add(new Object[] {"p1", pool.getUpdated()});
+        when(poolCurator.getPoolsStamp(owner)).thenReturn(
+            new Object[] {3L, pool.getUpdated()});
+        when(poolCurator.listPoolsUpdatedSince(owner, updated)).thenReturn(changed);
+
+        assertEquals(new HashSet<String>(Arrays.asList("p1", "p2", "p3")),
+            index.getPoolsProviding(owner, Arrays.asList("eng1"), null));
+    }
+
+    private void stampWith(long count, Date latest, Pool changed) {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] {changed.getId(), changed.getUpdated()});
+        when(poolCurator.getPoolsStamp(owner)).thenReturn(new Object[] {count, latest});
+        when(poolCurator.listPoolsUpdatedSince(owner, updated)).thenReturn(rows);
+    }
+}
@@ -128,6 +128,9 @@ public class PoolManagerTest {
     @Mock
     private ActivationKeyRules activationKeyRules;
 
+    @Mock
+    private PoolIndex poolIndex;
+
     private CandlepinPoolManager manager;
     private UserPrincipal principal;
 
@@ -157,7 +160,7 @@ public class PoolManagerTest {
             productCache, entCertAdapterMock, mockEventSink, eventFactory,
             mockConfig, enforcerMock, poolRulesMock, entitlementCurator,
             consumerCuratorMock, certCuratorMock, complianceRules, autobindRules,
-            activationKeyRules));
+            activationKeyRules, poolIndex));
 
         when(entCertAdapterMock.generateEntitlementCert(any(Entitlement.class),
             any(Subscription.class), any(Product.class))).thenReturn(
@@ -166,6 +169,37 @@ public class PoolManagerTest {
         dummyComplianceStatus = new ComplianceStatus(new Date());
         when(complianceRules.getStatus(any(Consumer.class), any(Date.class))).thenReturn(
             dummyComplianceStatus);
+        when(complianceRules.getStatus(any(Consumer.class), any(Date.class),
+            anyBoolean())).thenReturn(dummyComplianceStatus);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockPoolIndex(List<Pool> pools) {
+        Set<String> ids = new HashSet<String>();
+        for (Pool p : pools) {
+            p.setId("pool_" + TestUtil.randomInt());
+            ids.add(p.getId());
+        }
+        when(poolIndex.getPoolsProviding(any(Owner.class), any(Collection.class),
+            any(Collection.class))).thenReturn(ids);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockBatchPreEntitlement(final ValidationResult result) {
+        when(enforcerMock.preEntitlement(any(Consumer.class), any(Collection.class),
+            anyInt(), any(CallerType.class))).thenAnswer(
+                new Answer<Map<String, ValidationResult>>() {
+                    @Override
+                    public Map<String, ValidationResult> answer(
+                        InvocationOnMock invocation) throws Throwable {
+                        Map<String, ValidationResult> results =
+                            new HashMap<String, ValidationResult>();
+                        for (Object pool : (Collection<Object>) invocation.getArguments()[1]) {
+                            results.put(((Pool) pool).getId(), result);
+                        }
+                        return results;
+                    }
+                });
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -420,6 +454,40 @@ public class PoolManagerTest {
         verify(mockEventSink, times(1)).queueEvent(any(Event.class));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testNonLazyRegenerateForConsumerInBulk() throws Exception {
+        Subscription s = TestUtil.createSubscription(getOwner(), product);
+        s.setId("testSubId");
+        pool.setSourceSubscription(new SourceSubscription(s.getId(), "master"));
+        Consumer c = TestUtil.createConsumer(o);
+        Entitlement e1 = new Entitlement(pool, c, 1);
+        e1.setId("e1");
+        e1.setDirty(true);
+        Entitlement e2 = new Entitlement(pool, c, 1);
+        e2.setId("e2");
+        e2.setDirty(true);
+        c.addEntitlement(e1);
+        c.addEntitlement(e2);
+
+        when(mockSubAdapter.getSubscription(pool.getSubscriptionId())).thenReturn(s);
+        Map<String, EntitlementCertificate> generated =
+            new HashMap<String, EntitlementCertificate>();
+        generated.put("e1", new EntitlementCertificate());
+        when(entCertAdapterMock.generateEntitlementCerts(any(List.class), any(Map.class),
+            any(Map.class))).thenReturn(generated);
+
+        manager.regenerateEntitlementCertificates(c, false);
+
+        assertFalse(e1.getDirty());
+        // No certificate could be generated for e2, so it is still dirty
+        assertTrue(e2.getDirty());
+        verify(mockSubAdapter, times(1)).getSubscription(s.getId());
+        verify(entCertAdapterMock, never()).generateEntitlementCert(any(Entitlement.class),
+            any(Subscription.class), any(Product.class));
+        verify(mockEventSink, times(1)).queueEvent(any(Event.class));
+    }
+
     /**
      * @return
      */
@@ -495,6 +563,7 @@ public class PoolManagerTest {
         pools.add(pool1);
         Pool pool2 = TestUtil.createPool(product);
         pools.add(pool2);
+        mockPoolIndex(pools);
         Date now = new Date();
 
 
@@ -510,6 +579,7 @@ public class PoolManagerTest {
         when(mockPoolCurator.lockAndLoad(any(Pool.class))).thenReturn(pool1);
         when(enforcerMock.preEntitlement(any(Consumer.class), any(Pool.class), anyInt(),
             any(CallerType.class))).thenReturn(result);
+        mockBatchPreEntitlement(result);
 
         when(result.isSuccessful()).thenReturn(true);
 
@@ -684,6 +754,7 @@ public class PoolManagerTest {
         List<Pool> pools = Util.newList();
         Pool pool1 = TestUtil.createPool(product);
         pools.add(pool1);
+        mockPoolIndex(pools);
         Date now = new Date();
 
         ValidationResult result = mock(ValidationResult.class);
@@ -709,6 +780,7 @@ public class PoolManagerTest {
         when(mockPoolCurator.lockAndLoad(any(Pool.class))).thenReturn(pool1);
         when(enforcerMock.preEntitlement(any(Consumer.class), any(Pool.class), anyInt(),
             any(CallerType.class))).thenReturn(result);
+        mockBatchPreEntitlement(result);
 
         when(result.isSuccessful()).thenReturn(true);
 
@@ -374,6 +374,25 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertTrue(consumer.getLastCheckin().getTime() > date.getTime());
     }
 
+    @Test
+    public void updateLastCheckinsOnlyMovesForward() {
+        Consumer c1 = consumerCurator.create(new Consumer("c1", "testUser", owner, ct));
+        Consumer c2 = consumerCurator.create(new Consumer("c2", "testUser", owner, ct));
+        Date earlier = new Date(System.currentTimeMillis() - 60000L);
+        Date later = new Date();
+        consumerCurator.updateLastCheckin(c2, later);
+
+        Map<String, Date> checkins = new HashMap<String, Date>();
+        checkins.put(c1.getId(), earlier);
+        checkins.put(c2.getId(), earlier);
+        consumerCurator.updateLastCheckins(checkins);
+
+        consumerCurator.refresh(c1);
+        consumerCurator.refresh(c2);
+        assertEquals(earlier.getTime(), c1.getLastCheckin().getTime());
+        assertEquals(later.getTime(), c2.getLastCheckin().getTime());
+    }
+
     @Test
     public void delete() {
         Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
@@ -16,7 +16,9 @@ package org.candlepin.model;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.test.DatabaseTestFixture;
@@ -112,6 +114,71 @@ public class CuratorPaginationTest extends DatabaseTestFixture {
         assertEquals(pageRequest, pageRequest2);
     }
 
+    @Test
+    public void testCursorPaging() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("key");
+        pageRequest.setOrder(PageRequest.Order.ASCENDING);
+        pageRequest.setPerPage(4);
+        pageRequest.setCursor("");
+
+        List<String> keys = new ArrayList<String>();
+        Page<List<Owner>> p = ownerCurator.listAll(pageRequest);
+        // Nothing was counted, the client didn't ask
+        assertNull(p.getMaxRecords());
+        while (true) {
+            for (Owner o : p.getPageData()) {
+                keys.add(o.getKey());
+            }
+            if (p.getNextCursor() == null) {
+                break;
+            }
+            pageRequest.setCursor(p.getNextCursor());
+            p = ownerCurator.listAll(pageRequest);
+        }
+
+        assertEquals(2, p.getPageData().size());
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, keys);
+    }
+
+    @Test
+    public void testCursorPagingWithCriteriaAndCount() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("key");
+        pageRequest.setOrder(PageRequest.Order.DESCENDING);
+        pageRequest.setPerPage(3);
+        pageRequest.setCursor("");
+        pageRequest.setCount(true);
+
+        Criteria criteria = session.createCriteria(Owner.class).
+            add(Restrictions.gt("key", "5"));
+        Page<List<Owner>> p = ownerCurator.listByCriteria(criteria, pageRequest);
+        assertEquals(Integer.valueOf(4), p.getMaxRecords());
+        assertEquals(3, p.getPageData().size());
+        assertEquals("9", p.getPageData().get(0).getKey());
+        assertEquals(p.getPageData().get(2).getId(), p.getNextCursor());
+
+        pageRequest.setCursor(p.getNextCursor());
+        criteria = session.createCriteria(Owner.class).
+            add(Restrictions.gt("key", "5"));
+        p = ownerCurator.listByCriteria(criteria, pageRequest);
+        assertEquals(1, p.getPageData().size());
+        assertEquals("6", p.getPageData().get(0).getKey());
+        assertNull(p.getNextCursor());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testUnknownCursor() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPerPage(3);
+        pageRequest.setCursor("nosuchowner");
+        ownerCurator.listAll(pageRequest);
+    }
+
     @Test
     public void testNoPagingWithCriteria() {
         Criteria criteria = session.createCriteria(Owner.class).
@@ -25,6 +25,7 @@ import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -43,6 +44,7 @@ public class EntitlementCuratorTest extends DatabaseTestFixture {
     @Inject private ConsumerCurator consumerCurator;
     @Inject private EntitlementCurator entitlementCurator;
     @Inject private EnvironmentCurator envCurator;
+    @Inject private EntitlementCertificateCurator entCertCurator;
 
     private Entitlement secondEntitlement;
     private Entitlement firstEntitlement;
@@ -106,6 +108,44 @@ public class EntitlementCuratorTest extends DatabaseTestFixture {
         productCurator.create(providedProduct2);
     }
 
+    private Entitlement createCurrentEntitlement(Consumer c, boolean dirty) {
+        Product product = TestUtil.createProduct();
+        productCurator.create(product);
+        Pool pool = createPoolAndSub(owner, product, 1L, pastDate, futureDate);
+        Entitlement ent = createEntitlement(owner, c, pool,
+            createEntitlementCertificate("key", "certificate"));
+        ent.setDirty(dirty);
+        return entitlementCurator.create(ent);
+    }
+
+    @Test
+    public void listDirtyByConsumer() {
+        Consumer c = consumerCurator.create(createConsumer(owner));
+        createCurrentEntitlement(c, false);
+        Entitlement dirty = createCurrentEntitlement(c, true);
+
+        List<Entitlement> found = entitlementCurator.listDirtyByConsumer(c);
+        assertEquals(1, found.size());
+        assertEquals(dirty, found.get(0));
+    }
+
+    @Test
+    public void listSerialIdsForConsumer() {
+        Consumer c = consumerCurator.create(createConsumer(owner));
+        Entitlement one = createCurrentEntitlement(c, false);
+        Entitlement two = createCurrentEntitlement(c, false);
+
+        List<Long> expected = new LinkedList<Long>();
+        for (Entitlement ent : new Entitlement[] {one, two}) {
+            for (EntitlementCertificate cert : ent.getCertificates()) {
+                expected.add(cert.getSerial().getId());
+            }
+        }
+        Collections.sort(expected);
+
+        assertEquals(expected, entCertCurator.listSerialIdsForConsumer(c));
+    }
+
     @Test
     public void testCompareTo() {
         Entitlement e1 = TestUtil.createEntitlement();
@@ -24,7 +24,10 @@ import org.candlepin.test.DatabaseTestFixture;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -74,6 +77,46 @@ public class GuestIdCuratorTest extends DatabaseTestFixture {
         assertEquals(0, result.size());
     }
 
+    @Test
+    public void listByConsumersTest() {
+        Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
+        Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("active", "1");
+        consumer.addGuestId(new GuestId("1", consumer, attributes));
+        consumer.addGuestId(new GuestId("2"));
+        consumerCurator.create(consumer);
+
+        Consumer other = new Consumer("testConsumer2", "testUser2", owner, ct);
+        other.addGuestId(new GuestId("3"));
+        consumerCurator.create(other);
+
+        Consumer notListed = new Consumer("testConsumer3", "testUser3", owner, ct);
+        notListed.addGuestId(new GuestId("4"));
+        consumerCurator.create(notListed);
+
+        List<GuestId> result = curator.listByConsumers(Arrays.asList(consumer, other));
+        assertEquals(3, result.size());
+        assertTrue(result.contains(new GuestId("1", consumer, attributes)));
+        assertTrue(result.contains(new GuestId("2")));
+        assertTrue(result.contains(new GuestId("3")));
+    }
+
+    @Test
+    public void deleteAllTest() {
+        Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
+        for (int i = 0; i < 5; i++) {
+            consumer.addGuestId(new GuestId("" + i));
+        }
+        consumerCurator.create(consumer);
+        entityManager().clear();
+
+        List<GuestId> toDelete = curator.listByConsumer(consumer).subList(0, 3);
+        curator.deleteAll(toDelete);
+        entityManager().clear();
+
+        assertEquals(2, curator.listByConsumer(consumer).size());
+    }
+
     @Test
     public void findByConsumerAndIdDoesntExist() {
         Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * OwnerInfoCacheTest
+ */
+public class OwnerInfoCacheTest {
+
+    private Configuration config;
+    private long now;
+
+    @Before
+    public void init() {
+        config = mock(Configuration.class);
+        when(config.getLong(ConfigProperties.OWNER_INFO_CACHE_TTL)).thenReturn(30L);
+        when(config.getInt(ConfigProperties.OWNER_INFO_CACHE_MAX)).thenReturn(2);
+        now = 1000000L;
+    }
+
+    private OwnerInfoCache createCache() {
+        return new OwnerInfoCache(config) {
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void keepsInfoPerPrincipal() {
+        OwnerInfoCache cache = createCache();
+        OwnerInfo info = new OwnerInfo();
+        cache.put("owner", "admin", info);
+
+        assertSame(info, cache.get("owner", "admin"));
+        assertNull(cache.get("owner", "someuser"));
+        assertNull(cache.get("other", "admin"));
+    }
+
+    @Test
+    public void expiresAfterTtl() {
+        OwnerInfoCache cache = createCache();
+        OwnerInfo info = new OwnerInfo();
+        cache.put("owner", "admin", info);
+
+        now += 29999;
+        assertSame(info, cache.get("owner", "admin"));
+
+        now += 1;
+        assertNull(cache.get("owner", "admin"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void dropsLeastRecentlyUsed() {
+        OwnerInfoCache cache = createCache();
+        OwnerInfo one = new OwnerInfo();
+        cache.put("one", "admin", one);
+        cache.put("two", "admin", new OwnerInfo());
+        assertSame(one, cache.get("one", "admin"));
+
+        cache.put("three", "admin", new OwnerInfo());
+        assertEquals(2, cache.size());
+        assertSame(one, cache.get("one", "admin"));
+        assertNull(cache.get("two", "admin"));
+    }
+
+    @Test
+    public void zeroTtlDisablesCache() {
+        when(config.getLong(ConfigProperties.OWNER_INFO_CACHE_TTL)).thenReturn(0L);
+        OwnerInfoCache cache = createCache();
+        cache.put("owner", "admin", new OwnerInfo());
+
+        assertNull(cache.get("owner", "admin"));
+        assertEquals(0, cache.size());
+    }
+}
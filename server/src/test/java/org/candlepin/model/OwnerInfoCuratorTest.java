@@ -15,6 +15,7 @@
 package org.candlepin.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.UserPrincipal;
@@ -452,6 +453,23 @@ public class OwnerInfoCuratorTest extends DatabaseTestFixture {
         assertEquals(expectedPoolCount, info.getEnabledConsumerTypeCountByPool());
     }
 
+    @Test
+    public void testOwnerPoolMultiEnabledCountIgnoresCase() {
+        pool1.setAttribute("enabled_consumer_types", "Domain,SYSTEM");
+        owner.addEntitlementPool(pool1);
+
+        OwnerInfo info = ownerInfoCurator.lookupByOwner(owner);
+
+        Map<String, Integer> expectedPoolCount = new HashMap<String, Integer>() {
+            {
+                put("domain", 1);
+                put("system", 1);
+            }
+        };
+
+        assertEquals(expectedPoolCount, info.getEnabledConsumerTypeCountByPool());
+    }
+
     @Test
     public void testOwnerPoolEnabledZeroCount() {
         pool1.setAttribute("enabled_consumer_types", "non-type");
@@ -750,6 +768,35 @@ public class OwnerInfoCuratorTest extends DatabaseTestFixture {
         assertEquals(expectedEntitlementsConsumed, info.getEntitlementsConsumedByType());
     }
 
+    @Test
+    public void testCachedOwnerInfoIsReused() {
+        OwnerInfo info = ownerInfoCurator.lookupCachedByOwner(owner);
+
+        ConsumerType type = consumerTypeCurator.lookupByLabel("system");
+        consumerCurator.create(new Consumer("test-consumer", "test-user", owner, type));
+
+        assertSame(info, ownerInfoCurator.lookupCachedByOwner(owner));
+        assertEquals((Integer) 0, info.getConsumerCounts().get("system"));
+        assertEquals((Integer) 1,
+            ownerInfoCurator.lookupByOwner(owner).getConsumerCounts().get("system"));
+    }
+
+    @Test
+    public void testCachedOwnerInfoIsKeptPerPrincipal() {
+        User mySystemsUser = setupOnlyMyConsumersPrincipal();
+        ConsumerType type = consumerTypeCurator.lookupByLabel("system");
+        consumerCurator.create(new Consumer("my-system-1", mySystemsUser.getUsername(),
+            owner, type));
+        consumerCurator.create(new Consumer("not-my-system", "another-user", owner, type));
+
+        OwnerInfo info = ownerInfoCurator.lookupCachedByOwner(owner);
+        assertEquals((Integer) 1, info.getConsumerCounts().get("system"));
+
+        setupAdminPrincipal("admin");
+        info = ownerInfoCurator.lookupCachedByOwner(owner);
+        assertEquals((Integer) 2, info.getConsumerCounts().get("system"));
+    }
+
     private void setupConsumerCountTest(String username) {
         ConsumerType systemType = consumerTypeCurator.lookupByLabel("system");
         Consumer consumer1 = new Consumer("test-consumer1", username, owner, systemType);
@@ -539,12 +539,14 @@ public class PoolCuratorTest extends DatabaseTestFixture {
 
         Entitlement e = new Entitlement(pool, consumer, 1);
         entitlementCurator.create(e);
+        poolCurator.adjustConsumed(e.getPool(), e.getQuantity(), 0);
 
         assertEquals(0, poolCurator.lookupOversubscribedBySubscriptionId(
             subid, e).size());
 
         e = new Entitlement(pool, consumer, 1);
         entitlementCurator.create(e);
+        poolCurator.adjustConsumed(e.getPool(), e.getQuantity(), 0);
         assertEquals(1, poolCurator.lookupOversubscribedBySubscriptionId(
             subid, e).size());
     }
@@ -560,6 +562,7 @@ public class PoolCuratorTest extends DatabaseTestFixture {
 
         Entitlement sourceEnt = new Entitlement(pool, consumer, 1);
         entitlementCurator.create(sourceEnt);
+        poolCurator.adjustConsumed(sourceEnt.getPool(), sourceEnt.getQuantity(), 0);
 
         // Create derived pool referencing the entitlement just made:
         Pool derivedPool = new Pool(owner, product.getId(), product.getName(),
@@ -577,6 +580,7 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         Entitlement derivedEnt = new Entitlement(derivedPool, consumer,
             2);
         entitlementCurator.create(derivedEnt);
+        poolCurator.adjustConsumed(derivedEnt.getPool(), derivedEnt.getQuantity(), 0);
 
         // Passing the source entitlement should find the oversubscribed derived pool:
         assertEquals(1, poolCurator.lookupOversubscribedBySubscriptionId(
@@ -599,12 +603,14 @@ public class PoolCuratorTest extends DatabaseTestFixture {
 
         Entitlement e = new Entitlement(pool, consumer, 1);
         entitlementCurator.create(e);
+        poolCurator.adjustConsumed(e.getPool(), e.getQuantity(), 0);
 
         assertEquals(0, poolCurator.lookupOversubscribedBySubscriptionId(
             subid, e).size());
 
         e = new Entitlement(pool, consumer, 1);
         entitlementCurator.create(e);
+        poolCurator.adjustConsumed(e.getPool(), e.getQuantity(), 0);
         assertEquals(0, poolCurator.lookupOversubscribedBySubscriptionId(
             subid, e).size());
     }
@@ -1080,6 +1086,50 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         assertEquals(expected, result);
     }
 
+    @Test
+    public void testAdjustConsumed() {
+        Pool pool = createPoolAndSub(owner, product, 10L,
+            TestUtil.createDate(2011, 3, 2), TestUtil.createDate(2055, 3, 2));
+        poolCurator.create(pool);
+
+        poolCurator.adjustConsumed(pool, 3, 1);
+        poolCurator.refresh(pool);
+        assertEquals(Long.valueOf(3), pool.getConsumed());
+        assertEquals(Long.valueOf(1), pool.getExported());
+
+        poolCurator.adjustConsumed(pool, -1, -1);
+        poolCurator.refresh(pool);
+        assertEquals(Long.valueOf(2), pool.getConsumed());
+        assertEquals(Long.valueOf(0), pool.getExported());
+    }
+
+    @Test
+    public void testRecalculateConsumed() {
+        Pool pool = createPoolAndSub(owner, product, 10L,
+            TestUtil.createDate(2011, 3, 2), TestUtil.createDate(2055, 3, 2));
+        poolCurator.create(pool);
+
+        ConsumerType manifestType = new ConsumerType(ConsumerTypeEnum.CANDLEPIN);
+        consumerTypeCurator.create(manifestType);
+        Consumer distributor = TestUtil.createConsumer(manifestType, owner);
+        consumerCurator.create(distributor);
+
+        // Entitlements created directly leave the stored quantities behind:
+        entitlementCurator.create(new Entitlement(pool, consumer, 2));
+        entitlementCurator.create(new Entitlement(pool, distributor, 3));
+        assertTrue(poolCurator.listIdsWithWrongConsumption().contains(pool.getId()));
+
+        assertTrue(poolCurator.recalculateConsumed(pool));
+        assertEquals(Long.valueOf(5), pool.getConsumed());
+        assertEquals(Long.valueOf(3), pool.getExported());
+
+        poolCurator.refresh(pool);
+        assertEquals(Long.valueOf(5), pool.getConsumed());
+        assertEquals(Long.valueOf(3), pool.getExported());
+        assertFalse(poolCurator.listIdsWithWrongConsumption().contains(pool.getId()));
+        assertFalse(poolCurator.recalculateConsumed(pool));
+    }
+
     private Product generateProduct(String id, String name) {
         Product product = TestUtil.createProduct(id, name);
         this.productCurator.create(product);
@@ -23,6 +23,7 @@ import org.candlepin.test.TestUtil;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -64,6 +65,23 @@ public class SubscriptionCuratorTest extends DatabaseTestFixture {
         subCurator.create(s1);
     }
 
+    @Test
+    public void createAllStoresCertificatesAndSerials() {
+        Subscription sub = TestUtil.createSubscription(owner, parentProduct);
+        SubscriptionsCertificate cert = new SubscriptionsCertificate();
+        cert.setCert("cert");
+        cert.setKey("key");
+        cert.setSerial(new CertificateSerial(TestUtil.createDate(2050, 2, 8)));
+        sub.setCertificate(cert);
+
+        subCurator.createAll(Arrays.asList(sub));
+        entityManager().clear();
+
+        Subscription found = subCurator.find(sub.getId());
+        assertEquals(cert.getId(), found.getCertificate().getId());
+        assertEquals(cert.getSerial().getId(), found.getCertificate().getSerial().getId());
+    }
+
     @Test
     public void testGetSubscription() {
         Subscription s = adapter.getSubscription(s1.getId());
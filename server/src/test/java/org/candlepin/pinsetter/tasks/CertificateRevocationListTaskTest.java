@@ -23,16 +23,18 @@ import org.candlepin.common.config.Configuration;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.CrlGenerator;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.RevocationIndex;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.quartz.JobExecutionException;
 
 import java.io.File;
-import java.security.cert.X509CRL;
 
 /**
  * CertificateRevocationListTaskTest
@@ -44,7 +46,8 @@ public class CertificateRevocationListTaskTest {
     @Mock private Configuration config;
     @Mock private CrlFileUtil crlFileUtil;
     @Mock private CrlGenerator generator;
-    @Mock private X509CRL crl;
+    @Mock private RevocationIndex index;
+    @Mock private RevocationIndex updated;
 
     @Before
     public void init() {
@@ -60,12 +63,22 @@ public class CertificateRevocationListTaskTest {
     @Test
     public void execute() throws Exception {
         when(config.getString(ConfigProperties.CRL_FILE_PATH)).thenReturn("/tmp/test.crl");
-        when(crlFileUtil.readCRLFile(any(File.class))).thenReturn(crl);
-        when(generator.syncCRLWithDB(eq(crl))).thenReturn(crl);
+        when(crlFileUtil.updateCRLFile(any(File.class), any(CrlFileUtil.IndexUpdate.class)))
+            .thenAnswer(new Answer<RevocationIndex>() {
+                @Override
+                public RevocationIndex answer(InvocationOnMock invocation) throws Throwable {
+                    CrlFileUtil.IndexUpdate update =
+                        (CrlFileUtil.IndexUpdate) invocation.getArguments()[1];
+                    return update.apply(index);
+                }
+            });
+        when(generator.syncCRLWithDB(eq(index))).thenReturn(updated);
 
         task.execute(null);
 
-        verify(crlFileUtil).writeCRLFile(any(File.class), eq(crl));
+        verify(generator).syncCRLWithDB(eq(index));
+        verify(crlFileUtil).updateCRLFile(any(File.class),
+            any(CrlFileUtil.IndexUpdate.class));
     }
 
 }
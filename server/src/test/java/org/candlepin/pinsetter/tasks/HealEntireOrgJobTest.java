@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.Entitler;
+import org.candlepin.guice.CandlepinSingletonScope;
+import org.candlepin.guice.SimpleScope;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.JobCurator;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.resource.dto.AutobindData;
+
+import com.google.inject.util.Providers;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * HealEntireOrgJobTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class HealEntireOrgJobTest {
+
+    @Mock private Entitler entitler;
+    @Mock private ConsumerCurator consumerCurator;
+    @Mock private EventSink sink;
+    @Mock private OwnerCurator ownerCurator;
+    @Mock private JobCurator jobCurator;
+    @Mock private Configuration config;
+    @Mock private JobExecutionContext ctx;
+
+    private HealEntireOrgJob job;
+    private JobDetail detail;
+
+    @Before
+    public void init() {
+        when(config.getInt(ConfigProperties.HEAL_ORG_WORKER_THREADS)).thenReturn(2);
+        job = new HealEntireOrgJob(Providers.of(entitler), Providers.of(consumerCurator),
+            Providers.of(sink), ownerCurator, jobCurator, config,
+            new CandlepinSingletonScope(), new SimpleScope());
+
+        detail = HealEntireOrgJob.healEntireOrg("owner1", new Date());
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+        when(ctx.getJobDetail()).thenReturn(detail);
+    }
+
+    @Test
+    public void healSetup() {
+        assertEquals("owner1", detail.getJobDataMap().get(JobStatus.TARGET_ID));
+        assertTrue(detail.getKey().getName().startsWith("heal_entire_org_"));
+    }
+
+    @Test
+    public void healsEveryConsumerAndReportsProgress() throws Exception {
+        List<String> uuids = new ArrayList<String>();
+        for (int i = 0; i < 120; i++) {
+            uuids.add("consumer" + i);
+            when(consumerCurator.getConsumer("consumer" + i)).thenReturn(new Consumer());
+        }
+        when(ownerCurator.getConsumerUuids("owner1")).thenReturn(uuids);
+        when(consumerCurator.getConsumer("consumer7"))
+            .thenThrow(new RuntimeException("gone"));
+
+        job.execute(ctx);
+
+        verify(entitler, times(119)).bindByProducts(any(AutobindData.class), eq(true));
+        // One progress update and one batch of events per partition of 50
+        verify(jobCurator, times(3)).updateResult(eq(detail.getKey().getName()),
+            anyString());
+        verify(sink, times(3)).sendEvents();
+        verify(ctx).setResult("Processed 120 of 120 consumers, 1 failed.");
+    }
+
+    @Test
+    public void noConsumers() throws Exception {
+        when(ownerCurator.getConsumerUuids("owner1")).thenReturn(new ArrayList<String>());
+
+        job.execute(ctx);
+
+        verifyZeroInteractions(entitler);
+        verify(ctx).setResult("Processed 0 of 0 consumers, 0 failed.");
+    }
+}
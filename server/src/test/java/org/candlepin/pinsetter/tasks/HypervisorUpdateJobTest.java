@@ -21,19 +21,24 @@ import static org.mockito.Mockito.*;
 import org.candlepin.auth.Principal;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.GuestId;
 import org.candlepin.model.HypervisorId;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.model.VirtConsumerMap;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.resource.ConsumerResource;
+import org.candlepin.resource.util.GuestIdReconciler;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -48,15 +53,19 @@ public class HypervisorUpdateJobTest {
     private OwnerCurator ownerCurator;
     private ConsumerCurator consumerCurator;
     private ConsumerResource consumerResource;
-
+    private GuestIdReconciler guestIdReconciler;
 
     @Before
+    @SuppressWarnings("unchecked")
     public void init() {
         owner = mock(Owner.class);
         principal = mock(Principal.class);
         ownerCurator = mock(OwnerCurator.class);
         consumerCurator = mock(ConsumerCurator.class);
         consumerResource = mock(ConsumerResource.class);
+        guestIdReconciler = mock(GuestIdReconciler.class);
+        when(guestIdReconciler.reconcile(anyMap(), any(VirtConsumerMap.class),
+            any(VirtConsumerMap.class))).thenReturn(new GuestIdReconciler.Result());
         when(owner.getKey()).thenReturn("joe");
         when(principal.getUsername()).thenReturn("joe user");
 
@@ -88,7 +97,8 @@ public class HypervisorUpdateJobTest {
         when(consumerCurator.getHostConsumersMap(eq(owner), any(Set.class)))
             .thenReturn(new VirtConsumerMap());
 
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            guestIdReconciler);
         job.execute(ctx);
         verify(consumerResource).create(any(Consumer.class),
                                         eq(principal),
@@ -112,12 +122,46 @@ public class HypervisorUpdateJobTest {
         JobExecutionContext ctx = mock(JobExecutionContext.class);
         when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
 
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            guestIdReconciler);
         job.execute(ctx);
         verify(consumerResource).performConsumerUpdates(any(Consumer.class), eq(hypervisor),
                 any(VirtConsumerMap.class), any(VirtConsumerMap.class), eq(false));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void hypervisorUpdateExecReconcilesGuestIds() throws JobExecutionException {
+        when(ownerCurator.lookupByKey(eq("joe"))).thenReturn(owner);
+        Consumer hypervisor = new Consumer();
+        String hypervisorId = "uuid_999";
+        hypervisor.setHypervisorId(new HypervisorId(hypervisorId));
+        VirtConsumerMap vcm = new VirtConsumerMap();
+        vcm.add(hypervisorId, hypervisor);
+        when(consumerCurator.getHostConsumersMap(eq(owner), any(Set.class))).thenReturn(vcm);
+
+        JobDetail detail = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal);
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
+
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            guestIdReconciler);
+        job.execute(ctx);
+
+        // Guest IDs are left out of the per host update and reconciled for all hosts at once:
+        ArgumentCaptor<Consumer> incoming = ArgumentCaptor.forClass(Consumer.class);
+        verify(consumerResource).performConsumerUpdates(incoming.capture(), eq(hypervisor),
+                any(VirtConsumerMap.class), any(VirtConsumerMap.class), eq(false));
+        assertNull(incoming.getValue().getGuestIds());
+
+        ArgumentCaptor<Map> reported = ArgumentCaptor.forClass(Map.class);
+        verify(guestIdReconciler).reconcile(reported.capture(), any(VirtConsumerMap.class),
+                any(VirtConsumerMap.class));
+        List<GuestId> guestIds = (List<GuestId>) reported.getValue().get(hypervisor);
+        assertEquals(1, guestIds.size());
+        assertEquals("guestId_1_999", guestIds.get(0).getGuestId());
+    }
+
     @Test
     public void hypervisorUpdateExecCreateNoHypervisorId() throws JobExecutionException {
         when(ownerCurator.lookupByKey(eq("joe"))).thenReturn(owner);
@@ -133,7 +177,8 @@ public class HypervisorUpdateJobTest {
         JobExecutionContext ctx = mock(JobExecutionContext.class);
         when(ctx.getMergedJobDataMap()).thenReturn(detail.getJobDataMap());
 
-        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource);
+        HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator, consumerResource,
+            guestIdReconciler);
         job.execute(ctx);
         verify(consumerResource, never()).create(any(Consumer.class),
                                         any(Principal.class),
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.mockito.Mockito.*;
+
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * PoolConsumptionRepairJobTest
+ */
+public class PoolConsumptionRepairJobTest {
+
+    @Test
+    public void recalculatesListedPools() throws Exception {
+        PoolCurator curator = mock(PoolCurator.class);
+        Pool wrong = new Pool();
+        when(curator.listIdsWithWrongConsumption()).thenReturn(Arrays.asList("wrong", "gone"));
+        when(curator.find("wrong")).thenReturn(wrong);
+        when(curator.find("gone")).thenReturn(null);
+
+        new PoolConsumptionRepairJob(curator).execute(null);
+
+        verify(curator).recalculateConsumed(wrong);
+        verify(curator, never()).recalculateConsumed(null);
+    }
+}
@@ -19,6 +19,7 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.common.config.Configuration;
+import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerType;
@@ -96,7 +97,7 @@ public class AutobindRulesTest {
         when(rulesCurator.getUpdated()).thenReturn(
             TestDateUtil.date(2010, 1, 1));
 
-        JsRunner jsRules = new JsRunnerProvider(rulesCurator).get();
+        JsRunner jsRules = new JsRunnerProvider(rulesCurator, new CandlepinCommonTestConfig()).get();
         autobindRules = new AutobindRules(jsRules, productCache);
 
         owner = new Owner();
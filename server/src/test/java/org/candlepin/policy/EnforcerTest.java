@@ -22,6 +22,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.common.config.Configuration;
+import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
@@ -116,7 +117,7 @@ public class EnforcerTest extends DatabaseTestFixture {
         when(rulesCurator.getRules()).thenReturn(rules);
         when(rulesCurator.getUpdated()).thenReturn(TestDateUtil.date(2010, 1, 1));
 
-        JsRunner jsRules = new JsRunnerProvider(rulesCurator).get();
+        JsRunner jsRules = new JsRunnerProvider(rulesCurator, new CandlepinCommonTestConfig()).get();
 
         enforcer = new EntitlementRules(new DateSourceForTesting(2010, 1, 1),
             jsRules, productCache, i18n, config, consumerCurator, poolCurator);
@@ -277,6 +278,7 @@ public class EnforcerTest extends DatabaseTestFixture {
             p.getEntitlements().add(e);
             poolCurator.merge(p);
         }
+        poolCurator.adjustConsumed(p, currentMembers, 0);
         poolCurator.refresh(p);
         return p;
     }
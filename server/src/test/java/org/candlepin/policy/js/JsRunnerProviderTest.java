@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Rules;
+import org.candlepin.model.RulesCurator;
+import org.candlepin.util.Util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+
+import java.io.InputStream;
+import java.util.Date;
+
+/**
+ * JsRunnerProviderTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class JsRunnerProviderTest {
+
+    @Mock
+    private RulesCurator rulesCuratorMock;
+    private JsRunnerProvider provider;
+
+    @Before
+    public void setupTest() {
+        InputStream is = this.getClass().getResourceAsStream(
+            RulesCurator.DEFAULT_RULES_FILE);
+        Rules rules = new Rules(Util.readFile(is));
+        when(rulesCuratorMock.getUpdated()).thenReturn(new Date());
+        when(rulesCuratorMock.getRules()).thenReturn(rules);
+        when(rulesCuratorMock.getLocalRevision()).thenReturn(0L);
+
+        provider = new JsRunnerProvider(rulesCuratorMock, new CandlepinCommonTestConfig());
+    }
+
+    @Test
+    public void doesNotCheckDatabaseOnEveryGet() {
+        for (int i = 0; i < 10; i++) {
+            provider.get();
+        }
+        // Only the initial compile looked at the timestamp
+        verify(rulesCuratorMock, times(1)).getUpdated();
+    }
+
+    @Test
+    public void zeroIntervalChecksDatabaseOnEveryGet() {
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.RULES_CHECK_INTERVAL, "0");
+        provider = new JsRunnerProvider(rulesCuratorMock, config);
+
+        for (int i = 0; i < 10; i++) {
+            provider.get();
+        }
+        // Setup's provider, then this one's initial compile and every get
+        verify(rulesCuratorMock, times(12)).getUpdated();
+    }
+
+    @Test
+    public void localRulesChangeTriggersRecompile() {
+        JsRunner before = provider.get();
+        before.init("compliance_name_space");
+
+        when(rulesCuratorMock.getLocalRevision()).thenReturn(1L);
+        when(rulesCuratorMock.getUpdated()).thenReturn(new Date(System.currentTimeMillis() + 1000));
+
+        JsRunner after = provider.get();
+        after.init("compliance_name_space");
+
+        verify(rulesCuratorMock, times(2)).getUpdated();
+        verify(rulesCuratorMock, times(2)).getRules();
+        assertTrue(after.supportsNativeContext());
+    }
+
+    @Test
+    public void scopesAreClearedAndReused() {
+        Rules rules = rulesCuratorMock.getRules();
+        RulesScopePool pool = compile(rules.getRules());
+
+        Scriptable scope = pool.borrowScope();
+        scope.put("leftover", scope, "value");
+        pool.returnScope(scope);
+
+        Scriptable reused = pool.borrowScope();
+        assertSame(scope, reused);
+        assertFalse(reused.has("leftover", reused));
+    }
+
+    @Test
+    public void functionHandlesAreCached() {
+        RulesScopePool pool = compile(rulesCuratorMock.getRules().getRules());
+
+        Function first = pool.getFunction("compliance_name_space", "get_status");
+        assertNotNull(first);
+        assertSame(first, pool.getFunction("compliance_name_space", "get_status"));
+        assertNull(pool.getFunction("compliance_name_space", "no_such_function"));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void missingMethodStillReported() throws Exception {
+        JsRunner runner = provider.get();
+        runner.init("compliance_name_space");
+        runner.invokeMethod("no_such_function");
+    }
+
+    private RulesScopePool compile(String rules) {
+        Context cx = Context.enter();
+        try {
+            Scriptable scope = cx.initStandardObjects(null, true);
+            cx.compileString(rules, "rules", 1, null).exec(cx, scope);
+            return new RulesScopePool(scope, new Date(), 2);
+        }
+        finally {
+            Context.exit();
+        }
+    }
+}
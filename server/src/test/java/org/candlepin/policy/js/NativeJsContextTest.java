@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.IdentityCertificate;
+import org.candlepin.policy.ValidationResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NativeJsContextTest
+ */
+public class NativeJsContextTest {
+
+    private RulesObjectMapper objMapper = RulesObjectMapper.instance();
+    private Scriptable scope;
+
+    @Before
+    public void setUp() {
+        Context cx = Context.enter();
+        try {
+            scope = cx.initStandardObjects();
+        }
+        finally {
+            Context.exit();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        scope = null;
+    }
+
+    private Object eval(String script) {
+        Context cx = Context.enter();
+        try {
+            return cx.evaluateString(scope, script, "test", 1, null);
+        }
+        finally {
+            Context.exit();
+        }
+    }
+
+    @Test
+    public void contextArgsAvailableAsObjects() {
+        Consumer c = new Consumer();
+        c.setName("native");
+        c.setType(new ConsumerType(ConsumerType.ConsumerTypeEnum.SYSTEM));
+        c.setFact("cpu.cpu_socket(s)", "4");
+
+        NativeJsContext context = new NativeJsContext(objMapper);
+        context.put("consumer", c);
+        context.put("quantity", 3);
+        context.applyTo(scope);
+
+        assertEquals("native", Context.toString(eval("native_context.consumer.name")));
+        assertEquals("4", Context.toString(
+            eval("native_context.consumer.facts['cpu.cpu_socket(s)']")));
+        assertEquals(3.0, Context.toNumber(eval("native_context.quantity")), 0);
+        assertEquals("undefined", Context.toString(eval("typeof json_context")));
+    }
+
+    @Test
+    public void filtersStillApply() {
+        Consumer c = new Consumer();
+        IdentityCertificate cert = new IdentityCertificate();
+        cert.setCert("FILTERMEPLEASE");
+        cert.setKey("KEY");
+        c.setIdCert(cert);
+
+        NativeJsContext context = new NativeJsContext(objMapper);
+        context.put("consumer", c);
+        context.applyTo(scope);
+
+        assertEquals("undefined",
+            Context.toString(eval("typeof native_context.consumer.idCert")));
+    }
+
+    @Test
+    public void jsonContextClearsNativeContext() {
+        NativeJsContext nativeContext = new NativeJsContext(objMapper);
+        nativeContext.put("quantity", 1);
+        nativeContext.applyTo(scope);
+
+        JsonJsContext jsonContext = new JsonJsContext(objMapper);
+        jsonContext.put("quantity", 1);
+        jsonContext.applyTo(scope);
+
+        assertEquals("undefined", Context.toString(eval("typeof native_context")));
+        assertEquals("string", Context.toString(eval("typeof json_context")));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void toJavaMatchesStringify() {
+        Object result = eval("({ name: 'x', count: 2, ratio: 1.5, skip: function() {}, " +
+            "missing: undefined, when: new Date(1000), list: [1, 'two', null] })");
+
+        Map<String, Object> map = (Map<String, Object>) NativeJsContext.toJava(result);
+        assertEquals("x", map.get("name"));
+        assertEquals(2, map.get("count"));
+        assertEquals(1.5, map.get("ratio"));
+        assertFalse(map.containsKey("skip"));
+        assertFalse(map.containsKey("missing"));
+        assertEquals(new Date(1000), map.get("when"));
+
+        List<Object> list = (List<Object>) map.get("list");
+        assertEquals(3, list.size());
+        assertEquals(1, list.get(0));
+        assertEquals("two", list.get(1));
+        assertNull(list.get(2));
+    }
+
+    @Test
+    public void fromRulesResultHandlesBothForms() {
+        String script = "({ errors: ['rulefailed.consumer.type.mismatch'], warnings: [], " +
+            "addError: function(m) { this.errors.push(m); } })";
+        ValidationResult fromNative = objMapper.fromRulesResult(eval(script),
+            ValidationResult.class);
+        ValidationResult fromJson = objMapper.fromRulesResult(
+            Context.toString(eval("JSON.stringify(" + script + ")")),
+            ValidationResult.class);
+
+        assertEquals(1, fromNative.getErrors().size());
+        assertEquals(fromJson.getErrors().get(0).getResourceKey(),
+            fromNative.getErrors().get(0).getResourceKey());
+        assertFalse(fromNative.hasWarnings());
+    }
+}
@@ -17,6 +17,7 @@ package org.candlepin.policy.js.activationkey;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Rules;
 import org.candlepin.model.RulesCurator;
@@ -60,7 +61,7 @@ public class ActivationKeyRulesTest {
         Rules rules = new Rules(Util.readFile(is));
         when(rulesCuratorMock.getUpdated()).thenReturn(new Date());
         when(rulesCuratorMock.getRules()).thenReturn(rules);
-        provider = new JsRunnerProvider(rulesCuratorMock);
+        provider = new JsRunnerProvider(rulesCuratorMock, new CandlepinCommonTestConfig());
         actKeyRules = new ActivationKeyRules(provider.get(), i18n);
     }
 
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.test.TestUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * ComplianceCacheTest
+ */
+public class ComplianceCacheTest {
+
+    private ComplianceCache cache;
+    private Consumer consumer;
+    private Date now;
+    private Date poolEnd;
+
+    @Before
+    public void setUp() {
+        cache = new ComplianceCache(new CandlepinCommonTestConfig());
+        now = new Date();
+        poolEnd = TestUtil.createDate(2100, 1, 1);
+
+        Owner owner = new Owner("test");
+        consumer = TestUtil.createConsumer(owner);
+        consumer.setUuid("consumer");
+        Pool pool = TestUtil.createPool(owner, TestUtil.createProduct());
+        pool.setStartDate(TestUtil.createDate(2000, 1, 1));
+        pool.setEndDate(poolEnd);
+        TestUtil.createEntitlement(owner, consumer, pool, null);
+    }
+
+    private ComplianceStatus status(Date date) {
+        ComplianceStatus status = new ComplianceStatus(date);
+        status.addNonCompliantProduct("product");
+        return status;
+    }
+
+    @Test
+    public void hitWhenFingerprintMatches() {
+        cache.put(consumer, "abc", now, status(now));
+
+        Date later = new Date(now.getTime() + 1000);
+        ComplianceStatus cached = cache.get(consumer.getUuid(), "abc", later);
+        assertNotNull(cached);
+        assertEquals(later, cached.getDate());
+        assertTrue(cached.getNonCompliantProducts().contains("product"));
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void missWhenFingerprintChanges() {
+        cache.put(consumer, "abc", now, status(now));
+
+        assertNull(cache.get(consumer.getUuid(), "def", now));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void missOnceAnEntitlementDatePasses() {
+        cache.put(consumer, "abc", now, status(now));
+
+        assertNull(cache.get(consumer.getUuid(), "abc", poolEnd));
+        assertNull(cache.get(consumer.getUuid(), "abc", new Date(now.getTime() - 1000)));
+    }
+
+    @Test
+    public void noExpiryWithoutFutureEntitlementDates() {
+        for (Entitlement ent : consumer.getEntitlements()) {
+            ent.setEndDateOverride(new Date(now.getTime() - 1000));
+        }
+        cache.put(consumer, "abc", now, status(now));
+
+        assertNotNull(cache.get(consumer.getUuid(), "abc", TestUtil.createDate(2200, 1, 1)));
+    }
+
+    @Test
+    public void invalidateDropsEntry() {
+        cache.put(consumer, "abc", now, status(now));
+        cache.invalidate(consumer.getUuid());
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(consumer.getUuid(), "abc", now));
+    }
+
+    @Test
+    public void hitRatio() {
+        cache.put(consumer, "abc", now, status(now));
+        cache.get(consumer.getUuid(), "abc", now);
+        cache.get(consumer.getUuid(), "abc", now);
+        cache.get(consumer.getUuid(), "abc", now);
+        cache.get("unknown", "abc", now);
+
+        assertEquals(0.75, cache.getHitRatio(), 0.0001);
+    }
+}
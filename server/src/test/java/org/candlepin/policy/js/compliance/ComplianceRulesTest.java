@@ -19,6 +19,7 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.audit.EventSink;
+import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ConsumerInstalledProduct;
@@ -97,11 +98,12 @@ public class ComplianceRulesTest {
         Rules rules = new Rules(Util.readFile(is));
         when(rulesCuratorMock.getUpdated()).thenReturn(new Date());
         when(rulesCuratorMock.getRules()).thenReturn(rules);
-        provider = new JsRunnerProvider(rulesCuratorMock);
+        provider = new JsRunnerProvider(rulesCuratorMock, new CandlepinCommonTestConfig());
         when(eventSinkProvider.get()).thenReturn(eventSink);
         compliance = new ComplianceRules(provider.get(),
             entCurator, new StatusReasonMessageGenerator(i18n), eventSinkProvider,
-            consumerCurator);
+            consumerCurator, new ComplianceCache(new CandlepinCommonTestConfig()),
+            new ComplianceWorkerPool(new CandlepinCommonTestConfig()));
         owner = new Owner("test");
         activeGuestAttrs = new HashMap<String, String>();
         activeGuestAttrs.put("virtWhoType", "libvirt");
@@ -117,7 +119,8 @@ public class ComplianceRulesTest {
         JsRunner mockRunner = mock(JsRunner.class);
         compliance = new ComplianceRules(mockRunner,
             entCurator, new StatusReasonMessageGenerator(i18n), eventSinkProvider,
-            consumerCurator);
+            consumerCurator, new ComplianceCache(new CandlepinCommonTestConfig()),
+            new ComplianceWorkerPool(new CandlepinCommonTestConfig()));
         when(mockRunner.runJsFunction(any(Class.class), eq("get_status"),
             any(JsContext.class))).thenReturn("{\"unknown\": \"thing\"}");
         Consumer c = mockConsumerWithTwoProductsAndNoEntitlements();
@@ -277,6 +280,48 @@ public class ComplianceRulesTest {
         assertEquals(0, status.getPartiallyCompliantProducts().size());
     }
 
+    @Test
+    public void currentStatusServedFromCacheUntilConsumerChanges() {
+        JsRunner mockRunner = mock(JsRunner.class);
+        compliance = new ComplianceRules(mockRunner,
+            entCurator, new StatusReasonMessageGenerator(i18n), eventSinkProvider,
+            consumerCurator, new ComplianceCache(new CandlepinCommonTestConfig()),
+            new ComplianceWorkerPool(new CandlepinCommonTestConfig()));
+        when(mockRunner.runJsFunction(any(Class.class), eq("get_status"),
+            any(JsContext.class))).thenReturn("{\"status\": \"valid\"}");
+        Consumer c = mockConsumerWithTwoProductsAndNoEntitlements();
+        c.setUuid("cached");
+
+        compliance.getStatus(c);
+        ComplianceStatus status = compliance.getStatus(c);
+        assertEquals(ComplianceStatus.GREEN, status.getStatus());
+        verify(mockRunner, times(1)).runJsFunction(any(Class.class), eq("get_status"),
+            any(JsContext.class));
+
+        c.setFact("cpu.cpu_socket(s)", "4");
+        compliance.getStatus(c);
+        verify(mockRunner, times(2)).runJsFunction(any(Class.class), eq("get_status"),
+            any(JsContext.class));
+    }
+
+    @Test
+    public void bulkStatusMatchesSingleStatus() {
+        Consumer full = mockFullyEntitledConsumer();
+        full.setUuid("full");
+        Consumer none = mockConsumerWithTwoProductsAndNoEntitlements();
+        none.setUuid("none");
+
+        Map<String, ComplianceStatus> results =
+            compliance.getStatus(Arrays.asList(full, none));
+
+        assertEquals(2, results.size());
+        assertEquals(ComplianceStatus.GREEN, results.get("full").getStatus());
+        assertEquals(2, results.get("full").getCompliantProducts().size());
+        assertEquals(ComplianceStatus.RED, results.get("none").getStatus());
+        assertEquals(2, results.get("none").getNonCompliantProducts().size());
+        verify(consumerCurator, times(2)).update(any(Consumer.class));
+    }
+
     @Test
     public void testArchitectureMismatch() {
         Consumer c = mockConsumer(PRODUCT_1, PRODUCT_2);
@@ -26,7 +26,9 @@ import org.candlepin.model.Pool;
 import org.candlepin.model.PoolAttribute;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductAttribute;
+import org.candlepin.policy.ValidationError;
 import org.candlepin.policy.ValidationResult;
+import org.candlepin.policy.ValidationWarning;
 import org.candlepin.policy.js.entitlement.Enforcer.CallerType;
 import org.candlepin.test.TestUtil;
 
@@ -36,6 +38,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 public class PreEntitlementRulesTest extends EntitlementRulesTestFixture {
 
@@ -807,4 +810,56 @@ public class PreEntitlementRulesTest extends EntitlementRulesTestFixture {
         assertEquals(1, filtered.size());
         assertTrue(filtered.contains(pool));
     }
+
+    @Test
+    public void batchMatchesSinglePoolValidation() {
+        Product consumed = new Product("consumed", "Already consumed");
+        Pool consumedPool = createPool(owner, consumed);
+        consumer.addEntitlement(new Entitlement(consumedPool, consumer, 1));
+
+        Product cores = new Product("cores", "Needs more cores");
+        cores.addAttribute(new ProductAttribute("cores", "10"));
+        Pool coresPool = createPool(owner, cores);
+
+        Product plain = new Product("plain", "No restrictions");
+        Pool plainPool = createPool(owner, plain);
+
+        consumer.setFacts(new HashMap<String, String>());
+        consumer.setFact("cpu.cpu_socket(s)", "2");
+        consumer.setFact("cpu.core(s)_per_socket", "10");
+
+        when(this.prodAdapter.getProductById("consumed")).thenReturn(consumed);
+        when(this.prodAdapter.getProductById("cores")).thenReturn(cores);
+        when(this.prodAdapter.getProductById("plain")).thenReturn(plain);
+
+        List<Pool> pools = new LinkedList<Pool>();
+        pools.add(consumedPool);
+        pools.add(coresPool);
+        pools.add(plainPool);
+        Map<String, ValidationResult> results = enforcer.preEntitlement(consumer, pools,
+            1, CallerType.BEST_POOLS);
+
+        assertEquals(3, results.size());
+        for (Pool pool : pools) {
+            ValidationResult single = enforcer.preEntitlement(consumer, pool, 1,
+                CallerType.BEST_POOLS);
+            ValidationResult batched = results.get(pool.getId());
+            assertEquals(messageKeys(single), messageKeys(batched));
+        }
+        assertTrue(results.get(consumedPool.getId()).hasErrors());
+        assertTrue(results.get(coresPool.getId()).hasWarnings());
+        assertTrue(results.get(plainPool.getId()).isSuccessful());
+        assertFalse(results.get(plainPool.getId()).hasWarnings());
+    }
+
+    private List<String> messageKeys(ValidationResult result) {
+        List<String> keys = new LinkedList<String>();
+        for (ValidationError error : result.getErrors()) {
+            keys.add(error.getResourceKey());
+        }
+        for (ValidationWarning warning : result.getWarnings()) {
+            keys.add(warning.getResourceKey());
+        }
+        return keys;
+    }
 }
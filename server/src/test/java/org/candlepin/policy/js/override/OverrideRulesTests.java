@@ -17,6 +17,7 @@ package org.candlepin.policy.js.override;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.model.Rules;
 import org.candlepin.model.RulesCurator;
 import org.candlepin.policy.js.JsRunnerProvider;
@@ -50,7 +51,7 @@ public class OverrideRulesTests {
         when(rulesCuratorMock.getUpdated()).thenReturn(new Date());
         when(rulesCuratorMock.getRules()).thenReturn(rules);
 
-        provider = new JsRunnerProvider(rulesCuratorMock);
+        provider = new JsRunnerProvider(rulesCuratorMock, new CandlepinCommonTestConfig());
         overrideRules = new OverrideRules(provider.get());
     }
 
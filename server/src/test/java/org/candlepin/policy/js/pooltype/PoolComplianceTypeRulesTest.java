@@ -17,6 +17,7 @@ package org.candlepin.policy.js.pooltype;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.model.EntitlementCurator;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Rules;
@@ -54,7 +55,7 @@ public class PoolComplianceTypeRulesTest {
         Rules rules = new Rules(Util.readFile(is));
         when(rulesCuratorMock.getUpdated()).thenReturn(new Date());
         when(rulesCuratorMock.getRules()).thenReturn(rules);
-        provider = new JsRunnerProvider(rulesCuratorMock);
+        provider = new JsRunnerProvider(rulesCuratorMock, new CandlepinCommonTestConfig());
         poolTypeRules = new PoolComplianceTypeRules(provider.get());
     }
 
@@ -17,6 +17,7 @@ package org.candlepin.policy.js.quantity;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.when;
 
+import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCertificate;
@@ -78,7 +79,7 @@ public class QuantityRulesTest {
         Rules rules = new Rules(Util.readFile(is));
         when(rulesCuratorMock.getUpdated()).thenReturn(new Date());
         when(rulesCuratorMock.getRules()).thenReturn(rules);
-        provider = new JsRunnerProvider(rulesCuratorMock);
+        provider = new JsRunnerProvider(rulesCuratorMock, new CandlepinCommonTestConfig());
         quantityRules = new QuantityRules(provider.get());
 
         owner = new Owner("Test Owner " + TestUtil.randomInt());
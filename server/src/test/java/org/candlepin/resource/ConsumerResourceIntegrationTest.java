@@ -68,6 +68,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
@@ -285,7 +286,7 @@ public class ConsumerResourceIntegrationTest extends DatabaseTestFixture {
     }
 
     @Test
-    public void testReadOnlyUsersCanGenerateExports() {
+    public void testReadOnlyUsersCanGenerateExports() throws IOException {
         // add an identity certificate for the export
         IdentityCertificate idCert = TestUtil.createIdCert();
         idCert.setId(null); // needs to be null to persist
@@ -300,7 +301,7 @@ public class ConsumerResourceIntegrationTest extends DatabaseTestFixture {
         setupPrincipal(owner, Access.READ_ONLY);
         securityInterceptor.enable();
         consumerResource.exportData(mock(HttpServletResponse.class),
-            consumer.getUuid(), null, null, null);
+            consumer.getUuid(), null, null, null).write(new ByteArrayOutputStream());
         // if no exception, we're good
     }
 
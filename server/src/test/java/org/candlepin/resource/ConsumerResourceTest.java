@@ -84,12 +84,15 @@ import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 /**
@@ -136,29 +139,52 @@ public class ConsumerResourceTest {
             .thenReturn(eventBuilder);
     }
 
-    @Test
-    public void testGetCertSerials() {
-        Consumer consumer = createConsumer();
-        List<EntitlementCertificate> certificates = createEntitlementCertificates();
-
-        when(mockedEntitlementCertServiceAdapter.listForConsumer(consumer))
-            .thenReturn(certificates);
+    private ConsumerResource createCertSerialsResource(Consumer consumer) {
+        when(mockedEntitlementCertServiceAdapter.listSerialIdsForConsumer(consumer))
+            .thenReturn(Arrays.asList(1L, 2L, 3L));
         when(mockedConsumerCurator.verifyAndLookupConsumer(consumer.getUuid())).thenReturn(
             consumer);
-        when(mockedEntitlementCurator.listByConsumer(consumer)).thenReturn(
+        when(mockedEntitlementCurator.listDirtyByConsumer(consumer)).thenReturn(
             new ArrayList<Entitlement>());
 
-        ConsumerResource consumerResource = new ConsumerResource(
+        return new ConsumerResource(
             mockedConsumerCurator, null, null, null, mockedEntitlementCurator, null,
             mockedEntitlementCertServiceAdapter, null, null, null, null, null,
             null, null, mockedPoolManager, null, null, null, null, null,
             null, null, null, new CandlepinCommonTestConfig(), null, null, null,
             consumerBindUtil);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetCertSerials() {
+        Consumer consumer = createConsumer();
+        ConsumerResource consumerResource = createCertSerialsResource(consumer);
+        Request request = mock(Request.class);
 
-        List<CertificateSerialDto> serials = consumerResource
-            .getEntitlementCertificateSerials(consumer.getUuid());
+        Response response = consumerResource
+            .getEntitlementCertificateSerials(consumer.getUuid(), request);
 
-        verifyCertificateSerialNumbers(serials);
+        assertEquals(200, response.getStatus());
+        assertNotNull(response.getMetadata().getFirst("ETag"));
+        verifyCertificateSerialNumbers((List<CertificateSerialDto>) response.getEntity());
+        verify(mockedEntitlementCertServiceAdapter, never()).listForConsumer(consumer);
+    }
+
+    @Test
+    public void testGetCertSerialsNotModified() {
+        Consumer consumer = createConsumer();
+        ConsumerResource consumerResource = createCertSerialsResource(consumer);
+        Request request = mock(Request.class);
+        when(request.evaluatePreconditions(any(EntityTag.class)))
+            .thenReturn(Response.notModified());
+
+        Response response = consumerResource
+            .getEntitlementCertificateSerials(consumer.getUuid(), request);
+
+        assertEquals(304, response.getStatus());
+        assertNull(response.getEntity());
+        assertNotNull(response.getMetadata().getFirst("ETag"));
     }
 
     @Test (expected = RuntimeException.class)
@@ -184,7 +210,7 @@ public class ConsumerResourceTest {
             mockedEntitlementCertServiceAdapter, null, null,
             new CandlepinCommonTestConfig(), null, null,
             mockedEntitlementCurator, mockedConsumerCurator, null, null, null,
-            mockedActivationKeyRules);
+            mockedActivationKeyRules, null);
 
         ConsumerResource consumerResource = new ConsumerResource(
             mockedConsumerCurator, null, null, null, mockedEntitlementCurator, null,
@@ -202,13 +228,6 @@ public class ConsumerResourceTest {
         assertTrue(serials.get(0).getSerial() > 0);
     }
 
-    private List<EntitlementCertificate> createEntitlementCertificates() {
-        return Arrays.asList(new EntitlementCertificate[]{
-            createEntitlementCertificate("key1", "cert1"),
-            createEntitlementCertificate("key2", "cert2"),
-            createEntitlementCertificate("key3", "cert3") });
-    }
-
 
     /**
      * Test just verifies that entitler is called only once and it doesn't need
@@ -515,11 +534,13 @@ public class ConsumerResourceTest {
         List<String> uuids = new ArrayList<String>();
         uuids.add("1");
         uuids.add("2");
-        when(mockedConsumerCurator.findByUuids(eq(uuids))).thenReturn(consumers);
+        when(mockedConsumerCurator.findByUuidsForCompliance(eq(uuids)))
+            .thenReturn(consumers);
 
-        ComplianceStatus status = new ComplianceStatus();
-        when(mockedComplianceRules.getStatus(any(Consumer.class), any(Date.class)))
-            .thenReturn(status);
+        Map<String, ComplianceStatus> statuses = new HashMap<String, ComplianceStatus>();
+        statuses.put("1", new ComplianceStatus());
+        statuses.put("2", new ComplianceStatus());
+        when(mockedComplianceRules.getStatus(eq(consumers))).thenReturn(statuses);
 
         ConsumerResource cr = new ConsumerResource(mockedConsumerCurator, null,
             null, null, null, null, null, i18n, null, null, null,
@@ -843,13 +843,13 @@ public class ConsumerResourceUpdateTest {
         ConsumerType ct = new ConsumerType();
         ct.setManifest(true);
         c.setType(ct);
-        assertEquals(1, c.getCheckIns().size());
+        assertEquals(now, c.getLastCheckin());
 
         Consumer updated = new Consumer();
         Date then = new Date(now.getTime() + 10000L);
         updated.setLastCheckin(then);
         resource.updateConsumer(c.getUuid(), updated);
-        assertEquals(2, c.getCheckIns().size());
+        verify(consumerCurator).updateLastCheckin(c, then);
     }
 
     private Consumer createConsumerWithGuests(String ... guestIds) {
@@ -27,11 +27,13 @@ import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.CrlGenerator;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.RevocationIndex;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.File;
-import java.security.cert.X509CRL;
 import java.util.HashMap;
 import java.util.List;
 
@@ -47,15 +49,25 @@ public class CrlResourceTest {
         CrlFileUtil fileutil = mock(CrlFileUtil.class);
         CertificateSerialCurator sercur = mock(CertificateSerialCurator.class);
         Configuration config = new ConfigForTesting();
-        X509CRL crl = mock(X509CRL.class);
-        when(fileutil.readCRLFile(any(File.class))).thenReturn(crl);
-        when(crlgen.removeEntries(eq(crl), any(List.class))).thenReturn(crl);
+        final RevocationIndex index = mock(RevocationIndex.class);
+        RevocationIndex updated = mock(RevocationIndex.class);
+        when(fileutil.updateCRLFile(any(File.class), any(CrlFileUtil.IndexUpdate.class)))
+            .thenAnswer(new Answer<RevocationIndex>() {
+                @Override
+                public RevocationIndex answer(InvocationOnMock invocation) throws Throwable {
+                    CrlFileUtil.IndexUpdate update =
+                        (CrlFileUtil.IndexUpdate) invocation.getArguments()[1];
+                    return update.apply(index);
+                }
+            });
+        when(crlgen.removeEntries(eq(index), any(List.class))).thenReturn(updated);
 
         CrlResource res = new CrlResource(crlgen, fileutil, config, sercur);
         String[] ids = {"10"};
         res.unrevoke(ids);
-        verify(crlgen, atLeastOnce()).removeEntries(eq(crl), any(List.class));
-        verify(fileutil, atLeastOnce()).writeCRLFile(any(File.class), eq(crl));
+        verify(crlgen, atLeastOnce()).removeEntries(eq(index), any(List.class));
+        verify(fileutil, atLeastOnce()).updateCRLFile(any(File.class),
+            any(CrlFileUtil.IndexUpdate.class));
     }
 
     private static class ConfigForTesting extends MapConfiguration {
@@ -35,6 +35,7 @@ import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
 import org.candlepin.model.ConsumerTypeCurator;
 import org.candlepin.model.DeletedConsumerCurator;
 import org.candlepin.model.GuestId;
+import org.candlepin.model.GuestIdCurator;
 import org.candlepin.model.IdentityCertificate;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
@@ -44,6 +45,7 @@ import org.candlepin.policy.js.compliance.ComplianceRules;
 import org.candlepin.policy.js.compliance.ComplianceStatus;
 import org.candlepin.resource.dto.HypervisorCheckInResult;
 import org.candlepin.resource.util.ConsumerBindUtil;
+import org.candlepin.resource.util.GuestIdReconciler;
 import org.candlepin.service.IdentityCertServiceAdapter;
 import org.candlepin.service.SubscriptionServiceAdapter;
 import org.candlepin.service.UserServiceAdapter;
@@ -111,6 +113,9 @@ public class HypervisorResourceTest {
     @Mock
     private EventBuilder consumerEventBuilder;
 
+    @Mock
+    private GuestIdCurator guestIdCurator;
+
     private ConsumerResource consumerResource;
 
     private I18n i18n;
@@ -132,7 +137,8 @@ public class HypervisorResourceTest {
             null, null, null, this.consumerBindUtil);
 
         hypervisorResource = new HypervisorResource(consumerResource,
-            consumerCurator, i18n, ownerCurator);
+            consumerCurator, i18n, ownerCurator, new GuestIdReconciler(guestIdCurator,
+            consumerResource, sink, eventFactory, complianceRules));
 
         // Ensure that we get the consumer that was passed in back from the create call.
         when(consumerCurator.create(any(Consumer.class))).thenAnswer(new Answer<Object>() {
@@ -238,6 +244,41 @@ public class HypervisorResourceTest {
         assertEquals("GUEST_B", c1.getGuestIds().get(0).getGuestId());
     }
 
+    @Test
+    public void hypervisorCheckInReportsFailureAfterGuestIdsWereUpdated() throws Exception {
+        Owner owner = new Owner("owner-id", "Owner Id");
+
+        Map<String, List<GuestId>> hostGuestMap = new HashMap<String, List<GuestId>>();
+        String hypervisorId = "test-host";
+        hostGuestMap.put(hypervisorId, Arrays.asList(new GuestId("GUEST_B")));
+
+        Owner o = new Owner("owner-id", "Owner ID");
+        o.setId("owner-id");
+        Consumer existing = new Consumer();
+        existing.setUuid("test-host");
+        existing.setOwner(o);
+        existing.addGuestId(new GuestId("GUEST_A"));
+
+        when(ownerCurator.lookupByKey(eq(owner.getKey()))).thenReturn(owner);
+        when(consumerCurator.getHostConsumersMap(any(Owner.class), any(Set.class)))
+            .thenReturn(mockHypervisorConsumerMap(hypervisorId, existing));
+        when(consumerCurator.getGuestConsumersMap(any(Owner.class), any(Set.class)))
+            .thenReturn(new VirtConsumerMap());
+        when(consumerCurator.getGuestsHostMap(any(Owner.class), any(Set.class)))
+            .thenReturn(new VirtConsumerMap());
+        when(complianceRules.getStatus(existing, null, false, false))
+            .thenThrow(new RuntimeException("Forced Exception."));
+
+        HypervisorCheckInResult result = hypervisorResource.hypervisorUpdate(hostGuestMap,
+            principal, owner.getKey(), true);
+
+        assertTrue(result.getUpdated().isEmpty());
+        assertEquals(1, result.getFailedUpdate().size());
+        assertEquals("test-host: Guest IDs were updated, but the check-in did not " +
+            "complete: Forced Exception.", result.getFailedUpdate().iterator().next());
+        assertEquals("GUEST_B", existing.getGuestIds().get(0).getGuestId());
+    }
+
     @Test
     public void hypervisorCheckInReportsFailuresOnCreateFailure() throws Exception {
         Owner owner = new Owner("admin");
@@ -838,6 +838,7 @@ public class OwnerResourceTest extends DatabaseTestFixture {
 
         this.entitlementCurator.create(e1);
         this.poolCurator.merge(e1.getPool());
+        this.poolCurator.adjustConsumed(pool, quantity, 0);
         this.poolCurator.refresh(pool);
 
         e1.setCreated(dateFormat.parse(date));
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.resource.util;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.audit.Event.Target;
+import org.candlepin.audit.Event.Type;
+import org.candlepin.audit.EventBuilder;
+import org.candlepin.audit.EventFactory;
+import org.candlepin.audit.EventSink;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.GuestIdCurator;
+import org.candlepin.model.VirtConsumerMap;
+import org.candlepin.policy.js.compliance.ComplianceRules;
+import org.candlepin.resource.ConsumerResource;
+
+import org.hibernate.collection.internal.PersistentBag;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GuestIdReconcilerTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class GuestIdReconcilerTest {
+
+    @Mock private GuestIdCurator guestIdCurator;
+    @Mock private ConsumerResource consumerResource;
+    @Mock private EventSink sink;
+    @Mock private EventFactory eventFactory;
+    @Mock private EventBuilder eventBuilder;
+    @Mock private ComplianceRules complianceRules;
+
+    private GuestIdReconciler reconciler;
+    private Map<Consumer, List<GuestId>> reported;
+
+    @Before
+    public void init() {
+        when(eventFactory.getEventBuilder(any(Target.class), any(Type.class)))
+            .thenReturn(eventBuilder);
+        when(eventBuilder.setOldEntity(any(Consumer.class))).thenReturn(eventBuilder);
+        when(eventBuilder.setNewEntity(any(Consumer.class))).thenReturn(eventBuilder);
+
+        reconciler = new GuestIdReconciler(guestIdCurator, consumerResource, sink, eventFactory,
+            complianceRules);
+        reported = new LinkedHashMap<Consumer, List<GuestId>>();
+    }
+
+    @Test
+    public void unchangedHostOnlyRecordsCheckIn() {
+        Consumer host = createHost("host", "GUEST_A", "GUEST_B");
+        reported.put(host, guestIds("guest_b", "guest_a"));
+
+        Set<Consumer> changed = reconcile();
+
+        assertTrue(changed.isEmpty());
+        assertEquals(2, host.getGuestIds().size());
+        assertEquals(1, host.getGuestIdCheckIns().size());
+        assertTrue(captureDeleted().isEmpty());
+        assertTrue(captureCreated().isEmpty());
+        verify(eventFactory, never()).getEventBuilder(any(Target.class), any(Type.class));
+        verify(complianceRules, never()).getStatus(any(Consumer.class), any(Date.class),
+            anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void reconcilesAddedRemovedAndChangedGuests() {
+        Consumer host = createHost("host", "GUEST_A", "GUEST_B", "GUEST_C");
+        GuestId storedB = host.getGuestIds().get(1);
+        GuestId storedC = host.getGuestIds().get(2);
+
+        Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("active", "1");
+        List<GuestId> guests = guestIds("guest_a", "GUEST_D");
+        guests.add(new GuestId("GUEST_B", null, attributes));
+        reported.put(host, guests);
+
+        Set<Consumer> changed = reconcile();
+
+        assertTrue(changed.contains(host));
+        Collection<GuestId> deleted = captureDeleted();
+        assertEquals(2, deleted.size());
+        assertTrue(deleted.contains(storedB));
+        assertTrue(deleted.contains(storedC));
+        Collection<GuestId> created = captureCreated();
+        assertEquals(2, created.size());
+        for (GuestId guestId : created) {
+            assertEquals(host, guestId.getConsumer());
+        }
+
+        assertEquals(3, host.getGuestIds().size());
+        assertEquals("GUEST_A", host.getGuestIds().get(0).getGuestId());
+        assertEquals("1", host.getGuestIds().get(2).getAttributes().get("active"));
+        verify(eventBuilder).setOldEntity(host);
+        verify(eventBuilder).setNewEntity(host);
+        verify(complianceRules).getStatus(host, null, false, false);
+    }
+
+    @Test
+    public void failedHostIsReportedAndOthersStillReconciled() {
+        Consumer failing = createHost("failing", "GUEST_A");
+        Consumer host = createHost("host");
+        reported.put(failing, guestIds("GUEST_B"));
+        reported.put(host, guestIds("GUEST_C"));
+        when(complianceRules.getStatus(failing, null, false, false))
+            .thenThrow(new RuntimeException("Forced Exception."));
+
+        GuestIdReconciler.Result result = reconciler.reconcile(reported, new VirtConsumerMap(),
+            new VirtConsumerMap());
+
+        assertEquals("Forced Exception.", result.getFailedHosts().get(failing));
+        assertFalse(result.getChangedHosts().contains(failing));
+        assertTrue(result.getChangedHosts().contains(host));
+        assertEquals("GUEST_C", host.getGuestIds().get(0).getGuestId());
+        verify(complianceRules).getStatus(host, null, false, false);
+
+        // The failure came after the guest IDs were written, they are kept
+        assertEquals(Collections.singleton(failing), result.getPartlyUpdatedHosts());
+        assertEquals("GUEST_B", failing.getGuestIds().get(0).getGuestId());
+    }
+
+    @Test
+    public void failedRevocationOfUnchangedHostIsNotAnUpdate() {
+        Consumer host = createHost("host", "GUEST_A");
+        Consumer guest = new Consumer();
+        reported.put(host, guestIds("GUEST_A"));
+        VirtConsumerMap guestConsumers = new VirtConsumerMap();
+        guestConsumers.add("guest_a", guest);
+        doThrow(new RuntimeException("Forced Exception."))
+            .when(consumerResource).revokeGuestEntitlementsNotMatchingHost(host, guest);
+
+        GuestIdReconciler.Result result = reconciler.reconcile(reported, guestConsumers,
+            new VirtConsumerMap());
+
+        assertEquals("Forced Exception.", result.getFailedHosts().get(host));
+        assertTrue(result.getPartlyUpdatedHosts().isEmpty());
+    }
+
+    @Test
+    public void revokesOnlyForGuestsThatMoved() {
+        Consumer host = createHost("host", "GUEST_A");
+        Consumer otherHost = createHost("other");
+        Consumer stayed = new Consumer();
+        Consumer moved = new Consumer();
+        Consumer unreported = new Consumer();
+        reported.put(host, guestIds("GUEST_A", "GUEST_B", "GUEST_C"));
+
+        VirtConsumerMap guestConsumers = new VirtConsumerMap();
+        guestConsumers.add("guest_a", stayed);
+        guestConsumers.add("guest_b", moved);
+        guestConsumers.add("guest_c", unreported);
+        VirtConsumerMap guestHosts = new VirtConsumerMap();
+        guestHosts.add("guest_a", host);
+        guestHosts.add("guest_b", otherHost);
+
+        reconciler.reconcile(reported, guestConsumers, guestHosts);
+
+        verify(consumerResource).revokeGuestEntitlementsNotMatchingHost(host, moved);
+        verify(consumerResource).revokeGuestEntitlementsNotMatchingHost(host, unreported);
+        verify(consumerResource, never()).revokeGuestEntitlementsNotMatchingHost(host, stayed);
+    }
+
+    @Test
+    public void loadsGuestListsNotInMemoryInBulk() {
+        Consumer host = createHost("host");
+        host.setId("host-id");
+        host.setGuestIds(new PersistentBag());
+        GuestId storedA = storedGuestId("GUEST_A", host);
+        GuestId storedB = storedGuestId("GUEST_B", host);
+        when(guestIdCurator.listByConsumers(anyCollectionOf(Consumer.class)))
+            .thenReturn(Arrays.asList(storedA, storedB));
+        reported.put(host, guestIds("GUEST_B", "GUEST_C"));
+
+        Set<Consumer> changed = reconcile();
+
+        assertTrue(changed.contains(host));
+        verify(guestIdCurator).listByConsumers(eq(Arrays.asList(host)));
+        Collection<GuestId> deleted = captureDeleted();
+        assertEquals(1, deleted.size());
+        assertSame(storedA, deleted.iterator().next());
+        Collection<GuestId> created = captureCreated();
+        assertEquals(1, created.size());
+        GuestId guestC = created.iterator().next();
+        assertEquals("GUEST_C", guestC.getGuestId());
+        assertEquals(host, guestC.getConsumer());
+    }
+
+    private Set<Consumer> reconcile() {
+        GuestIdReconciler.Result result = reconciler.reconcile(reported, new VirtConsumerMap(),
+            new VirtConsumerMap());
+        assertTrue(result.getFailedHosts().isEmpty());
+        return result.getChangedHosts();
+    }
+
+    private Consumer createHost(String name, String... guestIds) {
+        Consumer host = new Consumer();
+        host.setName(name);
+        for (String guestId : guestIds) {
+            host.addGuestId(storedGuestId(guestId, host));
+        }
+        return host;
+    }
+
+    private GuestId storedGuestId(String guestId, Consumer host) {
+        GuestId stored = new GuestId(guestId, host);
+        stored.setId("id-" + guestId);
+        return stored;
+    }
+
+    private List<GuestId> guestIds(String... guestIds) {
+        List<GuestId> result = new ArrayList<GuestId>();
+        for (String guestId : guestIds) {
+            result.add(new GuestId(guestId));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<GuestId> captureDeleted() {
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(guestIdCurator).deleteAll(captor.capture());
+        return captor.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<GuestId> captureCreated() {
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(guestIdCurator).createAll(captor.capture());
+        return captor.getValue();
+    }
+}
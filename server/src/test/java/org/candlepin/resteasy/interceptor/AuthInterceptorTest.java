@@ -29,6 +29,7 @@ import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.ForbiddenException;
 import org.candlepin.common.exceptions.UnauthorizedException;
 import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.controller.CheckInRecorder;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.DeletedConsumerCurator;
@@ -56,6 +57,7 @@ import org.xnap.commons.i18n.I18n;
 
 import java.lang.reflect.Method;
 import java.security.cert.X509Certificate;
+import java.util.Date;
 import java.util.Enumeration;
 
 import javax.inject.Inject;
@@ -76,6 +78,7 @@ public class AuthInterceptorTest extends DatabaseTestFixture {
     private UserServiceAdapter usa;
     private DeletedConsumerCurator dcc;
     private PermissionFactory permFactory;
+    private CheckInRecorder checkInRecorder;
 
     private StubMethodInjector methodInjector;
 
@@ -133,8 +136,9 @@ public class AuthInterceptorTest extends DatabaseTestFixture {
         usa = mock(UserServiceAdapter.class);
         dcc = mock(DeletedConsumerCurator.class);
         permFactory = mock(PermissionFactory.class);
+        checkInRecorder = mock(CheckInRecorder.class);
         interceptor = new AuthInterceptor(config, usa,
-            consumerCurator, dcc, injector, i18nProvider);
+            consumerCurator, dcc, injector, i18nProvider, checkInRecorder);
 
         ResteasyProviderFactory.getInstance().registerProvider(
             StubInjectorFactoryImpl.class);
@@ -250,7 +254,7 @@ public class AuthInterceptorTest extends DatabaseTestFixture {
 
         Principal p1 = ResteasyProviderFactory.getContextData(Principal.class);
         assertTrue(p1 instanceof ConsumerPrincipal);
-        verify(consumerCurator).updateLastCheckin(c);
+        verify(checkInRecorder).record(eq(c), any(Date.class));
     }
 
     @Test(expected = ForbiddenException.class)
@@ -41,12 +41,14 @@ import org.candlepin.model.ProductAttribute;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.ProductPoolAttribute;
 import org.candlepin.model.Subscription;
+import org.candlepin.pki.CertificateWorkerPool;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.pki.X509ExtensionWrapper;
 import org.candlepin.pki.impl.BouncyCastlePKIUtility;
 import org.candlepin.service.ProductServiceAdapter;
 import org.candlepin.util.CertificateSizeException;
+import org.candlepin.util.ContentValueCache;
 import org.candlepin.util.Util;
 import org.candlepin.util.X509ExtensionUtil;
 import org.candlepin.util.X509V3ExtensionUtil;
@@ -67,7 +69,9 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.xnap.commons.i18n.I18nFactory;
 
 import java.io.ByteArrayOutputStream;
@@ -84,6 +88,7 @@ import java.security.cert.CertificateExpiredException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -139,6 +144,8 @@ public class DefaultEntitlementCertServiceAdapterTest {
     @Mock private KeyPairCurator keyPairCurator;
     @Mock private PKIUtility mockedPKI;
     @Mock private ProductServiceAdapter productAdapter;
+    @Mock private EntitlementCertificateCurator entCertCurator;
+    private CertificateWorkerPool workerPool;
 
     private Consumer consumer;
     private Product product;
@@ -199,13 +206,15 @@ public class DefaultEntitlementCertServiceAdapterTest {
         );
         injector.injectMembers(this);
 
-        v3extensionUtil = new X509V3ExtensionUtil(config, entCurator, productAdapter);
+        v3extensionUtil = new X509V3ExtensionUtil(config, entCurator, productAdapter,
+            new ContentValueCache(config));
+        workerPool = new CertificateWorkerPool(config);
         certServiceAdapter = new DefaultEntitlementCertServiceAdapter(
             mockedPKI, extensionUtil, v3extensionUtil,
-            mock(EntitlementCertificateCurator.class), keyPairCurator,
+            entCertCurator, keyPairCurator,
             serialCurator, productAdapter, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config);
+            config, workerPool);
 
         product = new Product("12345", "a product", "variant", "version",
             ARCH_LABEL, "SVC");
@@ -310,7 +319,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class), keyPairCurator,
             serialCurator, productAdapter, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config);
+            config, workerPool);
 
         X509Certificate result = certServiceAdapter.createX509Certificate(entitlement,
             product, new HashSet<Product>(),
@@ -769,7 +778,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
                 mock(EntitlementCertificateCurator.class), keyPairCurator,
                 serialCurator, productAdapter, entCurator,
                 I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-                mockConfig);
+                mockConfig, workerPool);
 
         entAdapter.createX509Certificate(entitlement, product,
             new HashSet<Product>(),
@@ -811,7 +820,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
                 mock(EntitlementCertificateCurator.class), keyPairCurator,
                 serialCurator, productAdapter, entCurator,
                 I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-                mockConfig);
+                mockConfig, workerPool);
 
         entAdapter.createX509Certificate(entitlement,
             product, new HashSet<Product>(),
@@ -843,7 +852,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
                 mock(EntitlementCertificateCurator.class), keyPairCurator,
                 serialCurator, productAdapter, entCurator,
                 I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-                mockConfig);
+                mockConfig, workerPool);
 
         entAdapter.createX509Certificate(entitlement,
             product, new HashSet<Product>(),
@@ -872,7 +881,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
                 mock(EntitlementCertificateCurator.class), keyPairCurator,
                 serialCurator, productAdapter, entCurator,
                 I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-                mockConfig);
+                mockConfig, workerPool);
 
         entAdapter.createX509Certificate(entitlement,
             product, new HashSet<Product>(),
@@ -898,7 +907,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
                 mock(EntitlementCertificateCurator.class), keyPairCurator,
                 serialCurator, productAdapter, entCurator,
                 I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-                mockConfig);
+                mockConfig, workerPool);
 
         entAdapter.createX509Certificate(entitlement,
             product, new HashSet<Product>(),
@@ -1594,7 +1603,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
 
         CertificateSerial serial = mock(CertificateSerial.class);
         when(serial.getId()).thenReturn(1L);
-        when(serialCurator.create(any(CertificateSerial.class))).thenReturn(serial);
+        when(serialCurator.allocate(any(CertificateSerial.class))).thenReturn(serial);
 
         EntitlementCertificate cert =
             certServiceAdapter.generateEntitlementCert(entitlement, subscription,
@@ -1603,6 +1612,68 @@ public class DefaultEntitlementCertServiceAdapterTest {
         assertTrue(!cert.getCert().contains("ENTITLEMENT DATA"));
     }
 
+    @Test
+    public void testGeneratesCertsInBulk() throws Exception {
+        KeyPair keyPair = new BouncyCastlePKIUtility(null, null).generateNewKeyPair();
+        when(keyPairCurator.getConsumerKeyPair(any(Consumer.class))).thenReturn(keyPair);
+        when(mockedPKI.getPemEncoded(any(X509Certificate.class))).thenReturn(
+            "cert".getBytes());
+        when(mockedPKI.getPemEncoded(any(Key.class))).thenReturn("key".getBytes());
+        when(serialCurator.allocate(any(CertificateSerial.class))).thenAnswer(
+            new Answer<CertificateSerial>() {
+                private long id = 1;
+
+                @Override
+                public CertificateSerial answer(InvocationOnMock invocation) {
+                    CertificateSerial serial =
+                        (CertificateSerial) invocation.getArguments()[0];
+                    serial.setId(id++);
+                    return serial;
+                }
+            });
+
+        entitlement.setId("ent1");
+        Entitlement second = new Entitlement(pool, consumer, 1);
+        second.setId("ent2");
+        Map<String, Subscription> subs = new HashMap<String, Subscription>();
+        subs.put("ent1", subscription);
+        subs.put("ent2", subscription);
+        Map<String, Product> products = new HashMap<String, Product>();
+        products.put("ent1", product);
+        products.put("ent2", product);
+
+        Map<String, EntitlementCertificate> certs =
+            certServiceAdapter.generateEntitlementCerts(
+                Arrays.asList(entitlement, second), subs, products);
+
+        assertEquals(2, certs.size());
+        assertEquals(entitlement, certs.get("ent1").getEntitlement());
+        assertEquals(Long.valueOf(2), certs.get("ent2").getSerial().getId());
+        assertEquals("cert", certs.get("ent2").getCert());
+        assertTrue(second.getCertificates().contains(certs.get("ent2")));
+        // Serials are only written out along with the certificates
+        verify(serialCurator, never()).create(any(CertificateSerial.class));
+        verify(serialCurator, never()).createAll(any(Collection.class));
+        verify(entCertCurator).createAll(any(Collection.class));
+    }
+
+    @Test
+    public void testContentExtensionReusedForSamePaths() throws IOException {
+        Set<Product> products = new HashSet<Product>();
+        products.add(product);
+        product.setContent(superContent);
+        consumer.setFact("system.certificate_version", "3.2");
+        consumer.setFact("uname.machine", "x86_64");
+
+        List<org.candlepin.json.model.Product> models =
+            getProductModels(product, products, "prefix", entitlement);
+        byte[] first = certServiceAdapter.prepareV3ByteExtensions(product, models,
+            entitlement, "prefix", null).iterator().next().getValue();
+        byte[] second = certServiceAdapter.prepareV3ByteExtensions(product, models,
+            entitlement, "prefix", null).iterator().next().getValue();
+        assertSame(first, second);
+    }
+
     @Test
     public void testContentExtension() throws IOException {
         Set<Product> products = new HashSet<Product>();
@@ -84,7 +84,7 @@ public class DefaultIdentityCertServiceAdapterTest {
         KeyPair kp = createKeyPair();
         when(kpc.getConsumerKeyPair(consumer)).thenReturn(kp);
         when(idcur.find(consumer.getId())).thenReturn(null);
-        when(csc.create(any(CertificateSerial.class))).thenAnswer(
+        when(csc.allocate(any(CertificateSerial.class))).thenAnswer(
             new Answer<CertificateSerial>() {
                 public CertificateSerial answer(InvocationOnMock invocation) {
                     Object[] args = invocation.getArguments();
@@ -116,7 +116,7 @@ public class DefaultIdentityCertServiceAdapterTest {
         assertNotNull(ic.getCertAsBytes());
         assertNotNull(ic.getKeyAsBytes());
         verify(consumer).setIdCert(ic);
-        verify(csc).create(any(CertificateSerial.class));
+        verify(csc).allocate(any(CertificateSerial.class));
     }
 
     @Test
@@ -145,7 +145,7 @@ public class DefaultIdentityCertServiceAdapterTest {
 
         KeyPair kp = createKeyPair();
         when(kpc.getConsumerKeyPair(consumer)).thenReturn(kp);
-        when(csc.create(any(CertificateSerial.class))).thenAnswer(
+        when(csc.allocate(any(CertificateSerial.class))).thenAnswer(
             new Answer<CertificateSerial>() {
                 public CertificateSerial answer(InvocationOnMock invocation) {
                     Object[] args = invocation.getArguments();
@@ -179,7 +179,7 @@ public class DefaultIdentityCertServiceAdapterTest {
         assertNotNull(ic.getCertAsBytes());
         assertNotNull(ic.getKeyAsBytes());
         verify(consumer).setIdCert(ic);
-        verify(csc).create(any(CertificateSerial.class));
+        verify(csc).allocate(any(CertificateSerial.class));
 
     }
 
@@ -193,7 +193,7 @@ public class DefaultIdentityCertServiceAdapterTest {
 
         KeyPair kp = createKeyPair();
         when(kpc.getConsumerKeyPair(consumer)).thenReturn(kp);
-        when(csc.create(any(CertificateSerial.class))).thenAnswer(
+        when(csc.allocate(any(CertificateSerial.class))).thenAnswer(
             new Answer<CertificateSerial>() {
                 public CertificateSerial answer(InvocationOnMock invocation) {
                     Object[] args = invocation.getArguments();
@@ -227,7 +227,7 @@ public class DefaultIdentityCertServiceAdapterTest {
         assertNotNull(ic.getCertAsBytes());
         assertNotNull(ic.getKeyAsBytes());
         verify(consumer).setIdCert(ic);
-        verify(csc).create(any(CertificateSerial.class));
+        verify(csc).allocate(any(CertificateSerial.class));
 
     }
 }
@@ -23,7 +23,6 @@ import org.candlepin.audit.EventSink;
 import org.candlepin.model.Cdn;
 import org.candlepin.model.CdnCurator;
 import org.candlepin.model.CertificateSerial;
-import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.DerivedProvidedProduct;
 import org.candlepin.model.Entitlement;
@@ -41,12 +40,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
 import java.io.Reader;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -64,7 +66,6 @@ public class EntitlementImporterTest {
 
     @Mock private EventSink sink;
     @Mock private SubscriptionCurator curator;
-    @Mock private CertificateSerialCurator certSerialCurator;
     @Mock private CdnCurator cdnCurator;
     @Mock private ObjectMapper om;
 
@@ -131,8 +132,8 @@ public class EntitlementImporterTest {
         this.testSub34 = createSubscription(owner, "test-prod-1", "up3", "ue34", "uc1", 5);
 
         i18n = I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK);
-        this.importer = new EntitlementImporter(this.curator, certSerialCurator,
-            cdnCurator, this.sink, i18n);
+        this.importer = new EntitlementImporter(this.curator, cdnCurator, this.sink,
+            i18n);
     }
 
     @Test
@@ -148,7 +149,7 @@ public class EntitlementImporterTest {
         });
 
         // then
-        verify(curator).create(testSub1);
+        assertTrue(created().contains(testSub1));
         verify(curator, never()).delete(testSub1);
         verify(curator, never()).merge(testSub1);
         verify(sink, atLeastOnce()).emitSubscriptionCreated(testSub1);
@@ -171,7 +172,7 @@ public class EntitlementImporterTest {
         });
 
         // then
-        verify(curator, never()).create(testSub1);
+        assertFalse(created().contains(testSub1));
         verify(curator).merge(testSub1);
         verify(curator, never()).delete(testSub1);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub1, testSub1);
@@ -190,7 +191,7 @@ public class EntitlementImporterTest {
         importer.store(owner, new HashSet<Subscription>());
 
         // then
-        verify(curator, never()).create(testSub1);
+        assertFalse(created().contains(testSub1));
         verify(curator, never()).merge(testSub1);
         verify(curator).delete(testSub1);
         verify(sink, atLeastOnce()).createSubscriptionDeleted(testSub1);
@@ -216,7 +217,7 @@ public class EntitlementImporterTest {
 
         // then
         verify(curator).merge(testSub2);
-        verify(curator).create(testSub3);
+        assertTrue(created().contains(testSub3));
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub2, testSub2);
         verify(sink, atLeastOnce()).emitSubscriptionCreated(testSub3);
     }
@@ -272,7 +273,7 @@ public class EntitlementImporterTest {
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub2, testSub2);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub4, testSub4);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub3, testSub5);
-        verify(curator, never()).create(testSub5);
+        assertFalse(created().contains(testSub5));
         verify(curator, never()).delete(testSub3);
     }
 
@@ -303,9 +304,9 @@ public class EntitlementImporterTest {
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub3, testSub6);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub4, testSub7);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub5, testSub8);
-        verify(curator, never()).create(testSub6);
-        verify(curator, never()).create(testSub7);
-        verify(curator, never()).create(testSub8);
+        assertFalse(created().contains(testSub6));
+        assertFalse(created().contains(testSub7));
+        assertFalse(created().contains(testSub8));
         verify(curator, never()).delete(testSub3);
         verify(curator, never()).delete(testSub4);
         verify(curator, never()).delete(testSub5);
@@ -336,8 +337,8 @@ public class EntitlementImporterTest {
         verify(curator).merge(testSub8);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub3, testSub6);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub5, testSub8);
-        verify(curator, never()).create(testSub6);
-        verify(curator, never()).create(testSub8);
+        assertFalse(created().contains(testSub6));
+        assertFalse(created().contains(testSub8));
         verify(curator, never()).delete(testSub3);
         verify(curator).delete(testSub4);
         verify(curator, never()).delete(testSub5);
@@ -368,9 +369,9 @@ public class EntitlementImporterTest {
         verify(curator, never()).merge(testSub8);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub3, testSub6);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub4, testSub7);
-        verify(curator, never()).create(testSub6);
-        verify(curator, never()).create(testSub7);
-        verify(curator).create(testSub8);
+        assertFalse(created().contains(testSub6));
+        assertFalse(created().contains(testSub7));
+        assertTrue(created().contains(testSub8));
     }
 
     @Test
@@ -400,9 +401,9 @@ public class EntitlementImporterTest {
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub9, testSub3);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub10, testSub4);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub11, testSub5);
-        verify(curator, never()).create(testSub3);
-        verify(curator, never()).create(testSub4);
-        verify(curator, never()).create(testSub5);
+        assertFalse(created().contains(testSub3));
+        assertFalse(created().contains(testSub4));
+        assertFalse(created().contains(testSub5));
         verify(curator, never()).delete(testSub9);
         verify(curator, never()).delete(testSub10);
         verify(curator, never()).delete(testSub11);
@@ -435,9 +436,9 @@ public class EntitlementImporterTest {
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub1, testSub12);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub2, testSub13);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub3, testSub14);
-        verify(curator, never()).create(testSub12);
-        verify(curator, never()).create(testSub13);
-        verify(curator, never()).create(testSub14);
+        assertFalse(created().contains(testSub12));
+        assertFalse(created().contains(testSub13));
+        assertFalse(created().contains(testSub14));
         verify(curator, never()).delete(testSub1);
         verify(curator, never()).delete(testSub2);
         verify(curator, never()).delete(testSub3);
@@ -468,9 +469,9 @@ public class EntitlementImporterTest {
         verify(curator).merge(testSub14);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub2, testSub12);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub4, testSub14);
-        verify(curator, never()).create(testSub12);
-        verify(curator, never()).create(testSub13);
-        verify(curator, never()).create(testSub14);
+        assertFalse(created().contains(testSub12));
+        assertFalse(created().contains(testSub13));
+        assertFalse(created().contains(testSub14));
         verify(curator, never()).delete(testSub2);
         verify(curator).delete(testSub3);
         verify(curator, never()).delete(testSub4);
@@ -500,9 +501,9 @@ public class EntitlementImporterTest {
         verify(curator).merge(testSub16);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub3, testSub3);
         verify(sink, atLeastOnce()).emitSubscriptionModified(testSub15, testSub16);
-        verify(curator, never()).create(testSub3);
-        verify(curator, never()).create(testSub15);
-        verify(curator, never()).create(testSub16);
+        assertFalse(created().contains(testSub3));
+        assertFalse(created().contains(testSub15));
+        assertFalse(created().contains(testSub16));
         verify(curator, never()).delete(testSub3);
         verify(curator, never()).delete(testSub15);
         verify(curator, never()).delete(testSub16);
@@ -558,11 +559,11 @@ public class EntitlementImporterTest {
         verify(curator).delete(testSub22);
         verify(curator).delete(testSub23);
         verify(curator).delete(testSub24);
-        verify(curator).create(testSub30);
-        verify(curator).create(testSub31);
-        verify(curator).create(testSub32);
-        verify(curator).create(testSub33);
-        verify(curator).create(testSub34);
+        assertTrue(created().contains(testSub30));
+        assertTrue(created().contains(testSub31));
+        assertTrue(created().contains(testSub32));
+        assertTrue(created().contains(testSub33));
+        assertTrue(created().contains(testSub34));
     }
 
     @Test
@@ -647,6 +648,20 @@ public class EntitlementImporterTest {
         assertEquals(sub.getCdn().getLabel(), meta.getCdnLabel());
     }
 
+    /*
+     * Subscriptions handed to createAll, nothing is created one at a time.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Collection<Subscription> created() {
+        verify(curator, never()).create(any(Subscription.class));
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(curator, atMost(1)).createAll(captor.capture());
+        if (captor.getAllValues().isEmpty()) {
+            return Collections.<Subscription>emptyList();
+        }
+        return captor.getValue();
+    }
+
     private Subscription createSubscription(Owner daOwner, String productId,
             String poolId, String entId, String conId, long quantity) {
         Subscription sub = new Subscription();
@@ -18,6 +18,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -55,10 +56,13 @@ import org.candlepin.service.ProductServiceAdapter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -69,12 +73,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -347,6 +357,153 @@ public class ExporterTest {
         assertTrue(new File("/tmp/meta.json").delete());
     }
 
+    @Test
+    public void streamedExportIsSigned() throws Exception {
+        config.setProperty(ConfigProperties.SYNC_WORK_DIR, "/tmp/");
+        Rules mrules = mock(Rules.class);
+        Consumer consumer = mock(Consumer.class);
+        Principal principal = mock(Principal.class);
+        IdentityCertificate idcert = new IdentityCertificate();
+
+        when(mrules.getRules()).thenReturn("foobar");
+        when(rc.getRules()).thenReturn(mrules);
+        when(pprov.get()).thenReturn(principal);
+        when(principal.getUsername()).thenReturn("testUser");
+
+        idcert.setSerial(new CertificateSerial(10L, new Date()));
+        idcert.setKey("euh0876puhapodifbvj094");
+        idcert.setCert("hpj-08ha-w4gpoknpon*)&^%#");
+        idcert.setCreated(new Date());
+        idcert.setUpdated(new Date());
+        when(consumer.getIdCert()).thenReturn(idcert);
+        when(consumer.getUuid()).thenReturn("8auuid");
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        java.security.KeyPair caKeys = generator.generateKeyPair();
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(caKeys.getPrivate());
+        when(pki.getSHA256WithRSASigner()).thenReturn(signer);
+
+        Exporter e = new Exporter(ctc, me, ce, cte, re, ece, ecsa, pe, psa,
+            pce, ec, ee, pki, config, exportRules, pprov, dvc, dve, cdnc, cdne);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        e.getFullExport(consumer, null, null, null, out);
+
+        Map<String, byte[]> outer = readEntries(out.toByteArray());
+        assertEquals(new HashSet<String>(Arrays.asList("consumer_export.zip", "signature")),
+            outer.keySet());
+
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+        verifier.initVerify(caKeys.getPublic());
+        verifier.update(outer.get("consumer_export.zip"));
+        assertTrue(verifier.verify(outer.get("signature")));
+
+        Map<String, byte[]> inner = readEntries(outer.get("consumer_export.zip"));
+        assertTrue(inner.containsKey("export/meta.json"));
+        assertTrue(inner.containsKey("export/upstream_consumer/10.json"));
+        assertEquals("foobar", new String(inner.get("export/rules2/rules.js")));
+        assertTrue(inner.containsKey("export/rules/default-rules.js"));
+    }
+
+    @Test
+    public void signingFailureFailsTheExport() throws Exception {
+        config.setProperty(ConfigProperties.SYNC_WORK_DIR, "/tmp/");
+        Rules mrules = mock(Rules.class);
+        Consumer consumer = mock(Consumer.class);
+        Principal principal = mock(Principal.class);
+        IdentityCertificate idcert = new IdentityCertificate();
+
+        when(mrules.getRules()).thenReturn("foobar");
+        when(rc.getRules()).thenReturn(mrules);
+        when(pprov.get()).thenReturn(principal);
+        when(principal.getUsername()).thenReturn("testUser");
+
+        idcert.setSerial(new CertificateSerial(10L, new Date()));
+        idcert.setKey("euh0876puhapodifbvj094");
+        idcert.setCert("hpj-08ha-w4gpoknpon*)&^%#");
+        idcert.setCreated(new Date());
+        idcert.setUpdated(new Date());
+        when(consumer.getIdCert()).thenReturn(idcert);
+        when(consumer.getUuid()).thenReturn("8auuid");
+
+        Signature signer = new FailingSignature();
+        signer.initSign(mock(PrivateKey.class));
+        when(pki.getSHA256WithRSASigner()).thenReturn(signer);
+
+        Exporter e = new Exporter(ctc, me, ce, cte, re, ece, ecsa, pe, psa,
+            pce, ec, ee, pki, config, exportRules, pprov, dvc, dve, cdnc, cdne);
+        try {
+            e.getFullExport(consumer, null, null, null, new ByteArrayOutputStream());
+            fail("Export should not succeed without a signature");
+        }
+        catch (ExportCreationException ex) {
+            assertTrue(ex.getCause() instanceof SignatureException);
+        }
+    }
+
+    /**
+     * Takes any data, but fails to produce a signature.
+     */
+    private static class FailingSignature extends Signature {
+        FailingSignature() {
+            super("failing");
+        }
+
+        @Override
+        protected void engineInitSign(PrivateKey key) {
+        }
+
+        @Override
+        protected void engineInitVerify(PublicKey key) {
+        }
+
+        @Override
+        protected void engineUpdate(byte b) {
+        }
+
+        @Override
+        protected void engineUpdate(byte[] b, int off, int len) {
+        }
+
+        @Override
+        protected byte[] engineSign() throws SignatureException {
+            throw new SignatureException("Induced signing failure");
+        }
+
+        @Override
+        protected boolean engineVerify(byte[] sig) {
+            return false;
+        }
+
+        @Override
+        @Deprecated
+        protected void engineSetParameter(String param, Object value) {
+        }
+
+        @Override
+        @Deprecated
+        protected Object engineGetParameter(String param) {
+            return null;
+        }
+    }
+
+    private Map<String, byte[]> readEntries(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new HashMap<String, byte[]>();
+        ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive));
+        try {
+            ZipEntry entry = null;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), IOUtils.toByteArray(zis));
+                zis.closeEntry();
+            }
+        }
+        finally {
+            zis.close();
+        }
+        return entries;
+    }
+
     @Test
     public void exportIdentityCertificate() throws Exception {
         config.setProperty(ConfigProperties.SYNC_WORK_DIR, "/tmp/");
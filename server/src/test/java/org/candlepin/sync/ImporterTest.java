@@ -85,6 +85,7 @@ public class ImporterTest {
     private I18n i18n;
     private static final String MOCK_JS_PATH = "/tmp/empty.js";
     private CandlepinCommonTestConfig config;
+    private ImportWorkerPool workerPool;
     private File tempDir;
 
     @Before
@@ -100,6 +101,7 @@ public class ImporterTest {
         i18n = I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK);
         config = new CandlepinCommonTestConfig();
         config.setProperty(ConfigProperties.SYNC_WORK_DIR, "/tmp");
+        workerPool = new ImportWorkerPool(config);
         tempDir = new SyncUtils(config).makeTempDir("ImporterTest");
 
         PrintStream ps = new PrintStream(new File(this.getClass()
@@ -138,7 +140,7 @@ public class ImporterTest {
         em.setType(ExporterMetadata.TYPE_SYSTEM);
         when(emc.lookupByType(ExporterMetadata.TYPE_SYSTEM)).thenReturn(em);
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, null, emc, null, null, i18n, null, null);
+            null, null, null, emc, null, null, i18n, null, null, null);
         i.validateMetadata(ExporterMetadata.TYPE_SYSTEM, null, actual,
             new ConflictOverrides());
 
@@ -162,7 +164,7 @@ public class ImporterTest {
         ExporterMetadataCurator emc = mock(ExporterMetadataCurator.class);
         when(emc.lookupByType(ExporterMetadata.TYPE_SYSTEM)).thenReturn(null);
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, null, emc, null, null, i18n, null, null);
+            null, null, null, emc, null, null, i18n, null, null, null);
         i.validateMetadata(ExporterMetadata.TYPE_SYSTEM, null, actualmeta,
             new ConflictOverrides());
         assertTrue(f.delete());
@@ -183,7 +185,7 @@ public class ImporterTest {
         em.setType(ExporterMetadata.TYPE_SYSTEM);
         when(emc.lookupByType(ExporterMetadata.TYPE_SYSTEM)).thenReturn(em);
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, null, emc, null, null, i18n, null, null);
+            null, null, null, emc, null, null, i18n, null, null, null);
         try {
             i.validateMetadata(ExporterMetadata.TYPE_SYSTEM, null, actualmeta,
                 new ConflictOverrides());
@@ -211,7 +213,7 @@ public class ImporterTest {
         em.setType(ExporterMetadata.TYPE_SYSTEM);
         when(emc.lookupByType(ExporterMetadata.TYPE_SYSTEM)).thenReturn(em);
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, null, emc, null, null, i18n, null, null);
+            null, null, null, emc, null, null, i18n, null, null, null);
         try {
             i.validateMetadata(ExporterMetadata.TYPE_SYSTEM, null, actualmeta,
                 new ConflictOverrides());
@@ -259,7 +261,7 @@ public class ImporterTest {
         em.setType(ExporterMetadata.TYPE_SYSTEM);
         when(emc.lookupByType(ExporterMetadata.TYPE_SYSTEM)).thenReturn(em);
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, null, emc, null, null, i18n, null, null);
+            null, null, null, emc, null, null, i18n, null, null, null);
         i.validateMetadata(ExporterMetadata.TYPE_SYSTEM, null, actualmeta,
             new ConflictOverrides());
         assertEquals(importDate, em.getExported());
@@ -271,7 +273,7 @@ public class ImporterTest {
             "test_user", "prefix");
         try {
             Importer i = new Importer(null, null, null, null, null, null, null,
-                null, null, null, null, null, null, i18n, null, null);
+                null, null, null, null, null, null, i18n, null, null, null);
 
             // null Type should cause exception
             i.validateMetadata(null, null, actualmeta, new ConflictOverrides());
@@ -289,7 +291,7 @@ public class ImporterTest {
         when(emc.lookupByTypeAndOwner(ExporterMetadata.TYPE_PER_USER, null))
             .thenReturn(null);
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, null, emc, null, null, i18n, null, null);
+            null, null, null, emc, null, null, i18n, null, null, null);
 
         // null Type should cause exception
         i.validateMetadata(ExporterMetadata.TYPE_PER_USER, null, actualmeta,
@@ -301,7 +303,7 @@ public class ImporterTest {
     public void testImportWithNonZipArchive()
         throws IOException, ImporterException {
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, config, null, null, null, i18n, null, null);
+            null, null, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
         File archive = new File("/tmp/non_zip_file.zip");
@@ -324,7 +326,7 @@ public class ImporterTest {
     public void testImportZipArchiveNoContent()
         throws IOException, ImporterException {
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, config, null, null, null, i18n, null, null);
+            null, null, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
 
@@ -349,7 +351,7 @@ public class ImporterTest {
         throws IOException, ImporterException {
         PKIUtility pki = mock(PKIUtility.class);
         Importer i = new Importer(null, null, null, null, null, null, null, null,
-            pki, config, null, null, null, i18n, null, null);
+            pki, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
 
@@ -371,7 +373,7 @@ public class ImporterTest {
     public void testImportBadConsumerZip() throws Exception {
         PKIUtility pki = mock(PKIUtility.class);
         Importer i = new Importer(null, null, null, null, null, null, null, null,
-            pki, config, null, null, null, i18n, null, null);
+            pki, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
 
@@ -407,7 +409,7 @@ public class ImporterTest {
         throws Exception {
         PKIUtility pki = mock(PKIUtility.class);
         Importer i = new Importer(null, null, null, null, null, null, null, null,
-            pki, config, null, null, null, i18n, null, null);
+            pki, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
 
@@ -451,7 +453,7 @@ public class ImporterTest {
     @Test
     public void testImportNoMeta() throws IOException {
         Importer i = new Importer(null, null, null, null, null, null, null, null,
-            null, config, null, null, null, i18n, null, null);
+            null, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
 
@@ -472,7 +474,7 @@ public class ImporterTest {
     @Test
     public void testImportNoConsumerTypesDir() throws IOException {
         Importer i = new Importer(null, null, null, null, null, null, null, null,
-            null, config, null, null, null, i18n, null, null);
+            null, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
         Map<String, File> importFiles = getTestImportFiles();
@@ -493,7 +495,7 @@ public class ImporterTest {
     @Test
     public void testImportNoConsumer() throws IOException {
         Importer i = new Importer(null, null, null, null, null, null, null, null,
-            null, config, null, null, null, i18n, null, null);
+            null, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
         Map<String, File> importFiles = getTestImportFiles();
@@ -516,7 +518,7 @@ public class ImporterTest {
         throws IOException, ImporterException {
         RulesImporter ri = mock(RulesImporter.class);
         Importer i = new Importer(null, null, ri, null, null, null, null, null,
-            null, config, null, null, null, i18n, null, null);
+            null, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
         Map<String, File> importFiles = getTestImportFiles();
@@ -551,7 +553,7 @@ public class ImporterTest {
     @Test
     public void testImportProductNoEntitlementDir() throws IOException {
         Importer i = new Importer(null, null, null, null, null, null, null, null,
-            null, config, null, null, null, i18n, null, null);
+            null, config, null, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
         Map<String, File> importFiles = getTestImportFiles();
@@ -645,7 +647,7 @@ public class ImporterTest {
         Importer i = new Importer(ctc, null, null, oc,
             mock(IdentityCertificateCurator.class), null, null, null,
             pki, null, null, mock(CertificateSerialCurator.class), null, i18n, null,
-            null);
+            null, null);
         File[] upstream = new File[2];
         File idcertfile = new File("target/test/resources/upstream/testidcert.json");
         File kpfile = new File("target/test/resources/upstream/keypair.pem");
@@ -668,7 +670,7 @@ public class ImporterTest {
     public void importDistributorVersionCreate() throws Exception {
         DistributorVersionCurator dvc = mock(DistributorVersionCurator.class);
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, null, null, null, null, i18n, dvc, null);
+            null, null, null, null, null, null, i18n, dvc, null, null);
         File[] distVer = new File[1];
         distVer[0] = new File("target/test/resources/upstream/dist-ver.json");
 
@@ -682,7 +684,7 @@ public class ImporterTest {
     public void importDistributorVersionUpdate() throws Exception {
         DistributorVersionCurator dvc = mock(DistributorVersionCurator.class);
         Importer i = new Importer(null, null, null, null, null, null, null,
-            null, null, null, null, null, null, i18n, dvc, null);
+            null, null, null, null, null, null, i18n, dvc, null, null);
         when(dvc.findByName("test-dist-ver")).thenReturn(
             new DistributorVersion("test-dist-ver"));
         File[] distVer = new File[1];
@@ -700,7 +702,7 @@ public class ImporterTest {
         RulesImporter ri = mock(RulesImporter.class);
         ExporterMetadataCurator emc = mock(ExporterMetadataCurator.class);
         Importer i = new Importer(null, null, ri, null, null, null, null,
-            null, null, config, emc, null, null, i18n, null, null);
+            null, null, config, emc, null, null, i18n, null, null, workerPool);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
         Map<String, File> importFiles = getTestImportFiles();
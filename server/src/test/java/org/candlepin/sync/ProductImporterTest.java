@@ -131,6 +131,30 @@ public class ProductImporterTest {
         assertEquals(new Long(1), c.getMetadataExpire());
     }
 
+    @Test
+    public void testSharedContentStoredOnce() throws Exception {
+        Product product1 = TestUtil.createProduct();
+        addContentTo(product1);
+        Product product2 = TestUtil.createProduct();
+        addContentTo(product2);
+
+        Product created1 = importer.createObject(mapper,
+            new StringReader(getJsonForProduct(product1)));
+        Product created2 = importer.createObject(mapper,
+            new StringReader(getJsonForProduct(product2)));
+        Content c = created1.getProductContent().iterator().next().getContent();
+        assertSame(c, created2.getProductContent().iterator().next().getContent());
+
+        Set<Product> storeThese = new HashSet<Product>();
+        storeThese.add(created1);
+        storeThese.add(created2);
+        importer.store(storeThese);
+
+        verify(contentCuratorMock, times(1)).createOrUpdate(c);
+        verify(productCuratorMock).createOrUpdate(created1);
+        verify(productCuratorMock).createOrUpdate(created2);
+    }
+
     @Test
     public void testExistingProductContentAdded() throws Exception {
         Product oldProduct = TestUtil.createProduct("fake id", "fake name");
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * ContentValueCacheTest
+ */
+public class ContentValueCacheTest {
+
+    private ContentValueCache cache;
+
+    @Before
+    public void init() {
+        Configuration config = mock(Configuration.class);
+        when(config.getInt(ConfigProperties.CONTENT_VALUE_CACHE_MAX)).thenReturn(2);
+        cache = new ContentValueCache(config);
+    }
+
+    @Test
+    public void keyDependsOnPathOrder() {
+        String key = ContentValueCache.key(Arrays.asList("/a", "/b"));
+        assertEquals(key, ContentValueCache.key(Arrays.asList("/a", "/b")));
+        assertFalse(key.equals(ContentValueCache.key(Arrays.asList("/b", "/a"))));
+        assertFalse(key.equals(ContentValueCache.key(Arrays.asList("/a/b"))));
+    }
+
+    @Test
+    public void dropsLeastRecentlyUsed() {
+        byte[] one = new byte[] {1};
+        cache.put("one", one);
+        cache.put("two", new byte[] {2});
+        assertSame(one, cache.get("one"));
+
+        cache.put("three", new byte[] {3});
+        assertEquals(2, cache.size());
+        assertSame(one, cache.get("one"));
+        assertNull(cache.get("two"));
+    }
+}
@@ -20,6 +20,7 @@ import static org.mockito.Mockito.*;
 
 import org.candlepin.controller.CrlGenerator;
 import org.candlepin.pki.PKIUtility;
+import org.candlepin.pki.X509CRLEntryWrapper;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.FileUtils;
@@ -31,9 +32,14 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509CRL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 
 /**
  * CrlFileUtilTest
@@ -131,4 +137,133 @@ public class CrlFileUtilTest {
             }
         }
     }
+
+    @Test
+    public void updateCRLFileSwapsIndexThenWritesCrl() throws Exception {
+        File f = File.createTempFile("test", ".crl");
+        f.delete();
+        File indexFile = cfu.getIndexFile(f);
+        try {
+            RevocationIndex index = cfu.updateCRLFile(f, new CrlFileUtil.IndexUpdate() {
+                @Override
+                public RevocationIndex apply(RevocationIndex index) throws IOException {
+                    return index.update(BigInteger.ONE, Arrays.asList(
+                        new X509CRLEntryWrapper(BigInteger.TEN, new Date())),
+                        Collections.<Long>emptyList());
+                }
+            });
+
+            assertFalse(index.isPending());
+            assertEquals(indexFile, index.getFile());
+            assertTrue(RevocationIndex.read(indexFile).contains(10L));
+            assertTrue(f.exists());
+            verify(pkiUtility).writePemEncodedCRL(eq(index), eq(BigInteger.ONE),
+                any(OutputStream.class));
+        }
+        finally {
+            indexFile.delete();
+            f.delete();
+        }
+    }
+
+    @Test
+    public void indexIsUsedWhileTheCrlIsUnchanged() throws Exception {
+        File f = File.createTempFile("test", ".crl");
+        f.delete();
+        File indexFile = cfu.getIndexFile(f);
+        try {
+            cfu.updateCRLFile(f, revokeTen());
+
+            // The written CRL is known to match, so it is not parsed again
+            assertTrue(cfu.readIndex(f).contains(10L));
+            assertTrue(indexFile.exists());
+        }
+        finally {
+            indexFile.delete();
+            f.delete();
+        }
+    }
+
+    @Test
+    public void deletedCrlRebuildsTheIndex() throws Exception {
+        File f = File.createTempFile("test", ".crl");
+        f.delete();
+        File indexFile = cfu.getIndexFile(f);
+        try {
+            cfu.updateCRLFile(f, revokeTen());
+            assertTrue(f.delete());
+
+            RevocationIndex index = cfu.readIndex(f);
+            assertEquals(0, index.size());
+            assertFalse(index.contains(10L));
+            assertFalse(indexFile.exists());
+        }
+        finally {
+            indexFile.delete();
+            f.delete();
+        }
+    }
+
+    @Test
+    public void crlNotWrittenFromTheIndexIsCheckedAfterARestart() throws Exception {
+        File f = File.createTempFile("test", ".crl");
+        f.delete();
+        File indexFile = cfu.getIndexFile(f);
+        try {
+            cfu.updateCRLFile(f, revokeTen());
+
+            // The mocked PKIUtility wrote an empty CRL, which has no CRL number
+            RevocationIndex index = new CrlFileUtil(pkiUtility).readIndex(f);
+            assertEquals(0, index.size());
+        }
+        finally {
+            indexFile.delete();
+            f.delete();
+        }
+    }
+
+    @Test
+    public void failedUpdateLeavesIndexAlone() throws Exception {
+        File f = File.createTempFile("test", ".crl");
+        f.delete();
+        File indexFile = cfu.getIndexFile(f);
+        final File[] pending = new File[1];
+        try {
+            cfu.updateCRLFile(f, new CrlFileUtil.IndexUpdate() {
+                @Override
+                public RevocationIndex apply(RevocationIndex index) throws IOException {
+                    pending[0] = index.update(BigInteger.ONE, Arrays.asList(
+                        new X509CRLEntryWrapper(BigInteger.TEN, new Date())),
+                        Collections.<Long>emptyList()).getFile();
+                    // e.g. the transaction marking the serials collected rolled back
+                    throw new RuntimeException("rolled back");
+                }
+            });
+            fail("Update should have failed");
+        }
+        catch (RuntimeException e) {
+            assertEquals("rolled back", e.getMessage());
+            assertFalse(pending[0].exists());
+            assertFalse(indexFile.exists());
+            assertFalse(f.exists());
+        }
+        finally {
+            indexFile.delete();
+            f.delete();
+        }
+
+        verify(pkiUtility, never()).writePemEncodedCRL(any(RevocationIndex.class),
+            any(BigInteger.class), any(OutputStream.class));
+    }
+
+    private CrlFileUtil.IndexUpdate revokeTen() {
+        return new CrlFileUtil.IndexUpdate() {
+            @Override
+            public RevocationIndex apply(RevocationIndex index) throws IOException {
+                return index.update(BigInteger.ONE, Arrays.asList(
+                    new X509CRLEntryWrapper(BigInteger.TEN, new Date())),
+                    Collections.<Long>emptyList());
+            }
+        };
+    }
 }
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.pki.X509CRLEntryWrapper;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * RevocationIndexTest
+ */
+public class RevocationIndexTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("test", ".idx");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        RevocationIndex.discardPending(file);
+        file.delete();
+    }
+
+    private X509CRLEntryWrapper entry(long serial, long time) {
+        return new X509CRLEntryWrapper(BigInteger.valueOf(serial), new Date(time));
+    }
+
+    private List<Long> serials(RevocationIndex index) {
+        List<Long> serials = new ArrayList<Long>();
+        for (X509CRLEntryWrapper entry : index) {
+            serials.add(entry.getSerialNumber().longValue());
+        }
+        return serials;
+    }
+
+    @Test
+    public void missingFileIsEmpty() throws IOException {
+        RevocationIndex index = RevocationIndex.read(file);
+        assertEquals(0, index.size());
+        assertEquals(BigInteger.ZERO, index.getCrlNumber());
+        assertFalse(index.iterator().hasNext());
+        assertFalse(index.contains(1L));
+    }
+
+    @Test
+    public void updateSortsAndPersists() throws IOException {
+        RevocationIndex index = RevocationIndex.read(file).update(BigInteger.ONE,
+            Arrays.asList(entry(30, 3), entry(10, 1), entry(20, 2), entry(10, 1)),
+            Collections.<Long>emptyList()).commit();
+
+        assertFalse(index.isPending());
+        assertEquals(file, index.getFile());
+        assertEquals(3, index.size());
+        assertEquals(Arrays.asList(10L, 20L, 30L), serials(index));
+
+        RevocationIndex reread = RevocationIndex.read(file);
+        assertEquals(BigInteger.ONE, reread.getCrlNumber());
+        assertEquals(Arrays.asList(10L, 20L, 30L), serials(reread));
+        assertTrue(reread.contains(20L));
+        assertFalse(reread.contains(25L));
+    }
+
+    @Test
+    public void mergesAddedAndRemovedSerials() throws IOException {
+        RevocationIndex index = RevocationIndex.read(file).update(BigInteger.ONE,
+            Arrays.asList(entry(10, 1), entry(20, 2), entry(30, 3)),
+            Collections.<Long>emptyList()).commit();
+
+        index = index.update(BigInteger.valueOf(2),
+            Arrays.asList(entry(5, 5), entry(20, 99), entry(40, 4)),
+            Arrays.asList(30L, 5L));
+
+        assertEquals(BigInteger.valueOf(2), index.getCrlNumber());
+        assertEquals(Arrays.asList(10L, 20L, 40L), serials(index));
+        for (X509CRLEntryWrapper entry : index) {
+            if (entry.getSerialNumber().longValue() == 20L) {
+                // Already revoked serials keep their date
+                assertEquals(2L, entry.getRevocationDate().getTime());
+            }
+        }
+    }
+
+    @Test
+    public void updateLeavesIndexFileAloneUntilCommitted() throws IOException {
+        RevocationIndex.read(file).update(BigInteger.ONE,
+            Arrays.asList(entry(10, 1)), Collections.<Long>emptyList()).commit();
+
+        RevocationIndex pending = RevocationIndex.read(file).update(BigInteger.valueOf(2),
+            Arrays.asList(entry(20, 2)), Collections.<Long>emptyList());
+        RevocationIndex other = RevocationIndex.read(file).update(BigInteger.valueOf(2),
+            Arrays.asList(entry(30, 3)), Collections.<Long>emptyList());
+
+        assertTrue(pending.isPending());
+        assertFalse(pending.getFile().equals(other.getFile()));
+        assertEquals(file.getAbsoluteFile().getParentFile(),
+            pending.getFile().getAbsoluteFile().getParentFile());
+        assertEquals(Arrays.asList(10L), serials(RevocationIndex.read(file)));
+
+        pending.commit();
+        assertEquals(Arrays.asList(10L, 20L), serials(RevocationIndex.read(file)));
+        assertFalse(pending.getFile().exists());
+
+        RevocationIndex.discardPending(file);
+        assertFalse(other.getFile().exists());
+        assertTrue(file.exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        FileUtils.writeStringToFile(file, "not an index at all");
+        RevocationIndex.read(file);
+    }
+}
@@ -58,7 +58,7 @@ public class X509V3ExtensionUtilTest {
         config = mock(Configuration.class);
         ec = mock(EntitlementCurator.class);
         psa = mock(ProductServiceAdapter.class);
-        util = new X509V3ExtensionUtil(config, ec, psa);
+        util = new X509V3ExtensionUtil(config, ec, psa, new ContentValueCache(config));
     }
 
     @Test